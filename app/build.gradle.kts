@@ -53,6 +53,10 @@ android {
             excludes += "/META-INF/{AL2.0,LGPL2.1}"
         }
     }
+    androidResources {
+        // ONNX models are memory-mapped straight from the APK, which needs them stored uncompressed
+        noCompress += "onnx"
+    }
     externalNativeBuild {
         cmake {
             path = file("src/main/cpp/CMakeLists.txt")
@@ -61,6 +65,70 @@ android {
     }
 }
 
+// Host build of the native image_processing library, loaded by the JVM unit tests (and the
+// benchmarks) to check the native kernels against their Java fallbacks. Needs cmake and a JDK;
+// without cmake the build is skipped and those tests are skipped too.
+val hostNativeDir = layout.buildDirectory.dir("host-native").get().asFile
+val hostHasCmake = System.getenv("PATH").orEmpty()
+    .split(File.pathSeparator)
+    .any { File(it, "cmake").canExecute() }
+
+val configureHostNative by tasks.registering(Exec::class) {
+    onlyIf { hostHasCmake }
+    commandLine(
+        "cmake", "-S", file("src/main/cpp").path, "-B", hostNativeDir.path,
+        "-DCMAKE_BUILD_TYPE=Release",
+    )
+}
+
+val buildHostNative by tasks.registering(Exec::class) {
+    dependsOn(configureHostNative)
+    onlyIf { hostHasCmake }
+    commandLine("cmake", "--build", hostNativeDir.path, "--target", "image_processing")
+}
+
+// Native library of the desktop OpenCV build for this host, for the JVM unit tests that drive
+// ObjectDetection. The jar bundles one per platform; only the host's is unpacked.
+val hostOpenCvDir = layout.buildDirectory.dir("host-opencv").get().asFile
+val hostOpenCvPlatform = run {
+    val os = System.getProperty("os.name").lowercase()
+    val osDir = when {
+        os.startsWith("mac") -> "osx"
+        os.startsWith("windows") -> "windows"
+        else -> "linux"
+    }
+    val archDir = when (System.getProperty("os.arch")) {
+        "amd64", "x86_64" -> "x86_64"
+        "aarch64" -> "ARMv8"
+        "arm" -> "ARMv7"
+        else -> "x86_32"
+    }
+    "$osDir/$archDir"
+}
+val desktopOpenCv by configurations.creating
+
+val unpackHostOpenCv by tasks.registering(Sync::class) {
+    from({ desktopOpenCv.map { zipTree(it) } }) {
+        include("nu/pattern/opencv/$hostOpenCvPlatform/*")
+        exclude("**/*.md")
+        eachFile { path = name }
+    }
+    includeEmptyDirs = false
+    into(hostOpenCvDir)
+}
+
+// The Android runtimes' classes clash with the desktop ones and their native libraries don't
+// load on the host, so unit tests only get the desktop ONNX Runtime and OpenCV
+configurations.matching { it.name.endsWith("UnitTestRuntimeClasspath") }.configureEach {
+    exclude(group = "com.microsoft.onnxruntime", module = "onnxruntime-android")
+    exclude(group = "org.opencv", module = "opencv")
+}
+
+tasks.withType<Test>().configureEach {
+    dependsOn(buildHostNative, unpackHostOpenCv)
+    systemProperty("java.library.path", listOf(hostNativeDir, hostOpenCvDir).joinToString(File.pathSeparator))
+}
+
 dependencies {
     implementation(libs.androidx.core.ktx)
     implementation(libs.androidx.lifecycle.runtime.ktx)
@@ -74,7 +142,7 @@ dependencies {
     implementation(libs.androidx.material3)
     implementation(libs.androidx.lifecycle.viewmodel.compose)
 
-    implementation("com.microsoft.onnxruntime:onnxruntime-android:1.17.0")
+    implementation(libs.onnxruntime.android)
 
     // TensorFlow Lite
 //    implementation(libs.tensorflow.lite)
@@ -96,6 +164,11 @@ dependencies {
     implementation(libs.androidx.ui.tooling.preview)
     implementation(libs.androidx.exifinterface)
     testImplementation(libs.junit)
+    // Same ONNX Runtime Java API with host native libraries, for OnnxDetectionBackendTest
+    testImplementation(libs.onnxruntime.desktop)
+    // Same OpenCV Java API with host native libraries, for ObjectDetectionTest
+    testImplementation(libs.opencv.desktop)
+    desktopOpenCv(libs.opencv.desktop)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
     androidTestImplementation(platform(libs.androidx.compose.bom))
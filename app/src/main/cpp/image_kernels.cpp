@@ -0,0 +1,187 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+//
+// Pixel conversion kernels shared by the YOLO and SAM preprocessing paths.
+//
+#include "image_kernels.h"
+
+#include <algorithm>
+
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+#include <arm_neon.h>
+#define IMAGE_KERNELS_NEON 1
+#endif
+
+namespace image_kernels {
+
+namespace {
+
+constexpr float kInv255 = 1.0f / 255.0f;
+
+// Bilinear sample of an 8-bit plane at pixel coordinates (x, y), clamped to the edges
+inline float sampleBilinear(const uint8_t *plane, int rowStride, int pixelStride,
+                            int width, int height, float x, float y) {
+    x = std::min(std::max(x, 0.0f), static_cast<float>(width - 1));
+    y = std::min(std::max(y, 0.0f), static_cast<float>(height - 1));
+    int x0 = static_cast<int>(x);
+    int y0 = static_cast<int>(y);
+    int x1 = std::min(x0 + 1, width - 1);
+    int y1 = std::min(y0 + 1, height - 1);
+    float ax = x - static_cast<float>(x0);
+    float ay = y - static_cast<float>(y0);
+    const uint8_t *row0 = plane + static_cast<ptrdiff_t>(y0) * rowStride;
+    const uint8_t *row1 = plane + static_cast<ptrdiff_t>(y1) * rowStride;
+    float p00 = row0[x0 * pixelStride], p01 = row0[x1 * pixelStride];
+    float p10 = row1[x0 * pixelStride], p11 = row1[x1 * pixelStride];
+    float top = p00 + (p01 - p00) * ax;
+    float bottom = p10 + (p11 - p10) * ax;
+    return top + (bottom - top) * ay;
+}
+
+inline float clampUnit(float v) {
+    return std::min(std::max(v * kInv255, 0.0f), 1.0f);
+}
+
+#ifdef IMAGE_KERNELS_NEON
+// Widen 16 bytes to 4 x 4 floats and apply out = v * scale + bias
+inline void widenScaled(uint8x16_t v, float32x4_t scale, float32x4_t bias, float32x4_t out[4]) {
+    uint16x8_t lo = vmovl_u8(vget_low_u8(v));
+    uint16x8_t hi = vmovl_u8(vget_high_u8(v));
+    out[0] = vmlaq_f32(bias, vcvtq_f32_u32(vmovl_u16(vget_low_u16(lo))), scale);
+    out[1] = vmlaq_f32(bias, vcvtq_f32_u32(vmovl_u16(vget_high_u16(lo))), scale);
+    out[2] = vmlaq_f32(bias, vcvtq_f32_u32(vmovl_u16(vget_low_u16(hi))), scale);
+    out[3] = vmlaq_f32(bias, vcvtq_f32_u32(vmovl_u16(vget_high_u16(hi))), scale);
+}
+
+// 16 pixels whose R, G, B bytes are already de-interleaved into r, g, b
+inline void storeInterleavedRgb(uint8x16_t r, uint8x16_t g, uint8x16_t b, float *dst) {
+    const float32x4_t scale = vdupq_n_f32(kInv255);
+    const float32x4_t zero = vdupq_n_f32(0.0f);
+    float32x4_t rf[4], gf[4], bf[4];
+    widenScaled(r, scale, zero, rf);
+    widenScaled(g, scale, zero, gf);
+    widenScaled(b, scale, zero, bf);
+    for (int q = 0; q < 4; ++q) {
+        float32x4x3_t rgb = {{rf[q], gf[q], bf[q]}};
+        vst3q_f32(dst + 12 * q, rgb);
+    }
+}
+#endif
+
+} // namespace
+
+bool hasNeon() {
+#ifdef IMAGE_KERNELS_NEON
+    return true;
+#else
+    return false;
+#endif
+}
+
+void argbToRgbFloat(const uint32_t *src, float *dst, size_t pixelCount) {
+    size_t i = 0;
+#ifdef IMAGE_KERNELS_NEON
+    // A little-endian 0xAARRGGBB int is stored as bytes B, G, R, A
+    for (; i + 16 <= pixelCount; i += 16) {
+        uint8x16x4_t px = vld4q_u8(reinterpret_cast<const uint8_t *>(src + i));
+        storeInterleavedRgb(px.val[2], px.val[1], px.val[0], dst + 3 * i);
+    }
+#endif
+    for (; i < pixelCount; ++i) {
+        uint32_t pixel = src[i];
+        dst[3 * i] = static_cast<float>((pixel >> 16) & 0xFF) * kInv255;
+        dst[3 * i + 1] = static_cast<float>((pixel >> 8) & 0xFF) * kInv255;
+        dst[3 * i + 2] = static_cast<float>(pixel & 0xFF) * kInv255;
+    }
+}
+
+void rgbaToRgbFloat(const uint8_t *src, float *dst, size_t pixelCount) {
+    size_t i = 0;
+#ifdef IMAGE_KERNELS_NEON
+    for (; i + 16 <= pixelCount; i += 16) {
+        uint8x16x4_t px = vld4q_u8(src + 4 * i);
+        storeInterleavedRgb(px.val[0], px.val[1], px.val[2], dst + 3 * i);
+    }
+#endif
+    for (; i < pixelCount; ++i) {
+        dst[3 * i] = static_cast<float>(src[4 * i]) * kInv255;
+        dst[3 * i + 1] = static_cast<float>(src[4 * i + 1]) * kInv255;
+        dst[3 * i + 2] = static_cast<float>(src[4 * i + 2]) * kInv255;
+    }
+}
+
+void argbToPlanarNormalized(const uint32_t *src, float *dst, size_t pixelCount, size_t planeSize,
+                            const float mean[3], const float std[3]) {
+    // (v / 255 - mean) / std == v * scale + bias
+    float scale[3], bias[3];
+    for (int c = 0; c < 3; ++c) {
+        scale[c] = kInv255 / std[c];
+        bias[c] = -mean[c] / std[c];
+    }
+    float *red = dst;
+    float *green = dst + planeSize;
+    float *blue = dst + 2 * planeSize;
+
+    size_t i = 0;
+#ifdef IMAGE_KERNELS_NEON
+    const float32x4_t scaleR = vdupq_n_f32(scale[0]), biasR = vdupq_n_f32(bias[0]);
+    const float32x4_t scaleG = vdupq_n_f32(scale[1]), biasG = vdupq_n_f32(bias[1]);
+    const float32x4_t scaleB = vdupq_n_f32(scale[2]), biasB = vdupq_n_f32(bias[2]);
+    for (; i + 16 <= pixelCount; i += 16) {
+        uint8x16x4_t px = vld4q_u8(reinterpret_cast<const uint8_t *>(src + i));
+        float32x4_t out[4];
+        widenScaled(px.val[2], scaleR, biasR, out);
+        for (int q = 0; q < 4; ++q) vst1q_f32(red + i + 4 * q, out[q]);
+        widenScaled(px.val[1], scaleG, biasG, out);
+        for (int q = 0; q < 4; ++q) vst1q_f32(green + i + 4 * q, out[q]);
+        widenScaled(px.val[0], scaleB, biasB, out);
+        for (int q = 0; q < 4; ++q) vst1q_f32(blue + i + 4 * q, out[q]);
+    }
+#endif
+    for (; i < pixelCount; ++i) {
+        uint32_t pixel = src[i];
+        red[i] = static_cast<float>((pixel >> 16) & 0xFF) * scale[0] + bias[0];
+        green[i] = static_cast<float>((pixel >> 8) & 0xFF) * scale[1] + bias[1];
+        blue[i] = static_cast<float>(pixel & 0xFF) * scale[2] + bias[2];
+    }
+}
+
+void yuv420ToRgbFloatAffine(const Yuv420Image &src, const float inverseMatrix[6], float *dst,
+                            int dstWidth, int dstHeight, bool padBorder, float padValue) {
+    const int chromaWidth = (src.width + 1) / 2;
+    const int chromaHeight = (src.height + 1) / 2;
+    const float maxX = static_cast<float>(src.width) - 0.5f;
+    const float maxY = static_cast<float>(src.height) - 0.5f;
+    const float m0 = inverseMatrix[0], m1 = inverseMatrix[1], m2 = inverseMatrix[2];
+    const float m3 = inverseMatrix[3], m4 = inverseMatrix[4], m5 = inverseMatrix[5];
+
+    for (int y = 0; y < dstHeight; ++y) {
+        // Source coordinates of the first pixel of the row, stepped by (m0, m3) along it
+        float sx = m1 * static_cast<float>(y) + m2;
+        float sy = m4 * static_cast<float>(y) + m5;
+        float *out = dst + static_cast<size_t>(y) * dstWidth * 3;
+        for (int x = 0; x < dstWidth; ++x, sx += m0, sy += m3, out += 3) {
+            if (padBorder && (sx < -0.5f || sy < -0.5f || sx >= maxX || sy >= maxY)) {
+                out[0] = padValue;
+                out[1] = padValue;
+                out[2] = padValue;
+                continue;
+            }
+            float luma = sampleBilinear(src.y, src.yRowStride, 1, src.width, src.height, sx, sy);
+            // Chroma pixel i covers luma pixels 2i and 2i + 1
+            float cx = (sx + 0.5f) * 0.5f - 0.5f;
+            float cy = (sy + 0.5f) * 0.5f - 0.5f;
+            float u = sampleBilinear(src.u, src.uvRowStride, src.uvPixelStride,
+                                     chromaWidth, chromaHeight, cx, cy) - 128.0f;
+            float v = sampleBilinear(src.v, src.uvRowStride, src.uvPixelStride,
+                                     chromaWidth, chromaHeight, cx, cy) - 128.0f;
+            out[0] = clampUnit(luma + 1.402f * v);
+            out[1] = clampUnit(luma - 0.344136f * u - 0.714136f * v);
+            out[2] = clampUnit(luma + 1.772f * u);
+        }
+    }
+}
+
+} // namespace image_kernels
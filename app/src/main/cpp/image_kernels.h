@@ -0,0 +1,57 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+//
+// Pixel conversion kernels shared by the YOLO and SAM preprocessing paths.
+// Plain C++ with an optional NEON path, so they also build on desktop hosts.
+//
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+
+namespace image_kernels {
+
+// Android ARGB_8888 ints (0xAARRGGBB, as returned by Bitmap.getPixels) to
+// interleaved RGB floats in [0, 1]: dst[3 * i + c].
+void argbToRgbFloat(const uint32_t *src, float *dst, size_t pixelCount);
+
+// RGBA bytes (Bitmap memory layout, as produced by OpenCV Utils.bitmapToMat) to
+// interleaved RGB floats in [0, 1]: dst[3 * i + c].
+void rgbaToRgbFloat(const uint8_t *src, float *dst, size_t pixelCount);
+
+// Android ARGB_8888 ints to mean/std normalized planar RGB floats:
+// dst[c * planeSize + i] = (channel / 255 - mean[c]) / std[c].
+// dst points at the first pixel of the run inside plane 0, so a row band of a
+// larger image can be converted on its own.
+void argbToPlanarNormalized(const uint32_t *src, float *dst, size_t pixelCount, size_t planeSize,
+                            const float mean[3], const float std[3]);
+
+// A YUV_420_888 image as delivered by Android cameras: a full resolution luma
+// plane and two half resolution chroma planes, each with its own strides.
+struct Yuv420Image {
+    const uint8_t *y;
+    const uint8_t *u;
+    const uint8_t *v;
+    int yRowStride;
+    int uvRowStride;
+    int uvPixelStride;
+    int width;
+    int height;
+};
+
+// Sample a YUV_420_888 image through an affine map onto a dstWidth x dstHeight
+// grid, writing interleaved RGB floats in [0, 1]: dst[3 * (y * dstWidth + x) + c].
+// inverseMatrix maps destination pixel (x, y) to source pixel coordinates
+// (sx = m[0] * x + m[1] * y + m[2], sy = m[3] * x + m[4] * y + m[5]), as used by
+// warpAffine with WARP_INVERSE_MAP. Luma and chroma are sampled bilinearly and
+// converted with full range BT.601. Samples outside the image are padValue if
+// padBorder is set, otherwise the nearest edge pixel.
+void yuv420ToRgbFloatAffine(const Yuv420Image &src, const float inverseMatrix[6], float *dst,
+                            int dstWidth, int dstHeight, bool padBorder, float padValue);
+
+// true if the NEON code path was compiled in.
+bool hasNeon();
+
+} // namespace image_kernels
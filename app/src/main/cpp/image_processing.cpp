@@ -1,74 +1,202 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
 //
 // Created by Esteban Uri on 17/01/2025.
 //
+// JNI bindings for com.esw.imageprocessing.ImageProcessing.
+// The conversion kernels live in image_kernels.cpp.
+//
 #include <jni.h>
-#include <android/log.h>
-#include <cpu-features.h>
 
-#define LOG_TAG "ImageProcessing"
-#define LOGD(...) __android_log_print(ANDROID_LOG_DEBUG, LOG_TAG, __VA_ARGS__)
+#include "image_kernels.h"
 
-// Check for NEON support
-//bool isNeonSupported() {
-//    return (android_getCpuFeatures() & ANDROID_CPU_ARM_FEATURE_NEON) != 0;
-//}
-//
-//// NEON optimized ARGB to RGB function
-//void argb_to_rgb_neon(uint32_t* src, uint8_t* dest, int width, int height) {
-//    // NEON optimized conversion code here
-//    // This example doesn't contain actual NEON instructions but you can add NEON-specific operations.
-//    // Assume each pixel is 32-bit ARGB, and the result is stored in RGB.
-//
-//    for (int i = 0; i < width * height; i++) {
-//        uint32_t pixelValue = src[i];
-//        uint8_t r = (pixelValue >> 16) & 0xFF;
-//        uint8_t g = (pixelValue >> 8) & 0xFF;
-//        uint8_t b = pixelValue & 0xFF;
-//
-//        dest[i * 3] = r;
-//        dest[i * 3 + 1] = g;
-//        dest[i * 3 + 2] = b;
-//    }
-//}
+namespace {
 
+void throwIllegalArgument(JNIEnv *env, const char *message) {
+    jclass exceptionClass = env->FindClass("java/lang/IllegalArgumentException");
+    if (exceptionClass != nullptr) {
+        env->ThrowNew(exceptionClass, message);
+    }
+}
 
+// Address of a direct buffer holding at least requiredBytes, or nullptr with a pending exception
+void *directBufferAddress(JNIEnv *env, jobject buffer, jlong requiredBytes) {
+    void *address = buffer != nullptr ? env->GetDirectBufferAddress(buffer) : nullptr;
+    if (address == nullptr) {
+        throwIllegalArgument(env, "Buffer must be a direct ByteBuffer");
+        return nullptr;
+    }
+    if (env->GetDirectBufferCapacity(buffer) < requiredBytes) {
+        throwIllegalArgument(env, "Buffer is too small");
+        return nullptr;
+    }
+    return address;
+}
+
+} // namespace
+
+extern "C"
+JNIEXPORT jboolean JNICALL
+Java_com_esw_imageprocessing_ImageProcessing_nativeHasNeon(JNIEnv *, jclass) {
+    return image_kernels::hasNeon() ? JNI_TRUE : JNI_FALSE;
+}
 
 extern "C"
 JNIEXPORT void JNICALL
-Java_com_ultralytics_yolo_ImageProcessing_argb2yolo(
-    JNIEnv *env,
-    jobject thiz,
-    jintArray srcArray,
-    jobject destBuffer,
-    jint width,
-    jint height
-) {
+Java_com_esw_imageprocessing_ImageProcessing_nativeArgbToYoloInput(
+        JNIEnv *env,
+        jclass,
+        jintArray srcArray,
+        jobject dstBuffer,
+        jint pixelCount) {
+    if (pixelCount < 0) {
+        throwIllegalArgument(env, "Negative pixel count");
+        return;
+    }
+    if (env->GetArrayLength(srcArray) < pixelCount) {
+        throwIllegalArgument(env, "Source array is too small");
+        return;
+    }
+    auto *dst = static_cast<float *>(directBufferAddress(env, dstBuffer, 3LL * 4 * pixelCount));
+    if (dst == nullptr) {
+        return;
+    }
 
-    // Get the source array
-    jint* src = env->GetIntArrayElements(srcArray, 0);
+    // Critical access avoids copying the pixel array; no JNI calls until it is released.
+    // On failure an OutOfMemoryError is pending.
+    auto *src = static_cast<uint32_t *>(env->GetPrimitiveArrayCritical(srcArray, nullptr));
+    if (src == nullptr) {
+        return;
+    }
+    image_kernels::argbToRgbFloat(src, dst, static_cast<size_t>(pixelCount));
+    env->ReleasePrimitiveArrayCritical(srcArray, src, JNI_ABORT);
+}
 
-    // Get the destination DirectByteBuffer (this will hold the float data)
-    float* dest = (float*) env->GetDirectBufferAddress(destBuffer);
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_esw_imageprocessing_ImageProcessing_nativeRgbaToYoloInput(
+        JNIEnv *env,
+        jclass,
+        jobject srcBuffer,
+        jobject dstBuffer,
+        jint pixelCount) {
+    auto *src = static_cast<uint8_t *>(directBufferAddress(env, srcBuffer, 4LL * pixelCount));
+    if (src == nullptr) {
+        return;
+    }
+    auto *dst = static_cast<float *>(directBufferAddress(env, dstBuffer, 3LL * 4 * pixelCount));
+    if (dst == nullptr) {
+        return;
+    }
+    image_kernels::rgbaToRgbFloat(src, dst, static_cast<size_t>(pixelCount));
+}
 
-    if (dest == NULL) {
-        // Handle error if the destination buffer is not a DirectByteBuffer
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_esw_imageprocessing_ImageProcessing_nativeArgbToSamInput(
+        JNIEnv *env,
+        jclass,
+        jintArray srcArray,
+        jint srcOffset,
+        jobject dstBuffer,
+        jint dstOffset,
+        jint pixelCount,
+        jint planeSize,
+        jfloatArray meanArray,
+        jfloatArray stdArray) {
+    if (srcOffset < 0 || dstOffset < 0 || pixelCount < 0) {
+        throwIllegalArgument(env, "Negative offset or pixel count");
+        return;
+    }
+    if (env->GetArrayLength(srcArray) < static_cast<jlong>(srcOffset) + pixelCount) {
+        throwIllegalArgument(env, "Source array is too small");
+        return;
+    }
+    auto *dst = static_cast<float *>(directBufferAddress(env, dstBuffer, 3LL * 4 * planeSize));
+    if (dst == nullptr) {
+        return;
+    }
+    if (static_cast<jlong>(dstOffset) + pixelCount > planeSize) {
+        throwIllegalArgument(env, "Pixel run exceeds the plane size");
         return;
     }
 
-    // Perform ARGB to RGB conversion and normalization to float (0.0f to 1.0f)
-    for (int i = 0; i < width * height; ++i) {
-        uint32_t pixel = src[i];  // ARGB format
-        float r = ((pixel >> 16) & 0xFF) / 255.0f;
-        float g = ((pixel >> 8) & 0xFF) / 255.0f;
-        float b = (pixel & 0xFF) / 255.0f;
+    float mean[3];
+    float std[3];
+    env->GetFloatArrayRegion(meanArray, 0, 3, mean);
+    env->GetFloatArrayRegion(stdArray, 0, 3, std);
+    if (env->ExceptionCheck()) {
+        return;
+    }
 
-        // Store normalized float values for RGB channels
-        int idx = i * 3;
-        dest[idx] = r;     // Red
-        dest[idx + 1] = g; // Green
-        dest[idx + 2] = b; // Blue
+    auto *src = static_cast<uint32_t *>(env->GetPrimitiveArrayCritical(srcArray, nullptr));
+    if (src == nullptr) {
+        return;
     }
+    image_kernels::argbToPlanarNormalized(src + srcOffset, dst + dstOffset,
+                                          static_cast<size_t>(pixelCount),
+                                          static_cast<size_t>(planeSize), mean, std);
+    env->ReleasePrimitiveArrayCritical(srcArray, src, JNI_ABORT);
+}
 
-    // Release resources
-    env->ReleaseIntArrayElements(srcArray, src, 0);
-}
\ No newline at end of file
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_esw_imageprocessing_ImageProcessing_nativeYuvToYoloInput(
+        JNIEnv *env,
+        jclass,
+        jobject yBuffer,
+        jobject uBuffer,
+        jobject vBuffer,
+        jint yRowStride,
+        jint uvRowStride,
+        jint uvPixelStride,
+        jint width,
+        jint height,
+        jfloatArray matrixArray,
+        jobject dstBuffer,
+        jint dstWidth,
+        jint dstHeight,
+        jboolean padBorder,
+        jfloat padValue) {
+    if (width <= 0 || height <= 0 || dstWidth <= 0 || dstHeight <= 0) {
+        throwIllegalArgument(env, "Image sizes must be positive");
+        return;
+    }
+    const jlong chromaWidth = (width + 1) / 2;
+    const jlong chromaHeight = (height + 1) / 2;
+    const jlong lumaBytes = static_cast<jlong>(height - 1) * yRowStride + width;
+    const jlong chromaBytes = (chromaHeight - 1) * uvRowStride + (chromaWidth - 1) * uvPixelStride + 1;
+
+    image_kernels::Yuv420Image src{};
+    src.y = static_cast<const uint8_t *>(directBufferAddress(env, yBuffer, lumaBytes));
+    if (src.y == nullptr) {
+        return;
+    }
+    src.u = static_cast<const uint8_t *>(directBufferAddress(env, uBuffer, chromaBytes));
+    if (src.u == nullptr) {
+        return;
+    }
+    src.v = static_cast<const uint8_t *>(directBufferAddress(env, vBuffer, chromaBytes));
+    if (src.v == nullptr) {
+        return;
+    }
+    auto *dst = static_cast<float *>(directBufferAddress(env, dstBuffer, 3LL * 4 * dstWidth * dstHeight));
+    if (dst == nullptr) {
+        return;
+    }
+    src.yRowStride = yRowStride;
+    src.uvRowStride = uvRowStride;
+    src.uvPixelStride = uvPixelStride;
+    src.width = width;
+    src.height = height;
+
+    float matrix[6];
+    env->GetFloatArrayRegion(matrixArray, 0, 6, matrix);
+    if (env->ExceptionCheck()) {
+        return;
+    }
+    image_kernels::yuv420ToRgbFloatAffine(src, matrix, dst, dstWidth, dstHeight,
+                                          padBorder == JNI_TRUE, padValue);
+}
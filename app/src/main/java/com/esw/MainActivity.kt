@@ -17,6 +17,9 @@
 package com.esw
 
 import AppProgressDialog
+import ai.onnxruntime.OrtSession
+import android.Manifest
+import android.content.pm.PackageManager
 import android.graphics.Bitmap
 import android.graphics.BitmapFactory
 import android.graphics.Matrix
@@ -54,6 +57,8 @@ import androidx.compose.material.icons.filled.Image
 import androidx.compose.material.icons.filled.Layers
 import androidx.compose.material.icons.filled.Tag
 import androidx.compose.material.icons.filled.Save
+import androidx.compose.material.icons.filled.Videocam
+import androidx.compose.material.icons.filled.VideocamOff
 import androidx.compose.material3.Button
 import androidx.compose.material3.ExperimentalMaterial3Api
 import androidx.compose.material3.Icon
@@ -63,7 +68,9 @@ import androidx.compose.material3.Scaffold
 import androidx.compose.material3.Text
 import androidx.compose.material3.rememberModalBottomSheetState
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.DisposableEffect
 import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.collectAsState
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
@@ -82,10 +89,20 @@ import androidx.compose.ui.text.style.TextAlign
 import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.compose.ui.unit.toSize
+import androidx.core.content.ContextCompat
 import androidx.exifinterface.media.ExifInterface
 import androidx.lifecycle.viewmodel.compose.viewModel
 import hideProgressDialog
+import com.esw.camera.CameraFrameSource
+import com.esw.camera.DetectionPipeline
+import com.esw.camera.FrameRing
+import com.esw.camera.YoloFrameDetector
+import com.esw.metrics.MetricsRegistry
+import com.esw.models.ModelManager
+import com.esw.sam.OrtModels
 import com.esw.sam.SAMDecoder
+import com.esw.sam.SAMEmbeddingCache
+import com.esw.sam.SAMEmbeddingStore
 import com.esw.sam.SAMEncoder
 import com.esw.ui.components.AppAlertDialog
 import com.esw.ui.components.createAlertDialog
@@ -99,11 +116,15 @@ import showProgressDialog
 import java.io.File
 import java.io.FileOutputStream
 import java.nio.FloatBuffer
-import java.nio.file.Paths
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
 import kotlin.time.DurationUnit
 import kotlin.time.measureTimedValue
 
 import com.esw.yolo.AIHubDefaults
+import com.esw.yolo.DetectorPool
+import com.esw.yolo.ModelIdentity
+import com.esw.yolo.OnnxDetectionBackend
 import com.esw.yolo.ObjectDetection
 import com.esw.yolo.RectangleBox
 
@@ -114,12 +135,100 @@ class MainActivity : ComponentActivity() {
     private val encoderFileName = "encoder_base_plus.onnx"
     private val decoderFileName = "decoder_base_plus.onnx"
 
-    private var yoloDetector: ObjectDetection? = null
+    // Preference set once the model copies of earlier versions are deleted
+    private val legacyModelCopiesDeletedKey = "legacy_model_copies_deleted"
+
+    // Embeddings of recently segmented images, so editing the points of an image only runs
+    // the decoder. One image takes about 16 MB with the base_plus encoder. Embeddings are also
+    // kept in the cache dir, so images reopened in a later session skip the encoder as well.
+    private val embeddingCache by lazy {
+        SAMEmbeddingCache(
+            maxBytes = 64L * 1024 * 1024,
+            store = SAMEmbeddingStore(File(cacheDir, "sam_embeddings"), maxBytes = 512L * 1024 * 1024),
+        )
+    }
+
+    // Detection requests can overlap (e.g. quick repeated taps); each one leases its own detector
+    private var yoloDetectorPool: DetectorPool? = null
+    private val yoloPoolSize = 2
+    private val yoloLeaseTimeoutMs = 2000L
+
+    // Live detection: the analyzer writes into one slot while the detector reads another, and a
+    // third lets the newest frame wait for the detector
+    private val liveFrameSlots = 3
+
+    // NOTE: You must have the model and label files in your app's `assets` folder.
+    // Adjust the file names as needed.
+    private val yoloModelAsset = "objectdetection.tflite" // Example model name
+    private val yoloLabelsAsset = "labels.txt"          // Example labels name
+
+    // If an ONNX export of the detector is bundled, it runs in ONNX Runtime instead of TF Lite,
+    // with the same pre- and post-processing, so the two runtimes can be compared on a device
+    private val yoloOnnxModelAsset = "objectdetection.onnx"
+
+    // The three models load and warm up in parallel; each feature is enabled as soon as the
+    // models it needs are ready
+    private val modelManager = ModelManager()
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         enableEdgeToEdge()
 
+        val encoderState =
+            modelManager.register(
+                "SAM encoder",
+                load = {
+                    if (isBundledModel(encoderFileName)) {
+                        encoder.init(assets, encoderFileName, identity = ModelIdentity.defaultFor(this@MainActivity))
+                    } else {
+                        // TODO: try with FP16
+                        encoder.init("/data/local/tmp/sam/$encoderFileName", useFP16 = false)
+                    }
+                },
+                warmUp = { encoder.warmUp() },
+            )
+        val decoderState =
+            modelManager.register(
+                "SAM decoder",
+                load = {
+                    if (isBundledModel(decoderFileName)) {
+                        decoder.init(assets, decoderFileName)
+                    } else {
+                        // TODO: try with FP16
+                        decoder.init("/data/local/tmp/sam/$decoderFileName", useFP16 = false)
+                    }
+                },
+                warmUp = { decoder.warmUp() },
+            )
+        val yoloState =
+            modelManager.register(
+                "YOLO",
+                load = {
+                    yoloDetectorPool =
+                        if (isModelInAssets(yoloOnnxModelAsset)) {
+                            val onnxModel = OrtModels.mapAsset(assets, yoloOnnxModelAsset)
+                            // Sessions copy their options when created, so one set serves the
+                            // whole pool and is freed once the pool is built
+                            OrtSession.SessionOptions().use { options ->
+                                DetectorPool(
+                                    ObjectDetection.loadLabels(this@MainActivity, yoloLabelsAsset),
+                                    { OnnxDetectionBackend(onnxModel, options) },
+                                    yoloPoolSize,
+                                )
+                            }
+                        } else {
+                            DetectorPool(
+                                this@MainActivity,
+                                yoloModelAsset,
+                                yoloLabelsAsset,
+                                AIHubDefaults.delegatePriorityOrder,
+                                yoloPoolSize,
+                            )
+                        }
+                },
+                warmUp = { yoloDetectorPool?.warmUp() },
+            )
+
         setContent {
             SAMAndroidTheme {
                 Scaffold(modifier = Modifier.fillMaxSize()) { innerPadding ->
@@ -135,49 +244,26 @@ class MainActivity : ComponentActivity() {
                         val outputImages = remember { viewModel.images }
                         var maskImage by remember { viewModel.maskImage }
                         val points = remember { viewModel.points }
-                        var isReady by remember { mutableStateOf(false) } // For SAM models
-                        var isYoloReady by remember { mutableStateOf(false) } // For YOLO model
+                        val encoderModelState by encoderState.collectAsState()
+                        val decoderModelState by decoderState.collectAsState()
+                        val yoloModelState by yoloState.collectAsState()
+                        val isReady = // For SAM models
+                            encoderModelState is ModelManager.State.Ready && decoderModelState is ModelManager.State.Ready
+                        val isYoloReady = yoloModelState is ModelManager.State.Ready // For YOLO model
                         var viewPortDims by remember { mutableStateOf<Size?>(null) }
 
                         LaunchedEffect(0) {
-                            try {
-                                showProgressDialog()
-                                setProgressDialogText("Loading models...")
-                                withContext(Dispatchers.IO) { // Run blocking model loading on a background thread
-                                    // Load SAM models
-                                    if (isModelInAssets(encoderFileName) && isModelInAssets(decoderFileName)) {
-                                        copyModelToStorage(encoderFileName)
-                                        copyModelToStorage(decoderFileName)
-                                        encoder.init(Paths.get(filesDir.absolutePath, encoderFileName).toString())
-                                        decoder.init(Paths.get(filesDir.absolutePath, decoderFileName).toString())
-                                    } else {
-                                        // TODO: try with FP16
-                                        encoder.init("/data/local/tmp/sam/encoder_base_plus.onnx", useFP16 = false)
-                                        decoder.init("/data/local/tmp/sam/decoder_base_plus.onnx", useFP16 = false)
-                                    }
-
-                                    // Load YOLO model
-                                    // NOTE: You must have the model and label files in your app's `assets` folder.
-                                    // Adjust the file names as needed.
-                                    val modelAsset = "objectdetection.tflite" // Example model name
-                                    val labelsAsset = "labels.txt"          // Example labels name
-
-                                    yoloDetector = ObjectDetection(
-                                        this@MainActivity,
-                                        modelAsset,
-                                        labelsAsset,
-                                        AIHubDefaults.delegatePriorityOrder,
-                                    )
-                                }
-                                // Update state back on the Main thread
-                                isReady = true
-                                isYoloReady = true
-                                hideProgressDialog()
-                            } catch (e: Exception) {
-                                hideProgressDialog()
+                            withContext(Dispatchers.IO) { deleteLegacyModelCopies() }
+                            modelManager.loadAll()
+                            Log.i(MainActivity::class.simpleName, "Models loaded\n${modelManager.report()}")
+                            viewModel.metricsReport.value = MetricsRegistry.getDefault().dump()
+                            val error =
+                                listOf(encoderState, decoderState, yoloState)
+                                    .firstNotNullOfOrNull { (it.value as? ModelManager.State.Failed)?.error }
+                            if (error != null) {
                                 createAlertDialog(
                                     dialogTitle = "Error",
-                                    dialogText = "An error occurred during model loading: ${e.message}",
+                                    dialogText = "An error occurred during model loading: ${error.message}",
                                     dialogPositiveButtonText = "Close",
                                     dialogNegativeButtonText = null,
                                     onPositiveButtonClick = { finish() },
@@ -186,6 +272,18 @@ class MainActivity : ComponentActivity() {
                             }
                         }
 
+                        if (!isReady || !isYoloReady) {
+                            Text(
+                                modifier = Modifier.padding(horizontal = 12.dp, vertical = 4.dp),
+                                text =
+                                    listOf(
+                                        modelStatus("YOLO", yoloModelState),
+                                        modelStatus("SAM encoder", encoderModelState),
+                                        modelStatus("SAM decoder", decoderModelState),
+                                    ).joinToString(" | "),
+                            )
+                        }
+
                         val pickMediaLauncher =
                             rememberLauncherForActivityResult(
                                 contract = ActivityResultContracts.PickVisualMedia(),
@@ -209,7 +307,7 @@ class MainActivity : ComponentActivity() {
                                         .fillMaxWidth()
                                         .padding(4.dp)
                                         .weight(1f),
-                                enabled = isReady,
+                                enabled = isReady || isYoloReady,
                                 onClick = {
                                     pickMediaLauncher.launch(
                                         PickVisualMediaRequest(ActivityResultContracts.PickVisualMedia.ImageOnly),
@@ -259,7 +357,7 @@ class MainActivity : ComponentActivity() {
                                         .fillMaxWidth()
                                         .padding(4.dp)
                                         .weight(1f),
-                                enabled = isReady && isYoloReady && (image != null),
+                                enabled = isYoloReady && (image != null),
                                 onClick = {
                                     image?.let { bitmap ->
                                         detectObjects(bitmap, viewPortDims, viewModel)
@@ -297,6 +395,52 @@ class MainActivity : ComponentActivity() {
                                 Text(text = "Segment")
                             }
                         }
+                        var liveDetection by remember { viewModel.liveDetection }
+                        val cameraPermissionLauncher =
+                            rememberLauncherForActivityResult(
+                                contract = ActivityResultContracts.RequestPermission(),
+                            ) { granted ->
+                                if (granted) {
+                                    liveDetection = true
+                                } else {
+                                    Toast.makeText(this@MainActivity, "Live detection needs the camera", Toast.LENGTH_SHORT).show()
+                                }
+                            }
+                        Row(
+                            modifier =
+                                Modifier
+                                    .padding(horizontal = 8.dp)
+                                    .fillMaxWidth(),
+                        ) {
+                            Button(
+                                modifier =
+                                    Modifier
+                                        .fillMaxWidth()
+                                        .padding(4.dp)
+                                        .weight(1f),
+                                enabled = isYoloReady,
+                                onClick = {
+                                    if (liveDetection) {
+                                        liveDetection = false
+                                    } else if (hasCameraPermission()) {
+                                        liveDetection = true
+                                    } else {
+                                        cameraPermissionLauncher.launch(Manifest.permission.CAMERA)
+                                    }
+                                },
+                            ) {
+                                Icon(
+                                    imageVector = if (liveDetection) Icons.Default.VideocamOff else Icons.Default.Videocam,
+                                    contentDescription = "Live Detection",
+                                )
+                                Text(text = if (liveDetection) "Stop Live Detection" else "Live Detection")
+                            }
+                        }
+                        val detectorPool = yoloDetectorPool
+                        if (liveDetection && isYoloReady && detectorPool != null) {
+                            LiveDetection(detectorPool)
+                        }
+
                         if (maskImage != null) {
                             Row(
                                 modifier =
@@ -312,7 +456,7 @@ class MainActivity : ComponentActivity() {
                                             .weight(1f),
                                     enabled = isReady && (image != null),
                                     onClick = {
-                                        saveBitmap(maskImage!!)
+                                        saveMask(image!!, viewModel)
                                     }
                                 ) {
                                     Icon(
@@ -417,7 +561,7 @@ class MainActivity : ComponentActivity() {
                             Text(
                                 modifier = Modifier.padding(4.dp),
                                 fontSize = 18.sp,
-                                text = "Segmented Images (${viewModel.inferenceTime.intValue} s)",
+                                text = "Segmented Images (${viewModel.inferenceTime.intValue} ms)",
                             )
                         }
                         outputImages.forEach {
@@ -427,6 +571,14 @@ class MainActivity : ComponentActivity() {
                                 contentDescription = "Segmented image",
                             )
                         }
+                        if (viewModel.metricsReport.value.isNotEmpty()) {
+                            Text(
+                                modifier = Modifier.padding(8.dp),
+                                fontSize = 10.sp,
+                                color = Color.DarkGray,
+                                text = "Stage latencies\n${viewModel.metricsReport.value}",
+                            )
+                        }
 
                         AppAlertDialog()
                         AppProgressDialog()
@@ -437,6 +589,66 @@ class MainActivity : ComponentActivity() {
         }
     }
 
+    override fun onDestroy() {
+        super.onDestroy()
+        // The sessions are freed once a segmentation still running has finished
+        CoroutineScope(Dispatchers.IO).launch {
+            encoder.close()
+            decoder.close()
+        }
+    }
+
+    /**
+     * Runs the detector on the camera stream while shown, listing the latest detections and the
+     * pipeline counters. Needs the CAMERA permission.
+     */
+    @Composable
+    private fun LiveDetection(detectorPool: DetectorPool) {
+        val scope = rememberCoroutineScope()
+        val pipeline =
+            remember(detectorPool) {
+                DetectionPipeline(
+                    CameraFrameSource(this@MainActivity, this@MainActivity),
+                    FrameRing(liveFrameSlots) { width, height -> CameraFrameSource.createBuffer(width, height) },
+                    YoloFrameDetector(detectorPool),
+                )
+            }
+        DisposableEffect(pipeline) {
+            pipeline.start(scope)
+            onDispose { pipeline.stop() }
+        }
+        val result by pipeline.results.collectAsState()
+        val stats by pipeline.stats.collectAsState()
+
+        Text(
+            modifier = Modifier.padding(horizontal = 12.dp, vertical = 4.dp),
+            fontSize = 12.sp,
+            color = Color.DarkGray,
+            text =
+                "%.1f fps, latency %d ms (avg %d ms), %d processed, %d dropped, %d failed".format(
+                    stats.framesPerSecond,
+                    TimeUnit.NANOSECONDS.toMillis(stats.lastLatencyNanos),
+                    TimeUnit.NANOSECONDS.toMillis(stats.averageLatencyNanos),
+                    stats.processedFrames,
+                    stats.droppedFrames,
+                    stats.failedFrames,
+                ),
+        )
+        result?.let { frameResult ->
+            Text(
+                modifier = Modifier.padding(horizontal = 12.dp, vertical = 4.dp),
+                text =
+                    if (frameResult.value.isEmpty()) {
+                        "No objects in frame ${frameResult.frameSequence}"
+                    } else {
+                        frameResult.value.joinToString("\n") { box ->
+                            "%s %.2f".format(box.label, box.confidence)
+                        }
+                    },
+            )
+        }
+    }
+
     @OptIn(ExperimentalMaterial3Api::class)
     @Composable
     private fun ManageLabelsBottomSheet(viewModel: MainActivityViewModel) {
@@ -536,73 +748,95 @@ class MainActivity : ComponentActivity() {
             return
         }
 
-        if (yoloDetector == null) {
+        val detectorPool = yoloDetectorPool
+        if (detectorPool == null) {
             Toast.makeText(this, "YOLO detector is not initialized.", Toast.LENGTH_SHORT).show()
             return
         }
 
         CoroutineScope(Dispatchers.Default).launch {
-            // 1. Run YOLO inference. The predict method populates the list.
-            val boundingBoxes = ArrayList<RectangleBox>()
-            yoloDetector?.predict(bitmap, 0, boundingBoxes)
-
-            // 2. Calculate scaling factors to map bitmap coordinates to view coordinates.
-            // This is necessary because the Image composable uses ContentScale.Fit.
-            val viewWidth = viewPortDims.width
-            val viewHeight = viewPortDims.height
-            val bitmapWidth = bitmap.width.toFloat()
-            val bitmapHeight = bitmap.height.toFloat()
-
-            val viewAspectRatio = viewWidth / viewHeight
-            val bitmapAspectRatio = bitmapWidth / bitmapHeight
-
-            val scale: Float
-            var offsetX = 0f
-            var offsetY = 0f
-
-            if (bitmapAspectRatio > viewAspectRatio) { // Letterbox on top/bottom
-                scale = viewWidth / bitmapWidth
-                offsetY = (viewHeight - bitmapHeight * scale) / 2
-            } else { // Pillarbox on left/right
-                scale = viewHeight / bitmapHeight
-                offsetX = (viewWidth - bitmapWidth * scale) / 2
-            }
-
-            // 3. Convert detector's bounding boxes (in original bitmap coordinates) to LabelPoints in VIEW coordinates.
-            val detectedPoints = boundingBoxes.withIndex().map { (index, detection) ->
-                val yoloBox = detection
-
-                // a. Get corners of the box in original bitmap coordinates
-                val bitmapTopLeftX = yoloBox.left
-                val bitmapTopLeftY = yoloBox.top
-                val bitmapBottomRightX = yoloBox.right
-                val bitmapBottomRightY = yoloBox.bottom
-
-                // b. Scale corners to view coordinates to be displayed on screen
-                val viewTopLeftX = bitmapTopLeftX * scale + offsetX
-                val viewTopLeftY = bitmapTopLeftY * scale + offsetY
-                val viewBottomRightX = bitmapBottomRightX * scale + offsetX
-                val viewBottomRightY = bitmapBottomRightY * scale + offsetY
-
-                val centerX = (viewTopLeftX + viewBottomRightX) / 2
-                val centerY = (viewTopLeftY + viewBottomRightY) / 2
-
-                // c. Create a LabelPoint for the center of the bounding box
-                LabelPoint(
-                    label = index, // Use the object's index as its unique label
-                    point = PointF(centerX, centerY),
-                )
-            }
+            val lease =
+                try {
+                    detectorPool.lease(yoloLeaseTimeoutMs, TimeUnit.MILLISECONDS)
+                } catch (e: TimeoutException) {
+                    Log.w(MainActivity::class.simpleName, "Detection skipped: ${e.message}. ${detectorPool.stats}")
+                    withContext(Dispatchers.Main) {
+                        Toast.makeText(this@MainActivity, "Detector busy, please try again.", Toast.LENGTH_SHORT).show()
+                    }
+                    return@launch
+                }
+            // The detector and the boxes it returns stay ours until the lease is closed
+            val detectedPoints = lease.use { detectWithDetector(it.detector(), bitmap, viewPortDims) }
+            Log.i(MainActivity::class.simpleName, detectorPool.stats)
 
             // 4. Update the points in the ViewModel to show them on the screen.
             withContext(Dispatchers.Main) {
                 viewModel.points.clear()
                 viewModel.points.addAll(detectedPoints)
+                viewModel.metricsReport.value = MetricsRegistry.getDefault().dump()
                 Toast.makeText(this@MainActivity, "${detectedPoints.size} objects detected", Toast.LENGTH_SHORT).show()
             }
         }
     }
 
+    private fun detectWithDetector(
+        detector: ObjectDetection,
+        bitmap: Bitmap,
+        viewPortDims: Size,
+    ): List<LabelPoint> {
+        // 1. Run YOLO inference. The predict method populates the list.
+        val boundingBoxes = ArrayList<RectangleBox>()
+        detector.predict(bitmap, 0, boundingBoxes)
+
+        // 2. Calculate scaling factors to map bitmap coordinates to view coordinates.
+        // This is necessary because the Image composable uses ContentScale.Fit.
+        val viewWidth = viewPortDims.width
+        val viewHeight = viewPortDims.height
+        val bitmapWidth = bitmap.width.toFloat()
+        val bitmapHeight = bitmap.height.toFloat()
+
+        val viewAspectRatio = viewWidth / viewHeight
+        val bitmapAspectRatio = bitmapWidth / bitmapHeight
+
+        val scale: Float
+        var offsetX = 0f
+        var offsetY = 0f
+
+        if (bitmapAspectRatio > viewAspectRatio) { // Letterbox on top/bottom
+            scale = viewWidth / bitmapWidth
+            offsetY = (viewHeight - bitmapHeight * scale) / 2
+        } else { // Pillarbox on left/right
+            scale = viewHeight / bitmapHeight
+            offsetX = (viewWidth - bitmapWidth * scale) / 2
+        }
+
+        // 3. Convert detector's bounding boxes (in original bitmap coordinates) to LabelPoints in VIEW coordinates.
+        return boundingBoxes.withIndex().map { (index, detection) ->
+            val yoloBox = detection
+
+            // a. Get corners of the box in original bitmap coordinates
+            val bitmapTopLeftX = yoloBox.left
+            val bitmapTopLeftY = yoloBox.top
+            val bitmapBottomRightX = yoloBox.right
+            val bitmapBottomRightY = yoloBox.bottom
+
+            // b. Scale corners to view coordinates to be displayed on screen
+            val viewTopLeftX = bitmapTopLeftX * scale + offsetX
+            val viewTopLeftY = bitmapTopLeftY * scale + offsetY
+            val viewBottomRightX = bitmapBottomRightX * scale + offsetX
+            val viewBottomRightY = bitmapBottomRightY * scale + offsetY
+
+            val centerX = (viewTopLeftX + viewBottomRightX) / 2
+            val centerY = (viewTopLeftY + viewBottomRightY) / 2
+
+            // c. Create a LabelPoint for the center of the bounding box
+            LabelPoint(
+                label = index, // Use the object's index as its unique label
+                point = PointF(centerX, centerY),
+            )
+        }
+    }
+
     private fun processInputPoints(
         bitmap: Bitmap,
         points: List<LabelPoint>,
@@ -639,26 +873,37 @@ class MainActivity : ComponentActivity() {
                 pointsBuffer.rewind()
                 labelsBuffer.rewind()
 
+                // Low-resolution masks are only drawn at the size they are shown at; the full
+                // image is rendered when the mask is saved
+                val previewBitmap = if (decoder.lowResOutput) scaleToView(bitmap, viewPortDims) else bitmap
                 val (imagesWithMask, time) =
                     measureTimedValue {
-                        decoder.execute(
-                            encoder.execute(bitmap),
-                            pointsBuffer,
-                            labelsBuffer,
-                            labelsCount.toLong(),
-                            maxPoints.toLong(),
-                            bitmap,
-                        )
+                        embeddingCache.getOrEncode(bitmap, encoder).use { embeddings ->
+                            decoder.execute(
+                                embeddings,
+                                pointsBuffer,
+                                labelsBuffer,
+                                labelsCount.toLong(),
+                                maxPoints.toLong(),
+                                bitmap,
+                                previewBitmap,
+                            )
+                        }
                     }
+                if (previewBitmap !== bitmap) {
+                    previewBitmap.recycle()
+                }
                 val (viewBitmap, maskBitmap) = imagesWithMask
 
                 withContext(Dispatchers.Main) {
-                    viewModel.inferenceTime.intValue = time.toInt(DurationUnit.SECONDS)
+                    viewModel.inferenceTime.intValue = time.toInt(DurationUnit.MILLISECONDS)
+                    viewModel.metricsReport.value = "${MetricsRegistry.getDefault().dump()}\n${embeddingCache.stats()}"
                     hideProgressDialog()
                     viewModel.images.clear()
                     viewModel.images.add(viewBitmap)
                     viewModel.images.add(maskBitmap)
                     viewModel.maskImage.value = maskBitmap
+                    viewModel.lowResMasks.value = imagesWithMask.lowResMasks
                 }
             } catch (e: Exception) {
                 hideProgressDialog()
@@ -674,6 +919,41 @@ class MainActivity : ComponentActivity() {
         }
     }
 
+    // Scale bitmap down to fit the view, or return it as is if it already fits
+    private fun scaleToView(
+        bitmap: Bitmap,
+        viewPortDims: Size?,
+    ): Bitmap {
+        if (viewPortDims == null) {
+            return bitmap
+        }
+        val scale = minOf(viewPortDims.width / bitmap.width, viewPortDims.height / bitmap.height)
+        if (scale >= 1f) {
+            return bitmap
+        }
+        val width = (bitmap.width * scale).toInt().coerceAtLeast(1)
+        val height = (bitmap.height * scale).toInt().coerceAtLeast(1)
+        return Bitmap.createScaledBitmap(bitmap, width, height, true)
+    }
+
+    // Save the mask at the resolution of image, rendering it again if only a preview was drawn
+    private fun saveMask(
+        image: Bitmap,
+        viewModel: MainActivityViewModel,
+    ) {
+        val lowResMasks = viewModel.lowResMasks.value
+        if (lowResMasks == null) {
+            saveBitmap(viewModel.maskImage.value ?: return)
+            return
+        }
+        CoroutineScope(Dispatchers.Default).launch {
+            val (overlay, mask) = decoder.render(lowResMasks, image)
+            saveBitmap(mask)
+            overlay.recycle()
+            mask.recycle()
+        }
+    }
+
     private fun saveBitmap(bitmap: Bitmap) {
         try {
             val file = File(getExternalFilesDir(null), "mask_${System.currentTimeMillis()}.png")
@@ -692,20 +972,43 @@ class MainActivity : ComponentActivity() {
         }
     }
 
-    private fun isModelInAssets(modelFileName: String): Boolean = (assets.list("") ?: emptyArray()).contains(modelFileName)
+    private fun modelStatus(
+        name: String,
+        state: ModelManager.State,
+    ): String =
+        when (state) {
+            is ModelManager.State.Ready -> "$name ready in ${state.timeToReadyMs} ms"
+            is ModelManager.State.Failed -> "$name failed"
+            is ModelManager.State.WarmingUp -> "$name warming up..."
+            else -> "$name loading..."
+        }
 
-    private fun copyModelToStorage(modelFileName: String) {
-        val modelFile = File(filesDir, modelFileName)
-        if (!modelFile.exists()) {
-            assets.open(modelFileName).use { inputStream ->
-                openFileOutput(modelFileName, MODE_PRIVATE).use { outputStream ->
-                    inputStream.copyTo(outputStream)
-                }
-            }
-            Log.i(MainActivity::class.simpleName, "$modelFileName copied from assets to app storage")
+    /**
+     * @return true if the app bundles the model, in which case it is memory-mapped from the APK.
+     * Otherwise the model has to be pushed to the device with adb.
+     */
+    private fun isBundledModel(modelFileName: String): Boolean = isModelInAssets(modelFileName)
+
+    /**
+     * Delete the model copies that earlier versions of the app made in app storage, which are no
+     * longer used. Runs once per install; later launches only read the flag.
+     */
+    private fun deleteLegacyModelCopies() {
+        val preferences = getPreferences(MODE_PRIVATE)
+        if (preferences.getBoolean(legacyModelCopiesDeletedKey, false)) {
+            return
+        }
+        for (modelFileName in listOf(encoderFileName, decoderFileName)) {
+            File(filesDir, modelFileName).delete()
         }
+        preferences.edit().putBoolean(legacyModelCopiesDeletedKey, true).apply()
     }
 
+    private fun hasCameraPermission(): Boolean =
+        ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED
+
+    private fun isModelInAssets(modelFileName: String): Boolean = (assets.list("") ?: emptyArray()).contains(modelFileName)
+
     private fun getFixedBitmap(imageFileUri: Uri): Bitmap {
         var imageBitmap = BitmapFactory.decodeStream(contentResolver.openInputStream(imageFileUri))
         val exifInterface = ExifInterface(contentResolver.openInputStream(imageFileUri)!!)
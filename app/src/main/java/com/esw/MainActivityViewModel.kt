@@ -21,6 +21,7 @@ import androidx.compose.runtime.mutableIntStateOf
 import androidx.compose.runtime.mutableStateListOf
 import androidx.compose.runtime.mutableStateOf
 import androidx.lifecycle.ViewModel
+import com.esw.sam.LowResMasks
 
 class MainActivityViewModel : ViewModel() {
     val showBottomSheet = mutableStateOf(false)
@@ -30,7 +31,10 @@ class MainActivityViewModel : ViewModel() {
     val points = mutableStateListOf<MainActivity.LabelPoint>()
     val images = mutableStateListOf<Bitmap>()
     val maskImage = mutableStateOf<Bitmap?>(null)
-    val inferenceTime = mutableIntStateOf(0)
+    val lowResMasks = mutableStateOf<LowResMasks?>(null) // Masks behind maskImage, if the decoder returns them
+    val inferenceTime = mutableIntStateOf(0) // Milliseconds
+    val metricsReport = mutableStateOf("")
+    val liveDetection = mutableStateOf(false)
 
     fun reset() {
         images.clear()
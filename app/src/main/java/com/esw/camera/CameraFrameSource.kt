@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+import android.content.Context
+import android.util.Log
+import android.util.Size
+import androidx.camera.core.CameraSelector
+import androidx.camera.core.ImageAnalysis
+import androidx.camera.core.ImageProxy
+import androidx.camera.core.resolutionselector.ResolutionSelector
+import androidx.camera.core.resolutionselector.ResolutionStrategy
+import androidx.camera.lifecycle.ProcessCameraProvider
+import androidx.core.content.ContextCompat
+import androidx.lifecycle.LifecycleOwner
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * [FrameSource] backed by a CameraX [ImageAnalysis] use case.
+ *
+ * Analysis uses STRATEGY_KEEP_ONLY_LATEST, so CameraX itself drops frames while the analyzer
+ * is busy, and the analyzer only copies the YUV_420_888 planes into a ring slot before
+ * returning. The conversion to the model input, done by the detector straight from the YUV
+ * planes, and all other expensive work happen on the pipeline's consumer, never on the camera
+ * thread. Frames CameraX
+ * dropped never reach the analyzer; they are counted from gaps in the sensor timestamps and
+ * added to the ring's drops.
+ *
+ * The caller must hold the CAMERA permission before starting the pipeline.
+ *
+ * @param context Context used to obtain the camera provider.
+ * @param lifecycleOwner Lifecycle the camera is bound to.
+ * @param cameraSelector Camera to open.
+ * @param targetResolution Preferred analysis resolution; CameraX picks the closest supported one.
+ */
+class CameraFrameSource(
+    private val context: Context,
+    private val lifecycleOwner: LifecycleOwner,
+    private val cameraSelector: CameraSelector = CameraSelector.DEFAULT_BACK_CAMERA,
+    private val targetResolution: Size = Size(1280, 720),
+) : FrameSource<YuvFrameBuffer> {
+    // Created by start and shut down by stop, so a stopped source holds no thread
+    private var analysisExecutor: ExecutorService? = null
+    private var imageAnalysis: ImageAnalysis? = null
+    private var cameraProvider: ProcessCameraProvider? = null
+
+    // Only used on the analysis thread
+    private val gapCounter = FrameGapCounter()
+
+    override fun start(ring: FrameRing<YuvFrameBuffer>) {
+        check(analysisExecutor == null) { "Camera source already started" }
+        val executor = Executors.newSingleThreadExecutor()
+        analysisExecutor = executor
+        executor.execute { gapCounter.reset() }
+        val analysis =
+            ImageAnalysis
+                .Builder()
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                .setResolutionSelector(
+                    ResolutionSelector
+                        .Builder()
+                        .setResolutionStrategy(
+                            ResolutionStrategy(
+                                targetResolution,
+                                ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER,
+                            ),
+                        ).build(),
+                ).build()
+        analysis.setAnalyzer(executor) { image -> copyToRing(image, ring) }
+        imageAnalysis = analysis
+
+        val providerFuture = ProcessCameraProvider.getInstance(context)
+        providerFuture.addListener({
+            val provider = providerFuture.get()
+            cameraProvider = provider
+            provider.unbind(analysis)
+            provider.bindToLifecycle(lifecycleOwner, cameraSelector, analysis)
+        }, ContextCompat.getMainExecutor(context))
+    }
+
+    override fun stop() {
+        val analysis = imageAnalysis ?: return
+        analysis.clearAnalyzer()
+        ContextCompat.getMainExecutor(context).execute {
+            cameraProvider?.unbind(analysis)
+        }
+        imageAnalysis = null
+        // A frame being copied finishes, then the thread exits
+        analysisExecutor?.shutdown()
+        analysisExecutor = null
+    }
+
+    private fun copyToRing(
+        image: ImageProxy,
+        ring: FrameRing<YuvFrameBuffer>,
+    ) {
+        val receivedTime = System.nanoTime()
+        image.use {
+            val missedFrames = gapCounter.onFrame(image.imageInfo.timestamp)
+            if (missedFrames > 0) {
+                ring.recordSourceDrops(missedFrames)
+            }
+            val frame = ring.acquireForWrite(image.width, image.height) ?: return
+            try {
+                val (yPlane, uPlane, vPlane) = image.planes
+                // U and V share their strides in YUV_420_888
+                frame.requireBuffer().copyFrom(
+                    yPlane.buffer,
+                    uPlane.buffer,
+                    vPlane.buffer,
+                    yPlane.rowStride,
+                    uPlane.rowStride,
+                    uPlane.pixelStride,
+                )
+                frame.rotationDegrees = image.imageInfo.rotationDegrees
+                frame.timestampNanos = receivedTime
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to copy camera frame: ${e.message}")
+                ring.cancelWrite(frame)
+                return
+            }
+            ring.publish(frame)
+        }
+    }
+
+    companion object {
+        private const val TAG = "CameraFrameSource"
+
+        /** Buffer factory for rings fed by this source. */
+        fun createBuffer(
+            width: Int,
+            height: Int,
+        ): YuvFrameBuffer = YuvFrameBuffer(width, height)
+    }
+}
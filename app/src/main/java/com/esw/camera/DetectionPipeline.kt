@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+
+/**
+ * Streaming detection: frames from a [FrameSource] go through a bounded [FrameRing] to a single
+ * detector coroutine, and results are published as a conflated [StateFlow].
+ *
+ * The source and the detector are decoupled by the ring, so a slow detector never stalls the
+ * camera; it simply skips to the newest frame and the skipped ones are counted as dropped.
+ * Collectors of [results] likewise only ever see the latest result.
+ *
+ * Nothing here depends on the camera, so the pipeline runs on a desktop JVM with a
+ * [SyntheticFrameSource] and a fake detector.
+ *
+ * @param source Frame producer.
+ * @param ring Ring the source writes into; its capacity bounds the frames in flight.
+ * @param detect Runs detection on one frame. The frame and its buffer are only valid during the
+ * call, so the result must not reference them.
+ */
+class DetectionPipeline<T, R>(
+    private val source: FrameSource<T>,
+    private val ring: FrameRing<T>,
+    private val detect: (Frame<T>) -> R,
+) {
+    /** Detection result for one frame. */
+    data class Result<R>(
+        val value: R,
+        val frameSequence: Long,
+        val frameWidth: Int,
+        val frameHeight: Int,
+        val rotationDegrees: Int,
+        // From frame arrival at the source to the result being published
+        val latencyNanos: Long,
+    )
+
+    /** Pipeline counters, updated after every processed frame. */
+    data class Stats(
+        val publishedFrames: Long = 0,
+        val processedFrames: Long = 0,
+        val droppedFrames: Long = 0,
+        val failedFrames: Long = 0,
+        val lastLatencyNanos: Long = 0,
+        val averageLatencyNanos: Long = 0,
+        val framesPerSecond: Float = 0f,
+    )
+
+    private val _results = MutableStateFlow<Result<R>?>(null)
+    val results: StateFlow<Result<R>?> = _results.asStateFlow()
+
+    private val _stats = MutableStateFlow(Stats())
+    val stats: StateFlow<Stats> = _stats.asStateFlow()
+
+    /** Last exception thrown by the detector, counted in [Stats.failedFrames]. */
+    @Volatile
+    var lastError: Exception? = null
+        private set
+
+    private var job: Job? = null
+    private var processedFrames = 0L
+    private var failedFrames = 0L
+    private var totalLatencyNanos = 0L
+    private var startTimeNanos = 0L
+
+    /**
+     * Start the source and the detector coroutine in [scope].
+     */
+    fun start(
+        scope: CoroutineScope,
+        dispatcher: CoroutineDispatcher = Dispatchers.Default,
+    ) {
+        check(job == null) { "Pipeline already started" }
+        startTimeNanos = System.nanoTime()
+        job =
+            scope.launch(dispatcher) {
+                while (isActive) {
+                    ring.readySignal.receive()
+                    val frame = ring.takeLatest() ?: continue
+                    try {
+                        process(frame)
+                    } catch (e: Exception) {
+                        failedFrames++
+                        lastError = e
+                    } finally {
+                        ring.release(frame)
+                    }
+                }
+            }
+        source.start(ring)
+    }
+
+    /**
+     * Stop the source and the detector coroutine.
+     */
+    fun stop() {
+        source.stop()
+        job?.cancel()
+        job = null
+    }
+
+    private fun process(frame: Frame<T>) {
+        val value = detect(frame)
+        val latency = System.nanoTime() - frame.timestampNanos
+        processedFrames++
+        totalLatencyNanos += latency
+        _results.value =
+            Result(
+                value = value,
+                frameSequence = frame.sequence,
+                frameWidth = frame.width,
+                frameHeight = frame.height,
+                rotationDegrees = frame.rotationDegrees,
+                latencyNanos = latency,
+            )
+        val elapsed = System.nanoTime() - startTimeNanos
+        _stats.value =
+            Stats(
+                publishedFrames = ring.publishedFrames,
+                processedFrames = processedFrames,
+                droppedFrames = ring.droppedFrames,
+                failedFrames = failedFrames,
+                lastLatencyNanos = latency,
+                averageLatencyNanos = totalLatencyNanos / processedFrames,
+                framesPerSecond = if (elapsed > 0) processedFrames * 1e9f / elapsed else 0f,
+            )
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+/**
+ * A reusable frame slot of a [FrameRing].
+ *
+ * [buffer] holds the pixels in whatever form the source produces and the detector consumes
+ * (the YUV planes for the camera, a plain array for a synthetic source). Slots are recycled, so a
+ * frame must not be used after it is released back to the ring.
+ */
+class Frame<T> internal constructor(
+    internal val slot: Int,
+) {
+    /** Pixel storage, (re)created by the ring's buffer factory when the frame size changes. */
+    var buffer: T? = null
+        internal set
+    var width = 0
+        internal set
+    var height = 0
+        internal set
+
+    /** Clockwise rotation in degrees that makes the frame upright. */
+    var rotationDegrees = 0
+
+    /** Monotonic sequence number assigned when the frame is published. */
+    var sequence = 0L
+        internal set
+
+    /** System.nanoTime() when the source received the frame; the origin of end-to-end latency. */
+    var timestampNanos = 0L
+
+    /** @return the pixel buffer. Only valid between acquiring and releasing the frame. */
+    fun requireBuffer(): T = checkNotNull(buffer) { "Frame has no buffer" }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+/**
+ * Counts frames missing between consecutive sensor timestamps, e.g. the ones CameraX dropped
+ * under STRATEGY_KEEP_ONLY_LATEST without ever handing them to the analyzer.
+ *
+ * The frame interval is the shortest gap among the last [window] frames, so it follows frame
+ * rate changes (auto-exposure slows the sensor down in low light) while occasional drops,
+ * which only make gaps longer, don't inflate it.
+ *
+ * Not thread-safe; called from the camera's analysis thread only.
+ */
+internal class FrameGapCounter(
+    private val window: Int = 64,
+) {
+    private val gaps = LongArray(window)
+    private var nextGap = 0
+    private var gapCount = 0
+    private var lastTimestamp = NO_TIMESTAMP
+
+    /**
+     * Forget the previous frames, e.g. when the camera restarts.
+     */
+    fun reset() {
+        nextGap = 0
+        gapCount = 0
+        lastTimestamp = NO_TIMESTAMP
+    }
+
+    /**
+     * @param timestampNanos Sensor timestamp of the frame just received.
+     * @return number of frames that should have arrived since the previous one but didn't.
+     */
+    fun onFrame(timestampNanos: Long): Int {
+        val previous = lastTimestamp
+        lastTimestamp = timestampNanos
+        if (previous == NO_TIMESTAMP || timestampNanos <= previous) {
+            return 0
+        }
+        val gap = timestampNanos - previous
+        gaps[nextGap] = gap
+        nextGap = (nextGap + 1) % window
+        gapCount = minOf(gapCount + 1, window)
+
+        var interval = Long.MAX_VALUE
+        for (i in 0 until gapCount) {
+            interval = minOf(interval, gaps[i])
+        }
+        // Rounded, so jitter in the timestamps isn't counted as a drop
+        return ((gap + interval / 2) / interval - 1).toInt()
+    }
+
+    private companion object {
+        const val NO_TIMESTAMP = Long.MIN_VALUE
+    }
+}
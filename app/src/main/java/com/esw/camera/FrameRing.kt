@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+import kotlinx.coroutines.channels.Channel
+
+/**
+ * Bounded ring of reusable frame buffers between a producer (the frame source) and a single
+ * consumer (the detector).
+ *
+ * The producer never blocks: it takes a free slot, or recycles the oldest frame still waiting
+ * to be consumed. The consumer always takes the newest waiting frame and discards older ones.
+ * Every discarded frame is counted in [droppedFrames], so a slow detector shows up as drops
+ * instead of growing latency. Frames the source itself lost before they reached the ring are
+ * added with [recordSourceDrops].
+ *
+ * @param capacity Number of slots. Two are enough for one frame being written and one being
+ * consumed; a third lets a finished frame wait while both are busy.
+ * @param bufferFactory Creates the pixel storage of a slot for a given width and height.
+ */
+class FrameRing<T>(
+    capacity: Int,
+    private val bufferFactory: (width: Int, height: Int) -> T,
+) {
+    private enum class State { FREE, WRITING, READY, READING }
+
+    private val frames = Array(capacity) { Frame<T>(it) }
+    private val states = Array(capacity) { State.FREE }
+    private val lock = Any()
+    private var nextSequence = 0L
+
+    // Conflated: any number of publications before the consumer wakes up is a single signal
+    internal val readySignal = Channel<Unit>(Channel.CONFLATED)
+
+    @Volatile
+    var publishedFrames = 0L
+        private set
+
+    @Volatile
+    var droppedFrames = 0L
+        private set
+
+    init {
+        require(capacity >= 2) { "FrameRing needs at least 2 slots" }
+    }
+
+    /**
+     * Take a slot to write the next frame into, sized to [width] x [height].
+     *
+     * @return the frame to fill, or null if every slot is being written or consumed (the
+     * incoming frame is then counted as dropped).
+     */
+    fun acquireForWrite(
+        width: Int,
+        height: Int,
+    ): Frame<T>? {
+        val frame =
+            synchronized(lock) {
+                var slot = states.indexOf(State.FREE)
+                if (slot < 0) {
+                    // Recycle the oldest frame nobody has started consuming
+                    slot = oldestReady()
+                    if (slot >= 0) {
+                        droppedFrames++
+                    }
+                }
+                if (slot < 0) {
+                    droppedFrames++
+                    return null
+                }
+                states[slot] = State.WRITING
+                frames[slot]
+            }
+        if (frame.buffer == null || frame.width != width || frame.height != height) {
+            frame.buffer = bufferFactory(width, height)
+            frame.width = width
+            frame.height = height
+        }
+        return frame
+    }
+
+    /**
+     * Count frames the source dropped upstream of the ring, e.g. inside the camera pipeline.
+     */
+    fun recordSourceDrops(count: Int) {
+        require(count >= 0) { "Negative drop count $count" }
+        synchronized(lock) {
+            droppedFrames += count
+        }
+    }
+
+    /**
+     * Hand a filled frame to the consumer.
+     */
+    fun publish(frame: Frame<T>) {
+        synchronized(lock) {
+            check(states[frame.slot] == State.WRITING) { "Frame was not acquired for writing" }
+            frame.sequence = nextSequence++
+            states[frame.slot] = State.READY
+            publishedFrames++
+        }
+        readySignal.trySend(Unit)
+    }
+
+    /**
+     * Give back a frame acquired for writing without publishing it, e.g. when conversion failed.
+     */
+    fun cancelWrite(frame: Frame<T>) {
+        synchronized(lock) {
+            if (states[frame.slot] == State.WRITING) {
+                states[frame.slot] = State.FREE
+            }
+        }
+    }
+
+    /**
+     * Take the newest published frame for consumption. Older published frames are dropped.
+     *
+     * @return the frame, or null if nothing was published since the last call.
+     */
+    fun takeLatest(): Frame<T>? {
+        synchronized(lock) {
+            var newest = -1
+            for (slot in states.indices) {
+                if (states[slot] == State.READY &&
+                    (newest < 0 || frames[slot].sequence > frames[newest].sequence)
+                ) {
+                    newest = slot
+                }
+            }
+            if (newest < 0) {
+                return null
+            }
+            for (slot in states.indices) {
+                if (slot != newest && states[slot] == State.READY) {
+                    states[slot] = State.FREE
+                    droppedFrames++
+                }
+            }
+            states[newest] = State.READING
+            return frames[newest]
+        }
+    }
+
+    /**
+     * Return a consumed frame to the ring.
+     */
+    fun release(frame: Frame<T>) {
+        synchronized(lock) {
+            if (states[frame.slot] == State.READING) {
+                states[frame.slot] = State.FREE
+            }
+        }
+    }
+
+    private fun oldestReady(): Int {
+        var oldest = -1
+        for (slot in states.indices) {
+            if (states[slot] == State.READY &&
+                (oldest < 0 || frames[slot].sequence < frames[oldest].sequence)
+            ) {
+                oldest = slot
+            }
+        }
+        return oldest
+    }
+}
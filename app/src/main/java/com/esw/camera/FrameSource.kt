@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+/**
+ * Produces frames into a [FrameRing].
+ *
+ * A source writes each frame into a slot from [FrameRing.acquireForWrite] and hands it over
+ * with [FrameRing.publish]. It must never wait for the consumer: when no slot is available the
+ * frame is skipped. Implementations decide on which thread frames are produced.
+ */
+interface FrameSource<T> {
+    /**
+     * Start producing frames into [ring]. Called once by the pipeline.
+     */
+    fun start(ring: FrameRing<T>)
+
+    /**
+     * Stop producing frames. No frame is published after this returns.
+     */
+    fun stop()
+}
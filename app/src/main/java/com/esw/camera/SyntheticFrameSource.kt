@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * [FrameSource] that generates frames at a fixed rate, for exercising the pipeline without a
+ * camera (e.g. on a desktop JVM).
+ *
+ * @param width Frame width.
+ * @param height Frame height.
+ * @param framesPerSecond Production rate.
+ * @param rotationDegrees Rotation reported with every frame.
+ * @param fill Writes the content of frame number `index` into the buffer.
+ */
+class SyntheticFrameSource<T>(
+    private val width: Int,
+    private val height: Int,
+    private val framesPerSecond: Int,
+    private val rotationDegrees: Int = 0,
+    private val fill: (buffer: T, index: Long) -> Unit,
+) : FrameSource<T> {
+    private var executor: ScheduledExecutorService? = null
+    private var index = 0L
+
+    override fun start(ring: FrameRing<T>) {
+        check(executor == null) { "Source already started" }
+        val periodNanos = 1_000_000_000L / framesPerSecond
+        executor =
+            Executors.newSingleThreadScheduledExecutor().apply {
+                scheduleAtFixedRate({ produce(ring) }, 0, periodNanos, TimeUnit.NANOSECONDS)
+            }
+    }
+
+    override fun stop() {
+        executor?.apply {
+            shutdown()
+            awaitTermination(1, TimeUnit.SECONDS)
+        }
+        executor = null
+    }
+
+    private fun produce(ring: FrameRing<T>) {
+        val frame = ring.acquireForWrite(width, height) ?: return
+        frame.timestampNanos = System.nanoTime()
+        frame.rotationDegrees = rotationDegrees
+        try {
+            fill(frame.requireBuffer(), index++)
+        } catch (e: Exception) {
+            ring.cancelWrite(frame)
+            throw e
+        }
+        ring.publish(frame)
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+import com.esw.yolo.DetectorPool
+import com.esw.yolo.RectangleBox
+
+/**
+ * Detector for a [DetectionPipeline] fed by a [CameraFrameSource]: runs YOLO on each frame with
+ * a detector leased from [pool]. Frames are read straight from their YUV planes, so no RGBA
+ * copy of the frame is made.
+ *
+ * Boxes are in the pixel coordinates of the unrotated camera frame, as for
+ * ObjectDetection.predict. They are copied out of the detector, so results stay valid after
+ * the lease is returned.
+ */
+class YoloFrameDetector(
+    private val pool: DetectorPool,
+) : (Frame<YuvFrameBuffer>) -> List<RectangleBox> {
+    // Only used from the pipeline's single detector coroutine
+    private val boxes = ArrayList<RectangleBox>()
+
+    override fun invoke(frame: Frame<YuvFrameBuffer>): List<RectangleBox> =
+        pool.lease().use { lease ->
+            boxes.clear()
+            val image = frame.requireBuffer()
+            lease.detector().predict(
+                image.y,
+                image.u,
+                image.v,
+                image.yRowStride,
+                image.uvRowStride,
+                image.uvPixelStride,
+                image.width,
+                image.height,
+                sensorOrientation(frame.rotationDegrees),
+                boxes,
+            )
+            boxes.map { it.copy() }
+        }
+
+    companion object {
+        /**
+         * Convert a CameraX rotation (clockwise degrees that make the frame upright) to the
+         * sensorOrientation convention of ObjectDetection.predict, where 90 means no rotation.
+         */
+        fun sensorOrientation(rotationDegrees: Int): Int = (rotationDegrees + 90) % 360
+    }
+}
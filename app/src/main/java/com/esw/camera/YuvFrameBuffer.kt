@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+import java.nio.ByteBuffer
+
+/**
+ * Pixel storage of a YUV_420_888 camera frame: a copy of the three planes with their strides,
+ * laid out as the camera delivered them, so ObjectDetection can read it in place with its YUV
+ * predict.
+ *
+ * The plane buffers are direct and kept across frames; they are only reallocated when a frame
+ * needs more room.
+ *
+ * @param width Frame width.
+ * @param height Frame height.
+ */
+class YuvFrameBuffer(
+    val width: Int,
+    val height: Int,
+) {
+    var y: ByteBuffer = EMPTY
+        private set
+    var u: ByteBuffer = EMPTY
+        private set
+    var v: ByteBuffer = EMPTY
+        private set
+
+    /** Bytes between luma rows. */
+    var yRowStride = 0
+        private set
+
+    /** Bytes between chroma rows. */
+    var uvRowStride = 0
+        private set
+
+    /** Bytes between chroma samples of a row, 2 for interleaved chroma. */
+    var uvPixelStride = 0
+        private set
+
+    /**
+     * Copy the planes of a camera image. The source buffers are read from their start to their
+     * limit; their positions are left at the limit.
+     */
+    fun copyFrom(
+        yPlane: ByteBuffer,
+        uPlane: ByteBuffer,
+        vPlane: ByteBuffer,
+        yRowStride: Int,
+        uvRowStride: Int,
+        uvPixelStride: Int,
+    ) {
+        y = copy(yPlane, y)
+        u = copy(uPlane, u)
+        v = copy(vPlane, v)
+        this.yRowStride = yRowStride
+        this.uvRowStride = uvRowStride
+        this.uvPixelStride = uvPixelStride
+    }
+
+    private fun copy(
+        source: ByteBuffer,
+        destination: ByteBuffer,
+    ): ByteBuffer {
+        source.rewind()
+        val target = if (destination.capacity() >= source.remaining()) destination else ByteBuffer.allocateDirect(source.remaining())
+        target.clear()
+        target.put(source)
+        target.flip()
+        return target
+    }
+
+    private companion object {
+        val EMPTY: ByteBuffer = ByteBuffer.allocateDirect(0)
+    }
+}
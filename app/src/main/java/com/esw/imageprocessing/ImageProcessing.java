@@ -0,0 +1,269 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.imageprocessing;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+/**
+ * Pixel to tensor conversions used by the YOLO and SAM preprocessing paths.
+ *
+ * Conversions run in the native image_processing library (NEON accelerated on ARM). If the
+ * library cannot be loaded, an equivalent Java implementation is used instead.
+ *
+ * Destination buffers must be direct ByteBuffers in native byte order.
+ *
+ * The class has no Android dependencies, so JVM unit tests and benchmarks load it too, against a
+ * host build of the library (or the Java fallback if there is none). The Java implementations
+ * are public so they can be compared with the native ones.
+ */
+public final class ImageProcessing {
+    private static final String TAG = "ImageProcessing";
+    private static final float INV_255 = 1.0f / 255.0f;
+
+    private static final boolean nativeAvailable;
+
+    static {
+        boolean loaded;
+        try {
+            System.loadLibrary("image_processing");
+            loaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            // java.util.logging reaches logcat on Android and stderr on a host JVM
+            Logger.getLogger(TAG).warning("Native image_processing library unavailable, using Java fallback: " + e.getMessage());
+            loaded = false;
+        }
+        nativeAvailable = loaded;
+    }
+
+    private ImageProcessing() {
+    }
+
+    /**
+     * @return true if conversions run in native code.
+     */
+    public static boolean isNativeAvailable() {
+        return nativeAvailable;
+    }
+
+    /**
+     * @return true if the native library was built with the NEON code path.
+     */
+    public static boolean hasNeon() {
+        return nativeAvailable && nativeHasNeon();
+    }
+
+    /**
+     * Convert ARGB_8888 pixels (as returned by Bitmap.getPixels) to the YOLO input layout:
+     * interleaved RGB floats in [0, 1] (HWC).
+     *
+     * @param src        Source pixels, 0xAARRGGBB.
+     * @param dst        Destination, at least 3 * pixelCount floats.
+     * @param pixelCount Number of pixels to convert.
+     */
+    public static void argbToYoloInput(int[] src, ByteBuffer dst, int pixelCount) {
+        if (nativeAvailable) {
+            nativeArgbToYoloInput(src, dst, pixelCount);
+        } else {
+            argbToYoloInputJava(src, dst, pixelCount);
+        }
+    }
+
+    /**
+     * Java implementation of {@link #argbToYoloInput}.
+     */
+    public static void argbToYoloInputJava(int[] src, ByteBuffer dst, int pixelCount) {
+        for (int i = 0; i < pixelCount; i++) {
+            int pixel = src[i];
+            int base = 12 * i;
+            dst.putFloat(base, ((pixel >> 16) & 0xFF) * INV_255);
+            dst.putFloat(base + 4, ((pixel >> 8) & 0xFF) * INV_255);
+            dst.putFloat(base + 8, (pixel & 0xFF) * INV_255);
+        }
+    }
+
+    /**
+     * Convert RGBA bytes (as produced by OpenCV Utils.bitmapToMat) to the YOLO input layout:
+     * interleaved RGB floats in [0, 1] (HWC).
+     *
+     * @param src        Source pixels, direct buffer of 4 * pixelCount bytes.
+     * @param dst        Destination, at least 3 * pixelCount floats.
+     * @param pixelCount Number of pixels to convert.
+     */
+    public static void rgbaToYoloInput(ByteBuffer src, ByteBuffer dst, int pixelCount) {
+        if (nativeAvailable) {
+            nativeRgbaToYoloInput(src, dst, pixelCount);
+        } else {
+            rgbaToYoloInputJava(src, dst, pixelCount);
+        }
+    }
+
+    /**
+     * Java implementation of {@link #rgbaToYoloInput}.
+     */
+    public static void rgbaToYoloInputJava(ByteBuffer src, ByteBuffer dst, int pixelCount) {
+        for (int i = 0; i < pixelCount; i++) {
+            int base = 12 * i;
+            dst.putFloat(base, (src.get(4 * i) & 0xFF) * INV_255);
+            dst.putFloat(base + 4, (src.get(4 * i + 1) & 0xFF) * INV_255);
+            dst.putFloat(base + 8, (src.get(4 * i + 2) & 0xFF) * INV_255);
+        }
+    }
+
+    /**
+     * Convert ARGB_8888 pixels to the SAM encoder input layout: mean/std normalized planar RGB
+     * floats (NCHW), dst[c * planeSize + i] = (channel / 255 - mean[c]) / std[c].
+     *
+     * A run of pixels (for example a band of rows) can be converted on its own, so large images
+     * can be split across threads.
+     *
+     * @param src        Source pixels, 0xAARRGGBB.
+     * @param srcOffset  Index of the first pixel to convert in src.
+     * @param dst        Destination holding 3 planes of planeSize floats.
+     * @param dstOffset  Index of the first converted pixel within a plane.
+     * @param pixelCount Number of pixels to convert.
+     * @param planeSize  Number of floats in one channel plane.
+     * @param mean       Per channel mean, RGB order.
+     * @param std        Per channel standard deviation, RGB order.
+     */
+    public static void argbToSamInput(int[] src, int srcOffset, ByteBuffer dst, int dstOffset,
+                                      int pixelCount, int planeSize, float[] mean, float[] std) {
+        if (nativeAvailable) {
+            nativeArgbToSamInput(src, srcOffset, dst, dstOffset, pixelCount, planeSize, mean, std);
+        } else {
+            argbToSamInputJava(src, srcOffset, dst, dstOffset, pixelCount, planeSize, mean, std);
+        }
+    }
+
+    /**
+     * Java implementation of {@link #argbToSamInput}.
+     */
+    public static void argbToSamInputJava(int[] src, int srcOffset, ByteBuffer dst, int dstOffset,
+                                          int pixelCount, int planeSize, float[] mean, float[] std) {
+        // (v / 255 - mean) / std == v * scale + bias, matching the native kernel
+        float scaleR = INV_255 / std[0], biasR = -mean[0] / std[0];
+        float scaleG = INV_255 / std[1], biasG = -mean[1] / std[1];
+        float scaleB = INV_255 / std[2], biasB = -mean[2] / std[2];
+        int red = 4 * dstOffset;
+        int green = 4 * (planeSize + dstOffset);
+        int blue = 4 * (2 * planeSize + dstOffset);
+        for (int i = 0; i < pixelCount; i++) {
+            int pixel = src[srcOffset + i];
+            dst.putFloat(red + 4 * i, ((pixel >> 16) & 0xFF) * scaleR + biasR);
+            dst.putFloat(green + 4 * i, ((pixel >> 8) & 0xFF) * scaleG + biasG);
+            dst.putFloat(blue + 4 * i, (pixel & 0xFF) * scaleB + biasB);
+        }
+    }
+
+    /**
+     * Convert a YUV_420_888 camera image straight to the YOLO input layout (interleaved RGB
+     * floats in [0, 1]), rotating and scaling it on the way through an affine map. Only the
+     * destination grid is computed; no full resolution RGB image is built.
+     *
+     * @param y             Luma plane, direct buffer.
+     * @param u             U (Cb) plane, direct buffer.
+     * @param v             V (Cr) plane, direct buffer.
+     * @param yRowStride    Bytes between luma rows.
+     * @param uvRowStride   Bytes between chroma rows.
+     * @param uvPixelStride Bytes between chroma samples of a row (2 for interleaved NV21/NV12 planes).
+     * @param width         Image width.
+     * @param height        Image height.
+     * @param inverseMatrix Maps destination pixel (x, y) to source pixel coordinates:
+     *                      sx = m[0] * x + m[1] * y + m[2], sy = m[3] * x + m[4] * y + m[5].
+     * @param dst           Destination, dstWidth x dstHeight x 3 floats.
+     * @param dstWidth      Destination width.
+     * @param dstHeight     Destination height.
+     * @param padBorder     Fill samples outside the image with padValue instead of the nearest edge pixel.
+     * @param padValue      Fill value in [0, 1].
+     */
+    public static void yuvToYoloInput(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                                      int yRowStride, int uvRowStride, int uvPixelStride,
+                                      int width, int height, float[] inverseMatrix,
+                                      ByteBuffer dst, int dstWidth, int dstHeight,
+                                      boolean padBorder, float padValue) {
+        if (nativeAvailable) {
+            nativeYuvToYoloInput(y, u, v, yRowStride, uvRowStride, uvPixelStride, width, height,
+                    inverseMatrix, dst, dstWidth, dstHeight, padBorder, padValue);
+        } else {
+            yuvToYoloInputJava(y, u, v, yRowStride, uvRowStride, uvPixelStride, width, height,
+                    inverseMatrix, dst, dstWidth, dstHeight, padBorder, padValue);
+        }
+    }
+
+    /**
+     * Java implementation of {@link #yuvToYoloInput}.
+     */
+    public static void yuvToYoloInputJava(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                                          int yRowStride, int uvRowStride, int uvPixelStride,
+                                          int width, int height, float[] inverseMatrix,
+                                          ByteBuffer dst, int dstWidth, int dstHeight,
+                                          boolean padBorder, float padValue) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        float maxX = width - 0.5f;
+        float maxY = height - 0.5f;
+        for (int row = 0; row < dstHeight; row++) {
+            float sx = inverseMatrix[1] * row + inverseMatrix[2];
+            float sy = inverseMatrix[4] * row + inverseMatrix[5];
+            int base = 12 * row * dstWidth;
+            for (int col = 0; col < dstWidth; col++, sx += inverseMatrix[0], sy += inverseMatrix[3], base += 12) {
+                if (padBorder && (sx < -0.5f || sy < -0.5f || sx >= maxX || sy >= maxY)) {
+                    dst.putFloat(base, padValue);
+                    dst.putFloat(base + 4, padValue);
+                    dst.putFloat(base + 8, padValue);
+                    continue;
+                }
+                float luma = sampleBilinear(y, yRowStride, 1, width, height, sx, sy);
+                // Chroma pixel i covers luma pixels 2i and 2i + 1
+                float cx = (sx + 0.5f) * 0.5f - 0.5f;
+                float cy = (sy + 0.5f) * 0.5f - 0.5f;
+                float cb = sampleBilinear(u, uvRowStride, uvPixelStride, chromaWidth, chromaHeight, cx, cy) - 128.0f;
+                float cr = sampleBilinear(v, uvRowStride, uvPixelStride, chromaWidth, chromaHeight, cx, cy) - 128.0f;
+                dst.putFloat(base, clampUnit(luma + 1.402f * cr));
+                dst.putFloat(base + 4, clampUnit(luma - 0.344136f * cb - 0.714136f * cr));
+                dst.putFloat(base + 8, clampUnit(luma + 1.772f * cb));
+            }
+        }
+    }
+
+    // Bilinear sample of an 8-bit plane at pixel coordinates (x, y), clamped to the edges
+    private static float sampleBilinear(ByteBuffer plane, int rowStride, int pixelStride,
+                                        int width, int height, float x, float y) {
+        x = Math.min(Math.max(x, 0.0f), width - 1);
+        y = Math.min(Math.max(y, 0.0f), height - 1);
+        int x0 = (int) x;
+        int y0 = (int) y;
+        int x1 = Math.min(x0 + 1, width - 1);
+        int y1 = Math.min(y0 + 1, height - 1);
+        float ax = x - x0;
+        float ay = y - y0;
+        float p00 = plane.get(y0 * rowStride + x0 * pixelStride) & 0xFF;
+        float p01 = plane.get(y0 * rowStride + x1 * pixelStride) & 0xFF;
+        float p10 = plane.get(y1 * rowStride + x0 * pixelStride) & 0xFF;
+        float p11 = plane.get(y1 * rowStride + x1 * pixelStride) & 0xFF;
+        float top = p00 + (p01 - p00) * ax;
+        float bottom = p10 + (p11 - p10) * ax;
+        return top + (bottom - top) * ay;
+    }
+
+    private static float clampUnit(float v) {
+        return Math.min(Math.max(v * INV_255, 0.0f), 1.0f);
+    }
+
+    private static native boolean nativeHasNeon();
+
+    private static native void nativeArgbToYoloInput(int[] src, ByteBuffer dst, int pixelCount);
+
+    private static native void nativeRgbaToYoloInput(ByteBuffer src, ByteBuffer dst, int pixelCount);
+
+    private static native void nativeArgbToSamInput(int[] src, int srcOffset, ByteBuffer dst, int dstOffset,
+                                                    int pixelCount, int planeSize, float[] mean, float[] std);
+
+    private static native void nativeYuvToYoloInput(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                                                    int yRowStride, int uvRowStride, int uvPixelStride,
+                                                    int width, int height, float[] inverseMatrix,
+                                                    ByteBuffer dst, int dstWidth, int dstHeight,
+                                                    boolean padBorder, float padValue);
+}
@@ -0,0 +1,176 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ *
+ * Values (nanoseconds) below 16 get a bucket each; above, every power of two is split into 16
+ * equal sub-buckets, so a bucket spans at most 1/16 of its lower bound and percentiles are
+ * within 6.25% of the true value. Values up to 2^43 ns (about 2.4 hours) are tracked; larger
+ * ones are counted in the last bucket.
+ *
+ * Recording is a few atomic increments and never allocates, so it can be called from the
+ * inference hot path on any thread. A {@link Snapshot} taken while other threads record may
+ * miss or include values being recorded concurrently, which is fine for monitoring.
+ */
+public final class LatencyHistogram {
+    private final static int SUB_BUCKET_BITS = 4;
+    private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private final static int MAX_EXPONENT = 42;
+    final static int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Percentiles and counters of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        public final String name;
+        public final long count;
+        public final long meanNanos;
+        public final long maxNanos;
+        public final long p50Nanos;
+        public final long p95Nanos;
+        public final long p99Nanos;
+
+        Snapshot(String name, long count, long meanNanos, long maxNanos, long p50Nanos, long p95Nanos, long p99Nanos) {
+            this.name = name;
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.maxNanos = maxNanos;
+            this.p50Nanos = p50Nanos;
+            this.p95Nanos = p95Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        /**
+         * @return one line summary with times in milliseconds.
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: n=%d p50=%.2f p95=%.2f p99=%.2f max=%.2f mean=%.2f ms",
+                    name, count, p50Nanos / 1e6, p95Nanos / 1e6, p99Nanos / 1e6, maxNanos / 1e6, meanNanos / 1e6);
+        }
+    }
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name of the measured stage.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record one value.
+     *
+     * @param nanos Latency in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    /**
+     * Record the same value several times, e.g. the per-image time of a batch.
+     *
+     * @param nanos Latency in nanoseconds. Negative values are recorded as 0.
+     * @param count Number of occurrences.
+     */
+    public void record(long nanos, long count) {
+        if (count <= 0) {
+            return;
+        }
+        long value = Math.max(nanos, 0);
+        counts.addAndGet(bucketIndex(value), count);
+        totalCount.addAndGet(count);
+        sum.addAndGet(value * count);
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            // Another thread raised the maximum, compare again
+        }
+    }
+
+    /**
+     * @return current counters and percentiles.
+     */
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = counts.get(i);
+            count += bucketCounts[i];
+        }
+        long maxNanos = max.get();
+        long total = totalCount.get();
+        long meanNanos = total > 0 ? sum.get() / total : 0;
+        return new Snapshot(name, count, meanNanos, maxNanos,
+                percentile(bucketCounts, count, 0.50, maxNanos),
+                percentile(bucketCounts, count, 0.95, maxNanos),
+                percentile(bucketCounts, count, 0.99, maxNanos));
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        // value >>> shift is in [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    // Largest value that falls in the given bucket
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    private static long percentile(long[] bucketCounts, long count, double quantile, long maxNanos) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+}
@@ -0,0 +1,112 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Named latency histograms for the stages of the YOLO and SAM pipelines.
+ *
+ * Components look up their histograms once (typically into final fields) and record into them
+ * on every call; readers take snapshots at any time, e.g. to show them in the app or to assert
+ * on them in a test.
+ *
+ * <pre>
+ * LatencyHistogram inference = MetricsRegistry.getDefault().histogram(MetricsRegistry.YOLO_INFERENCE);
+ * ...
+ * inference.record(System.nanoTime() - startTime);
+ * ...
+ * Log.i(TAG, MetricsRegistry.getDefault().dump());
+ * </pre>
+ */
+public final class MetricsRegistry {
+    public final static String YOLO_PREPROCESS = "yolo.preprocess";
+    public final static String YOLO_INFERENCE = "yolo.inference";
+    public final static String YOLO_POSTPROCESS = "yolo.postprocess";
+    public final static String SAM_ENCODER_PREPROCESS = "sam.encoder.preprocess";
+    public final static String SAM_ENCODER_RUN = "sam.encoder.run";
+    public final static String SAM_DECODER_TENSORS = "sam.decoder.tensors";
+    public final static String SAM_DECODER_RUN = "sam.decoder.run";
+    public final static String SAM_DECODER_RENDER = "sam.decoder.render";
+    // Followed by the model name
+    public final static String MODEL_LOAD_PREFIX = "model.load.";
+    public final static String MODEL_WARM_UP_PREFIX = "model.warmup.";
+
+    private final static MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    // Sorted by name, so related stages are listed together
+    private final ConcurrentSkipListMap<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return the registry shared by the app components.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the histogram with the given name, created on first use.
+     */
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(name);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Record one value in the named histogram. Prefer keeping a reference to the histogram on
+     * hot paths, this looks it up on every call.
+     */
+    public void record(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    /**
+     * @return snapshots of every histogram that recorded at least one value, sorted by name.
+     */
+    public List<LatencyHistogram.Snapshot> snapshot() {
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            if (snapshot.count > 0) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return one line per stage with its percentiles in milliseconds, or an empty string if
+     * nothing was recorded yet.
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (LatencyHistogram.Snapshot snapshot : snapshot()) {
+            if (builder.length() > 0) {
+                builder.append('\n');
+            }
+            builder.append(snapshot);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Clear every histogram, e.g. before a measurement run.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.esw.models
+
+import com.esw.metrics.MetricsRegistry
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.launch
+import java.util.Locale
+
+/**
+ * Loads and warms up a set of models concurrently, exposing the readiness of each one.
+ *
+ * Each model is registered with a load step (create the session or interpreter) and a warm-up
+ * step (one dummy inference, so lazy initialization is not paid by the first real request).
+ * [loadAll] runs all models in parallel; a model's [State] turns [State.Ready] as soon as its own
+ * warm-up finishes, so features depending only on that model can be enabled without waiting
+ * for the others. A failing model does not cancel the others.
+ */
+class ModelManager {
+    sealed class State {
+        data object NotLoaded : State()
+
+        data object Loading : State()
+
+        data object WarmingUp : State()
+
+        /**
+         * @param loadTimeMs Time spent creating the model.
+         * @param warmUpTimeMs Time spent in the warm-up inference.
+         * @param timeToReadyMs Time from the start of [loadAll] until the model became ready,
+         * including time spent waiting for a thread.
+         */
+        data class Ready(
+            val loadTimeMs: Long,
+            val warmUpTimeMs: Long,
+            val timeToReadyMs: Long,
+        ) : State()
+
+        data class Failed(
+            val error: Exception,
+        ) : State()
+    }
+
+    private class Model(
+        val name: String,
+        val load: suspend () -> Unit,
+        val warmUp: suspend () -> Unit,
+    ) {
+        val state = MutableStateFlow<State>(State.NotLoaded)
+    }
+
+    private val models = LinkedHashMap<String, Model>()
+    private val metrics = MetricsRegistry.getDefault()
+
+    /**
+     * Register a model. Must be called before [loadAll].
+     *
+     * @param name Unique model name, used for [state] and in reports.
+     * @param load Creates the model.
+     * @param warmUp Runs one dummy inference on the loaded model.
+     * @return the readiness of the model.
+     */
+    fun register(
+        name: String,
+        load: suspend () -> Unit,
+        warmUp: suspend () -> Unit = {},
+    ): StateFlow<State> {
+        require(name !in models) { "Model $name is already registered" }
+        val model = Model(name, load, warmUp)
+        models[name] = model
+        return model.state.asStateFlow()
+    }
+
+    /** @return the readiness of a registered model. */
+    fun state(name: String): StateFlow<State> = checkNotNull(models[name]) { "Unknown model $name" }.state.asStateFlow()
+
+    /** @return true if every registered model is ready. */
+    val isAllReady: Boolean
+        get() = models.values.all { it.state.value is State.Ready }
+
+    /**
+     * Load and warm up every registered model concurrently. Returns once all models are either
+     * ready or failed.
+     *
+     * @param dispatcher Dispatcher running the load and warm-up steps; each model gets its own
+     * coroutine, so it needs at least as many threads as models to load them all at once.
+     */
+    suspend fun loadAll(dispatcher: CoroutineDispatcher = Dispatchers.IO) {
+        val startTime = System.nanoTime()
+        coroutineScope {
+            for (model in models.values) {
+                launch(dispatcher) {
+                    try {
+                        model.state.value = State.Loading
+                        val loadStartTime = System.nanoTime()
+                        model.load()
+                        model.state.value = State.WarmingUp
+                        val warmUpStartTime = System.nanoTime()
+                        model.warmUp()
+                        val readyTime = System.nanoTime()
+                        metrics.record(MetricsRegistry.MODEL_LOAD_PREFIX + model.name, warmUpStartTime - loadStartTime)
+                        metrics.record(MetricsRegistry.MODEL_WARM_UP_PREFIX + model.name, readyTime - warmUpStartTime)
+                        model.state.value =
+                            State.Ready(
+                                loadTimeMs = (warmUpStartTime - loadStartTime) / 1_000_000,
+                                warmUpTimeMs = (readyTime - warmUpStartTime) / 1_000_000,
+                                timeToReadyMs = (readyTime - startTime) / 1_000_000,
+                            )
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        model.state.value = State.Failed(e)
+                    }
+                }
+            }
+        }
+    }
+
+    /** @return one line per model with its state and timings. */
+    fun report(): String =
+        models.values.joinToString("\n") { model ->
+            when (val state = model.state.value) {
+                is State.Ready ->
+                    String.format(
+                        Locale.US,
+                        "%s: ready in %d ms (load %d ms, warm-up %d ms)",
+                        model.name,
+                        state.timeToReadyMs,
+                        state.loadTimeMs,
+                        state.warmUpTimeMs,
+                    )
+                is State.Failed -> "${model.name}: failed, ${state.error.message}"
+                else -> "${model.name}: ${state::class.simpleName}"
+            }
+        }
+}
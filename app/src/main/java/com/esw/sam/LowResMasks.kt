@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.esw.sam
+
+import java.nio.FloatBuffer
+
+/**
+ * Low-resolution mask logits of one decoder call, for models exported to return the decoder's
+ * size x size masks instead of masks upsampled to the image (see the low-resolution export in
+ * notebooks/SAM2_ONNX_Export.ipynb).
+ *
+ * Only the best scoring mask of each label is kept, along with the bounding box of its
+ * positive logits, so [MaskCompositor.addLowResMask] can upsample and threshold it at any
+ * resolution while touching only the pixels inside that box. The masks cover the whole image,
+ * which the encoder stretches to a square.
+ *
+ * @param size Side of the square masks, in cells.
+ * @param count Number of masks, one per label.
+ */
+class LowResMasks(
+    val size: Int,
+    val count: Int,
+) {
+    /**
+     * Logits of each mask, size * size floats per mask, row-major.
+     */
+    val logits = FloatArray(count * size * size)
+
+    /**
+     * Predicted IoU of each mask.
+     */
+    val scores = FloatArray(count)
+
+    // left, top, right, bottom cell (inclusive) of the positive logits of each mask
+    private val boxes = IntArray(count * 4)
+
+    /**
+     * Copy one mask from the decoder output and find the bounding box of its positive logits.
+     *
+     * @param index Mask (label) index.
+     * @param source Decoder mask output.
+     * @param sourceIndex Index of the first logit of the mask in [source].
+     * @param score Predicted IoU of the mask.
+     */
+    fun set(
+        index: Int,
+        source: FloatBuffer,
+        sourceIndex: Int,
+        score: Float,
+    ) {
+        val offset = index * size * size
+        var left = size
+        var top = size
+        var right = -1
+        var bottom = -1
+        for (y in 0 until size) {
+            for (x in 0 until size) {
+                val logit = source.get(sourceIndex + y * size + x)
+                logits[offset + y * size + x] = logit
+                if (logit > 0f) {
+                    left = minOf(left, x)
+                    right = maxOf(right, x)
+                    top = minOf(top, y)
+                    bottom = y
+                }
+            }
+        }
+        scores[index] = score
+        boxes[4 * index] = left
+        boxes[4 * index + 1] = top
+        boxes[4 * index + 2] = right
+        boxes[4 * index + 3] = bottom
+    }
+
+    /**
+     * @return true if no logit of the mask is positive.
+     */
+    fun isEmpty(index: Int): Boolean = boxes[4 * index + 2] < 0
+
+    fun left(index: Int): Int = boxes[4 * index]
+
+    fun top(index: Int): Int = boxes[4 * index + 1]
+
+    fun right(index: Int): Int = boxes[4 * index + 2]
+
+    fun bottom(index: Int): Int = boxes[4 * index + 3]
+}
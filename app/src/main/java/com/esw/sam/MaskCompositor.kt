@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.sam
+
+import java.nio.FloatBuffer
+import java.util.stream.IntStream
+import kotlin.math.ceil
+import kotlin.math.floor
+
+/**
+ * Renders decoder masks into re-usable pixel buffers: the overlay (the image with each mask
+ * alpha-blended in its label color), the black and white mask image and an instance ID map.
+ *
+ * Masks predicted at the image resolution are added with [addMask], low-resolution ones with
+ * [addLowResMask]. Each mask is composited straight into the buffers, in bands of rows
+ * processed in parallel, so nothing is allocated per mask pixel and each image is copied to its
+ * Bitmap with a single setPixels. It has no Android dependencies, so it also runs (and is
+ * benchmarked and tested) on a plain JVM.
+ *
+ * ```
+ * compositor.begin(width, height)
+ * image.getPixels(compositor.overlayPixels, 0, width, 0, 0, width, height)
+ * compositor.addMask(mask, 0, 1, Color.YELLOW)
+ * overlay.setPixels(compositor.overlayPixels, 0, width, 0, 0, width, height)
+ * ```
+ *
+ * Not thread-safe. The buffers are overwritten by the next [begin].
+ */
+class MaskCompositor @JvmOverloads constructor(
+    private val bandCount: Int = Runtime.getRuntime().availableProcessors(),
+) {
+    var width = 0
+        private set
+    var height = 0
+        private set
+
+    /**
+     * Overlay pixels, 0xAARRGGBB, row-major. Filled with the image by the caller after [begin].
+     */
+    var overlayPixels = IntArray(0)
+        private set
+
+    /**
+     * Mask image pixels: white where any mask covers the pixel, black elsewhere.
+     */
+    var maskPixels = IntArray(0)
+        private set
+
+    /**
+     * Instance ID of each pixel: 0 for the background, otherwise the ID of the last mask
+     * covering it.
+     */
+    var labelMap = ShortArray(0)
+        private set
+
+    // Horizontal sampling of low-resolution masks: left cell and weight of the right cell
+    // for each output column
+    private var columnCells = IntArray(0)
+    private var columnWeights = FloatArray(0)
+
+    /**
+     * Start compositing an image, growing the buffers if needed and clearing the mask image
+     * and the label map.
+     */
+    fun begin(
+        width: Int,
+        height: Int,
+    ) {
+        val pixelCount = width * height
+        if (overlayPixels.size < pixelCount) {
+            overlayPixels = IntArray(pixelCount)
+            maskPixels = IntArray(pixelCount)
+            labelMap = ShortArray(pixelCount)
+        }
+        this.width = width
+        this.height = height
+        maskPixels.fill(BLACK, 0, pixelCount)
+        labelMap.fill(0, 0, pixelCount)
+    }
+
+    /**
+     * Blend one predicted mask: pixels with a positive logit get [color] blended over the
+     * overlay with [alpha], are set to white in the mask image and to [instanceId] in the
+     * label map.
+     *
+     * @param mask Decoder mask output.
+     * @param maskStartIndex Index of the first logit of this mask in [mask].
+     * @param instanceId ID written to the label map, 1 to 32767.
+     * @param color Label color, 0xRRGGBB (its alpha is ignored).
+     * @param alpha Opacity of the label color, 0 to 255.
+     */
+    fun addMask(
+        mask: FloatBuffer,
+        maskStartIndex: Int,
+        instanceId: Int,
+        color: Int,
+        alpha: Int = DEFAULT_ALPHA,
+    ) {
+        require(instanceId in 1..Short.MAX_VALUE) { "Instance ID $instanceId out of range" }
+        inBands(0, height) { firstRow, endRow ->
+            addMaskRows(mask, maskStartIndex, firstRow * width, endRow * width, instanceId.toShort(), color, alpha)
+        }
+    }
+
+    /**
+     * Upsample and blend one low-resolution mask, like [addMask] for a mask predicted at the
+     * image resolution. Logits are interpolated bilinearly (as F.interpolate with
+     * align_corners=False) and thresholded at 0, only inside the bounding box of the mask's
+     * positive logits, since the interpolation cannot be positive anywhere else.
+     *
+     * @param masks Low-resolution masks of the decoder.
+     * @param index Index of the mask in [masks].
+     * @param instanceId ID written to the label map, 1 to 32767.
+     * @param color Label color, 0xRRGGBB (its alpha is ignored).
+     * @param alpha Opacity of the label color, 0 to 255.
+     */
+    fun addLowResMask(
+        masks: LowResMasks,
+        index: Int,
+        instanceId: Int,
+        color: Int,
+        alpha: Int = DEFAULT_ALPHA,
+    ) {
+        require(instanceId in 1..Short.MAX_VALUE) { "Instance ID $instanceId out of range" }
+        if (masks.isEmpty(index) || width == 0 || height == 0) {
+            return
+        }
+        val size = masks.size
+        val scaleX = size.toFloat() / width
+        val scaleY = size.toFloat() / height
+
+        // Output pixel x samples the logits at (x + 0.5) * scaleX - 0.5, which can only be
+        // positive strictly within one cell of the box
+        val left = floor((masks.left(index) - 0.5f) / scaleX - 0.5f).toInt().coerceAtLeast(0)
+        val right = ceil((masks.right(index) + 1.5f) / scaleX - 0.5f).toInt().coerceAtMost(width - 1)
+        val top = floor((masks.top(index) - 0.5f) / scaleY - 0.5f).toInt().coerceAtLeast(0)
+        val bottom = ceil((masks.bottom(index) + 1.5f) / scaleY - 0.5f).toInt().coerceAtMost(height - 1)
+
+        if (columnCells.size < width) {
+            columnCells = IntArray(width)
+            columnWeights = FloatArray(width)
+        }
+        for (x in left..right) {
+            val sourceX = ((x + 0.5f) * scaleX - 0.5f).coerceAtLeast(0f)
+            val cell = minOf(sourceX.toInt(), size - 1)
+            columnCells[x] = cell
+            columnWeights[x] = sourceX - cell
+        }
+
+        inBands(top, bottom + 1) { firstRow, endRow ->
+            addLowResMaskRows(masks, index, firstRow, endRow, left, right, scaleY, instanceId.toShort(), color, alpha)
+        }
+    }
+
+    // Split rows [firstRow, endRow) into bands composited in parallel
+    private fun inBands(
+        firstRow: Int,
+        endRow: Int,
+        rows: (Int, Int) -> Unit,
+    ) {
+        val rowCount = endRow - firstRow
+        if (rowCount <= 0) {
+            return
+        }
+        val bands = bandCount.coerceIn(1, rowCount)
+        val rowsPerBand = (rowCount + bands - 1) / bands
+        IntStream.range(0, bands).parallel().forEach { band ->
+            val bandStart = firstRow + band * rowsPerBand
+            val bandEnd = minOf(bandStart + rowsPerBand, endRow)
+            if (bandStart < bandEnd) {
+                rows(bandStart, bandEnd)
+            }
+        }
+    }
+
+    // Composite pixels [start, end) of one mask
+    private fun addMaskRows(
+        mask: FloatBuffer,
+        maskStartIndex: Int,
+        start: Int,
+        end: Int,
+        instanceId: Short,
+        color: Int,
+        alpha: Int,
+    ) {
+        val inverseAlpha = 255 - alpha
+        val red = ((color shr 16) and 0xFF) * alpha + 127
+        val green = ((color shr 8) and 0xFF) * alpha + 127
+        val blue = (color and 0xFF) * alpha + 127
+        for (i in start until end) {
+            if (mask.get(maskStartIndex + i) > 0f) {
+                blend(i, inverseAlpha, red, green, blue, instanceId)
+            }
+        }
+    }
+
+    // Composite output rows [firstRow, endRow), columns [left, right] of one low-resolution mask
+    private fun addLowResMaskRows(
+        masks: LowResMasks,
+        index: Int,
+        firstRow: Int,
+        endRow: Int,
+        left: Int,
+        right: Int,
+        scaleY: Float,
+        instanceId: Short,
+        color: Int,
+        alpha: Int,
+    ) {
+        val inverseAlpha = 255 - alpha
+        val red = ((color shr 16) and 0xFF) * alpha + 127
+        val green = ((color shr 8) and 0xFF) * alpha + 127
+        val blue = (color and 0xFF) * alpha + 127
+        val size = masks.size
+        val logits = masks.logits
+        val plane = index * size * size
+        for (y in firstRow until endRow) {
+            val sourceY = ((y + 0.5f) * scaleY - 0.5f).coerceAtLeast(0f)
+            val cellY = minOf(sourceY.toInt(), size - 1)
+            val weightY = sourceY - cellY
+            val upperRow = plane + cellY * size
+            val lowerRow = plane + minOf(cellY + 1, size - 1) * size
+            for (x in left..right) {
+                val cellX = columnCells[x]
+                val nextX = minOf(cellX + 1, size - 1)
+                val weightX = columnWeights[x]
+                val upper = logits[upperRow + cellX] + (logits[upperRow + nextX] - logits[upperRow + cellX]) * weightX
+                val lower = logits[lowerRow + cellX] + (logits[lowerRow + nextX] - logits[lowerRow + cellX]) * weightX
+                if (upper + (lower - upper) * weightY > 0f) {
+                    blend(y * width + x, inverseAlpha, red, green, blue, instanceId)
+                }
+            }
+        }
+    }
+
+    // dst * (255 - alpha) / 255 + color * alpha / 255, rounded; red, green and blue are the
+    // label color channels premultiplied by alpha, plus 127
+    private fun blend(
+        i: Int,
+        inverseAlpha: Int,
+        red: Int,
+        green: Int,
+        blue: Int,
+        instanceId: Short,
+    ) {
+        val pixel = overlayPixels[i]
+        val r = (((pixel shr 16) and 0xFF) * inverseAlpha + red) / 255
+        val g = (((pixel shr 8) and 0xFF) * inverseAlpha + green) / 255
+        val b = ((pixel and 0xFF) * inverseAlpha + blue) / 255
+        overlayPixels[i] = (pixel and ALPHA_MASK) or (r shl 16) or (g shl 8) or b
+        maskPixels[i] = WHITE
+        labelMap[i] = instanceId
+    }
+
+    companion object {
+        const val DEFAULT_ALPHA = 128
+        private const val WHITE = -0x1 // Color.WHITE
+        private const val BLACK = -0x1000000 // Color.BLACK
+        private const val ALPHA_MASK = -0x1000000
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.esw.sam
+
+import ai.onnxruntime.OrtSession
+import ai.onnxruntime.providers.NNAPIFlags
+import android.content.res.AssetManager
+import android.util.Log
+import java.io.FileInputStream
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.EnumSet
+
+/**
+ * Helpers shared by [SAMEncoder] and [SAMDecoder] to create ONNX Runtime sessions.
+ */
+internal object OrtModels {
+    /**
+     * Options for a new session. They are only read while the session is created, so close them
+     * right after, e.g. with `use`.
+     */
+    fun sessionOptions(
+        useFP16: Boolean,
+        useXNNPack: Boolean,
+    ): OrtSession.SessionOptions =
+        OrtSession.SessionOptions().apply {
+            if (useFP16) {
+                addNnapi(EnumSet.of(NNAPIFlags.USE_FP16))
+            }
+            if (useXNNPack) {
+                addXnnpack(
+                    mapOf(
+                        "intra_op_num_threads" to "2",
+                    ),
+                )
+            }
+        }
+
+    /**
+     * Memory-map a model stored in the APK, like TFLiteHelpers.loadModelFile does for TFLite.
+     * The asset must be stored uncompressed (see `noCompress` in build.gradle.kts), otherwise
+     * it has no file descriptor and this throws.
+     *
+     * @return a read-only direct buffer over the model bytes inside the APK.
+     */
+    fun mapAsset(
+        assets: AssetManager,
+        modelFileName: String,
+    ): MappedByteBuffer {
+        val startTime = System.nanoTime()
+        val buffer =
+            assets.openFd(modelFileName).use { fileDescriptor ->
+                FileInputStream(fileDescriptor.fileDescriptor).use { inputStream ->
+                    inputStream.channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        fileDescriptor.startOffset,
+                        fileDescriptor.declaredLength,
+                    )
+                }
+            }
+        Log.i(
+            OrtModels::class.simpleName,
+            "Mapped $modelFileName (${buffer.capacity()} bytes) in ${(System.nanoTime() - startTime) / 1_000_000} ms",
+        )
+        return buffer
+    }
+}
@@ -19,22 +19,48 @@ package com.esw.sam
 import ai.onnxruntime.OnnxTensor
 import ai.onnxruntime.OrtEnvironment
 import ai.onnxruntime.OrtSession
-import ai.onnxruntime.providers.NNAPIFlags
 import android.content.Context
+import android.content.res.AssetManager
 import android.graphics.Bitmap
-import android.graphics.Canvas
 import android.graphics.Color
-import android.graphics.Paint
 import android.util.Log
+import com.esw.metrics.MetricsRegistry
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import java.io.File
 import java.io.FileOutputStream
 import java.nio.FloatBuffer
 import java.nio.IntBuffer
-import java.util.EnumSet
 
 class SAMDecoder {
+    /**
+     * Rendered masks of one [execute] call.
+     *
+     * @param overlay The image the masks were drawn on, with each label's mask blended in its
+     * color.
+     * @param mask White where any mask covers the image, black elsewhere.
+     * @param labelMap Instance ID of each pixel, row-major with a stride of overlay.width: 0
+     * for the background, label index + 1 otherwise. This is the decoder's shared render
+     * buffer, not a copy: it is only ever grown, so it can be longer than width * height, and
+     * it is overwritten by the next call to execute or render. Copy the first width * height
+     * entries if they must outlive that.
+     * @param lowResMasks Best mask of each label, if the model returns low-resolution masks.
+     * Pass it to [render] to draw the masks at another resolution, e.g. the full photo for
+     * export, without running the decoder again.
+     */
+    class DecodedMasks(
+        val overlay: Bitmap,
+        val mask: Bitmap,
+        val labelMap: ShortArray,
+        val lowResMasks: LowResMasks? = null,
+    ) {
+        operator fun component1() = overlay
+
+        operator fun component2() = mask
+    }
+
     private lateinit var ortEnvironment: OrtEnvironment
     private lateinit var ortSession: OrtSession
 
@@ -51,26 +77,58 @@ class SAMDecoder {
     private lateinit var maskInputName: String
     private lateinit var hasMaskInputName: String
 
+    /**
+     * True if the model returns the decoder's low-resolution mask logits instead of taking
+     * orig_im_size and upsampling the masks to the image. [execute] then only draws them on its
+     * preview image.
+     */
+    var lowResOutput = false
+        private set
+
+    private val tensorsHistogram = MetricsRegistry.getDefault().histogram(MetricsRegistry.SAM_DECODER_TENSORS)
+    private val runHistogram = MetricsRegistry.getDefault().histogram(MetricsRegistry.SAM_DECODER_RUN)
+    private val renderHistogram = MetricsRegistry.getDefault().histogram(MetricsRegistry.SAM_DECODER_RENDER)
+
+    // Re-usable render buffers, used by one execute call at a time
+    private val compositor = MaskCompositor()
+    private val compositorLock = Mutex()
+
+    /**
+     * Create the mask decoder session from a model stored uncompressed in the APK. The model is
+     * memory-mapped in place, so it is neither copied to app storage nor read into the heap.
+     */
+    suspend fun init(
+        assets: AssetManager,
+        modelAssetName: String,
+        useFP16: Boolean = false,
+        useXNNPack: Boolean = false,
+    ) = withContext(Dispatchers.IO) {
+        ortEnvironment = OrtEnvironment.getEnvironment()
+        val model = OrtModels.mapAsset(assets, modelAssetName)
+        ortSession =
+            OrtModels.sessionOptions(useFP16, useXNNPack).use { options ->
+                ortEnvironment.createSession(model, options)
+            }
+        readNodeNames()
+    }
+
+    /**
+     * Create the mask decoder session from a model file, e.g. one pushed to the device with adb.
+     */
     suspend fun init(
         modelPath: String,
         useFP16: Boolean = false,
         useXNNPack: Boolean = false,
     ) = withContext(Dispatchers.IO) {
         ortEnvironment = OrtEnvironment.getEnvironment()
-        val options =
-            OrtSession.SessionOptions().apply {
-                if (useFP16) {
-                    addNnapi(EnumSet.of(NNAPIFlags.USE_FP16))
-                }
-                if (useXNNPack) {
-                    addXnnpack(
-                        mapOf(
-                            "intra_op_num_threads" to "2",
-                        ),
-                    )
-                }
+        ortSession =
+            OrtModels.sessionOptions(useFP16, useXNNPack).use { options ->
+                ortEnvironment.createSession(modelPath, options)
             }
-        ortSession = ortEnvironment.createSession(modelPath, options)
+        readNodeNames()
+    }
+
+    private fun readNodeNames() {
         val decoderInputNames = ortSession.inputNames.toList()
         val decoderOutputNames = ortSession.outputNames.toList()
         Log.i(SAMDecoder::class.simpleName, "Decoder input names: $decoderInputNames")
@@ -85,8 +143,47 @@ class SAMDecoder {
 
         maskOutputName = decoderOutputNames[0]
         scoresOutputName = decoderOutputNames[1]
+        lowResOutput = ORIG_IMAGE_SIZE_INPUT_NAME !in decoderInputNames
+        Log.i(SAMDecoder::class.simpleName, "Decoder returns low-resolution masks: $lowResOutput")
     }
 
+    /**
+     * Decode a single point on zero embeddings once, so that session initialization and
+     * first-run allocations are not paid by the first real segmentation.
+     */
+    suspend fun warmUp() {
+        SAMEncoder.SAMEncoderResults(
+            OnnxTensor.createTensor(ortEnvironment, FloatBuffer.allocate(1 * 256 * 64 * 64), longArrayOf(1, 256, 64, 64)),
+            OnnxTensor.createTensor(ortEnvironment, FloatBuffer.allocate(1 * 32 * 256 * 256), longArrayOf(1, 32, 256, 256)),
+            OnnxTensor.createTensor(ortEnvironment, FloatBuffer.allocate(1 * 64 * 128 * 128), longArrayOf(1, 64, 128, 128)),
+        ).use { encoderResults ->
+            execute(
+                encoderResults,
+                FloatBuffer.wrap(floatArrayOf(512f, 512f)),
+                FloatBuffer.wrap(floatArrayOf(1f)),
+                1,
+                1,
+                Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888),
+            )
+        }
+    }
+
+    /**
+     * Decode masks for the given prompts.
+     *
+     * The encoder tensors are fed to the session as they are and are not closed, so the same
+     * [encoderResults] can be decoded any number of times; the caller keeps ownership.
+     *
+     * With a model returning low-resolution masks, the best scoring mask of each label is
+     * returned as [DecodedMasks.lowResMasks] and only drawn on [previewImage], e.g. the image
+     * scaled to the view, upsampled inside its bounding box only. Pass the masks to [render]
+     * with [inputImage] when they are needed at full resolution, e.g. to save them. Otherwise
+     * the model upsamples every mask to [inputImage], the first mask of each label is drawn on
+     * it and [previewImage] is not used.
+     *
+     * @param inputImage The image the encoder ran on.
+     * @param previewImage The same image at any size, to draw low-resolution masks on.
+     */
     suspend fun execute(
         encoderResults: SAMEncoder.SAMEncoderResults,
         pointCoordinates: FloatBuffer,
@@ -94,149 +191,208 @@ class SAMDecoder {
         numLabels: Long,
         numPoints: Long,
         inputImage: Bitmap,
-    ): Pair<Bitmap, Bitmap> =
+        previewImage: Bitmap = inputImage,
+    ): DecodedMasks =
         withContext(Dispatchers.Default) {
-            val imgHeight = inputImage.height
-            val imgWidth = inputImage.width
-
-            val imageEmbeddingTensor =
-                OnnxTensor.createTensor(
-                    ortEnvironment,
-                    encoderResults.imageEmbedding,
-                    longArrayOf(1, 256, 64, 64),
-                )
-            val highResFeature0Tensor =
-                OnnxTensor.createTensor(
-                    ortEnvironment,
-                    encoderResults.highResFeature0,
-                    longArrayOf(1, 32, 256, 256),
-                )
-            val highResFeature1Tensor =
-                OnnxTensor.createTensor(
-                    ortEnvironment,
-                    encoderResults.highResFeature1,
-                    longArrayOf(1, 64, 128, 128),
-                )
-            val hasMaskTensor =
-                OnnxTensor.createTensor(
-                    ortEnvironment,
-                    FloatBuffer.wrap(floatArrayOf(0.0f)),
-                    longArrayOf(1),
-                )
-            val origImageSizeTensor =
-                OnnxTensor.createTensor(
-                    ortEnvironment,
-                    IntBuffer.wrap(intArrayOf(imgHeight, imgWidth)),
-                    longArrayOf(2),
-                )
+            compositorLock.withLock {
+                decode(encoderResults, pointCoordinates, pointLabels, numLabels, numPoints, inputImage, previewImage)
+            }
+        }
 
-            // Create a single mutable bitmap from the input image. This will be our canvas.
-            val viewBitmap = inputImage.copy(Bitmap.Config.ARGB_8888, true)
-            val canvas = Canvas(viewBitmap)
-            val paint = Paint()
+    /**
+     * Draw low-resolution masks from an earlier [execute] on an image of any size, e.g. a
+     * display-sized preview or the full-resolution photo for export.
+     */
+    suspend fun render(
+        lowResMasks: LowResMasks,
+        image: Bitmap,
+    ): DecodedMasks =
+        withContext(Dispatchers.Default) {
+            compositorLock.withLock {
+                beginCompositing(image)
+                addLowResMasks(lowResMasks)
+                toDecodedMasks(lowResMasks)
+            }
+        }
+
+    private fun decode(
+        encoderResults: SAMEncoder.SAMEncoderResults,
+        pointCoordinates: FloatBuffer,
+        pointLabels: FloatBuffer,
+        numLabels: Long,
+        numPoints: Long,
+        inputImage: Bitmap,
+        previewImage: Bitmap,
+    ): DecodedMasks {
+        check(!encoderResults.isClosed) { "Encoder results are already closed" }
+        val startTime = System.nanoTime()
+        val imgHeight = inputImage.height
+        val imgWidth = inputImage.width
 
-            // this will be the bitmap to export as a file
-            val maskBitmap = Bitmap.createBitmap(imgWidth, imgHeight, Bitmap.Config.ARGB_8888)
-            val maskBitmapPixels = IntArray(imgWidth * imgHeight, { _ -> Color.BLACK })
+        // Closed whichever way decoding ends
+        return OnnxTensor.createTensor(
+            ortEnvironment,
+            FloatBuffer.wrap(floatArrayOf(0.0f)),
+            longArrayOf(1),
+        ).use { hasMaskTensor ->
+            val origImageSizeTensor =
+                if (lowResOutput) {
+                    null
+                } else {
+                    OnnxTensor.createTensor(
+                        ortEnvironment,
+                        IntBuffer.wrap(intArrayOf(imgHeight, imgWidth)),
+                        longArrayOf(2),
+                    )
+                }
+            origImageSizeTensor.use {
+                var lowResMasks: LowResMasks? = null
 
+                // Stage times; rendering the masks is whatever is left of the total
+                var tensorsTime = System.nanoTime() - startTime
+                var runTime = 0L
 
-            // 1. Define a list of colors for the masks. You can add more colors here.
-            val colors = listOf(
-                Color.YELLOW, Color.CYAN, Color.GREEN, Color.MAGENTA, Color.RED,
-                Color.WHITE, Color.BLUE, Color.BLACK
-            )
+                // Full-resolution masks are blended straight into the image pixels as they come,
+                // then copied to the bitmaps once
+                if (!lowResOutput) {
+                    beginCompositing(inputImage)
+                }
 
-            val batchSize = 10
-            for (labelIndex in 0 until numLabels.toInt() step batchSize) {
-                val batchEndIndex = (labelIndex + batchSize).coerceAtMost(numLabels.toInt())
-                val currentBatchSize = batchEndIndex - labelIndex
+                val batchSize = 10
+                for (labelIndex in 0 until numLabels.toInt() step batchSize) {
+                    val batchEndIndex = (labelIndex + batchSize).coerceAtMost(numLabels.toInt())
+                    val currentBatchSize = batchEndIndex - labelIndex
 
-                val pointCoordinatesSlice = pointCoordinates.slice()
-                pointCoordinatesSlice.position(labelIndex * numPoints.toInt() * 2)
-                pointCoordinatesSlice.limit((labelIndex + currentBatchSize) * numPoints.toInt() * 2)
+                    val batchTensorsStartTime = System.nanoTime()
+                    val pointCoordinatesSlice = pointCoordinates.slice()
+                    pointCoordinatesSlice.position(labelIndex * numPoints.toInt() * 2)
+                    pointCoordinatesSlice.limit((labelIndex + currentBatchSize) * numPoints.toInt() * 2)
 
-                val pointLabelsSlice = pointLabels.slice()
-                pointLabelsSlice.position(labelIndex * numPoints.toInt())
-                pointLabelsSlice.limit((labelIndex + currentBatchSize) * numPoints.toInt())
+                    val pointLabelsSlice = pointLabels.slice()
+                    pointLabelsSlice.position(labelIndex * numPoints.toInt())
+                    pointLabelsSlice.limit((labelIndex + currentBatchSize) * numPoints.toInt())
 
-                OnnxTensor.createTensor(
-                    ortEnvironment,
-                    pointCoordinatesSlice,
-                    longArrayOf(currentBatchSize.toLong(), numPoints, 2),
-                ).use { pointCoordinatesTensor ->
                     OnnxTensor.createTensor(
                         ortEnvironment,
-                        pointLabelsSlice,
-                        longArrayOf(currentBatchSize.toLong(), numPoints),
-                    ).use { pointLabelsTensor ->
+                        pointCoordinatesSlice,
+                        longArrayOf(currentBatchSize.toLong(), numPoints, 2),
+                    ).use { pointCoordinatesTensor ->
                         OnnxTensor.createTensor(
                             ortEnvironment,
-                            FloatBuffer.wrap(FloatArray(currentBatchSize * 1 * 256 * 256) { 0f }),
-                            longArrayOf(currentBatchSize.toLong(), 1, 256, 256),
-                        ).use { maskTensor ->
-
-                            val outputs =
-                                ortSession.run(
-                                    mapOf(
-                                        imageEmbeddingInputName to imageEmbeddingTensor,
-                                        highResFeature0InputName to highResFeature0Tensor,
-                                        highResFeature1InputName to highResFeature1Tensor,
+                            pointLabelsSlice,
+                            longArrayOf(currentBatchSize.toLong(), numPoints),
+                        ).use { pointLabelsTensor ->
+                            OnnxTensor.createTensor(
+                                ortEnvironment,
+                                FloatBuffer.wrap(FloatArray(currentBatchSize * 1 * 256 * 256) { 0f }),
+                                longArrayOf(currentBatchSize.toLong(), 1, 256, 256),
+                            ).use { maskTensor ->
+                                val runStartTime = System.nanoTime()
+                                tensorsTime += runStartTime - batchTensorsStartTime
+
+                                val inputs =
+                                    mutableMapOf(
+                                        imageEmbeddingInputName to encoderResults.imageEmbedding,
+                                        highResFeature0InputName to encoderResults.highResFeature0,
+                                        highResFeature1InputName to encoderResults.highResFeature1,
                                         pointCoordinatesInputName to pointCoordinatesTensor,
                                         pointLabelsInputName to pointLabelsTensor,
                                         maskInputName to maskTensor,
                                         hasMaskInputName to hasMaskTensor,
-                                        "orig_im_size" to origImageSizeTensor,
-                                    ),
-                                )
-                            outputs.use {
-                                val mask = (outputs[maskOutputName].get() as OnnxTensor).floatBuffer
-                                val scores =
-                                    (outputs[scoresOutputName].get() as OnnxTensor).floatBuffer
-                                val numPredictedMasks = scores.capacity() / currentBatchSize
-
-                                for (batchItemIndex in 0 until currentBatchSize) {
-                                    val currentLabel = labelIndex + batchItemIndex
-                                    val colorForLabel = colors[currentLabel % colors.size]
-
-                                    val semiTransparentColor = Color.argb(
-                                        128,
-                                        Color.red(colorForLabel),
-                                        Color.green(colorForLabel),
-                                        Color.blue(colorForLabel)
                                     )
-                                    paint.color = semiTransparentColor
-
-                                    val maskStartIndex =
-                                        batchItemIndex * numPredictedMasks * imgHeight * imgWidth
-
-                                    // Instead of slow setPixel, collect all mask points and draw them at once.
-                                    val pointCloud = mutableListOf<Float>()
-                                    for (i in 0..<imgHeight) {
-                                        for (j in 0..<imgWidth) {
-                                            // If the mask value for this pixel is > 0, it's part of an object.
-                                            if (mask[maskStartIndex + j + i * imgWidth] > 0) {
-                                                pointCloud.add(j.toFloat())
-                                                pointCloud.add(i.toFloat())
-                                                maskBitmapPixels[j + i * imgWidth] = Color.WHITE
+                                if (origImageSizeTensor != null) {
+                                    inputs[ORIG_IMAGE_SIZE_INPUT_NAME] = origImageSizeTensor
+                                }
+                                val outputs = ortSession.run(inputs)
+                                val batchRunTime = System.nanoTime() - runStartTime
+                                runHistogram.record(batchRunTime)
+                                runTime += batchRunTime
+                                outputs.use {
+                                    val maskOutput = outputs[maskOutputName].get() as OnnxTensor
+                                    val mask = maskOutput.floatBuffer
+                                    val scores =
+                                        (outputs[scoresOutputName].get() as OnnxTensor).floatBuffer
+                                    val numPredictedMasks = scores.capacity() / currentBatchSize
+
+                                    if (lowResOutput) {
+                                        // [batch, numPredictedMasks, size, size] logits
+                                        val size = maskOutput.info.shape[3].toInt()
+                                        val masks = lowResMasks ?: LowResMasks(size, numLabels.toInt()).also { lowResMasks = it }
+                                        for (batchItemIndex in 0 until currentBatchSize) {
+                                            val currentLabel = labelIndex + batchItemIndex
+                                            val firstMask = batchItemIndex * numPredictedMasks
+                                            var best = firstMask
+                                            for (maskIndex in firstMask + 1 until firstMask + numPredictedMasks) {
+                                                if (scores[maskIndex] > scores[best]) {
+                                                    best = maskIndex
+                                                }
                                             }
+                                            masks.set(currentLabel, mask, best * size * size, scores[best])
+                                        }
+                                    } else {
+                                        for (batchItemIndex in 0 until currentBatchSize) {
+                                            val currentLabel = labelIndex + batchItemIndex
+                                            val colorForLabel = colors[currentLabel % colors.size]
+
+                                            val maskStartIndex =
+                                                batchItemIndex * numPredictedMasks * imgHeight * imgWidth
+
+                                            // Semi-transparent label color, label index + 1 in the label map
+                                            compositor.addMask(mask, maskStartIndex, currentLabel + 1, colorForLabel)
                                         }
                                     }
-                                    canvas.drawPoints(pointCloud.toFloatArray(), paint)
                                 }
                             }
                         }
                     }
                 }
+                if (lowResOutput) {
+                    beginCompositing(previewImage)
+                    lowResMasks?.let { addLowResMasks(it) }
+                }
+                val decodedMasks = toDecodedMasks(lowResMasks)
+                tensorsHistogram.record(tensorsTime)
+                renderHistogram.record(System.nanoTime() - startTime - tensorsTime - runTime)
+                decodedMasks
             }
-            maskBitmap.setPixels(maskBitmapPixels, 0, imgWidth, 0, 0, imgWidth, imgHeight)
-
-            imageEmbeddingTensor.close()
-            highResFeature0Tensor.close()
-            highResFeature1Tensor.close()
-            hasMaskTensor.close()
-            origImageSizeTensor.close()
-            return@withContext Pair(viewBitmap, maskBitmap)
         }
+    }
+
+    /**
+     * Free the session. Waits for a running [execute] or [render] to finish first; the decoder
+     * cannot be used afterwards.
+     */
+    suspend fun close() {
+        compositorLock.withLock {
+            if (::ortSession.isInitialized) {
+                ortSession.close()
+            }
+        }
+    }
+
+    // Start a render on a copy of the image's pixels
+    private fun beginCompositing(image: Bitmap) {
+        compositor.begin(image.width, image.height)
+        image.getPixels(compositor.overlayPixels, 0, image.width, 0, 0, image.width, image.height)
+    }
+
+    private fun addLowResMasks(lowResMasks: LowResMasks) {
+        for (index in 0 until lowResMasks.count) {
+            compositor.addLowResMask(lowResMasks, index, index + 1, colors[index % colors.size])
+        }
+    }
+
+    // Copy the composited overlay and mask to bitmaps
+    private fun toDecodedMasks(lowResMasks: LowResMasks?): DecodedMasks {
+        val width = compositor.width
+        val height = compositor.height
+        val viewBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        viewBitmap.setPixels(compositor.overlayPixels, 0, width, 0, 0, width, height)
+        // this will be the bitmap to export as a file
+        val maskBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        maskBitmap.setPixels(compositor.maskPixels, 0, width, 0, 0, width, height)
+        return DecodedMasks(viewBitmap, maskBitmap, compositor.labelMap, lowResMasks)
+    }
 
     private fun saveBitmap(
         context: Context,
@@ -246,4 +402,15 @@ class SAMDecoder {
         val fileOutputStream = FileOutputStream(File(context.filesDir.absolutePath + "/$name.png"))
         image.compress(Bitmap.CompressFormat.PNG, 100, fileOutputStream)
     }
+
+    companion object {
+        private const val ORIG_IMAGE_SIZE_INPUT_NAME = "orig_im_size"
+
+        // Colors of the masks, one per label in turn. You can add more colors here.
+        private val colors =
+            listOf(
+                Color.YELLOW, Color.CYAN, Color.GREEN, Color.MAGENTA, Color.RED,
+                Color.WHITE, Color.BLUE, Color.BLACK,
+            )
+    }
 }
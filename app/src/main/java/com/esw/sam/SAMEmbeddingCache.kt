@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.esw.sam
+
+import android.graphics.Bitmap
+import android.util.Log
+import com.esw.yolo.XxHash64
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.Locale
+
+/**
+ * LRU cache of [SAMEncoder] outputs, so prompting the same image again only runs the decoder.
+ *
+ * Entries are keyed by a hash of the image pixels and the encoder model identity, so an
+ * equal image decoded again (or picked again from the gallery) hits the cache, while a
+ * different encoder model does not reuse stale embeddings. The cache holds at most [maxBytes]
+ * of embeddings; the least recently used entries are evicted first.
+ *
+ * With a [store], entries also persist on disk: a memory miss is looked up there before
+ * running the encoder, and new embeddings are written to it in the background on [writeScope],
+ * so the caller does not wait for the disk.
+ *
+ * ```
+ * val embeddings = embeddingCache.getOrEncode(bitmap, encoder)
+ * decoder.execute(embeddings, ...)
+ * ```
+ */
+class SAMEmbeddingCache(
+    private val maxBytes: Long,
+    private val store: SAMEmbeddingStore? = null,
+    private val writeScope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.IO),
+) {
+    /**
+     * Cache counters at one point in time.
+     */
+    data class Stats(
+        val hits: Long,
+        val diskHits: Long,
+        val misses: Long,
+        val evictions: Long,
+        val entries: Int,
+        val bytes: Long,
+    ) {
+        override fun toString(): String =
+            String.format(
+                Locale.US,
+                "embedding cache: %d hits, %d disk hits, %d misses, %d evictions, %d entries, %.1f MB",
+                hits,
+                diskHits,
+                misses,
+                evictions,
+                entries,
+                bytes / (1024.0 * 1024.0),
+            )
+    }
+
+    private class Entry(
+        val results: SAMEncoder.SAMEncoderResults,
+        val bytes: Long,
+    )
+
+    // Access ordered, so iteration starts at the least recently used entry
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+    private var bytes = 0L
+    private var hits = 0L
+    private var diskHits = 0L
+    private var misses = 0L
+    private var evictions = 0L
+
+    // Re-usable copy of one band of rows to hash, as ints and as their bytes. Guarded by
+    // hashLock, so hashing an image does not block the cache itself.
+    private val hashLock = Any()
+    private var bandPixels = IntArray(BAND_PIXELS)
+    private var bandBytes: ByteBuffer = ByteBuffer.allocateDirect(BAND_PIXELS * 4).order(ByteOrder.LITTLE_ENDIAN)
+
+    /**
+     * @return the encoder outputs for [image], from memory, from the store or by running [encoder].
+     * The caller owns one reference to the results and must close it; the cache keeps its own.
+     */
+    suspend fun getOrEncode(
+        image: Bitmap,
+        encoder: SAMEncoder,
+    ): SAMEncoder.SAMEncoderResults {
+        val key = key(image, encoder.modelIdentity)
+        synchronized(this) {
+            val entry = entries[key]
+            if (entry != null) {
+                hits++
+                return entry.results.retain()
+            }
+        }
+        if (store != null) {
+            val stored = withContext(Dispatchers.IO) { store.read(key) }
+            if (stored != null) {
+                synchronized(this) { diskHits++ }
+                put(key, stored)
+                return stored
+            }
+        }
+        synchronized(this) { misses++ }
+        val results = encoder.execute(image)
+        put(key, results)
+        if (store != null) {
+            // The write holds its own reference, so the tensors outlive the caller's reference
+            // and an eviction. ATOMIC runs the block even if the scope is already cancelled, so
+            // the reference is always released.
+            val written = results.retain()
+            writeScope.launch(start = CoroutineStart.ATOMIC) {
+                try {
+                    store.write(key, written)
+                } catch (e: Exception) {
+                    // Nobody waits for the write, so a failure only costs the disk entry
+                    Log.w(SAMEmbeddingCache::class.simpleName, "Failed to store embeddings: ${e.message}")
+                } finally {
+                    written.close()
+                }
+            }
+        }
+        Log.i(SAMEmbeddingCache::class.simpleName, stats().toString())
+        return results
+    }
+
+    /**
+     * @return current hit / miss counters and memory use.
+     */
+    @Synchronized
+    fun stats(): Stats = Stats(hits, diskHits, misses, evictions, entries.size, bytes)
+
+    /**
+     * Drop every entry, e.g. when memory runs low. Counters are kept.
+     */
+    @Synchronized
+    fun clear() {
+        entries.values.forEach { it.results.close() }
+        entries.clear()
+        bytes = 0
+    }
+
+    // Keep a reference to the results, unless they do not fit the budget
+    @Synchronized
+    private fun put(
+        key: String,
+        results: SAMEncoder.SAMEncoderResults,
+    ) {
+        val size = results.byteSize
+        if (size > maxBytes) {
+            Log.w(
+                SAMEmbeddingCache::class.simpleName,
+                "Embeddings of $size bytes exceed the cache budget of $maxBytes bytes, not cached",
+            )
+            return
+        }
+        entries.put(key, Entry(results.retain(), size))?.let {
+            bytes -= it.bytes
+            it.results.close()
+        }
+        bytes += size
+        // Evicted results stay valid for callers still holding a reference
+        val iterator = entries.values.iterator()
+        while (bytes > maxBytes && iterator.hasNext()) {
+            val evicted = iterator.next()
+            bytes -= evicted.bytes
+            evicted.results.close()
+            iterator.remove()
+            evictions++
+        }
+    }
+
+    // Content hash of the pixels, with the size and format so equal pixels of different images
+    // differ. The image is hashed in bands of rows, each band seeded with the hash of the ones
+    // before it, so only one band is copied at a time.
+    private fun key(
+        image: Bitmap,
+        modelIdentity: String,
+    ): String {
+        val width = image.width
+        val height = image.height
+        var hash = 0L
+        synchronized(hashLock) {
+            if (bandPixels.size < width) {
+                // A row longer than a band is hashed one row at a time
+                bandPixels = IntArray(width)
+                bandBytes = ByteBuffer.allocateDirect(width * 4).order(ByteOrder.LITTLE_ENDIAN)
+            }
+            val bandRows = bandPixels.size / width
+            bandBytes.clear()
+            val bandInts = bandBytes.asIntBuffer()
+            for (y in 0 until height step bandRows) {
+                val rows = minOf(bandRows, height - y)
+                image.getPixels(bandPixels, 0, width, 0, y, width, rows)
+                bandInts.clear()
+                bandInts.put(bandPixels, 0, rows * width)
+                bandBytes.limit(rows * width * 4)
+                hash = XxHash64.hash(bandBytes, hash)
+            }
+        }
+        return String.format(Locale.US, "%s/%dx%d/%s/%016x", modelIdentity, width, height, image.config, hash)
+    }
+
+    private companion object {
+        // Pixels hashed per band, 256 KB of ARGB
+        const val BAND_PIXELS = 64 * 1024
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.esw.sam
+
+import ai.onnxruntime.OnnxTensor
+import ai.onnxruntime.OrtEnvironment
+import ai.onnxruntime.OrtException
+import android.util.Half
+import android.util.Log
+import com.esw.yolo.XxHash64
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.FloatBuffer
+import java.nio.channels.FileChannel
+import java.util.Locale
+
+/**
+ * Disk store of [SAMEncoder] outputs in the app cache dir, so images reopened in a later
+ * session skip the encoder too. It backs [SAMEmbeddingCache].
+ *
+ * Each image is one file with a fixed layout, all values in native byte order:
+ * ```
+ * int magic, int version, int fp16 (0 or 1), int keyLength,
+ * for imageEmbedding, highResFeature0 and highResFeature1: int rank, int[4] dims,
+ * key (UTF-8), then the three arrays, each starting on a 64 byte boundary
+ * ```
+ * Files are memory-mapped on read. With float32 values the returned tensors wrap the mapping,
+ * so the decoder reads the file pages directly with no copy. With [fp16] the files are half
+ * the size, at the cost of converting them to float32 on every read.
+ *
+ * Files are written to a temporary file and renamed, so a crash never leaves a partial entry.
+ * The index of files is rebuilt from the directory at startup, ordered by last use (the file
+ * modification time), and the least recently used files are deleted once the store exceeds
+ * [maxBytes].
+ */
+class SAMEmbeddingStore(
+    private val directory: File,
+    private val maxBytes: Long,
+    private val fp16: Boolean = false,
+) {
+    // File name to size, least recently used first
+    private val index = LinkedHashMap<String, Long>(16, 0.75f, true)
+    private var bytes = 0L
+
+    init {
+        directory.mkdirs()
+        val files = directory.listFiles() ?: emptyArray()
+        // Left over by a write that did not complete
+        files.filter { it.name.endsWith(TEMP_SUFFIX) }.forEach { it.delete() }
+        files
+            .filter { it.name.endsWith(EXTENSION) }
+            .sortedBy { it.lastModified() }
+            .forEach {
+                index[it.name] = it.length()
+                bytes += it.length()
+            }
+        Log.i(SAMEmbeddingStore::class.simpleName, "${index.size} stored embeddings, $bytes bytes")
+    }
+
+    /**
+     * @return the stored outputs for [key], or null if there are none (or they are unreadable).
+     * The caller owns the returned results and must close them.
+     */
+    @Synchronized
+    fun read(key: String): SAMEncoder.SAMEncoderResults? {
+        val name = fileName(key)
+        if (index[name] == null) {
+            return null
+        }
+        val file = File(directory, name)
+        try {
+            val buffer =
+                RandomAccessFile(file, "r").use {
+                    it.channel.map(FileChannel.MapMode.READ_ONLY, 0, it.length())
+                }
+            val results = parse(buffer.order(ByteOrder.nativeOrder()), key)
+            if (results == null) {
+                Log.w(SAMEmbeddingStore::class.simpleName, "Discarding invalid $file")
+                remove(name)
+                return null
+            }
+            // The modification time orders the index in the next session
+            file.setLastModified(System.currentTimeMillis())
+            return results
+        } catch (e: IOException) {
+            Log.w(SAMEmbeddingStore::class.simpleName, "Discarding unreadable $file: ${e.message}")
+            remove(name)
+            return null
+        } catch (e: OrtException) {
+            Log.w(SAMEmbeddingStore::class.simpleName, "Could not load $file: ${e.message}")
+            return null
+        }
+    }
+
+    /**
+     * Store the outputs for [key], replacing any previous entry, and evict the least recently
+     * used entries beyond the size limit.
+     */
+    @Synchronized
+    fun write(
+        key: String,
+        results: SAMEncoder.SAMEncoderResults,
+    ) {
+        val keyBytes = key.toByteArray(Charsets.UTF_8)
+        val tensors = listOf(results.imageEmbedding, results.highResFeature0, results.highResFeature1)
+        val shapes = tensors.map { it.info.shape }
+        if (shapes.any { it.size > MAX_RANK }) {
+            return
+        }
+        val elementSize = if (fp16) 2 else 4
+        var size = align(HEADER_BYTES + keyBytes.size)
+        for (shape in shapes) {
+            size = align(size + elementCount(shape) * elementSize)
+        }
+        if (size > maxBytes) {
+            return
+        }
+
+        val name = fileName(key)
+        val tempFile = File(directory, name + TEMP_SUFFIX)
+        try {
+            RandomAccessFile(tempFile, "rw").use { file ->
+                file.setLength(size.toLong())
+                val out =
+                    file.channel
+                        .map(FileChannel.MapMode.READ_WRITE, 0, size.toLong())
+                        .order(ByteOrder.nativeOrder())
+                out.putInt(0, MAGIC)
+                out.putInt(4, VERSION)
+                out.putInt(8, if (fp16) 1 else 0)
+                out.putInt(12, keyBytes.size)
+                for ((i, shape) in shapes.withIndex()) {
+                    val shapeOffset = 16 + 4 * (1 + MAX_RANK) * i
+                    out.putInt(shapeOffset, shape.size)
+                    for ((d, dim) in shape.withIndex()) {
+                        out.putInt(shapeOffset + 4 * (1 + d), dim.toInt())
+                    }
+                }
+                out.position(HEADER_BYTES)
+                out.put(keyBytes)
+                var offset = align(HEADER_BYTES + keyBytes.size)
+                for ((i, tensor) in tensors.withIndex()) {
+                    // Session outputs live in native memory, so this is the one copy of a write
+                    writeArray(out, offset, tensor.floatBuffer)
+                    offset = align(offset + elementCount(shapes[i]) * elementSize)
+                }
+                out.force()
+            }
+            val target = File(directory, name)
+            if (!tempFile.renameTo(target)) {
+                throw IOException("Could not rename $tempFile")
+            }
+        } catch (e: IOException) {
+            tempFile.delete()
+            Log.w(SAMEmbeddingStore::class.simpleName, "Could not store embeddings: ${e.message}")
+            return
+        }
+
+        index.remove(name)?.let { bytes -= it }
+        index[name] = size.toLong()
+        bytes += size
+        val iterator = index.entries.iterator()
+        while (bytes > maxBytes && iterator.hasNext()) {
+            val (oldest, oldestSize) = iterator.next()
+            if (oldest == name) {
+                break
+            }
+            File(directory, oldest).delete()
+            bytes -= oldestSize
+            iterator.remove()
+        }
+    }
+
+    /**
+     * @return number of stored images and their total size in bytes.
+     */
+    @Synchronized
+    fun usage(): Pair<Int, Long> = Pair(index.size, bytes)
+
+    private fun writeArray(
+        out: ByteBuffer,
+        offset: Int,
+        array: FloatBuffer,
+    ) {
+        val view = out.duplicate().order(ByteOrder.nativeOrder())
+        view.position(offset)
+        if (fp16) {
+            val halves = view.asShortBuffer()
+            for (i in 0 until array.remaining()) {
+                halves.put(i, Half.toHalf(array.get(array.position() + i)))
+            }
+        } else {
+            view.asFloatBuffer().put(array.duplicate())
+        }
+    }
+
+    // Views of the arrays in a mapped file, or null if it is not a valid entry for the key
+    private fun parse(
+        buffer: ByteBuffer,
+        key: String,
+    ): SAMEncoder.SAMEncoderResults? {
+        if (buffer.capacity() < HEADER_BYTES ||
+            buffer.getInt(0) != MAGIC ||
+            buffer.getInt(4) != VERSION
+        ) {
+            return null
+        }
+        val half = buffer.getInt(8) == 1
+        val keyLength = buffer.getInt(12)
+        if (keyLength < 0 || HEADER_BYTES + keyLength > buffer.capacity()) {
+            return null
+        }
+        val storedKey = ByteArray(keyLength)
+        buffer.position(HEADER_BYTES)
+        buffer.get(storedKey)
+        if (String(storedKey, Charsets.UTF_8) != key) {
+            // Another key with the same file name hash
+            return null
+        }
+
+        val elementSize = if (half) 2 else 4
+        var offset = align(HEADER_BYTES + keyLength)
+        val environment = OrtEnvironment.getEnvironment()
+        val tensors = ArrayList<OnnxTensor>(3)
+        try {
+            for (i in 0 until 3) {
+                val shapeOffset = 16 + 4 * (1 + MAX_RANK) * i
+                val rank = buffer.getInt(shapeOffset)
+                if (rank < 0 || rank > MAX_RANK) {
+                    return null
+                }
+                val shape = LongArray(rank) { buffer.getInt(shapeOffset + 4 * (1 + it)).toLong() }
+                if (shape.any { it < 0 }) {
+                    return null
+                }
+                val count = elementCount(shape)
+                if (count < 0 || offset.toLong() + count.toLong() * elementSize > buffer.capacity()) {
+                    return null
+                }
+                val view = buffer.duplicate()
+                view.position(offset)
+                view.limit(offset + count * elementSize)
+                val section = view.slice().order(ByteOrder.nativeOrder())
+                val data = if (half) toFloats(section, count) else section.asFloatBuffer()
+                // Direct buffers are used by the tensor as they are, without a copy
+                tensors.add(OnnxTensor.createTensor(environment, data, shape))
+                offset = align(offset + count * elementSize)
+            }
+        } finally {
+            if (tensors.size < 3) {
+                tensors.forEach { it.close() }
+            }
+        }
+        return SAMEncoder.SAMEncoderResults(tensors[0], tensors[1], tensors[2])
+    }
+
+    private fun toFloats(
+        section: ByteBuffer,
+        count: Int,
+    ): FloatBuffer {
+        val halves = section.asShortBuffer()
+        val floats = ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer()
+        for (i in 0 until count) {
+            floats.put(i, Half.toFloat(halves.get(i)))
+        }
+        return floats
+    }
+
+    private fun remove(name: String) {
+        index.remove(name)?.let { bytes -= it }
+        File(directory, name).delete()
+    }
+
+    private fun fileName(key: String): String =
+        String.format(Locale.US, "%016x%s", XxHash64.hash(ByteBuffer.wrap(key.toByteArray(Charsets.UTF_8)), 0), EXTENSION)
+
+    private fun elementCount(shape: LongArray): Int = shape.fold(1L) { count, dim -> count * dim }.toInt()
+
+    private fun align(offset: Int): Int = (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT
+
+    private companion object {
+        const val MAGIC = 0x53414d45 // "SAME"
+        const val VERSION = 2
+        const val MAX_RANK = 4
+        const val HEADER_BYTES = 16 + 3 * 4 * (1 + MAX_RANK)
+        const val ALIGNMENT = 64
+        const val EXTENSION = ".emb"
+        const val TEMP_SUFFIX = ".tmp"
+    }
+}
@@ -19,22 +19,87 @@ package com.esw.sam
 import ai.onnxruntime.OnnxTensor
 import ai.onnxruntime.OrtEnvironment
 import ai.onnxruntime.OrtSession
-import ai.onnxruntime.providers.NNAPIFlags
+import android.content.res.AssetManager
 import android.graphics.Bitmap
-import android.graphics.Color
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.PorterDuff
+import android.graphics.PorterDuffXfermode
+import android.graphics.Rect
 import android.util.Log
-import androidx.core.graphics.get
+import com.esw.imageprocessing.ImageProcessing
+import com.esw.metrics.MetricsRegistry
+import com.esw.yolo.ModelIdentity
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
-import java.nio.FloatBuffer
-import java.util.EnumSet
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.atomic.AtomicInteger
 
 class SAMEncoder {
-    data class SAMEncoderResults(
-        val imageEmbedding: FloatBuffer,
-        val highResFeature0: FloatBuffer,
-        val highResFeature1: FloatBuffer,
-    )
+    /**
+     * Encoder outputs, kept as the native tensors so the decoder consumes them directly,
+     * without copying them to the JVM and back.
+     *
+     * Results are reference counted. Whoever receives them (from [execute] or
+     * [SAMEmbeddingCache.getOrEncode]) owns one reference and must [close] it once done
+     * decoding; [retain] takes another one, e.g. for a cache sharing them across decodes.
+     * The native memory is freed when the last reference is closed.
+     *
+     * @param owner Closed instead of the tensors when the last reference is released, e.g. the
+     * session result the tensors belong to.
+     */
+    class SAMEncoderResults(
+        val imageEmbedding: OnnxTensor,
+        val highResFeature0: OnnxTensor,
+        val highResFeature1: OnnxTensor,
+        private val owner: AutoCloseable? = null,
+    ) : AutoCloseable {
+        private val references = AtomicInteger(1)
+
+        /**
+         * Size of the three tensors in bytes.
+         */
+        val byteSize: Long
+            get() = 4L * (elementCount(imageEmbedding) + elementCount(highResFeature0) + elementCount(highResFeature1))
+
+        val isClosed: Boolean
+            get() = references.get() <= 0
+
+        /**
+         * Take another reference, to be released with its own [close].
+         */
+        fun retain(): SAMEncoderResults {
+            while (true) {
+                val count = references.get()
+                check(count > 0) { "Encoder results are already closed" }
+                if (references.compareAndSet(count, count + 1)) {
+                    return this
+                }
+            }
+        }
+
+        override fun close() {
+            val count = references.decrementAndGet()
+            check(count >= 0) { "Encoder results closed more often than retained" }
+            if (count == 0) {
+                if (owner != null) {
+                    owner.close()
+                } else {
+                    imageEmbedding.close()
+                    highResFeature0.close()
+                    highResFeature1.close()
+                }
+            }
+        }
+
+        private fun elementCount(tensor: OnnxTensor): Long = tensor.info.shape.fold(1L) { count, dim -> count * dim }
+    }
 
     private val inputDim = 1024
     private lateinit var ortEnvironment: OrtEnvironment
@@ -44,6 +109,38 @@ class SAMEncoder {
     private lateinit var highResFeature0OutputName: String
     private lateinit var highResFeature1OutputName: String
 
+    /**
+     * Identifies the loaded model and its options, so cached embeddings of another model
+     * are not reused (see [SAMEmbeddingCache]).
+     */
+    lateinit var modelIdentity: String
+        private set
+
+    private val preprocessHistogram = MetricsRegistry.getDefault().histogram(MetricsRegistry.SAM_ENCODER_PREPROCESS)
+    private val runHistogram = MetricsRegistry.getDefault().histogram(MetricsRegistry.SAM_ENCODER_RUN)
+
+    // Re-usable input memory. The tensor wraps the direct buffer, so ONNX Runtime reads the
+    // planes in place instead of copying them from the heap on every run.
+    private val planeSize = inputDim * inputDim
+    private val argbPixels = IntArray(planeSize)
+    private val inputBuffer: ByteBuffer =
+        ByteBuffer.allocateDirect(3 * planeSize * 4).order(ByteOrder.nativeOrder())
+    private var imageTensor: OnnxTensor? = null
+    private val inputLock = Mutex()
+
+    // Re-usable image scaled to the model input. The filtering paint scales bilinearly, like
+    // Bitmap.createScaledBitmap, and replaces the previous image instead of blending over it.
+    private var scaledImage: Bitmap? = null
+    private var scaledCanvas: Canvas? = null
+    private val scaledRect = Rect(0, 0, inputDim, inputDim)
+    private val scalePaint =
+        Paint(Paint.FILTER_BITMAP_FLAG).apply {
+            xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC)
+        }
+
+    // Preprocessing is split into row bands converted in parallel
+    private val bandCount = Runtime.getRuntime().availableProcessors().coerceIn(1, 8)
+
     private val mean =
         floatArrayOf(
             0.485f,
@@ -57,26 +154,51 @@ class SAMEncoder {
             0.225f,
         )
 
+    /**
+     * Create the image encoder session from a model stored uncompressed in the APK. The model is
+     * memory-mapped in place, so it is neither copied to app storage nor read into the heap.
+     *
+     * @param identity Computes the content identifier of the model that [modelIdentity] is built
+     * on. Use [ModelIdentity.defaultFor] to hash the model only once per installed APK.
+     */
+    suspend fun init(
+        assets: AssetManager,
+        modelAssetName: String,
+        useFP16: Boolean = false,
+        useXNNPack: Boolean = false,
+        identity: ModelIdentity = ModelIdentity.xxHash64(),
+    ) = withContext(Dispatchers.IO) {
+        ortEnvironment = OrtEnvironment.getEnvironment()
+        val model = OrtModels.mapAsset(assets, modelAssetName)
+        ortSession =
+            OrtModels.sessionOptions(useFP16, useXNNPack).use { options ->
+                ortEnvironment.createSession(model, options)
+            }
+        val startOffset = assets.openFd(modelAssetName).use { it.startOffset }
+        val contentIdentity = identity.identify(modelAssetName, startOffset, model.capacity().toLong(), model)
+        modelIdentity = "$modelAssetName:$contentIdentity:fp16=$useFP16"
+        readNodeNames()
+    }
+
+    /**
+     * Create the image encoder session from a model file, e.g. one pushed to the device with adb.
+     */
     suspend fun init(
         modelPath: String,
         useFP16: Boolean = false,
         useXNNPack: Boolean = false,
     ) = withContext(Dispatchers.IO) {
         ortEnvironment = OrtEnvironment.getEnvironment()
-        val options =
-            OrtSession.SessionOptions().apply {
-                if (useFP16) {
-                    addNnapi(EnumSet.of(NNAPIFlags.USE_FP16))
-                }
-                if (useXNNPack) {
-                    addXnnpack(
-                        mapOf(
-                            "intra_op_num_threads" to "2",
-                        ),
-                    )
-                }
+        ortSession =
+            OrtModels.sessionOptions(useFP16, useXNNPack).use { options ->
+                ortEnvironment.createSession(modelPath, options)
             }
-        ortSession = ortEnvironment.createSession(modelPath, options)
+        val modelFile = File(modelPath)
+        modelIdentity = "${modelFile.name}:${modelFile.length()}:${modelFile.lastModified()}:fp16=$useFP16"
+        readNodeNames()
+    }
+
+    private fun readNodeNames() {
         inputName = ortSession.inputNames.first()
         val outputNames = ortSession.outputNames.toList()
         Log.i(SAMEncoder::class.simpleName, "Encoder input names: $inputName")
@@ -86,59 +208,96 @@ class SAMEncoder {
         imageEmbeddingOutputName = outputNames[2]
     }
 
-    suspend fun execute(inputImage: Bitmap) =
+    /**
+     * Encode a blank image once, so that session initialization and first-run allocations
+     * are not paid by the first real image.
+     */
+    suspend fun warmUp() {
+        execute(Bitmap.createBitmap(inputDim, inputDim, Bitmap.Config.ARGB_8888)).close()
+    }
+
+    /**
+     * Encode an image. The caller owns the returned results and must close them.
+     */
+    suspend fun execute(inputImage: Bitmap): SAMEncoderResults =
         withContext(Dispatchers.IO) {
-            // Resize the image to the model's required input size
-            val resizedImage =
-                Bitmap.createScaledBitmap(
-                    inputImage,
-                    inputDim,
-                    inputDim,
-                    true,
-                )
-
-            // Create a FloatBuffer to store the normalized image pixels
-            // The model requires the image in the shape (1, C, H, W)
-            val imagePixels = FloatBuffer.allocate(1 * resizedImage.width * resizedImage.height * 3)
-            imagePixels.rewind()
-            for (i in 0 until resizedImage.height) {
-                for (j in 0 until resizedImage.width) {
-                    imagePixels.put(
-                        ((Color.red(resizedImage[j, i]).toFloat() / 255.0f) - mean[0]) / std[0],
-                    )
-                }
+            inputLock.withLock {
+                val preprocessStartTime = System.nanoTime()
+                // Resize the image to the model's required input size
+                val resizedImage = scaleToInput(inputImage)
+
+                // The model requires the image in the shape (1, C, H, W)
+                resizedImage.getPixels(argbPixels, 0, inputDim, 0, 0, inputDim, inputDim)
+                normalizeInParallel()
+                val tensor =
+                    imageTensor ?: OnnxTensor.createTensor(
+                        ortEnvironment,
+                        inputBuffer.asFloatBuffer(),
+                        longArrayOf(1, 3, inputDim.toLong(), inputDim.toLong()),
+                    ).also { imageTensor = it }
+
+                // Perform inference, and return the output tensors
+                val runStartTime = System.nanoTime()
+                preprocessHistogram.record(runStartTime - preprocessStartTime)
+                val outputs = ortSession.run(mapOf(inputName to tensor))
+                runHistogram.record(System.nanoTime() - runStartTime)
+                val highResFeature0 = outputs[highResFeature0OutputName].get() as OnnxTensor
+                val highResFeature1 = outputs[highResFeature1OutputName].get() as OnnxTensor
+                val imageEmbedding = outputs[imageEmbeddingOutputName].get() as OnnxTensor
+                // The tensors stay in native memory, owned by the session result
+                SAMEncoderResults(imageEmbedding, highResFeature0, highResFeature1, outputs)
             }
-            for (i in 0 until resizedImage.height) {
-                for (j in 0 until resizedImage.width) {
-                    imagePixels.put(
-                        ((Color.blue(resizedImage[j, i]).toFloat() / 255.0f) - mean[1]) / std[1],
-                    )
-                }
+        }
+
+    /**
+     * Free the session, the input tensor and the scaled image. Waits for a running [execute]
+     * to finish first; the encoder cannot be used afterwards.
+     */
+    suspend fun close() {
+        inputLock.withLock {
+            imageTensor?.close()
+            imageTensor = null
+            scaledImage?.recycle()
+            scaledImage = null
+            scaledCanvas = null
+            if (::ortSession.isInitialized) {
+                ortSession.close()
+            }
+        }
+    }
+
+    // Draw image into the re-usable input-sized bitmap, unless it already has that size
+    private fun scaleToInput(image: Bitmap): Bitmap {
+        if (image.width == inputDim && image.height == inputDim) {
+            return image
+        }
+        val canvas =
+            scaledCanvas ?: Bitmap.createBitmap(inputDim, inputDim, Bitmap.Config.ARGB_8888).let {
+                scaledImage = it
+                Canvas(it).also { canvas -> scaledCanvas = canvas }
             }
-            for (i in 0 until resizedImage.height) {
-                for (j in 0 until resizedImage.width) {
-                    imagePixels.put(
-                        ((Color.green(resizedImage[j, i]).toFloat() / 255.0f) - mean[2]) / std[2],
+        canvas.drawBitmap(image, null, scaledRect, scalePaint)
+        return scaledImage!!
+    }
+
+    // Normalize argbPixels into the R, G, B planes of inputBuffer, one band of rows per core
+    private suspend fun normalizeInParallel() =
+        coroutineScope {
+            val rowsPerBand = (inputDim + bandCount - 1) / bandCount
+            for (firstRow in 0 until inputDim step rowsPerBand) {
+                val rows = minOf(rowsPerBand, inputDim - firstRow)
+                launch(Dispatchers.Default) {
+                    ImageProcessing.argbToSamInput(
+                        argbPixels,
+                        firstRow * inputDim,
+                        inputBuffer,
+                        firstRow * inputDim,
+                        rows * inputDim,
+                        planeSize,
+                        mean,
+                        std,
                     )
                 }
             }
-            imagePixels.rewind()
-
-            // Perform inference, and return the output tensors
-            val imageTensor =
-                OnnxTensor.createTensor(
-                    ortEnvironment,
-                    imagePixels,
-                    longArrayOf(1, 3, inputDim.toLong(), inputDim.toLong()),
-                )
-            val outputs = ortSession.run(mapOf(inputName to imageTensor))
-            val highResFeature0 = outputs[highResFeature0OutputName].get() as OnnxTensor
-            val highResFeature1 = outputs[highResFeature1OutputName].get() as OnnxTensor
-            val imageEmbedding = outputs[imageEmbeddingOutputName].get() as OnnxTensor
-            return@withContext SAMEncoderResults(
-                imageEmbedding.floatBuffer,
-                highResFeature0.floatBuffer,
-                highResFeature1.floatBuffer,
-            )
         }
 }
@@ -0,0 +1,162 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import com.esw.imageprocessing.ImageProcessing;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * YOLO input preprocessing in a single affine warp.
+ *
+ * Sensor-orientation rotation, scaling to the model input and optional letterboxing are folded
+ * into one {@link ImageTransform}. The source image is sampled once by warpAffine directly onto
+ * the small model grid; a single native pass ({@link ImageProcessing}) then drops alpha and
+ * normalizes into the tensor memory.
+ *
+ * All Mats are allocated once; a warmed-up call does not allocate.
+ */
+public class AffinePreprocessor implements AutoCloseable {
+    // YOLO letterbox padding value
+    private static final Scalar LETTERBOX_COLOR = new Scalar(114, 114, 114, 255);
+
+    private final int inputWidth;
+    private final int inputHeight;
+    private final boolean letterbox;
+
+    private final ImageTransform transform = new ImageTransform();
+    private final double[] warpValues = new double[6];
+    private final float[] yuvWarpValues = new float[6];
+    private final Mat warpMatrix;
+    private final ByteBuffer warpedBuffer;
+    private final Mat warpedRgba;                     // Wraps warpedBuffer
+    private final Size inputSize;
+    private final ByteBuffer inputTensor;
+
+    /**
+     * @param inputWidth  Model input width.
+     * @param inputHeight Model input height.
+     * @param letterbox   Keep the aspect ratio and pad, instead of stretching to the model input.
+     * @param inputTensor Destination of the preprocessed input: a direct, native-order buffer of
+     *                    inputHeight x inputWidth x 3 floats, usually the interpreter input buffer.
+     *                    Receives RGB in [0, 1].
+     */
+    public AffinePreprocessor(int inputWidth, int inputHeight, boolean letterbox, ByteBuffer inputTensor) {
+        this.inputWidth = inputWidth;
+        this.inputHeight = inputHeight;
+        this.letterbox = letterbox;
+        this.inputTensor = inputTensor;
+        warpMatrix = new Mat(2, 3, CvType.CV_64F);
+        warpedBuffer = ByteBuffer.allocateDirect(inputHeight * inputWidth * 4);
+        warpedBuffer.order(ByteOrder.nativeOrder());
+        warpedRgba = new Mat(inputHeight, inputWidth, CvType.CV_8UC4, warpedBuffer);
+        inputSize = new Size(inputWidth, inputHeight);
+    }
+
+    /**
+     * Preprocess a region of an RGBA image into the model input.
+     *
+     * @param rgbaImage         Source image, CV_8UC4 in RGBA order (as produced by Utils.bitmapToMat).
+     * @param roiX              Left edge of the region to detect in.
+     * @param roiY              Top edge of the region to detect in.
+     * @param roiWidth          Region width.
+     * @param roiHeight         Region height.
+     * @param sensorOrientation Sensor orientation in degrees, see {@link ImageTransform#set}.
+     * @return the transform used; its inverse maps model coordinates back to source coordinates.
+     *         Owned by this preprocessor and overwritten by the next call.
+     */
+    public ImageTransform process(Mat rgbaImage,
+                                  float roiX, float roiY, float roiWidth, float roiHeight,
+                                  int sensorOrientation) {
+        return process(rgbaImage, roiX, roiY, roiWidth, roiHeight, sensorOrientation, inputTensor);
+    }
+
+    /**
+     * Preprocess a region of an RGBA image into the given buffer instead of the input tensor
+     * passed at construction, e.g. one image slot of a batched input.
+     *
+     * @param destination Direct, native-order buffer of inputHeight x inputWidth x 3 floats.
+     * @see #process(Mat, float, float, float, float, int)
+     */
+    public ImageTransform process(Mat rgbaImage,
+                                  float roiX, float roiY, float roiWidth, float roiHeight,
+                                  int sensorOrientation, ByteBuffer destination) {
+        transform.set(roiX, roiY, roiWidth, roiHeight, sensorOrientation, inputWidth, inputHeight, letterbox);
+        transform.getInversePixelMatrix(warpValues);
+        warpMatrix.put(0, 0, warpValues);
+
+        Imgproc.warpAffine(
+                rgbaImage,
+                warpedRgba,
+                warpMatrix,
+                inputSize,
+                Imgproc.INTER_LINEAR | Imgproc.WARP_INVERSE_MAP,
+                letterbox ? Core.BORDER_CONSTANT : Core.BORDER_REPLICATE,
+                LETTERBOX_COLOR);
+
+        ImageProcessing.rgbaToYoloInput(warpedBuffer, destination, inputWidth * inputHeight);
+        return transform;
+    }
+
+    /**
+     * Preprocess a YUV_420_888 camera image into the model input. Conversion, rotation and
+     * scaling happen in one pass over the model grid; the image is never converted at full
+     * resolution.
+     *
+     * @param y                 Luma plane, direct buffer.
+     * @param u                 U plane, direct buffer.
+     * @param v                 V plane, direct buffer.
+     * @param yRowStride        Bytes between luma rows.
+     * @param uvRowStride       Bytes between chroma rows.
+     * @param uvPixelStride     Bytes between chroma samples of a row.
+     * @param width             Image width.
+     * @param height            Image height.
+     * @param sensorOrientation Sensor orientation in degrees, see {@link ImageTransform#set}.
+     * @return the transform used. Owned by this preprocessor and overwritten by the next call.
+     */
+    public ImageTransform processYuv(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                                     int yRowStride, int uvRowStride, int uvPixelStride,
+                                     int width, int height, int sensorOrientation) {
+        transform.set(0, 0, width, height, sensorOrientation, inputWidth, inputHeight, letterbox);
+        transform.getInversePixelMatrix(warpValues);
+        for (int i = 0; i < 6; i++) {
+            yuvWarpValues[i] = (float) warpValues[i];
+        }
+        ImageProcessing.yuvToYoloInput(y, u, v, yRowStride, uvRowStride, uvPixelStride, width, height,
+                yuvWarpValues, inputTensor, inputWidth, inputHeight,
+                letterbox, (float) (LETTERBOX_COLOR.val[0] / 255.0));
+        return transform;
+    }
+
+    /**
+     * Preprocess a whole RGBA image into the model input.
+     *
+     * @see #process(Mat, float, float, float, float, int)
+     */
+    public ImageTransform process(Mat rgbaImage, int sensorOrientation) {
+        return process(rgbaImage, 0, 0, rgbaImage.cols(), rgbaImage.rows(), sensorOrientation);
+    }
+
+    /**
+     * @return the transform used by the last call to process.
+     */
+    public ImageTransform getTransform() {
+        return transform;
+    }
+
+    @Override
+    public void close() {
+        warpMatrix.release();
+        warpedRgba.release();
+    }
+}
@@ -0,0 +1,71 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Inference runtime running a YOLO model for {@link ObjectDetection}.
+ *
+ * A backend only moves tensors: {@link ObjectDetection} does the preprocessing into the input
+ * buffer and decodes the output buffer, so the same decode and NMS code runs on every backend.
+ *
+ * Tensors use a single layout whatever the model expects, converting if needed:
+ * <ul>
+ *     <li>input: float32 [batch, height, width, 3], RGB in [0, 1] (NHWC)</li>
+ *     <li>output: float32 [batch, 4 + numClasses, numProposals]</li>
+ * </ul>
+ * Buffers are direct and in native byte order.
+ *
+ * A backend is not thread-safe; each {@link ObjectDetection} owns its own.
+ */
+public interface DetectionBackend extends AutoCloseable {
+
+    /**
+     * Creates a backend, e.g. one per pooled detector.
+     */
+    interface Factory {
+        DetectionBackend create() throws IOException;
+    }
+
+    /**
+     * @return short description of the runtime and its configuration, for logs.
+     */
+    String getName();
+
+    /**
+     * @return input shape for a batch of one: [1, height, width, 3].
+     */
+    int[] getInputShape();
+
+    /**
+     * @return output shape for a batch of one: [1, 4 + numClasses, numProposals].
+     */
+    int[] getOutputShape();
+
+    /**
+     * Prepare the backend for batches of the given size.
+     *
+     * @return false if the model or runtime does not support this batch size. The backend is
+     * then left at batch size 1.
+     */
+    boolean setBatchSize(int batchSize);
+
+    /**
+     * Run the model on a batch of the size last set (1 by default).
+     *
+     * @param input  Input tensor, exactly batch * height * width * 3 floats.
+     * @param output Receives the output tensor, exactly batch * (4 + numClasses) * numProposals
+     *               floats, written from index 0.
+     */
+    void run(ByteBuffer input, ByteBuffer output);
+
+    /**
+     * Free the runtime resources.
+     */
+    @Override
+    void close();
+}
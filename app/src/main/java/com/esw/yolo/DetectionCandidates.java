@@ -0,0 +1,40 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+/**
+ * Re-usable struct-of-arrays storage for detection candidates.
+ * Slot i describes one proposal: its box [x0, y0, x1, y1], best class score,
+ * best class index and the anchor (proposal) index it was decoded from.
+ * Only the first {@link #count} slots are valid.
+ */
+public class DetectionCandidates {
+    public final float[] x0;
+    public final float[] y0;
+    public final float[] x1;
+    public final float[] y1;
+    public final float[] score;
+    public final int[] classIdx;
+    public final int[] anchor;
+    public int count;
+
+    public DetectionCandidates(int capacity) {
+        x0 = new float[capacity];
+        y0 = new float[capacity];
+        x1 = new float[capacity];
+        y1 = new float[capacity];
+        score = new float[capacity];
+        classIdx = new int[capacity];
+        anchor = new int[capacity];
+        count = 0;
+    }
+
+    /**
+     * @return maximum number of candidates this storage can hold.
+     */
+    public int capacity() {
+        return score.length;
+    }
+}
@@ -0,0 +1,81 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * Post-processing of one YOLO output tensor for {@link ObjectDetection}: decode, NMS, then
+ * fill pooled {@link RectangleBox}es with the kept detections.
+ *
+ * All working memory is allocated up front, so a warmed-up {@link #process} does not allocate.
+ * It has no Android or OpenCV dependencies and runs on a plain JVM.
+ */
+public class DetectionPostprocessor {
+    private final List<String> labelList;
+    private final float scoreThreshold;
+    private final YoloOutputDecoder outputDecoder;    // Decodes the raw output tensor in place
+    private final DetectionCandidates candidates;     // Re-usable buffer for decoded proposals
+    private final NonMaxSuppression nms;
+    private final int[] keptCandidates;               // Re-usable buffer for NMS output
+
+    /**
+     * @param labels         Class labels, in class index order.
+     * @param numProposals   Number of proposals in the output tensor.
+     * @param scoreThreshold Proposals with a best class score below this value are dropped.
+     * @param iouThreshold   NMS overlap threshold.
+     * @param preNmsTopK     Only the K highest scoring proposals take part in NMS.
+     * @param maxDetections  Maximum number of detections returned.
+     * @param classAware     If true, NMS only suppresses boxes of the same class.
+     */
+    public DetectionPostprocessor(List<String> labels, int numProposals, float scoreThreshold,
+                                  float iouThreshold, int preNmsTopK, int maxDetections, boolean classAware) {
+        labelList = labels;
+        this.scoreThreshold = scoreThreshold;
+        outputDecoder = new YoloOutputDecoder(labels.size(), numProposals);
+        candidates = new DetectionCandidates(numProposals);
+        nms = new NonMaxSuppression(numProposals, preNmsTopK, maxDetections, iouThreshold, classAware);
+        keptCandidates = new int[maxDetections];
+    }
+
+    /**
+     * Select the NMS strategy, see {@link NonMaxSuppression#setStrategy}.
+     */
+    public void setNmsStrategy(NonMaxSuppression.Strategy strategy) {
+        nms.setStrategy(strategy);
+    }
+
+    /**
+     * Turn one output tensor into detections.
+     *
+     * @param output    Output tensor of a single image, [4 + numClasses][numProposals] from index 0.
+     * @param transform Transform used to preprocess that image.
+     * @param boxPool   Boxes to fill, at least maxDetections.
+     * @param BBlist    Receives the filled boxes.
+     * @return number of detections added to BBlist.
+     */
+    public int process(FloatBuffer output, ImageTransform transform,
+                       List<RectangleBox> boxPool, List<RectangleBox> BBlist) {
+        // Decode straight from the bound output buffer. Proposals below the score threshold are
+        // dropped before their boxes are mapped back to image coordinates.
+        outputDecoder.decode(output, transform, scoreThreshold, candidates);
+        int numKept = nms.run(candidates, keptCandidates);
+
+        for (int k = 0; k < numKept; k++) {
+            int index = keptCandidates[k];
+            RectangleBox tempbox = boxPool.get(k);
+            tempbox.left = candidates.x0[index];
+            tempbox.bottom = candidates.y0[index];
+            tempbox.right = candidates.x1[index];
+            tempbox.top = candidates.y1[index];
+            tempbox.confidence = candidates.score[index];
+            tempbox.classIdx = candidates.classIdx[index];
+            tempbox.label = labelList.get(candidates.classIdx[index] % labelList.size());
+            BBlist.add(tempbox);
+        }
+        return numKept;
+    }
+}
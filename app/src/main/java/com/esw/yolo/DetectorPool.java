@@ -0,0 +1,288 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import android.content.Context;
+import android.util.Pair;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed set of {@link ObjectDetection} instances leased to one caller at a time.
+ *
+ * ObjectDetection keeps its scratch buffers and returned boxes in instance fields, so an
+ * instance must not be used from two threads at once. The pool owns N detectors, each with its
+ * own interpreter, delegates and buffers, all created from a single mapping of the model file.
+ * Callers lease a detector, use it (including the returned boxes) and close the lease.
+ *
+ * <pre>
+ * try (DetectorPool.Lease lease = pool.lease(2, TimeUnit.SECONDS)) {
+ *     lease.detector().predict(bitmap, 0, boxes);
+ *     ... read boxes ...
+ * }
+ * </pre>
+ */
+public class DetectorPool implements AutoCloseable {
+    private final List<ObjectDetection> detectors;
+    private final BlockingQueue<ObjectDetection> idleDetectors;
+
+    // Utilization statistics
+    private final long createdTime;
+    private final AtomicInteger busyCount = new AtomicInteger();
+    private final AtomicLong busyTime = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Handle on a leased detector. Closing it returns the detector to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+        private final ObjectDetection detector;
+        private final long leaseTime;
+        private boolean released;
+
+        private Lease(ObjectDetection detector, long leaseTime) {
+            this.detector = detector;
+            this.leaseTime = leaseTime;
+        }
+
+        /**
+         * @return the leased detector. It and the boxes it returns must not be used after the
+         * lease is closed.
+         */
+        public ObjectDetection detector() {
+            if (released) {
+                throw new IllegalStateException("Lease already closed");
+            }
+            return detector;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            release(detector, leaseTime);
+        }
+    }
+
+    /**
+     * Create a pool of detectors sharing one model.
+     *
+     * @param context               App context.
+     * @param modelPath             Model asset path.
+     * @param labelsPath            Labels asset path.
+     * @param delegatePriorityOrder Delegate order, see {@link TFLiteHelpers#CreateInterpreterAndDelegatesFromOptions}.
+     * @param size                  Number of detectors, i.e. how many predictions can run at once.
+     * @throws IOException If the model or labels can't be read.
+     */
+    public DetectorPool(Context context,
+                        String modelPath,
+                        String labelsPath,
+                        TFLiteHelpers.DelegateType[][] delegatePriorityOrder,
+                        int size) throws IOException, NoSuchAlgorithmException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        Pair<MappedByteBuffer, String> modelAndHash = TFLiteHelpers.loadModelFile(
+                context.getAssets(), modelPath, ModelIdentity.defaultFor(context));
+        List<String> labels = ObjectDetection.loadLabels(context, labelsPath);
+
+        detectors = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                detectors.add(new ObjectDetection(context, modelAndHash, labels, delegatePriorityOrder));
+            }
+        } catch (RuntimeException e) {
+            for (ObjectDetection detector : detectors) {
+                detector.close();
+            }
+            throw e;
+        }
+        idleDetectors = new ArrayBlockingQueue<>(size, false, detectors);
+        createdTime = System.nanoTime();
+    }
+
+    /**
+     * Create a pool of detectors on another inference backend, e.g. {@link OnnxDetectionBackend}.
+     *
+     * @param labels  Class labels, in class index order.
+     * @param factory Creates one backend per detector.
+     * @param size    Number of detectors, i.e. how many predictions can run at once.
+     * @throws IOException If a backend can't be created.
+     */
+    public DetectorPool(List<String> labels, DetectionBackend.Factory factory, int size) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        detectors = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                detectors.add(new ObjectDetection(factory.create(), labels));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (ObjectDetection detector : detectors) {
+                detector.close();
+            }
+            throw e;
+        }
+        idleDetectors = new ArrayBlockingQueue<>(size, false, detectors);
+        createdTime = System.nanoTime();
+    }
+
+    /**
+     * Lease a detector, waiting at most the given time for one to become free.
+     *
+     * @throws TimeoutException If no detector became free in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public Lease lease(long timeout, TimeUnit unit) throws TimeoutException, InterruptedException {
+        ensureOpen();
+        long startTime = System.nanoTime();
+        ObjectDetection detector = idleDetectors.poll(timeout, unit);
+        long leaseTime = System.nanoTime();
+        waitTime.addAndGet(leaseTime - startTime);
+        if (detector == null) {
+            timeoutCount.incrementAndGet();
+            throw new TimeoutException("No detector available after " + unit.toMillis(timeout) + " ms");
+        }
+        return acquired(detector, leaseTime);
+    }
+
+    /**
+     * Lease a detector, waiting as long as needed.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public Lease lease() throws InterruptedException {
+        ensureOpen();
+        long startTime = System.nanoTime();
+        ObjectDetection detector = idleDetectors.take();
+        long leaseTime = System.nanoTime();
+        waitTime.addAndGet(leaseTime - startTime);
+        return acquired(detector, leaseTime);
+    }
+
+    /**
+     * Run a warm-up prediction on every detector of the pool, see {@link ObjectDetection#warmUp()}.
+     * Must be called before detectors are leased.
+     *
+     * @return the total warm-up time in nanoseconds.
+     */
+    public long warmUp() {
+        ensureOpen();
+        long warmUpTime = 0;
+        for (ObjectDetection detector : detectors) {
+            warmUpTime += detector.warmUp();
+        }
+        return warmUpTime;
+    }
+
+    /**
+     * @return number of detectors in the pool.
+     */
+    public int getSize() {
+        return detectors.size();
+    }
+
+    /**
+     * @return a detector of the pool, for read-only queries such as input size or labels.
+     * Do not run predictions on it without a lease.
+     */
+    public ObjectDetection peek() {
+        return detectors.get(0);
+    }
+
+    /**
+     * @return number of detectors currently leased.
+     */
+    public int getBusyCount() {
+        return busyCount.get();
+    }
+
+    /**
+     * @return fraction of detector time spent leased since the pool was created, in [0, 1].
+     */
+    public float getUtilization() {
+        long elapsed = System.nanoTime() - createdTime;
+        return elapsed > 0 ? (float) busyTime.get() / ((float) elapsed * detectors.size()) : 0;
+    }
+
+    /**
+     * @return number of leases granted.
+     */
+    public long getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    /**
+     * @return number of lease requests that timed out.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return mean time callers waited for a detector, in nanoseconds.
+     */
+    public long getAverageWaitTime() {
+        long requests = leaseCount.get() + timeoutCount.get();
+        return requests > 0 ? waitTime.get() / requests : 0;
+    }
+
+    /**
+     * @return one line summary of the pool statistics.
+     */
+    public String getStats() {
+        return String.format(Locale.US,
+                "DetectorPool: size %d, busy %d, utilization %.1f%%, leases %d, timeouts %d, avg wait %.2f ms",
+                getSize(), getBusyCount(), 100 * getUtilization(), getLeaseCount(), getTimeoutCount(),
+                getAverageWaitTime() / 1e6);
+    }
+
+    /**
+     * Close all detectors. Leases must have been closed before.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (ObjectDetection detector : detectors) {
+            detector.close();
+        }
+    }
+
+    private Lease acquired(ObjectDetection detector, long leaseTime) {
+        busyCount.incrementAndGet();
+        leaseCount.incrementAndGet();
+        return new Lease(detector, leaseTime);
+    }
+
+    private void release(ObjectDetection detector, long leaseTime) {
+        busyTime.addAndGet(System.nanoTime() - leaseTime);
+        busyCount.decrementAndGet();
+        idleDetectors.add(detector);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("DetectorPool is closed");
+        }
+    }
+}
@@ -0,0 +1,168 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+/**
+ * Affine mapping between a region of the source image and the model input grid.
+ *
+ * The mapping folds the sensor-orientation rotation, the scale to the model input size and
+ * optional letterbox padding into one 2x3 matrix. Coordinates are continuous: pixel (i, j)
+ * covers [i, i + 1) x [j, j + 1), so corners of boxes map back exactly.
+ *
+ * Instances are mutable so a preprocessor can reuse one per frame without allocating.
+ */
+public class ImageTransform {
+    // Forward: source -> model input.  x' = a*x + b*y + c,  y' = d*x + e*y + f
+    private double a, b, c, d, e, f;
+    // Inverse: model input -> source
+    private double ia, ib, ic, id, ie, iff;
+
+    public ImageTransform() {
+        setIdentity();
+    }
+
+    /**
+     * Reset to the identity mapping.
+     */
+    public void setIdentity() {
+        a = 1; b = 0; c = 0;
+        d = 0; e = 1; f = 0;
+        invert();
+    }
+
+    /**
+     * Copy another transform into this one.
+     */
+    public void set(ImageTransform other) {
+        a = other.a; b = other.b; c = other.c;
+        d = other.d; e = other.e; f = other.f;
+        ia = other.ia; ib = other.ib; ic = other.ic;
+        id = other.id; ie = other.ie; iff = other.iff;
+    }
+
+    /**
+     * Configure the mapping of a source region to the model input.
+     *
+     * @param roiX              Left edge of the source region, in source pixels.
+     * @param roiY              Top edge of the source region, in source pixels.
+     * @param roiWidth          Width of the source region.
+     * @param roiHeight         Height of the source region.
+     * @param sensorOrientation Sensor orientation in degrees, as passed to ObjectDetection.predict:
+     *                          0 rotates 90 degrees counter-clockwise, 90 keeps the image as is,
+     *                          180 rotates 90 degrees clockwise and 270 rotates 180 degrees.
+     * @param dstWidth          Model input width.
+     * @param dstHeight         Model input height.
+     * @param letterbox         If true, keep the aspect ratio and center the image with padding;
+     *                          otherwise stretch it to fill the model input.
+     */
+    public void set(float roiX, float roiY, float roiWidth, float roiHeight,
+                    int sensorOrientation, int dstWidth, int dstHeight, boolean letterbox) {
+        // Rotation of the region into its upright frame, as (x, y) -> (ra*x + rb*y + rc, rd*x + re*y + rf)
+        double ra, rb, rc, rd, re, rf;
+        double rotatedWidth, rotatedHeight;
+        switch (sensorOrientation) {
+            case 0: // 90 degrees counter-clockwise
+                ra = 0;  rb = 1;  rc = 0;
+                rd = -1; re = 0;  rf = roiWidth;
+                rotatedWidth = roiHeight;
+                rotatedHeight = roiWidth;
+                break;
+            case 180: // 90 degrees clockwise
+                ra = 0;  rb = -1; rc = roiHeight;
+                rd = 1;  re = 0;  rf = 0;
+                rotatedWidth = roiHeight;
+                rotatedHeight = roiWidth;
+                break;
+            case 270: // 180 degrees
+                ra = -1; rb = 0;  rc = roiWidth;
+                rd = 0;  re = -1; rf = roiHeight;
+                rotatedWidth = roiWidth;
+                rotatedHeight = roiHeight;
+                break;
+            case 90:
+            default:
+                ra = 1;  rb = 0;  rc = 0;
+                rd = 0;  re = 1;  rf = 0;
+                rotatedWidth = roiWidth;
+                rotatedHeight = roiHeight;
+                break;
+        }
+
+        // Scale (and pad) the upright region to the model input
+        double sx = dstWidth / rotatedWidth;
+        double sy = dstHeight / rotatedHeight;
+        double tx = 0;
+        double ty = 0;
+        if (letterbox) {
+            double s = Math.min(sx, sy);
+            sx = s;
+            sy = s;
+            tx = (dstWidth - rotatedWidth * s) / 2;
+            ty = (dstHeight - rotatedHeight * s) / 2;
+        }
+
+        // Compose: translate by -roi, rotate, then scale and pad
+        a = sx * ra;
+        b = sx * rb;
+        c = sx * (rc - ra * roiX - rb * roiY) + tx;
+        d = sy * rd;
+        e = sy * re;
+        f = sy * (rf - rd * roiX - re * roiY) + ty;
+        invert();
+    }
+
+    private void invert() {
+        double det = a * e - b * d;
+        ia = e / det;
+        ib = -b / det;
+        id = -d / det;
+        ie = a / det;
+        ic = -(ia * c + ib * f);
+        iff = -(id * c + ie * f);
+    }
+
+    /**
+     * Write the inverse mapping (model input pixel index -> source pixel index) in the row-major
+     * 2x3 layout expected by OpenCV warpAffine with WARP_INVERSE_MAP.
+     *
+     * @param out Destination of at least 6 elements.
+     */
+    public void getInversePixelMatrix(double[] out) {
+        // Pixel centers sit at +0.5 in continuous coordinates
+        out[0] = ia;
+        out[1] = ib;
+        out[2] = ic + 0.5 * (ia + ib) - 0.5;
+        out[3] = id;
+        out[4] = ie;
+        out[5] = iff + 0.5 * (id + ie) - 0.5;
+    }
+
+    /**
+     * Map an axis-aligned box from model input coordinates back to source coordinates.
+     * Rotations are multiples of 90 degrees, so the mapped box is axis-aligned as well.
+     *
+     * @param out Receives [x0, y0, x1, y1] with x0 <= x1 and y0 <= y1.
+     */
+    public void mapBoxToSource(float x0, float y0, float x1, float y1, float[] out) {
+        double ax = ia * x0 + ib * y0 + ic;
+        double ay = id * x0 + ie * y0 + iff;
+        double bx = ia * x1 + ib * y1 + ic;
+        double by = id * x1 + ie * y1 + iff;
+        out[0] = (float) Math.min(ax, bx);
+        out[1] = (float) Math.min(ay, by);
+        out[2] = (float) Math.max(ax, bx);
+        out[3] = (float) Math.max(ay, by);
+    }
+
+    /**
+     * Map a point from source coordinates to model input coordinates.
+     *
+     * @param out Receives [x, y].
+     */
+    public void mapPointToModel(float x, float y, float[] out) {
+        out[0] = (float) (a * x + b * y + c);
+        out[1] = (float) (d * x + e * y + f);
+    }
+}
@@ -0,0 +1,161 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Strategy computing the identifier of a loaded model.
+ *
+ * The identifier keys the QNN and GPU serialized delegate caches (and delegate tuning results),
+ * so it must change whenever the model content changes. Strategies differ in how much of the
+ * model they have to read on a cold start.
+ */
+public interface ModelIdentity {
+
+    /**
+     * @param modelFilename Asset name of the model.
+     * @param startOffset   Offset of the model inside the APK.
+     * @param length        Model length in bytes.
+     * @param model         The memory-mapped model.
+     * @return identifier string, usable in file names.
+     */
+    String identify(String modelFilename, long startOffset, long length, MappedByteBuffer model) throws IOException;
+
+    /**
+     * @return short name of the strategy, for logging.
+     */
+    String name();
+
+    /**
+     * MD5 of the model content, as produced by the original loader. Reads the mapped buffer
+     * instead of streaming the file a second time.
+     */
+    static ModelIdentity md5() {
+        return new ModelIdentity() {
+            @Override
+            public String identify(String modelFilename, long startOffset, long length, MappedByteBuffer model) throws IOException {
+                MessageDigest digest;
+                try {
+                    digest = MessageDigest.getInstance("MD5");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IOException(e);
+                }
+                digest.update(model.duplicate());
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    hex.append(String.format("%02x", b));
+                }
+                return hex.toString();
+            }
+
+            @Override
+            public String name() {
+                return "md5";
+            }
+        };
+    }
+
+    /**
+     * xxHash64 of the model content, several times faster than MD5 on the same bytes.
+     */
+    static ModelIdentity xxHash64() {
+        return new ModelIdentity() {
+            @Override
+            public String identify(String modelFilename, long startOffset, long length, MappedByteBuffer model) {
+                return String.format("xxh64_%016x", XxHash64.hash(model, 0));
+            }
+
+            @Override
+            public String name() {
+                return "xxh64";
+            }
+        };
+    }
+
+    /**
+     * Identifier computed once per installed APK and persisted in a sidecar file.
+     *
+     * The sidecar is keyed by the asset name, its offset and length inside the APK and the APK
+     * modification time; as long as these match, the stored identifier is returned without
+     * touching the model. Otherwise (first start, app update) contentIdentity computes it and
+     * the sidecar is updated. Because the stored value is still content based, an app update
+     * that keeps the same model keeps its delegate caches.
+     *
+     * @param cacheDir        Directory holding the sidecar file.
+     * @param apkPath         Path of the APK the assets are read from.
+     * @param contentIdentity Strategy used on a sidecar miss.
+     */
+    static ModelIdentity sidecar(File cacheDir, String apkPath, ModelIdentity contentIdentity) {
+        return new ModelIdentity() {
+            private final File sidecarFile = new File(cacheDir, "model_identity.properties");
+
+            @Override
+            public String identify(String modelFilename, long startOffset, long length, MappedByteBuffer model) throws IOException {
+                // Models load in parallel, each with its own instance over the same sidecar file
+                synchronized (ModelIdentity.class) {
+                    return identifyLocked(modelFilename, startOffset, length, model);
+                }
+            }
+
+            private String identifyLocked(String modelFilename, long startOffset, long length, MappedByteBuffer model) throws IOException {
+                String key = modelFilename + "@" + startOffset + "+" + length + "#" + new File(apkPath).lastModified()
+                        + "/" + contentIdentity.name();
+                Properties properties = new Properties();
+                if (sidecarFile.isFile()) {
+                    try (FileInputStream input = new FileInputStream(sidecarFile)) {
+                        properties.load(input);
+                    } catch (IOException | IllegalArgumentException e) {
+                        Log.w("ModelIdentity", "Ignoring unreadable " + sidecarFile + ": " + e.getMessage());
+                        properties.clear();
+                    }
+                }
+                String identifier = properties.getProperty(key);
+                if (identifier != null) {
+                    return identifier;
+                }
+
+                identifier = contentIdentity.identify(modelFilename, startOffset, length, model);
+                // Entries of a previous APK of this model are stale
+                properties.stringPropertyNames().stream()
+                        .filter(name -> name.startsWith(modelFilename + "@"))
+                        .forEach(properties::remove);
+                properties.setProperty(key, identifier);
+
+                File tempFile = new File(sidecarFile.getPath() + ".tmp");
+                try (FileOutputStream output = new FileOutputStream(tempFile)) {
+                    properties.store(output, "Model identifiers");
+                }
+                if (!tempFile.renameTo(sidecarFile)) {
+                    tempFile.delete();
+                    Log.w("ModelIdentity", "Could not update " + sidecarFile);
+                }
+                return identifier;
+            }
+
+            @Override
+            public String name() {
+                return "sidecar(" + contentIdentity.name() + ")";
+            }
+        };
+    }
+
+    /**
+     * @return the strategy used by the app: an xxHash64 persisted in a sidecar in the cache dir.
+     */
+    static ModelIdentity defaultFor(Context context) {
+        return sidecar(context.getCacheDir(), context.getApplicationInfo().sourceDir, xxHash64());
+    }
+}
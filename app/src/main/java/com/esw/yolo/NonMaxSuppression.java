@@ -0,0 +1,338 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import java.util.Arrays;
+
+/**
+ * Greedy non-maximum suppression over {@link DetectionCandidates}.
+ *
+ * Candidates are first reduced to the pre-NMS top-K by partial selection, then sorted by
+ * descending score (ties broken by ascending candidate slot, so results are deterministic).
+ * Each kept box suppresses every lower-scored box whose IoU exceeds the threshold; in
+ * class-aware mode only boxes of the same class suppress each other.
+ *
+ * Two suppression strategies produce identical results:
+ * {@link Strategy#PAIRWISE} tests each kept box against every later box, while
+ * {@link Strategy#SPATIAL_GRID} buckets boxes into a uniform grid so a kept box is only tested
+ * against boxes sharing a grid cell with it. The grid scales near-linearly on dense scenes
+ * where thousands of candidates survive thresholding.
+ *
+ * All working memory is allocated once, sized from the candidate capacity. The grid cell
+ * index grows on demand and is then reused.
+ */
+public class NonMaxSuppression {
+    public enum Strategy {
+        // Compare every kept box with every lower scored box
+        PAIRWISE,
+
+        // Only compare boxes registered in a common cell of a uniform spatial grid
+        SPATIAL_GRID,
+    }
+
+    // Upper bound for grid columns and rows
+    private static final int MAX_GRID_SIZE = 64;
+
+    private final int preNmsTopK;
+    private final int maxDetections;
+    private final float iouThreshold;
+    private final boolean classAware;
+    private Strategy strategy = Strategy.PAIRWISE;
+
+    // Sort keys: high 32 bits order by descending score, low 32 bits hold the candidate slot
+    private final long[] keys;
+
+    // Top-K candidates in score order, stored struct-of-arrays
+    private final int[] slots;
+    private final float[] x0;
+    private final float[] y0;
+    private final float[] x1;
+    private final float[] y1;
+    private final float[] area;
+    private final int[] classIdx;
+    private final boolean[] suppressed;
+
+    // Spatial grid in compressed row form: boxes of cell c are cellItems[cellStart[c]..cellStart[c + 1])
+    private final int[] cellStart = new int[MAX_GRID_SIZE * MAX_GRID_SIZE + 1];
+    private int[] cellItems;
+    // Index of the kept box that last tested each box, to skip boxes found through several cells
+    private final int[] visitedBy;
+
+    /**
+     * @param capacity      Maximum number of candidates passed to {@link #run}.
+     * @param preNmsTopK    Only the K highest scoring candidates take part in suppression.
+     * @param maxDetections Maximum number of boxes kept.
+     * @param iouThreshold  Boxes overlapping a kept box by more than this IoU are suppressed.
+     * @param classAware    If true, boxes only suppress boxes of the same class.
+     */
+    public NonMaxSuppression(int capacity, int preNmsTopK, int maxDetections, float iouThreshold, boolean classAware) {
+        this.preNmsTopK = Math.min(preNmsTopK, capacity);
+        this.maxDetections = maxDetections;
+        this.iouThreshold = iouThreshold;
+        this.classAware = classAware;
+
+        keys = new long[capacity];
+        slots = new int[this.preNmsTopK];
+        x0 = new float[this.preNmsTopK];
+        y0 = new float[this.preNmsTopK];
+        x1 = new float[this.preNmsTopK];
+        y1 = new float[this.preNmsTopK];
+        area = new float[this.preNmsTopK];
+        classIdx = new int[this.preNmsTopK];
+        suppressed = new boolean[this.preNmsTopK];
+        cellItems = new int[4 * this.preNmsTopK];
+        visitedBy = new int[this.preNmsTopK];
+    }
+
+    /**
+     * @param strategy Suppression strategy used by subsequent calls to {@link #run}.
+     */
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return the current suppression strategy.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return maximum number of boxes kept by {@link #run}.
+     */
+    public int getMaxDetections() {
+        return maxDetections;
+    }
+
+    /**
+     * Run suppression.
+     *
+     * @param candidates Candidates to filter. Not modified.
+     * @param keep       Destination for the kept candidate slots, in descending score order.
+     *                   Must hold at least {@link #getMaxDetections()} entries.
+     * @return number of slots written to keep.
+     */
+    public int run(DetectionCandidates candidates, int[] keep) {
+        int n = candidates.count;
+        for (int i = 0; i < n; i++) {
+            keys[i] = sortKey(candidates.score[i], i);
+        }
+
+        // Pre-NMS top-K: partial selection, then sort only the selected keys
+        int k = Math.min(n, preNmsTopK);
+        if (k < n) {
+            select(keys, 0, n - 1, k);
+        }
+        Arrays.sort(keys, 0, k);
+
+        for (int i = 0; i < k; i++) {
+            int slot = (int) keys[i];
+            slots[i] = slot;
+            x0[i] = candidates.x0[slot];
+            y0[i] = candidates.y0[slot];
+            x1[i] = candidates.x1[slot];
+            y1[i] = candidates.y1[slot];
+            area[i] = Math.max(0f, x1[i] - x0[i]) * Math.max(0f, y1[i] - y0[i]);
+            classIdx[i] = candidates.classIdx[slot];
+            suppressed[i] = false;
+        }
+
+        if (strategy == Strategy.SPATIAL_GRID) {
+            return suppressWithGrid(k, keep);
+        }
+        return suppressPairwise(k, keep);
+    }
+
+    private int suppressPairwise(int k, int[] keep) {
+        int kept = 0;
+        for (int i = 0; i < k && kept < maxDetections; i++) {
+            if (suppressed[i]) {
+                continue;
+            }
+            keep[kept++] = slots[i];
+            for (int j = i + 1; j < k; j++) {
+                if (suppressed[j] || (classAware && classIdx[j] != classIdx[i])) {
+                    continue;
+                }
+                if (iou(i, j) > iouThreshold) {
+                    suppressed[j] = true;
+                }
+            }
+        }
+        return kept;
+    }
+
+    private int suppressWithGrid(int k, int[] keep) {
+        if (k == 0) {
+            return 0;
+        }
+
+        // Size the grid so an average box spans about one cell
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float sumW = 0, sumH = 0;
+        for (int i = 0; i < k; i++) {
+            minX = Math.min(minX, x0[i]);
+            minY = Math.min(minY, y0[i]);
+            maxX = Math.max(maxX, x1[i]);
+            maxY = Math.max(maxY, y1[i]);
+            sumW += Math.max(0f, x1[i] - x0[i]);
+            sumH += Math.max(0f, y1[i] - y0[i]);
+        }
+        float spanX = Math.max(maxX - minX, 1e-6f);
+        float spanY = Math.max(maxY - minY, 1e-6f);
+        int cols = gridSize(spanX, sumW / k);
+        int rows = gridSize(spanY, sumH / k);
+        float cellsPerX = cols / spanX;
+        float cellsPerY = rows / spanY;
+        int numCells = cols * rows;
+
+        // Count registrations per cell, then turn counts into start offsets
+        Arrays.fill(cellStart, 0, numCells + 1, 0);
+        int total = 0;
+        for (int i = 0; i < k; i++) {
+            int c0 = cell(x0[i], minX, cellsPerX, cols);
+            int c1 = cell(x1[i], minX, cellsPerX, cols);
+            int r0 = cell(y0[i], minY, cellsPerY, rows);
+            int r1 = cell(y1[i], minY, cellsPerY, rows);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    cellStart[r * cols + c + 1]++;
+                }
+            }
+            total += Math.max(0, c1 - c0 + 1) * Math.max(0, r1 - r0 + 1);
+        }
+        for (int c = 0; c < numCells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        if (cellItems.length < total) {
+            cellItems = new int[Math.max(total, 2 * cellItems.length)];
+        }
+
+        // Fill cells in score order, so every cell lists its boxes by descending score.
+        // cellStart[c] serves as the write cursor of cell c while filling.
+        for (int i = 0; i < k; i++) {
+            int c0 = cell(x0[i], minX, cellsPerX, cols);
+            int c1 = cell(x1[i], minX, cellsPerX, cols);
+            int r0 = cell(y0[i], minY, cellsPerY, rows);
+            int r1 = cell(y1[i], minY, cellsPerY, rows);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    cellItems[cellStart[r * cols + c]++] = i;
+                }
+            }
+        }
+        // Writing advanced each start to the next cell's start; shift back by one cell
+        for (int c = numCells; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+        Arrays.fill(visitedBy, 0, k, -1);
+
+        int kept = 0;
+        for (int i = 0; i < k && kept < maxDetections; i++) {
+            if (suppressed[i]) {
+                continue;
+            }
+            keep[kept++] = slots[i];
+
+            int c0 = cell(x0[i], minX, cellsPerX, cols);
+            int c1 = cell(x1[i], minX, cellsPerX, cols);
+            int r0 = cell(y0[i], minY, cellsPerY, rows);
+            int r1 = cell(y1[i], minY, cellsPerY, rows);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cellIndex = r * cols + c;
+                    for (int p = cellStart[cellIndex]; p < cellStart[cellIndex + 1]; p++) {
+                        int j = cellItems[p];
+                        if (j <= i || visitedBy[j] == i) {
+                            continue;
+                        }
+                        visitedBy[j] = i;
+                        if (suppressed[j] || (classAware && classIdx[j] != classIdx[i])) {
+                            continue;
+                        }
+                        if (iou(i, j) > iouThreshold) {
+                            suppressed[j] = true;
+                        }
+                    }
+                }
+            }
+        }
+        return kept;
+    }
+
+    private static int gridSize(float span, float meanExtent) {
+        if (!(meanExtent > 0)) {
+            return MAX_GRID_SIZE;
+        }
+        return Math.max(1, Math.min(MAX_GRID_SIZE, (int) (span / meanExtent)));
+    }
+
+    private static int cell(float v, float min, float cellsPerUnit, int cells) {
+        int c = (int) ((v - min) * cellsPerUnit);
+        return Math.max(0, Math.min(cells - 1, c));
+    }
+
+    private float iou(int a, int b) {
+        float w = Math.min(x1[a], x1[b]) - Math.max(x0[a], x0[b]);
+        float h = Math.min(y1[a], y1[b]) - Math.max(y0[a], y0[b]);
+        if (w <= 0 || h <= 0) {
+            return 0;
+        }
+        float inter = w * h;
+        float union = area[a] + area[b] - inter;
+        return union > 0 ? inter / union : 0;
+    }
+
+    /**
+     * Build a key whose ascending order is descending score, then ascending slot.
+     */
+    static long sortKey(float score, int slot) {
+        int bits = Float.floatToIntBits(score);
+        // Map float bits to an int with the same ordering, then invert for descending order
+        int ordered = bits ^ ((bits >> 31) & 0x7fffffff);
+        return ((long) ~ordered << 32) | (slot & 0xffffffffL);
+    }
+
+    /**
+     * Quickselect: rearrange keys[lo..hi] so that the k smallest keys occupy keys[lo..lo+k-1].
+     */
+    private static void select(long[] keys, int lo, int hi, int k) {
+        int target = lo + k - 1;
+        while (lo < hi) {
+            // Median-of-three pivot
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < keys[lo]) swap(keys, mid, lo);
+            if (keys[hi] < keys[lo]) swap(keys, hi, lo);
+            if (keys[hi] < keys[mid]) swap(keys, hi, mid);
+            long pivot = keys[mid];
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(keys, i++, j--);
+                }
+            }
+            if (target <= j) {
+                hi = j;
+            } else if (target >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
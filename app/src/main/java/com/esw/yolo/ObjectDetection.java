@@ -6,18 +6,16 @@ package com.esw.yolo;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.util.Log;
 import android.util.Pair;
 
+import com.esw.metrics.LatencyHistogram;
+import com.esw.metrics.MetricsRegistry;
+
 import org.opencv.android.Utils;
-import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
 import org.opencv.osgi.OpenCVNativeLoader;
-import org.tensorflow.lite.DataType;
-import org.tensorflow.lite.Delegate;
-import org.tensorflow.lite.Interpreter;
-import org.tensorflow.lite.Tensor;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -27,20 +25,38 @@ import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class ObjectDetection  implements AutoCloseable {
-    private final Interpreter tfLiteInterpreter;
-    private final Map<TFLiteHelpers.DelegateType, Delegate> tfLiteDelegateStore;
+    private static final String TAG = "ObjectDetection";
+
+    /**
+     * How {@link #predictBatch} ran the last batch.
+     */
+    public enum BatchMode {
+        // One invoke over a backend input resized to [N, H, W, 3]
+        BATCHED,
+        // Single-image invokes, preprocessing the next image while the current one runs
+        PIPELINED
+    }
+
+    private final DetectionBackend backend;
     private final List<String> labelList;
     private final int[] inputShape;
     private long preprocessingTime;
     private long inferenceTime;
     private long postprocessingTime;
+    private long singlePredictTime;       // Whole last predict() call; predictBatch leaves it alone
+    // Latency distributions, shared by all detectors through the default registry
+    private final LatencyHistogram preprocessingHistogram = MetricsRegistry.getDefault().histogram(MetricsRegistry.YOLO_PREPROCESS);
+    private final LatencyHistogram inferenceHistogram = MetricsRegistry.getDefault().histogram(MetricsRegistry.YOLO_INFERENCE);
+    private final LatencyHistogram postprocessingHistogram = MetricsRegistry.getDefault().histogram(MetricsRegistry.YOLO_POSTPROCESS);
 
     // --- MODIFIED: START ---
     // Removed old output shape variables
@@ -54,20 +70,54 @@ public class ObjectDetection  implements AutoCloseable {
     private final int numClasses;
     private final int outputShapeFeatures;
     private final int outputShapeProposals;
-    private final float[][] postProcessOutput; // Re-usable buffer for raw output
-    private final float[][] outputBoxes;       // Re-usable buffer for [x0,y0,x1,y1] boxes
-    private final float[] outputScores;      // Re-usable buffer for scores
-    private final int[] outputClasses;     // Re-usable buffer for class indices
+    private final DetectionPostprocessor postprocessor; // Decode, NMS and box fill
     // --- MODIFIED: END ---
 
 
     // Re-usable memory
     private final ByteBuffer inputByteBuffer;
-    private final float[] inputFloatArray;
-    private final Mat inputMatAbgr;
-    private final Mat inputMatRgb;
-
-    private final static float INVALID_ANCHOR = -10000.0f;
+    private final Mat inputMatRgba;
+    private final AffinePreprocessor preprocessor;
+    private final ByteBuffer outputByteBuffer;        // Filled in place by the backend
+    private final FloatBuffer outputFloatBuffer;      // Float view of outputByteBuffer read by the decoder
+    private final ArrayList<RectangleBox> detectionBoxes; // Handed out by predict, overwritten on each call
+
+    // Batched inference, allocated on first use and grown with the batch size
+    private int backendBatchSize = 1;
+    private boolean batchResizeSupported = true;
+    private ByteBuffer batchInputBuffer;
+    private ByteBuffer batchOutputBuffer;
+    private ByteBuffer boundBatchInput;               // Views of the batch buffers sized to the bound batch
+    private ByteBuffer boundBatchOutput;
+    private int boundBatchSize;
+    private ByteBuffer[] batchInputSlots = new ByteBuffer[0];
+    private FloatBuffer[] batchOutputSlots = new FloatBuffer[0];
+    private final ArrayList<ImageTransform> batchTransforms = new ArrayList<>();
+    private final ArrayList<ArrayList<RectangleBox>> batchBoxes = new ArrayList<>();
+    private final ArrayList<ArrayList<RectangleBox>> batchResults = new ArrayList<>();
+
+    // Second input slot for pipelined single invokes, allocated on first use
+    private ExecutorService pipelineExecutor;
+    private ByteBuffer pipelineInputBuffer;
+    private Mat pipelineMatRgba;
+    private AffinePreprocessor pipelinePreprocessor;
+
+    private BatchMode lastBatchMode = BatchMode.PIPELINED;
+    private long batchTime;
+    private float batchThroughput;
+
+    private final static float SCORE_THRESHOLD = 0.2f;
+    private final static float IOU_THRESHOLD = 0.2f;
+    private final static int PRE_NMS_TOP_K = 300;
+    private final static int MAX_DETECTIONS = 20;
+    // Suppress overlaps across classes like the original NMS; set to only suppress within a class
+    private final static boolean CLASS_AWARE_NMS = false;
+    // Stretch to the model input like the original resize; set to pad instead
+    private final static boolean LETTERBOX = false;
+    // Pick delegates and CPU threads by measurement instead of taking the first set that loads
+    private final static boolean AUTO_TUNE_DELEGATES = true;
+    // Largest batch submitted in one invoke; longer lists are split into chunks of this size
+    private final static int MAX_BATCH_SIZE = 8;
 
 
     /**
@@ -83,64 +133,58 @@ public class ObjectDetection  implements AutoCloseable {
                            String modelPath,
                            String labelsPath,
                            TFLiteHelpers.DelegateType[][] delegatePriorityOrder) throws IOException, NoSuchAlgorithmException {
+        this(context,
+                TFLiteHelpers.loadModelFile(context.getAssets(), modelPath, ModelIdentity.defaultFor(context)),
+                loadLabels(context, labelsPath),
+                delegatePriorityOrder);
+    }
+
+    /**
+     * Create an Object Detector from an already loaded model, so several detectors can share
+     * one mapping of the model file (see {@link DetectorPool}).
+     *
+     * @param context App context.
+     * @param modelAndHash Model buffer and identifier hash, as returned by {@link TFLiteHelpers#loadModelFile}.
+     * @param labels Class labels, in class index order.
+     */
+    public ObjectDetection(Context context,
+                           Pair<MappedByteBuffer, String> modelAndHash,
+                           List<String> labels,
+                           TFLiteHelpers.DelegateType[][] delegatePriorityOrder) {
+        this(TFLiteDetectionBackend.create(context, modelAndHash, delegatePriorityOrder, AUTO_TUNE_DELEGATES), labels);
+    }
+
+    /**
+     * Create an Object Detector running on the given backend, e.g. {@link OnnxDetectionBackend}
+     * to compare runtimes. Pre- and post-processing are the same for every backend.
+     *
+     * @param backend Inference backend, owned and closed by the detector.
+     * @param labels Class labels, in class index order.
+     */
+    public ObjectDetection(DetectionBackend backend, List<String> labels) {
         // Initialize OpenCV
         new OpenCVNativeLoader().init();
 
-        // Load labels
-        try (BufferedReader labelsFile = new BufferedReader(new InputStreamReader(context.getAssets().open(labelsPath)))) {
-            labelList = labelsFile.lines().collect(Collectors.toCollection(ArrayList::new));
-        }
+        this.backend = backend;
+        labelList = labels;
         // --- MODIFIED: START ---
         numClasses = labelList.size();
         // --- MODIFIED: END ---
 
-        // Load TF Lite model
-        Pair<MappedByteBuffer, String> modelAndHash = TFLiteHelpers.loadModelFile(context.getAssets(), modelPath);
-        Pair<Interpreter, Map<TFLiteHelpers.DelegateType, Delegate>> iResult = TFLiteHelpers.CreateInterpreterAndDelegatesFromOptions(
-                modelAndHash.first,
-                delegatePriorityOrder,
-                AIHubDefaults.numCPUThreads,
-                context.getApplicationInfo().nativeLibraryDir,
-                context.getCacheDir().getAbsolutePath(),
-                modelAndHash.second
-        );
-        tfLiteInterpreter = iResult.first;
-        tfLiteDelegateStore = iResult.second;
-
-        // Validate TF Lite model fits requirements for this app
-        assert tfLiteInterpreter.getInputTensorCount() == 1;
-
-        int batchSize = 1;
-
-        Tensor inputTensor = tfLiteInterpreter.getInputTensor(0);
-        inputShape = inputTensor.shape();
-        DataType inputType = inputTensor.dataType();
-        assert inputShape.length == 4; // 4D Input Tensor: [Batch, Input Height, Input Width, Color Channels]
-        assert inputShape[0] == batchSize;
-        assert inputShape[3] == 3; // Input tensor should have 3 channels
-        assert inputType == DataType.FLOAT32; // Requires an unquantized YOLO variant
+        inputShape = backend.getInputShape();
 
         // --- MODIFIED: START ---
-        // Validate the single output tensor, assuming [1, 4 + numClasses, numProposals]
-        assert tfLiteInterpreter.getOutputTensorCount() == 1;
-
-        Tensor outputTensor = tfLiteInterpreter.getOutputTensor(0);
-        int[] outputShape = outputTensor.shape();
-        DataType outputType = outputTensor.dataType();
-        assert outputShape.length == 3; // 3D Output Tensor: [Batch, Features, Proposals]
-        assert outputShape[0] == batchSize;
+        // Single output tensor [1, 4 + numClasses, numProposals]
+        int[] outputShape = backend.getOutputShape();
         // 4 box coordinates + N classes
         assert outputShape[1] == numClasses + 4;
-        assert outputType == DataType.FLOAT32;
 
         outputShapeFeatures = outputShape[1];
         outputShapeProposals = outputShape[2];
 
         // Allocate re-usable memory for post-processing
-        postProcessOutput = new float[outputShapeFeatures][outputShapeProposals];
-        outputBoxes = new float[outputShapeProposals][4];
-        outputScores = new float[outputShapeProposals];
-        outputClasses = new int[outputShapeProposals];
+        postprocessor = new DetectionPostprocessor(labelList, outputShapeProposals,
+                SCORE_THRESHOLD, IOU_THRESHOLD, PRE_NMS_TOP_K, MAX_DETECTIONS, CLASS_AWARE_NMS);
         // --- MODIFIED: END ---
 
         int inputHeight = inputShape[1];
@@ -150,10 +194,31 @@ public class ObjectDetection  implements AutoCloseable {
         inputByteBuffer = ByteBuffer.allocateDirect(inputHeight * inputWidth * 3 * 4);
         inputByteBuffer.order(ByteOrder.nativeOrder());
 
-        inputFloatArray = new float[inputHeight * inputWidth * 3];
+        inputMatRgba = new Mat(inputHeight, inputWidth, CvType.CV_8UC4);
+        // Preprocessing writes normalized floats straight into the backend input buffer
+        preprocessor = new AffinePreprocessor(inputWidth, inputHeight, LETTERBOX, inputByteBuffer);
+
+        // Output memory is owned by the detector: the backend writes results straight into
+        // it, so nothing is copied out of the output tensor after inference.
+        outputByteBuffer = ByteBuffer.allocateDirect(outputShapeFeatures * outputShapeProposals * 4);
+        outputByteBuffer.order(ByteOrder.nativeOrder());
+        outputFloatBuffer = outputByteBuffer.asFloatBuffer();
 
-        inputMatAbgr = new Mat(inputWidth, inputHeight, CvType.CV_8UC4);
-        inputMatRgb = new Mat(inputWidth, inputHeight, CvType.CV_8UC3);
+        detectionBoxes = RectangleBox.createBoxes(MAX_DETECTIONS);
+    }
+
+    /**
+     * Read a labels file from the app assets, one label per line.
+     *
+     * @param context App context.
+     * @param labelsPath Asset path of the labels file.
+     * @return labels in class index order.
+     * @throws IOException If the file can't be read.
+     */
+    public static List<String> loadLabels(Context context, String labelsPath) throws IOException {
+        try (BufferedReader labelsFile = new BufferedReader(new InputStreamReader(context.getAssets().open(labelsPath)))) {
+            return labelsFile.lines().collect(Collectors.toCollection(ArrayList::new));
+        }
     }
 
     /**
@@ -170,14 +235,61 @@ public class ObjectDetection  implements AutoCloseable {
         return inputShape[1];
     }
 
+    /**
+     * @return how the interpreter configuration was chosen, with per-configuration latencies,
+     * or null if tuning is disabled or the detector does not run on TF Lite.
+     */
+    public TFLiteHelpers.TuningReport getTuningReport() {
+        return backend instanceof TFLiteDetectionBackend
+                ? ((TFLiteDetectionBackend) backend).getTuningReport()
+                : null;
+    }
+
+    /**
+     * @return the inference backend, for logs and comparisons.
+     */
+    public DetectionBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * @return maximum number of detections returned for one image or region.
+     */
+    public int getMaxDetections() {
+        return MAX_DETECTIONS;
+    }
+
+    /**
+     * @param classIdx Class index of a detection.
+     * @return label of the class.
+     */
+    public String getLabel(int classIdx) {
+        return labelList.get(classIdx % labelList.size());
+    }
+
+    /**
+     * Select how overlapping detections are suppressed.
+     * {@link NonMaxSuppression.Strategy#SPATIAL_GRID} is faster when many candidates pass the
+     * score threshold (large inputs, tiled inference); both strategies return the same boxes.
+     *
+     * @param strategy NMS strategy used by subsequent predictions.
+     */
+    public void setNmsStrategy(NonMaxSuppression.Strategy strategy) {
+        postprocessor.setNmsStrategy(strategy);
+    }
+
     /**
      * Free resources used by the detector.
      */
     @Override
     public void close() {
-        tfLiteInterpreter.close();
-        for (Delegate delegate: tfLiteDelegateStore.values()) {
-            delegate.close();
+        backend.close();
+        inputMatRgba.release();
+        preprocessor.close();
+        if (pipelineExecutor != null) {
+            pipelineExecutor.shutdownNow();
+            pipelineMatRgba.release();
+            pipelinePreprocessor.close();
         }
     }
 
@@ -202,75 +314,161 @@ public class ObjectDetection  implements AutoCloseable {
         return postprocessingTime;
     }
 
+    /**
+     * @return total time of the last single-image predict call in nanoseconds. Unlike the stage
+     * times, predictBatch does not overwrite it.
+     */
+    public long getLastPredictTime() {
+        return singlePredictTime;
+    }
+
+    /**
+     * @return how the last call to predictBatch ran: PIPELINED if any of its images ran in
+     * single invokes.
+     */
+    public BatchMode getLastBatchMode() {
+        return lastBatchMode;
+    }
+
+    /**
+     * @return total time of the last predictBatch call in nanoseconds.
+     */
+    public long getLastBatchTime() {
+        return batchTime;
+    }
+
+    /**
+     * @return throughput of the last predictBatch call in images per second.
+     */
+    public float getLastBatchThroughput() {
+        return batchThroughput;
+    }
+
+    /**
+     * @return transform used to preprocess the last input. Its inverse maps model input
+     * coordinates back to image coordinates. Overwritten by the next call to predict.
+     */
+    public ImageTransform getLastInputTransform() {
+        return preprocessor.getTransform();
+    }
+
+    /**
+     * Run one prediction on a blank input, so that lazy delegate initialization and first-run
+     * allocations happen now rather than on the first real image.
+     *
+     * @return the warm-up time in nanoseconds.
+     */
+    public long warmUp() {
+        long startTime = System.nanoTime();
+        Mat blank = Mat.zeros(getInputHeight(), getInputWidth(), CvType.CV_8UC4);
+        try {
+            predict(blank, 0, 0, blank.cols(), blank.rows(), 0, new ArrayList<>());
+        } finally {
+            blank.release();
+        }
+        return System.nanoTime() - startTime;
+    }
+
     /**
      * Predicts and overlays
      * @param image Input image
      * @param sensorOrientation Sensor orientation in degrees. If input image is rotated this
      * number of degrees clockwise, the image should be upright.
+     * @param BBlist Receives the detections. The boxes are owned by this detector and are
+     * overwritten by the next call to predict; copy them if they must outlive it.
      *
-     * @return RGB bitmap of same size and orientation as input image, but with predictions overlay.
+     * Once warmed up with an image of a given size, this method does not allocate.
      */
     public void predict(Bitmap image, int sensorOrientation, ArrayList<RectangleBox> BBlist) {
         // The most common sensor orientation is 90, so we will use it for shape examples.
         // Image comes in requiring 90 degrees cw rotation to be correct;
         // its size is then 1024 x 2048 (width x height)
 
-        long preStartTime = System.nanoTime();
+        long copyStartTime = System.nanoTime();
 
-        //
-        // Preprocessing
-        //
+        // Copy input image into OpenCV Mat (RGBA)
+        Utils.bitmapToMat(image, inputMatRgba);
 
-        // Copy input image into OpenCV Mat
-        Utils.bitmapToMat(image, inputMatAbgr);
-
-        // OpenCV loads the image as BGR, but the network expects RGB
-        Imgproc.cvtColor(inputMatAbgr, inputMatRgb, Imgproc.COLOR_BGRA2RGB);
-
-        // Rotate if necessary
-        Mat correctRotInputImageRgb = new Mat();
-        switch (sensorOrientation) {
-            case 0:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_COUNTERCLOCKWISE);
-                break;
-            case 90:
-                correctRotInputImageRgb = inputMatRgb;
-                break;
-            case 180:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_CLOCKWISE);
-                break;
-            case 270:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_180);
-                break;
-            default:
-                break;
-        }
+        predictRegion(inputMatRgba, 0, 0, inputMatRgba.cols(), inputMatRgba.rows(), sensorOrientation,
+                copyStartTime, BBlist);
+    }
 
-        int inputHeight = inputShape[1];
-        int inputWidth = inputShape[2];
+    /**
+     * Predict on a region of an RGBA image, e.g. one tile of a large image.
+     *
+     * @param rgbaImage         Source image, CV_8UC4 in RGBA order (as produced by Utils.bitmapToMat).
+     *                          Only read, so several detectors may share it concurrently.
+     * @param roiX              Left edge of the region, in image pixels.
+     * @param roiY              Top edge of the region.
+     * @param roiWidth          Region width.
+     * @param roiHeight         Region height.
+     * @param sensorOrientation Sensor orientation in degrees, see {@link #predict(Bitmap, int, ArrayList)}.
+     * @param BBlist            Receives the detections in image coordinates (not relative to the
+     *                          region). The boxes are owned by this detector and are overwritten by
+     *                          the next call to predict.
+     */
+    public void predict(Mat rgbaImage,
+                        float roiX, float roiY, float roiWidth, float roiHeight,
+                        int sensorOrientation, ArrayList<RectangleBox> BBlist) {
+        predictRegion(rgbaImage, roiX, roiY, roiWidth, roiHeight, sensorOrientation, System.nanoTime(), BBlist);
+    }
 
-        // Scale image to the network
-        Mat scaledImage = new Mat(inputHeight, inputWidth, CvType.CV_8UC3);
-        Imgproc.resize(correctRotInputImageRgb, scaledImage, scaledImage.size(), 0, 0, Imgproc.INTER_LINEAR);
-        scaledImage.convertTo(scaledImage, CvType.CV_32FC3, 1 / 255f);
+    // Predict on a region; preprocessing time is counted from preStartTime
+    private void predictRegion(Mat rgbaImage,
+                               float roiX, float roiY, float roiWidth, float roiHeight,
+                               int sensorOrientation, long preStartTime, ArrayList<RectangleBox> BBlist) {
+        // A previous predictBatch may have left the backend resized to a larger batch
+        resizeBackendBatch(1);
 
         //
-        // TFLite inference
+        // Preprocessing
         //
 
-        // Convert from OpenCV to TFLite expected ByteBuffer
-        // To minimize IO overhead, we create a direct-allocated buffer in native order.
+        // Rotate, scale, convert to RGB and normalize in one warp onto the model grid,
+        // writing straight into the backend input buffer
+        ImageTransform transform = preprocessor.process(
+                rgbaImage, roiX, roiY, roiWidth, roiHeight, sensorOrientation);
 
-        scaledImage.get(0, 0, inputFloatArray);
-        FloatBuffer inputFloatBuffer = inputByteBuffer.asFloatBuffer();
-        inputFloatBuffer.put(inputFloatArray);
+        runInference(transform, preStartTime, BBlist);
+    }
 
+    /**
+     * Predict on a YUV_420_888 camera frame (e.g. the planes of a CameraX ImageProxy).
+     * The frame is converted, rotated and scaled straight into the model input in one pass,
+     * without building a full resolution RGB image.
+     *
+     * @param yPlane            Luma plane, direct buffer.
+     * @param uPlane            U plane, direct buffer.
+     * @param vPlane            V plane, direct buffer.
+     * @param yRowStride        Bytes between luma rows.
+     * @param uvRowStride       Bytes between chroma rows.
+     * @param uvPixelStride     Bytes between chroma samples of a row.
+     * @param width             Frame width.
+     * @param height            Frame height.
+     * @param sensorOrientation Sensor orientation in degrees, see {@link #predict(Bitmap, int, ArrayList)}.
+     * @param BBlist            Receives the detections in frame pixel coordinates. The boxes are
+     *                          owned by this detector and overwritten by the next call to predict.
+     */
+    public void predict(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                        int yRowStride, int uvRowStride, int uvPixelStride,
+                        int width, int height,
+                        int sensorOrientation, ArrayList<RectangleBox> BBlist) {
+        resizeBackendBatch(1);
+
+        long preStartTime = System.nanoTime();
+        ImageTransform transform = preprocessor.processYuv(
+                yPlane, uPlane, vPlane, yRowStride, uvRowStride, uvPixelStride, width, height, sensorOrientation);
+        runInference(transform, preStartTime, BBlist);
+    }
+
+    // Run the backend on the preprocessed input and post-process its output
+    private void runInference(ImageTransform transform, long preStartTime, ArrayList<RectangleBox> BBlist) {
         long inferenceStartTime = System.nanoTime();
         preprocessingTime = inferenceStartTime - preStartTime;
 
-        // Run inference
-        ByteBuffer[] inputs = new ByteBuffer[]{inputByteBuffer};
-        tfLiteInterpreter.runForMultipleInputsOutputs(inputs, new HashMap<>());
+        // Run inference. The backend writes its result into outputByteBuffer from index 0;
+        // the decoder reads it with absolute indices.
+        backend.run(inputByteBuffer, outputByteBuffer);
 
         //
         // Postprocessing
@@ -279,180 +477,283 @@ public class ObjectDetection  implements AutoCloseable {
         long postStartTime = System.nanoTime();
         inferenceTime = postStartTime - inferenceStartTime;
 
+        postprocessor.process(outputFloatBuffer, transform, detectionBoxes, BBlist);
+        long endTime = System.nanoTime();
+        postprocessingTime = endTime - postStartTime;
+        singlePredictTime = endTime - preStartTime;
+        recordStageTimes(1);
+    }
 
-        // --- MODIFIED: START ---
-        // Extract the single output tensor
-        ByteBuffer outputBuffer = tfLiteInterpreter.getOutputTensor(0).asReadOnlyBuffer();
-        outputBuffer.order(ByteOrder.nativeOrder());
-        outputBuffer.rewind();
-
-        // Copy buffer to our 2D float array
-        for (int i = 0; i < outputShapeFeatures; i++) {
-            for (int j = 0; j < outputShapeProposals; j++) {
-                postProcessOutput[i][j] = outputBuffer.getFloat();
-            }
-        }
+    // Add the last stage times to the latency histograms, once per image they stand for
+    private void recordStageTimes(int images) {
+        preprocessingHistogram.record(preprocessingTime, images);
+        inferenceHistogram.record(inferenceTime, images);
+        postprocessingHistogram.record(postprocessingTime, images);
+    }
 
-        // De-multiplex the single output tensor into boxes, scores, and classes
-        // This logic is from PostProcessUtils.java
-        for (int i = 0; i < outputShapeProposals; i++) {
-            float maxScore = -Float.MAX_VALUE;
-            int classIndex = -1;
-
-            // Find the class with the highest score
-            for (int c = 0; c < numClasses; c++) {
-                float score = postProcessOutput[c + 4][i];
-                if (score > maxScore) {
-                    maxScore = score;
-                    classIndex = c;
+    /**
+     * Predict on several images.
+     *
+     * If the model accepts a dynamic batch dimension, images are preprocessed into one
+     * [N, H, W, 3] input and run in a single invoke, paying the per-invoke delegate overhead
+     * once. Otherwise (fixed batch size, or a delegate that cannot be re-prepared) each image
+     * is run on its own while the next one is preprocessed on a worker thread.
+     *
+     * @param images            Input images. They may differ in size.
+     * @param sensorOrientation Sensor orientation in degrees, applied to every image.
+     * @param results           Receives one detection list per image, in input order. Lists and
+     *                          boxes are owned by this detector and overwritten by the next call to
+     *                          predictBatch; copy them if they must outlive it.
+     */
+    public void predictBatch(List<Bitmap> images, int sensorOrientation, List<ArrayList<RectangleBox>> results) {
+        long startTime = System.nanoTime();
+        int numImages = images.size();
+        ensureBatchResults(numImages);
+
+        // Images before this index were run in batches
+        int batchedImages = 0;
+        if (batchResizeSupported && numImages > 1) {
+            while (batchedImages < numImages) {
+                int count = Math.min(MAX_BATCH_SIZE, numImages - batchedImages);
+                if (!runBatched(images, batchedImages, count, sensorOrientation)) {
+                    break;
                 }
+                batchedImages += count;
             }
+        }
+        boolean batched = batchedImages == numImages && numImages > 1;
+        if (!batched) {
+            // Only the images no chunk has run yet, e.g. a last chunk of another size
+            runPipelined(images, batchedImages, sensorOrientation);
+        }
 
-            outputScores[i] = maxScore;
-            outputClasses[i] = classIndex;
-
-            // Get box coordinates (cx, cy, w, h)
-            float dx = postProcessOutput[0][i];
-            float dy = postProcessOutput[1][i];
-            float dw = postProcessOutput[2][i];
-            float dh = postProcessOutput[3][i];
-
-            // Convert [cx, cy, w, h] to [x0, y0, x1, y1]
-            // This is what the original NMS and rotation logic expects
-            outputBoxes[i][0] = dx - dw / 2; // x0
-            outputBoxes[i][1] = dy - dh / 2; // y0
-            outputBoxes[i][2] = dx + dw / 2; // x1
-            outputBoxes[i][3] = dy + dh / 2; // y1
+        for (int i = 0; i < numImages; i++) {
+            results.add(batchResults.get(i));
         }
 
-        // Use the new `outputShapeProposals` instead of `numBoxes`
-        float[][] updatedBoxes = new float[outputShapeProposals][4];
-        for (int i = 0; i < outputShapeProposals; i++) {
-            // Use the new `outputScores` array and original 0.2f threshold
-            if (outputScores[i] >= 0.2) {
-                // Use the new `outputBoxes` array
-                float x0 = outputBoxes[i][0];
-                float y0 = outputBoxes[i][1];
-                float x1 = outputBoxes[i][2];
-                float y1 = outputBoxes[i][3];
-
-                // This sensor orientation logic now works as-is
-                switch (sensorOrientation) {
-                    case 0:
-                        updatedBoxes[i][0] = inputHeight - y1;
-                        updatedBoxes[i][1] = x0;
-                        updatedBoxes[i][2] = inputHeight - y0;
-                        updatedBoxes[i][3] = x1;
-                        break;
-                    case 90:
-                        updatedBoxes[i][0] = x0;
-                        updatedBoxes[i][1] = y0;
-                        updatedBoxes[i][2] = x1;
-                        updatedBoxes[i][3] = y1;
-                        break;
-                    case 180:
-                        updatedBoxes[i][0] = y0;
-                        updatedBoxes[i][1] = inputWidth - x1;
-                        updatedBoxes[i][2] = y1;
-                        updatedBoxes[i][3] = inputWidth - x0;
-                        break;
-                    case 270:
-                        updatedBoxes[i][0] = inputWidth - x1;
-                        updatedBoxes[i][1] = inputHeight - y1;
-                        updatedBoxes[i][2] = inputWidth - x0;
-                        updatedBoxes[i][3] = inputHeight - y0;
-                        break;
-                    default:
-                        break;
-                }
-            } else {
-                // Use the new `outputScores` array
-                outputScores[i] = INVALID_ANCHOR;
-            }
+        lastBatchMode = batched ? BatchMode.BATCHED : BatchMode.PIPELINED;
+        batchTime = System.nanoTime() - startTime;
+        batchThroughput = batchTime > 0 ? numImages * 1e9f / batchTime : 0;
+        // Off by default: building the message allocates on every call
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "predictBatch: " + numImages + " images, " + lastBatchMode + ", "
+                    + String.format("%.1f", batchThroughput) + " images/s"
+                    + (singlePredictTime > 0
+                    ? String.format(" (last single predict: %.1f images/s)", 1e9f / singlePredictTime) : ""));
         }
+    }
 
-        NMS nms = new NMS();
-        // Pass the new `outputScores` array to NMS
-        int[] result_indices = nms.nmsScoreFilter(updatedBoxes, outputScores, 20, 0.2f);
-        // --- MODIFIED: END ---
+    /**
+     * Compare one predictBatch call against a loop of single-image predict calls on the same
+     * images.
+     *
+     * @param images            Images to run on.
+     * @param sensorOrientation Sensor orientation in degrees.
+     * @param iterations        Timed runs of each variant, after one warm-up run of each.
+     * @return mean time per image in nanoseconds: [0] for the predict loop, [1] for predictBatch.
+     * Both are logged along with the mode predictBatch ran in.
+     */
+    public long[] benchmarkBatch(List<Bitmap> images, int sensorOrientation, int iterations) {
+        int numImages = Math.max(1, images.size());
+        ArrayList<RectangleBox> boxes = new ArrayList<>();
+        ArrayList<ArrayList<RectangleBox>> results = new ArrayList<>();
+
+        // All single runs first, then all batches, so a backend resize is not timed
+        long singleTotal = 0;
+        for (int i = -1; i < iterations; i++) {
+            long startTime = System.nanoTime();
+            for (Bitmap image : images) {
+                boxes.clear();
+                predict(image, sensorOrientation, boxes);
+            }
+            if (i >= 0) {
+                singleTotal += System.nanoTime() - startTime;
+            }
+        }
 
+        long batchTotal = 0;
+        for (int i = -1; i < iterations; i++) {
+            results.clear();
+            long startTime = System.nanoTime();
+            predictBatch(images, sensorOrientation, results);
+            if (i >= 0) {
+                batchTotal += System.nanoTime() - startTime;
+            }
+        }
 
-        float scaleHeight = (float) image.getHeight() / getInputHeight();
-        float scaleWidth = (float) image.getWidth() / getInputWidth();
+        long runs = (long) Math.max(1, iterations) * numImages;
+        long[] perImage = {singleTotal / runs, batchTotal / runs};
+        Log.i(TAG, "Batch benchmark: " + images.size() + " images, "
+                + String.format("%.1f", perImage[0] / 1e6) + " ms/image with predict, "
+                + String.format("%.1f", perImage[1] / 1e6) + " ms/image with predictBatch ("
+                + lastBatchMode + ")");
+        return perImage;
+    }
 
-        for (int index : result_indices) {
-            if (index == 0) {
-                continue;
-            }
+    /**
+     * Run images [start, start + count) in one invoke.
+     *
+     * @return false if the backend cannot be resized to this batch size; nothing was run.
+     */
+    private boolean runBatched(List<Bitmap> images, int start, int count, int sensorOrientation) {
+        if (!resizeBackendBatch(count)) {
+            return false;
+        }
+        ensureBatchBuffers(count);
 
-            float[] temp_boxes = updatedBoxes[index];
-            RectangleBox tempbox = new RectangleBox();
-            tempbox.left = temp_boxes[0] * scaleWidth;
-            tempbox.bottom = temp_boxes[1] * scaleHeight;
-            tempbox.right = temp_boxes[2] * scaleWidth;
-            tempbox.top = temp_boxes[3] * scaleHeight;
-            // --- MODIFIED: START ---
-            // Use new scores and class arrays
-            tempbox.confidence = outputScores[index];
-            tempbox.classIdx = outputClasses[index];
-            tempbox.label = labelList.get(outputClasses[index] % labelList.size());
-            // --- MODIFIED: END ---
-            BBlist.add(tempbox);
+        long preStartTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Utils.bitmapToMat(images.get(start + i), inputMatRgba);
+            int cols = inputMatRgba.cols();
+            int rows = inputMatRgba.rows();
+            ImageTransform transform = preprocessor.process(
+                    inputMatRgba, 0, 0, cols, rows, sensorOrientation, batchInputSlots[i]);
+            batchTransforms.get(start + i).set(transform);
         }
-        long endTime = System.nanoTime();
-        postprocessingTime = endTime - postStartTime;
-    }
 
-    public class NMS {
-        private float computeOverlapAreaRate(float[] anchor1, float[] anchor2){
+        long inferenceStartTime = System.nanoTime();
+        preprocessingTime = (inferenceStartTime - preStartTime) / count;
 
-            float xx1 = Math.max(anchor1[0], anchor2[0]);
-            float yy1 = Math.max(anchor1[1], anchor2[1]);
-            float xx2 = Math.min(anchor1[2], anchor2[2]);
-            float yy2 = Math.min(anchor1[3], anchor2[3]);
+        backend.run(boundBatchInput, boundBatchOutput);
 
-            float w = xx2 - xx1 + 1;
-            float h = yy2 - yy1 + 1;
-            if(w<0||h<0){
-                return 0;
-            }
+        long postStartTime = System.nanoTime();
+        inferenceTime = (postStartTime - inferenceStartTime) / count;
 
-            float inter = w * h;
+        // Demultiplex: image i owns the i-th [4 + C, proposals] block of the output
+        for (int i = 0; i < count; i++) {
+            ArrayList<RectangleBox> imageResults = batchResults.get(start + i);
+            imageResults.clear();
+            postprocessor.process(batchOutputSlots[i], batchTransforms.get(start + i), batchBoxes.get(start + i), imageResults);
+        }
+        postprocessingTime = (System.nanoTime() - postStartTime) / count;
+        recordStageTimes(count);
+        return true;
+    }
+
+    /**
+     * Run images [first, size) one invoke at a time, preprocessing image i + 1 on the pipeline
+     * thread while image i is in the backend. The two input slots alternate between the images.
+     */
+    private void runPipelined(List<Bitmap> images, int first, int sensorOrientation) {
+        resizeBackendBatch(1);
+        ensurePipeline();
+
+        int numImages = images.size();
+        Future<ImageTransform> pending = first < numImages
+                ? submitPreprocessing(images.get(first), sensorOrientation, first & 1)
+                : null;
+        for (int i = first; i < numImages; i++) {
+            long preStartTime = System.nanoTime();
+            ImageTransform transform = await(pending);
+            long inferenceStartTime = System.nanoTime();
+            preprocessingTime = inferenceStartTime - preStartTime;
+
+            pending = i + 1 < numImages
+                    ? submitPreprocessing(images.get(i + 1), sensorOrientation, (i + 1) & 1)
+                    : null;
+
+            backend.run((i & 1) == 0 ? inputByteBuffer : pipelineInputBuffer, outputByteBuffer);
+
+            long postStartTime = System.nanoTime();
+            inferenceTime = postStartTime - inferenceStartTime;
+
+            ArrayList<RectangleBox> imageResults = batchResults.get(i);
+            imageResults.clear();
+            postprocessor.process(outputFloatBuffer, transform, batchBoxes.get(i), imageResults);
+            postprocessingTime = System.nanoTime() - postStartTime;
+            recordStageTimes(1);
+        }
+    }
 
-            float anchor1_area1 = (anchor1[2] - anchor1[0] + 1)*(anchor1[3] - anchor1[1] + 1);
-            float anchor2_area1 = (anchor2[2] - anchor2[0] + 1)*(anchor2[3] - anchor1[1] + 1);
+    private Future<ImageTransform> submitPreprocessing(Bitmap image, int sensorOrientation, int slot) {
+        final Mat mat = slot == 0 ? inputMatRgba : pipelineMatRgba;
+        final AffinePreprocessor slotPreprocessor = slot == 0 ? preprocessor : pipelinePreprocessor;
+        return pipelineExecutor.submit(() -> {
+            Utils.bitmapToMat(image, mat);
+            return slotPreprocessor.process(mat, sensorOrientation);
+        });
+    }
 
-            return inter / (anchor1_area1 + anchor2_area1 - inter);
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Preprocessing failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while preprocessing", e);
         }
+    }
 
-        public  int[] nmsScoreFilter(float[][] anchors, float[] score, int topN, float thresh){
-            int length = anchors.length;
-            int count = 0;
+    /**
+     * Resize the backend input to the given batch size, if it is not already.
+     *
+     * @return false if the model or its runtime do not support this batch size. The backend
+     * is then back at batch 1 and batching is not attempted again.
+     */
+    private boolean resizeBackendBatch(int batchSize) {
+        if (batchSize == backendBatchSize) {
+            return true;
+        }
+        if (backend.setBatchSize(batchSize)) {
+            backendBatchSize = batchSize;
+            return true;
+        }
+        Log.w(TAG, "Batch size " + batchSize + " not supported by " + backend.getName() + ", using single invokes");
+        batchResizeSupported = false;
+        backendBatchSize = 1;
+        return false;
+    }
 
-            for(int i=0;i<length;i++){
-                if(score[i]==INVALID_ANCHOR){
-                    continue;
-                }
-                if (++count >= topN) {
-                    break;
-                }
-                for(int j=i+1;j<length;j++){
-                    if(score[j]!=INVALID_ANCHOR) {
-                        if (computeOverlapAreaRate(anchors[i], anchors[j]) > thresh) {
-                            score[j] = INVALID_ANCHOR;
-                        }
-                    }
-                }
+    private void ensureBatchBuffers(int batchSize) {
+        int inputBytes = inputShape[1] * inputShape[2] * inputShape[3] * 4;
+        int outputBytes = outputShapeFeatures * outputShapeProposals * 4;
+        if (batchInputSlots.length < batchSize) {
+            batchInputBuffer = ByteBuffer.allocateDirect(batchSize * inputBytes);
+            batchInputBuffer.order(ByteOrder.nativeOrder());
+            batchOutputBuffer = ByteBuffer.allocateDirect(batchSize * outputBytes);
+            batchOutputBuffer.order(ByteOrder.nativeOrder());
+            batchInputSlots = new ByteBuffer[batchSize];
+            batchOutputSlots = new FloatBuffer[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                batchInputSlots[i] = slice(batchInputBuffer, i * inputBytes, inputBytes);
+                batchOutputSlots[i] = slice(batchOutputBuffer, i * outputBytes, outputBytes).asFloatBuffer();
             }
-            int outputIndex[] = new int[count];
-            int j = 0;
-            for(int i=0;i<length && count>0;i++){
-                if(score[i]!=INVALID_ANCHOR){
-                    outputIndex[j++] = i;
-                    count--;
-                }
-            }
-            return outputIndex;
+            boundBatchSize = 0;
+        }
+        // Backends check buffer capacity against the tensor size, so a batch smaller than the
+        // allocation is passed through views of exactly its size
+        if (boundBatchSize != batchSize) {
+            boundBatchInput = slice(batchInputBuffer, 0, batchSize * inputBytes);
+            boundBatchOutput = slice(batchOutputBuffer, 0, batchSize * outputBytes);
+            boundBatchSize = batchSize;
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset).limit(offset + length);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private void ensurePipeline() {
+        if (pipelineExecutor != null) {
+            return;
+        }
+        int inputHeight = inputShape[1];
+        int inputWidth = inputShape[2];
+        pipelineInputBuffer = ByteBuffer.allocateDirect(inputHeight * inputWidth * 3 * 4);
+        pipelineInputBuffer.order(ByteOrder.nativeOrder());
+        pipelineMatRgba = new Mat(inputHeight, inputWidth, CvType.CV_8UC4);
+        pipelinePreprocessor = new AffinePreprocessor(inputWidth, inputHeight, LETTERBOX, pipelineInputBuffer);
+        pipelineExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    private void ensureBatchResults(int numImages) {
+        while (batchResults.size() < numImages) {
+            batchResults.add(new ArrayList<>(MAX_DETECTIONS));
+            batchBoxes.add(RectangleBox.createBoxes(MAX_DETECTIONS));
+            batchTransforms.add(new ImageTransform());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,341 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import ai.onnxruntime.ValueInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * {@link DetectionBackend} running an ONNX export of the YOLO model in ONNX Runtime, e.g. to
+ * compare it with TF Lite on the same device and the same decode / NMS code.
+ *
+ * Both common input layouts are accepted: NHWC models read the caller's input buffer in place,
+ * NCHW models (the default Ultralytics export) get the input transposed into planes first.
+ * Outputs exported as [batch, numProposals, 4 + numClasses] are transposed back to the
+ * [batch, 4 + numClasses, numProposals] layout of the decoder.
+ *
+ * Output tensors are pinned (ONNX Runtime 1.16+), so the session writes into memory owned by
+ * the backend or the caller instead of allocating a result for every run.
+ */
+public class OnnxDetectionBackend implements DetectionBackend {
+    private static final String TAG = "OnnxDetectionBackend";
+    // java.util.logging rather than android.util.Log, so the backend also runs in JVM tests
+    private static final Logger LOG = Logger.getLogger(TAG);
+
+    private final OrtEnvironment ortEnvironment;
+    private final OrtSession ortSession;
+    private final String inputName;
+    private final String outputName;
+    private final boolean channelsFirst;   // Model input is [batch, 3, H, W]
+    private final boolean proposalsFirst;  // Model output is [batch, numProposals, 4 + numClasses]
+    private final boolean dynamicBatch;
+    private final int[] inputShape;        // [1, H, W, 3]
+    private final int[] outputShape;       // [1, 4 + numClasses, numProposals]
+    private int batchSize = 1;
+
+    // Run arguments, built once so run does not allocate
+    private final Map<String, OnnxTensor> inputs = new HashMap<>(1);
+    private final Map<String, OnnxTensor> pinnedOutputs = new HashMap<>(1);
+    private final Set<String> requestedOutputs = Collections.emptySet();
+
+    // Tensors wrapping caller buffers, by buffer. Callers reuse a few buffers, and the tensors
+    // are dropped whenever the batch size changes.
+    private final Map<ByteBuffer, OnnxTensor> wrappedBuffers = new IdentityHashMap<>();
+
+    // Backend-owned tensors for layouts that need a transpose, sized to the batch
+    private FloatBuffer inputPlanes;
+    private OnnxTensor inputPlanesTensor;
+    private FloatBuffer transposedOutput;
+    private OnnxTensor transposedOutputTensor;
+    private float[] imageScratch;
+    private float[] transposeScratch;
+
+    /**
+     * Create a session from a model in memory, e.g. memory-mapped from the APK.
+     *
+     * @param model   Serialized ONNX model. Direct buffers are used without a copy.
+     * @param options Session options (threads, execution providers). Only read while creating
+     *                the session; the caller still owns them and may close them afterwards.
+     * @throws OrtException If the session can't be created.
+     */
+    public OnnxDetectionBackend(ByteBuffer model, OrtSession.SessionOptions options) throws OrtException {
+        this(OrtEnvironment.getEnvironment(), model, null, options);
+    }
+
+    /**
+     * Create a session from a model file, e.g. one pushed to the device with adb.
+     *
+     * @param modelPath Path of the ONNX model.
+     * @param options   Session options (threads, execution providers). Only read while creating
+     *                  the session; the caller still owns them and may close them afterwards.
+     * @throws OrtException If the session can't be created.
+     */
+    public OnnxDetectionBackend(String modelPath, OrtSession.SessionOptions options) throws OrtException {
+        this(OrtEnvironment.getEnvironment(), null, modelPath, options);
+    }
+
+    private OnnxDetectionBackend(OrtEnvironment environment, ByteBuffer model, String modelPath,
+                                 OrtSession.SessionOptions options) throws OrtException {
+        ortEnvironment = environment;
+        ortSession = model != null
+                ? ortEnvironment.createSession(model, options)
+                : ortEnvironment.createSession(modelPath, options);
+        try {
+            if (ortSession.getInputNames().size() != 1 || ortSession.getOutputNames().size() != 1) {
+                throw new IllegalArgumentException("Expected a single input and output, got "
+                        + ortSession.getInputNames() + " -> " + ortSession.getOutputNames());
+            }
+            inputName = ortSession.getInputNames().iterator().next();
+            outputName = ortSession.getOutputNames().iterator().next();
+
+            // Input: [batch, H, W, 3] or [batch, 3, H, W], float32, fixed H and W
+            long[] modelInputShape = tensorShape(ortSession.getInputInfo().get(inputName), "Input");
+            if (modelInputShape.length != 4) {
+                throw new IllegalArgumentException("Expected a 4D input, got " + modelInputShape.length + "D");
+            }
+            channelsFirst = modelInputShape[1] == 3 && modelInputShape[3] != 3;
+            long height = channelsFirst ? modelInputShape[2] : modelInputShape[1];
+            long width = channelsFirst ? modelInputShape[3] : modelInputShape[2];
+            long channels = channelsFirst ? modelInputShape[1] : modelInputShape[3];
+            if (channels != 3 || height <= 0 || width <= 0) {
+                throw new IllegalArgumentException("Unsupported input shape " + Arrays.toString(modelInputShape)
+                        + ", export the model with a fixed image size");
+            }
+            dynamicBatch = modelInputShape[0] <= 0;
+            inputShape = new int[]{1, (int) height, (int) width, 3};
+
+            // Output: [batch, 4 + C, P] or [batch, P, 4 + C], float32. Dimensions left dynamic
+            // by the export are resolved by running the model once.
+            long[] modelOutputShape = tensorShape(ortSession.getOutputInfo().get(outputName), "Output");
+            if (modelOutputShape.length != 3) {
+                throw new IllegalArgumentException("Expected a 3D output, got " + modelOutputShape.length + "D");
+            }
+            if (modelOutputShape[1] <= 0 || modelOutputShape[2] <= 0) {
+                modelOutputShape = probeOutputShape();
+            }
+            // There are always far more proposals than classes
+            proposalsFirst = modelOutputShape[1] > modelOutputShape[2];
+            outputShape = proposalsFirst
+                    ? new int[]{1, (int) modelOutputShape[2], (int) modelOutputShape[1]}
+                    : new int[]{1, (int) modelOutputShape[1], (int) modelOutputShape[2]};
+
+            allocateTensors();
+        } catch (OrtException | RuntimeException e) {
+            ortSession.close();
+            throw e;
+        }
+        LOG.info("Loaded " + getName() + ", input " + (channelsFirst ? "NCHW" : "NHWC")
+                + (dynamicBatch ? " with dynamic batch" : "")
+                + ", output " + (proposalsFirst ? "[P, F]" : "[F, P]"));
+    }
+
+    private static long[] tensorShape(NodeInfo node, String what) {
+        ValueInfo info = node.getInfo();
+        if (!(info instanceof TensorInfo) || ((TensorInfo) info).type != OnnxJavaType.FLOAT) {
+            throw new IllegalArgumentException(what + " must be a float32 tensor, got " + info
+                    + ". Export an unquantized YOLO variant");
+        }
+        return ((TensorInfo) info).getShape();
+    }
+
+    // Run a zero image through the model and return the actual output shape
+    private long[] probeOutputShape() throws OrtException {
+        long[] shape = channelsFirst
+                ? new long[]{1, 3, inputShape[1], inputShape[2]}
+                : new long[]{1, inputShape[1], inputShape[2], 3};
+        FloatBuffer zeros = ByteBuffer.allocateDirect(inputShape[1] * inputShape[2] * 3 * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        try (OnnxTensor input = OnnxTensor.createTensor(ortEnvironment, zeros, shape);
+             OrtSession.Result result = ortSession.run(Collections.singletonMap(inputName, input))) {
+            return ((OnnxTensor) result.get(0)).getInfo().getShape();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "ONNX Runtime";
+    }
+
+    @Override
+    public int[] getInputShape() {
+        return inputShape.clone();
+    }
+
+    @Override
+    public int[] getOutputShape() {
+        return outputShape.clone();
+    }
+
+    @Override
+    public boolean setBatchSize(int batchSize) {
+        if (batchSize == this.batchSize) {
+            return true;
+        }
+        if (batchSize > 1 && !dynamicBatch) {
+            LOG.warning("Batch size " + batchSize + " not supported: the model batch is fixed to 1");
+            return false;
+        }
+        this.batchSize = batchSize;
+        try {
+            allocateTensors();
+            return true;
+        } catch (OrtException e) {
+            LOG.warning("Batch size " + batchSize + " not supported: " + e.getMessage());
+            this.batchSize = 1;
+            try {
+                allocateTensors();
+            } catch (OrtException restoreError) {
+                throw new IllegalStateException("Failed to restore batch size 1", restoreError);
+            }
+            return false;
+        }
+    }
+
+    // (Re)create the tensors that depend on the batch size
+    private void allocateTensors() throws OrtException {
+        closeTensors();
+        int imageFloats = inputShape[1] * inputShape[2] * 3;
+        int outputFloats = outputShape[1] * outputShape[2];
+        if (channelsFirst) {
+            inputPlanes = ByteBuffer.allocateDirect(batchSize * imageFloats * 4)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            inputPlanesTensor = OnnxTensor.createTensor(ortEnvironment, inputPlanes,
+                    new long[]{batchSize, 3, inputShape[1], inputShape[2]});
+            inputs.put(inputName, inputPlanesTensor);
+        }
+        if (proposalsFirst) {
+            transposedOutput = ByteBuffer.allocateDirect(batchSize * outputFloats * 4)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            transposedOutputTensor = OnnxTensor.createTensor(ortEnvironment, transposedOutput,
+                    new long[]{batchSize, outputShape[2], outputShape[1]});
+            pinnedOutputs.put(outputName, transposedOutputTensor);
+        }
+        if (imageScratch == null && (channelsFirst || proposalsFirst)) {
+            imageScratch = new float[Math.max(imageFloats, outputFloats)];
+            transposeScratch = new float[Math.max(imageFloats, outputFloats)];
+        }
+    }
+
+    @Override
+    public void run(ByteBuffer input, ByteBuffer output) {
+        try {
+            if (channelsFirst) {
+                toPlanes(input);
+            } else {
+                inputs.put(inputName, wrap(input, new long[]{batchSize, inputShape[1], inputShape[2], 3}));
+            }
+            if (!proposalsFirst) {
+                pinnedOutputs.put(outputName, wrap(output, new long[]{batchSize, outputShape[1], outputShape[2]}));
+            }
+
+            // Every output is pinned, so the result holds nothing to read; closing it leaves the
+            // pinned tensors alone
+            ortSession.run(inputs, requestedOutputs, pinnedOutputs).close();
+            if (proposalsFirst) {
+                fromProposalsFirst(output);
+            }
+        } catch (OrtException e) {
+            throw new RuntimeException("ONNX Runtime inference failed", e);
+        }
+    }
+
+    // Tensor reading or writing the caller's buffer in place, created on first use
+    private OnnxTensor wrap(ByteBuffer buffer, long[] shape) throws OrtException {
+        OnnxTensor tensor = wrappedBuffers.get(buffer);
+        if (tensor == null) {
+            ByteBuffer view = buffer.duplicate();
+            view.clear();
+            tensor = OnnxTensor.createTensor(ortEnvironment, view.order(ByteOrder.nativeOrder()).asFloatBuffer(), shape);
+            wrappedBuffers.put(buffer, tensor);
+        }
+        return tensor;
+    }
+
+    // [batch, H * W, 3] -> [batch, 3, H * W]
+    private void toPlanes(ByteBuffer input) {
+        int pixels = inputShape[1] * inputShape[2];
+        FloatBuffer source = input.duplicate().order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int b = 0; b < batchSize; b++) {
+            source.position(b * pixels * 3);
+            source.get(imageScratch, 0, pixels * 3);
+            transpose(imageScratch, transposeScratch, pixels, 3);
+            inputPlanes.position(b * pixels * 3);
+            inputPlanes.put(transposeScratch, 0, pixels * 3);
+        }
+        inputPlanes.rewind();
+    }
+
+    // [batch, P, F] -> [batch, F, P]
+    private void fromProposalsFirst(ByteBuffer output) {
+        int features = outputShape[1];
+        int proposals = outputShape[2];
+        FloatBuffer target = output.duplicate().order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int b = 0; b < batchSize; b++) {
+            transposedOutput.position(b * features * proposals);
+            transposedOutput.get(imageScratch, 0, features * proposals);
+            transpose(imageScratch, transposeScratch, proposals, features);
+            target.position(b * features * proposals);
+            target.put(transposeScratch, 0, features * proposals);
+        }
+        transposedOutput.rewind();
+    }
+
+    // Row-major [rows, cols] -> [cols, rows]
+    private static void transpose(float[] source, float[] target, int rows, int cols) {
+        for (int r = 0; r < rows; r++) {
+            int rowStart = r * cols;
+            for (int c = 0; c < cols; c++) {
+                target[c * rows + r] = source[rowStart + c];
+            }
+        }
+    }
+
+    private void closeTensors() {
+        for (OnnxTensor tensor : wrappedBuffers.values()) {
+            tensor.close();
+        }
+        wrappedBuffers.clear();
+        inputs.clear();
+        pinnedOutputs.clear();
+        if (inputPlanesTensor != null) {
+            inputPlanesTensor.close();
+            inputPlanesTensor = null;
+        }
+        if (transposedOutputTensor != null) {
+            transposedOutputTensor.close();
+            transposedOutputTensor = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeTensors();
+        try {
+            ortSession.close();
+        } catch (OrtException e) {
+            LOG.warning("Failed to close the session: " + e.getMessage());
+        }
+    }
+}
@@ -20,6 +20,22 @@ public class RectangleBox {
     public int classIdx;
     public String label;
     public float confidence;
+
+    /**
+     * @return a new box with the same properties, e.g. to keep a pooled box past its owner's next call.
+     */
+    public RectangleBox copy() {
+        RectangleBox box = new RectangleBox();
+        box.top = top;
+        box.bottom = bottom;
+        box.left = left;
+        box.right = right;
+        box.classIdx = classIdx;
+        box.label = label;
+        box.confidence = confidence;
+        return box;
+    }
+
     public static ArrayList<RectangleBox> createBoxes(int num) {
         final ArrayList<RectangleBox> boxes;
         boxes = new ArrayList<>();
@@ -0,0 +1,207 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+/**
+ * Joins detections of one object that {@link TiledObjectDetection} found in pieces.
+ *
+ * An object wider than the tile overlap that straddles a seam is cut by the inner edge of every
+ * tile it appears in, so no tile sees it whole. Such pieces are stitched: two cut boxes of the
+ * same class from different regions are one object if one is cut on the side facing the other,
+ * they overlap across the seam and they line up along it. Their union replaces them.
+ *
+ * A box that is still cut after stitching is dropped only if another region saw the object
+ * whole, i.e. an uncut box of the same class contains most of it. Otherwise it is kept, being
+ * the best view of that object there is.
+ *
+ * Candidates carry their region index in {@link DetectionCandidates#anchor}.
+ */
+final class SeamMerger {
+    // Inner region edges a box touches, see TiledObjectDetection
+    final static int CUT_LEFT = 1;
+    final static int CUT_TOP = 2;
+    final static int CUT_RIGHT = 4;
+    final static int CUT_BOTTOM = 8;
+
+    // Pieces must overlap along the seam by this fraction of the shorter one
+    private final static float STITCH_ALIGNMENT = 0.5f;
+    // A cut box this much inside an uncut box of another region is a piece of that object
+    private final static float CONTAINED_FRACTION = 0.8f;
+
+    // Re-usable memory, grown with the candidate count
+    private int[] parent = new int[0];
+    private int[] groupCutEdges = new int[0];
+    private float[] unionX0 = new float[0];
+    private float[] unionY0 = new float[0];
+    private float[] unionX1 = new float[0];
+    private float[] unionY1 = new float[0];
+    private float[] unionScore = new float[0];
+    private boolean[] dropped = new boolean[0];
+
+    /**
+     * Stitch cut pieces and drop the ones seen whole elsewhere, compacting candidates in place.
+     *
+     * @param candidates Detections of all regions, region index in anchor.
+     * @param cutEdges   CUT_* flags per candidate; updated along with the candidates.
+     * @return number of candidates left.
+     */
+    int merge(DetectionCandidates candidates, int[] cutEdges) {
+        int count = candidates.count;
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+
+        // Union cut pieces that meet across a seam; a piece can have neighbours on several sides
+        for (int i = 0; i < count; i++) {
+            if (cutEdges[i] == 0) {
+                continue;
+            }
+            for (int j = i + 1; j < count; j++) {
+                if (cutEdges[j] != 0 && candidates.anchor[i] != candidates.anchor[j]
+                        && candidates.classIdx[i] == candidates.classIdx[j]
+                        && (stitches(candidates, cutEdges, i, j) || stitches(candidates, cutEdges, j, i))) {
+                    parent[find(i)] = find(j);
+                }
+            }
+        }
+
+        // Union box of each group, kept apart until every piece has been compared with it
+        for (int i = 0; i < count; i++) {
+            unionX0[i] = Float.POSITIVE_INFINITY;
+            unionY0[i] = Float.POSITIVE_INFINITY;
+            unionX1[i] = Float.NEGATIVE_INFINITY;
+            unionY1[i] = Float.NEGATIVE_INFINITY;
+            unionScore[i] = 0;
+            groupCutEdges[i] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            int root = find(i);
+            unionX0[root] = Math.min(unionX0[root], candidates.x0[i]);
+            unionY0[root] = Math.min(unionY0[root], candidates.y0[i]);
+            unionX1[root] = Math.max(unionX1[root], candidates.x1[i]);
+            unionY1[root] = Math.max(unionY1[root], candidates.y1[i]);
+            unionScore[root] = Math.max(unionScore[root], candidates.score[i]);
+        }
+        // The union is cut on a side only if a piece defining that side was
+        for (int i = 0; i < count; i++) {
+            int root = find(i);
+            int edges = 0;
+            if ((cutEdges[i] & CUT_LEFT) != 0 && candidates.x0[i] == unionX0[root]) {
+                edges |= CUT_LEFT;
+            }
+            if ((cutEdges[i] & CUT_TOP) != 0 && candidates.y0[i] == unionY0[root]) {
+                edges |= CUT_TOP;
+            }
+            if ((cutEdges[i] & CUT_RIGHT) != 0 && candidates.x1[i] == unionX1[root]) {
+                edges |= CUT_RIGHT;
+            }
+            if ((cutEdges[i] & CUT_BOTTOM) != 0 && candidates.y1[i] == unionY1[root]) {
+                edges |= CUT_BOTTOM;
+            }
+            groupCutEdges[root] |= edges;
+        }
+        int groups = 0;
+        for (int i = 0; i < count; i++) {
+            if (find(i) == i) {
+                move(candidates, cutEdges, i, groups);
+                candidates.x0[groups] = unionX0[i];
+                candidates.y0[groups] = unionY0[i];
+                candidates.x1[groups] = unionX1[i];
+                candidates.y1[groups] = unionY1[i];
+                candidates.score[groups] = unionScore[i];
+                cutEdges[groups] = groupCutEdges[i];
+                groups++;
+            }
+        }
+
+        // Drop pieces that another region saw whole
+        for (int i = 0; i < groups; i++) {
+            dropped[i] = cutEdges[i] != 0 && containedInWholeBox(candidates, cutEdges, groups, i);
+        }
+        int kept = 0;
+        for (int i = 0; i < groups; i++) {
+            if (!dropped[i]) {
+                move(candidates, cutEdges, i, kept++);
+            }
+        }
+        candidates.count = kept;
+        return kept;
+    }
+
+    // Whether piece a, cut on the side facing b, continues in piece b across the seam
+    private static boolean stitches(DetectionCandidates c, int[] cutEdges, int a, int b) {
+        // b lies to the right of a, and both are cut at the vertical seam between them
+        if ((cutEdges[a] & CUT_RIGHT) != 0 && (cutEdges[b] & CUT_LEFT) != 0
+                && c.x0[a] < c.x0[b] && c.x1[a] < c.x1[b] && c.x0[b] <= c.x1[a]
+                && alignment(c.y0[a], c.y1[a], c.y0[b], c.y1[b]) >= STITCH_ALIGNMENT) {
+            return true;
+        }
+        // b lies below a, both cut at the horizontal seam
+        return (cutEdges[a] & CUT_BOTTOM) != 0 && (cutEdges[b] & CUT_TOP) != 0
+                && c.y0[a] < c.y0[b] && c.y1[a] < c.y1[b] && c.y0[b] <= c.y1[a]
+                && alignment(c.x0[a], c.x1[a], c.x0[b], c.x1[b]) >= STITCH_ALIGNMENT;
+    }
+
+    // Overlap of two intervals over the shorter one
+    private static float alignment(float start0, float end0, float start1, float end1) {
+        float overlap = Math.min(end0, end1) - Math.max(start0, start1);
+        float shorter = Math.min(end0 - start0, end1 - start1);
+        return overlap > 0 && shorter > 0 ? overlap / shorter : 0;
+    }
+
+    private static boolean containedInWholeBox(DetectionCandidates c, int[] cutEdges, int count, int i) {
+        float area = (c.x1[i] - c.x0[i]) * (c.y1[i] - c.y0[i]);
+        if (area <= 0) {
+            return false;
+        }
+        for (int j = 0; j < count; j++) {
+            if (cutEdges[j] != 0 || c.anchor[j] == c.anchor[i] || c.classIdx[j] != c.classIdx[i]) {
+                continue;
+            }
+            float width = Math.min(c.x1[i], c.x1[j]) - Math.max(c.x0[i], c.x0[j]);
+            float height = Math.min(c.y1[i], c.y1[j]) - Math.max(c.y0[i], c.y0[j]);
+            if (width > 0 && height > 0 && width * height >= CONTAINED_FRACTION * area) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void move(DetectionCandidates c, int[] cutEdges, int from, int to) {
+        if (from == to) {
+            return;
+        }
+        c.x0[to] = c.x0[from];
+        c.y0[to] = c.y0[from];
+        c.x1[to] = c.x1[from];
+        c.y1[to] = c.y1[from];
+        c.score[to] = c.score[from];
+        c.classIdx[to] = c.classIdx[from];
+        c.anchor[to] = c.anchor[from];
+        cutEdges[to] = cutEdges[from];
+    }
+
+    private void ensureCapacity(int count) {
+        if (parent.length < count) {
+            parent = new int[count];
+            groupCutEdges = new int[count];
+            unionX0 = new float[count];
+            unionY0 = new float[count];
+            unionX1 = new float[count];
+            unionY1 = new float[count];
+            unionScore = new float[count];
+            dropped = new boolean[count];
+        }
+    }
+}
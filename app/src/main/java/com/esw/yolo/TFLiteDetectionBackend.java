@@ -0,0 +1,174 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.Pair;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Delegate;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link DetectionBackend} running the model in a TF Lite interpreter with QNN / GPU delegates.
+ *
+ * The model input is NHWC, so input and output buffers are bound to the interpreter as is.
+ */
+public class TFLiteDetectionBackend implements DetectionBackend {
+    private static final String TAG = "TFLiteDetectionBackend";
+
+    private final Interpreter tfLiteInterpreter;
+    private final Map<TFLiteHelpers.DelegateType, Delegate> tfLiteDelegateStore;
+    private final TFLiteHelpers.TuningReport tuningReport;
+    private final int[] inputShape;
+    private final int[] outputShape;
+    private int batchSize = 1;
+
+    // Containers handed to the interpreter, built once so run does not allocate
+    private final Object[] inputs = new Object[1];
+    private final Map<Integer, Object> outputs = new HashMap<>();
+
+    /**
+     * Create the interpreter for a model.
+     *
+     * @param context               App context.
+     * @param modelAndHash          Model buffer and identifier hash, as returned by {@link TFLiteHelpers#loadModelFile}.
+     * @param delegatePriorityOrder Delegate order, see {@link TFLiteHelpers#CreateInterpreterAndDelegatesFromOptions}.
+     * @param autoTune              If true, the fastest delegate set and thread count are measured on the
+     *                              first load of this model and reused afterwards. Otherwise the first
+     *                              delegate set that loads is used.
+     */
+    public static TFLiteDetectionBackend create(Context context,
+                                                Pair<MappedByteBuffer, String> modelAndHash,
+                                                TFLiteHelpers.DelegateType[][] delegatePriorityOrder,
+                                                boolean autoTune) {
+        if (autoTune) {
+            TFLiteHelpers.TunedInterpreter tuned = TFLiteHelpers.CreateTunedInterpreterAndDelegates(
+                    modelAndHash.first,
+                    delegatePriorityOrder,
+                    TFLiteHelpers.DefaultThreadCandidates(),
+                    context.getApplicationInfo().nativeLibraryDir,
+                    context.getCacheDir().getAbsolutePath(),
+                    modelAndHash.second
+            );
+            Log.i(TAG, "Interpreter configuration: " + tuned.report);
+            return new TFLiteDetectionBackend(tuned.interpreter, tuned.delegates, tuned.report);
+        }
+        Pair<Interpreter, Map<TFLiteHelpers.DelegateType, Delegate>> iResult = TFLiteHelpers.CreateInterpreterAndDelegatesFromOptions(
+                modelAndHash.first,
+                delegatePriorityOrder,
+                AIHubDefaults.numCPUThreads,
+                context.getApplicationInfo().nativeLibraryDir,
+                context.getCacheDir().getAbsolutePath(),
+                modelAndHash.second
+        );
+        return new TFLiteDetectionBackend(iResult.first, iResult.second, null);
+    }
+
+    /**
+     * @param interpreter  Interpreter of a YOLO model. Owned by the backend from now on.
+     * @param delegates    Delegates used by the interpreter, closed with it.
+     * @param tuningReport How the configuration was chosen, or null.
+     */
+    public TFLiteDetectionBackend(Interpreter interpreter,
+                                  Map<TFLiteHelpers.DelegateType, Delegate> delegates,
+                                  TFLiteHelpers.TuningReport tuningReport) {
+        tfLiteInterpreter = interpreter;
+        tfLiteDelegateStore = delegates;
+        this.tuningReport = tuningReport;
+
+        // Validate TF Lite model fits requirements for this app
+        assert tfLiteInterpreter.getInputTensorCount() == 1;
+
+        Tensor inputTensor = tfLiteInterpreter.getInputTensor(0);
+        inputShape = inputTensor.shape();
+        assert inputShape.length == 4; // 4D Input Tensor: [Batch, Input Height, Input Width, Color Channels]
+        assert inputShape[0] == 1;
+        assert inputShape[3] == 3; // Input tensor should have 3 channels
+        assert inputTensor.dataType() == DataType.FLOAT32; // Requires an unquantized YOLO variant
+
+        // Single output tensor [1, 4 + numClasses, numProposals]
+        assert tfLiteInterpreter.getOutputTensorCount() == 1;
+
+        Tensor outputTensor = tfLiteInterpreter.getOutputTensor(0);
+        outputShape = outputTensor.shape();
+        assert outputShape.length == 3; // 3D Output Tensor: [Batch, Features, Proposals]
+        assert outputShape[0] == 1;
+        assert outputTensor.dataType() == DataType.FLOAT32;
+    }
+
+    /**
+     * @return how the interpreter configuration was chosen, or null if tuning was disabled.
+     */
+    public TFLiteHelpers.TuningReport getTuningReport() {
+        return tuningReport;
+    }
+
+    @Override
+    public String getName() {
+        return tuningReport != null
+                ? "TFLite " + TFLiteHelpers.DelegateSetName(tuningReport.delegates) + ", " + tuningReport.numCPUThreads + " threads"
+                : "TFLite";
+    }
+
+    @Override
+    public int[] getInputShape() {
+        return inputShape.clone();
+    }
+
+    @Override
+    public int[] getOutputShape() {
+        return outputShape.clone();
+    }
+
+    @Override
+    public boolean setBatchSize(int batchSize) {
+        if (batchSize == this.batchSize) {
+            return true;
+        }
+        int[] shape = new int[]{batchSize, inputShape[1], inputShape[2], inputShape[3]};
+        try {
+            tfLiteInterpreter.resizeInput(0, shape);
+            tfLiteInterpreter.allocateTensors();
+            int[] resizedOutputShape = tfLiteInterpreter.getOutputTensor(0).shape();
+            if (resizedOutputShape[0] != batchSize) {
+                throw new IllegalArgumentException("Output batch is fixed to " + resizedOutputShape[0]);
+            }
+            this.batchSize = batchSize;
+            return true;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.w(TAG, "Batch size " + batchSize + " not supported: " + e.getMessage());
+            tfLiteInterpreter.resizeInput(0, inputShape);
+            tfLiteInterpreter.allocateTensors();
+            this.batchSize = 1;
+            return false;
+        }
+    }
+
+    @Override
+    public void run(ByteBuffer input, ByteBuffer output) {
+        // The interpreter copies its result into the output with a relative put, so the buffer
+        // is rewound first; callers read it with absolute indices.
+        output.rewind();
+        inputs[0] = input;
+        outputs.put(0, output);
+        tfLiteInterpreter.runForMultipleInputsOutputs(inputs, outputs);
+    }
+
+    @Override
+    public void close() {
+        tfLiteInterpreter.close();
+        for (Delegate delegate: tfLiteDelegateStore.values()) {
+            delegate.close();
+        }
+    }
+}
@@ -16,21 +16,27 @@ import org.tensorflow.lite.Interpreter;
 import org.tensorflow.lite.gpu.GpuDelegate;
 import org.tensorflow.lite.gpu.GpuDelegateFactory;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 public class TFLiteHelpers {
@@ -157,6 +163,320 @@ public class TFLiteHelpers {
         throw new RuntimeException("Unable to create an interpreter of any kind for the provided model. See log for details.");
     }
 
+    /**
+     * Timing of one delegate set / thread count combination, measured by the tuner.
+     */
+    public static class TuningMeasurement {
+        public final DelegateType[] delegates;
+        public final int numCPUThreads;
+        public final long p50Nanos;     // -1 if the combination failed to load
+        public final long p95Nanos;
+
+        TuningMeasurement(DelegateType[] delegates, int numCPUThreads, long p50Nanos, long p95Nanos) {
+            this.delegates = delegates;
+            this.numCPUThreads = numCPUThreads;
+            this.p50Nanos = p50Nanos;
+            this.p95Nanos = p95Nanos;
+        }
+
+        public boolean failed() {
+            return p50Nanos < 0;
+        }
+
+        @Override
+        public String toString() {
+            String name = DelegateSetName(delegates) + " threads=" + numCPUThreads;
+            if (failed()) {
+                return name + " failed";
+            }
+            return name + String.format(Locale.US, " p50=%.2fms p95=%.2fms", p50Nanos / 1e6, p95Nanos / 1e6);
+        }
+    }
+
+    /**
+     * Outcome of {@link #CreateTunedInterpreterAndDelegates}: the chosen configuration and the
+     * measurements it was chosen from.
+     */
+    public static class TuningReport {
+        public final DelegateType[] delegates;
+        public final int numCPUThreads;
+        public final boolean fromCache;      // true if the configuration was read from a previous tuning run
+        public final List<TuningMeasurement> measurements;
+
+        TuningReport(DelegateType[] delegates, int numCPUThreads, boolean fromCache, List<TuningMeasurement> measurements) {
+            this.delegates = delegates;
+            this.numCPUThreads = numCPUThreads;
+            this.fromCache = fromCache;
+            this.measurements = Collections.unmodifiableList(new ArrayList<>(measurements));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append("Selected ").append(DelegateSetName(delegates))
+                    .append(" threads=").append(numCPUThreads)
+                    .append(fromCache ? " (cached)" : " (tuned)");
+            for (TuningMeasurement measurement : measurements) {
+                report.append("\n  ").append(measurement);
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * Interpreter created by {@link #CreateTunedInterpreterAndDelegates}, with its delegates and
+     * the report of how its configuration was chosen.
+     */
+    public static class TunedInterpreter {
+        public final Interpreter interpreter;
+        public final Map<DelegateType, Delegate> delegates;
+        public final TuningReport report;
+
+        TunedInterpreter(Pair<Interpreter, Map<DelegateType, Delegate>> interpreterAndDelegates, TuningReport report) {
+            this.interpreter = interpreterAndDelegates.first;
+            this.delegates = interpreterAndDelegates.second;
+            this.report = report;
+        }
+    }
+
+    // Timed invokes per configuration, after the warm-up invokes
+    private static final int TUNING_WARMUP_RUNS = 3;
+    private static final int TUNING_TIMED_RUNS = 10;
+    private static final String TUNING_FILE_PREFIX = "tflite_tuning_";
+
+    /**
+     * Create the fastest interpreter for this device, tuning it on first use.
+     *
+     * On the first load of a model identifier, every viable delegate set of
+     * delegatePriorityOrder is combined with every thread count in threadCandidates. Each
+     * combination gets a few warm-up invokes and is then timed; the one with the lowest median
+     * latency wins and is saved in the cache directory under the model identifier. Later loads
+     * create that configuration directly, falling back to a new tuning run if it no longer loads.
+     *
+     * @param tfLiteModel           The model to load.
+     * @param delegatePriorityOrder Candidate delegate sets, see {@link #CreateInterpreterAndDelegatesFromOptions}.
+     * @param threadCandidates      XNNPack thread counts to try.
+     * @param nativeLibraryDir      Android.Context.nativeLibraryDir (native library directory location)
+     * @param cacheDir              Android app cache directory. Tuning results are stored here.
+     * @param modelIdentifier       Unique identifier string for the model being loaded.
+     * @return The created interpreter and associated delegates, as for
+     *         {@link #CreateInterpreterAndDelegatesFromOptions}, with the chosen configuration and
+     *         the per configuration p50/p95 latencies (also restored from the cache).
+     */
+    public static TunedInterpreter CreateTunedInterpreterAndDelegates(
+            MappedByteBuffer tfLiteModel,
+            DelegateType[][] delegatePriorityOrder,
+            int[] threadCandidates,
+            String nativeLibraryDir,
+            String cacheDir,
+            String modelIdentifier) {
+        File tuningFile = new File(cacheDir, TUNING_FILE_PREFIX + modelIdentifier + ".properties");
+
+        // Use the result of a previous run
+        TuningReport cachedReport = LoadTuningReport(tuningFile);
+        if (cachedReport != null) {
+            Pair<Interpreter, Map<DelegateType, Delegate>> cached = CreateInterpreterForConfiguration(
+                    tfLiteModel, cachedReport.delegates, cachedReport.numCPUThreads, nativeLibraryDir, cacheDir, modelIdentifier);
+            if (cached != null) {
+                return new TunedInterpreter(cached, cachedReport);
+            }
+            Log.w(TAG, "Tuned configuration " + DelegateSetName(cachedReport.delegates) + " no longer loads, tuning again");
+        }
+
+        // Time every combination, keeping only the fastest interpreter alive
+        List<TuningMeasurement> measurements = new ArrayList<>();
+        Pair<Interpreter, Map<DelegateType, Delegate>> best = null;
+        TuningMeasurement bestMeasurement = null;
+        for (DelegateType[] delegateSet : delegatePriorityOrder) {
+            for (int numThreads : threadCandidates) {
+                Pair<Interpreter, Map<DelegateType, Delegate>> candidate = CreateInterpreterForConfiguration(
+                        tfLiteModel, delegateSet, numThreads, nativeLibraryDir, cacheDir, modelIdentifier);
+                if (candidate == null) {
+                    measurements.add(new TuningMeasurement(delegateSet, numThreads, -1, -1));
+                    continue;
+                }
+                TuningMeasurement measurement;
+                try {
+                    measurement = TimeInterpreter(candidate.first, delegateSet, numThreads);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Timing " + DelegateSetName(delegateSet) + " failed | " + e.getMessage());
+                    measurement = new TuningMeasurement(delegateSet, numThreads, -1, -1);
+                }
+                measurements.add(measurement);
+
+                if (!measurement.failed() && (bestMeasurement == null || measurement.p50Nanos < bestMeasurement.p50Nanos)) {
+                    if (best != null) {
+                        CloseInterpreterAndDelegates(best);
+                    }
+                    best = candidate;
+                    bestMeasurement = measurement;
+                } else {
+                    CloseInterpreterAndDelegates(candidate);
+                }
+            }
+        }
+
+        if (best == null) {
+            throw new RuntimeException("Unable to create an interpreter of any kind for the provided model. See log for details.");
+        }
+        TuningReport report = new TuningReport(
+                bestMeasurement.delegates, bestMeasurement.numCPUThreads, false, measurements);
+        SaveTuningReport(tuningFile, report);
+        Log.i(TAG, "Tuning finished. " + report);
+        return new TunedInterpreter(best, report);
+    }
+
+    /**
+     * @return default thread counts for {@link #CreateTunedInterpreterAndDelegates}: powers of two
+     * up to the number of cores, plus the AI Hub default.
+     */
+    public static int[] DefaultThreadCandidates() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Set<Integer> candidates = new TreeSet<>();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            candidates.add(threads);
+        }
+        candidates.add(Math.max(1, AIHubDefaults.numCPUThreads));
+        return candidates.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Create an interpreter using exactly the given delegates, or null if any of them fails
+    private static Pair<Interpreter, Map<DelegateType, Delegate>> CreateInterpreterForConfiguration(
+            MappedByteBuffer tfLiteModel,
+            DelegateType[] delegateSet,
+            int numCPUThreads,
+            String nativeLibraryDir,
+            String cacheDir,
+            String modelIdentifier) {
+        Map<DelegateType, Delegate> delegates = new HashMap<>();
+        for (DelegateType delegateType : delegateSet) {
+            Delegate delegate = CreateDelegate(delegateType, nativeLibraryDir, cacheDir, modelIdentifier);
+            if (delegate == null) {
+                delegates.values().forEach(Delegate::close);
+                return null;
+            }
+            delegates.put(delegateType, delegate);
+        }
+
+        @SuppressWarnings("unchecked")
+        Pair<DelegateType, Delegate>[] registration = Arrays.stream(delegateSet)
+                .map(delegateType -> new Pair<>(delegateType, delegates.get(delegateType)))
+                .toArray(Pair[]::new);
+        Interpreter interpreter = CreateInterpreterFromDelegates(registration, numCPUThreads, tfLiteModel);
+        if (interpreter == null) {
+            delegates.values().forEach(Delegate::close);
+            return null;
+        }
+        return new Pair<>(interpreter, delegates);
+    }
+
+    // Warm up, then time invokes on zero-filled inputs
+    private static TuningMeasurement TimeInterpreter(Interpreter interpreter, DelegateType[] delegateSet, int numCPUThreads) {
+        Object[] inputs = new Object[interpreter.getInputTensorCount()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = ByteBuffer.allocateDirect(interpreter.getInputTensor(i).numBytes()).order(ByteOrder.nativeOrder());
+        }
+        Map<Integer, Object> outputs = new HashMap<>();
+        for (int i = 0; i < interpreter.getOutputTensorCount(); i++) {
+            outputs.put(i, ByteBuffer.allocateDirect(interpreter.getOutputTensor(i).numBytes()).order(ByteOrder.nativeOrder()));
+        }
+
+        long[] times = new long[TUNING_TIMED_RUNS];
+        for (int run = 0; run < TUNING_WARMUP_RUNS + TUNING_TIMED_RUNS; run++) {
+            for (Object output : outputs.values()) {
+                ((ByteBuffer) output).rewind();
+            }
+            long startTime = System.nanoTime();
+            interpreter.runForMultipleInputsOutputs(inputs, outputs);
+            if (run >= TUNING_WARMUP_RUNS) {
+                times[run - TUNING_WARMUP_RUNS] = System.nanoTime() - startTime;
+            }
+        }
+        Arrays.sort(times);
+        long p50 = times[(times.length - 1) / 2];
+        long p95 = times[(int) Math.ceil(0.95 * times.length) - 1];
+        return new TuningMeasurement(delegateSet, numCPUThreads, p50, p95);
+    }
+
+    private static void CloseInterpreterAndDelegates(Pair<Interpreter, Map<DelegateType, Delegate>> pair) {
+        pair.first.close();
+        pair.second.values().forEach(Delegate::close);
+    }
+
+    static String DelegateSetName(DelegateType[] delegates) {
+        if (delegates == null || delegates.length == 0) {
+            return "XNNPack";
+        }
+        return Arrays.stream(delegates).map(DelegateType::name).collect(Collectors.joining("+")) + "+XNNPack";
+    }
+
+    // Tuning file format: the chosen delegates and threads, plus one line per measurement.
+    // Returns null if there is no readable tuning file.
+    private static TuningReport LoadTuningReport(File tuningFile) {
+        if (!tuningFile.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (FileInputStream input = new FileInputStream(tuningFile)) {
+            properties.load(input);
+            DelegateType[] delegates = ParseDelegates(properties.getProperty("delegates", ""));
+            int numCPUThreads = Integer.parseInt(properties.getProperty("threads"));
+            List<TuningMeasurement> measurements = new ArrayList<>();
+            int count = Integer.parseInt(properties.getProperty("measurements", "0"));
+            for (int i = 0; i < count; i++) {
+                String prefix = "measurement." + i + ".";
+                measurements.add(new TuningMeasurement(
+                        ParseDelegates(properties.getProperty(prefix + "delegates", "")),
+                        Integer.parseInt(properties.getProperty(prefix + "threads")),
+                        Long.parseLong(properties.getProperty(prefix + "p50")),
+                        Long.parseLong(properties.getProperty(prefix + "p95"))));
+            }
+            return new TuningReport(delegates, numCPUThreads, true, measurements);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable tuning file " + tuningFile + " | " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void SaveTuningReport(File tuningFile, TuningReport report) {
+        Properties properties = new Properties();
+        properties.setProperty("delegates", JoinDelegates(report.delegates));
+        properties.setProperty("threads", Integer.toString(report.numCPUThreads));
+        properties.setProperty("measurements", Integer.toString(report.measurements.size()));
+        for (int i = 0; i < report.measurements.size(); i++) {
+            TuningMeasurement measurement = report.measurements.get(i);
+            String prefix = "measurement." + i + ".";
+            properties.setProperty(prefix + "delegates", JoinDelegates(measurement.delegates));
+            properties.setProperty(prefix + "threads", Integer.toString(measurement.numCPUThreads));
+            properties.setProperty(prefix + "p50", Long.toString(measurement.p50Nanos));
+            properties.setProperty(prefix + "p95", Long.toString(measurement.p95Nanos));
+        }
+
+        // Write to a temporary file first so a crash never leaves a truncated result behind
+        File tempFile = new File(tuningFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(tempFile)) {
+            properties.store(output, "TFLite delegate tuning");
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save tuning result | " + e.getMessage());
+            return;
+        }
+        if (!tempFile.renameTo(tuningFile)) {
+            Log.w(TAG, "Could not save tuning result to " + tuningFile);
+            tempFile.delete();
+        }
+    }
+
+    private static String JoinDelegates(DelegateType[] delegates) {
+        return Arrays.stream(delegates).map(DelegateType::name).collect(Collectors.joining(","));
+    }
+
+    private static DelegateType[] ParseDelegates(String value) {
+        if (value.isEmpty()) {
+            return new DelegateType[0];
+        }
+        return Arrays.stream(value.split(",")).map(DelegateType::valueOf).toArray(DelegateType[]::new);
+    }
+
     /**
      * Create an interpreter from the given delegates.
      *
@@ -194,7 +514,7 @@ public class TFLiteHelpers {
     }
 
     /**
-     * Load a TF Lite model from disk.
+     * Load a TF Lite model from disk, identified by the MD5 of its content.
      *
      * @param assets        Android app asset manager.
      * @param modelFilename File name of the resource to load.
@@ -203,35 +523,39 @@ public class TFLiteHelpers {
      */
     public static Pair<MappedByteBuffer, String> loadModelFile(AssetManager assets, String modelFilename)
             throws IOException, NoSuchAlgorithmException {
-        AssetFileDescriptor fileDescriptor = assets.openFd(modelFilename);
+        return loadModelFile(assets, modelFilename, ModelIdentity.md5());
+    }
+
+    /**
+     * Load a TF Lite model from disk.
+     *
+     * @param assets        Android app asset manager.
+     * @param modelFilename File name of the resource to load.
+     * @param identity      Strategy computing the model identifier, see {@link ModelIdentity}.
+     * @return The loaded model in MappedByteBuffer format, and a unique model identifier string.
+     * @throws IOException If the model file does not exist or cannot be read.
+     */
+    public static Pair<MappedByteBuffer, String> loadModelFile(AssetManager assets, String modelFilename, ModelIdentity identity)
+            throws IOException {
+        long startTime = System.nanoTime();
         MappedByteBuffer buffer;
         String hash;
 
-        try (FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor())) {
+        try (AssetFileDescriptor fileDescriptor = assets.openFd(modelFilename);
+             FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor())) {
             FileChannel fileChannel = inputStream.getChannel();
             long startOffset = fileDescriptor.getStartOffset();
             long declaredLength = fileDescriptor.getDeclaredLength();
 
             // Map the file to a buffer
             buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+            long mapTime = System.nanoTime();
 
-            // Compute the hash
-            MessageDigest hashDigest = MessageDigest.getInstance("MD5");
-            inputStream.skip(startOffset);
-            try (DigestInputStream dis = new DigestInputStream(inputStream, hashDigest)) {
-                byte[] data = new byte[8192];
-                int numRead = 0;
-                while (numRead < declaredLength) {
-                    numRead += dis.read(data, 0, Math.min(8192, (int)declaredLength - numRead));
-                }; // Computing MD5 hash
-            }
-
-            // Convert hash to string
-            StringBuilder hex = new StringBuilder();
-            for (byte b : hashDigest.digest()) {
-                hex.append(String.format("%02x", b));
-            }
-            hash = hex.toString();
+            // Identify the model from the mapping, the file is not read a second time
+            hash = identity.identify(modelFilename, startOffset, declaredLength, buffer);
+            Log.i(TAG, String.format(Locale.US, "Loaded %s (%d bytes): map %.2f ms, identity %s %.2f ms",
+                    modelFilename, declaredLength, (mapTime - startTime) / 1e6,
+                    identity.name(), (System.nanoTime() - mapTime) / 1e6));
         }
 
         return new Pair<>(buffer, hash);
@@ -0,0 +1,386 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import org.opencv.android.Utils;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sliced inference for images much larger than the model input.
+ *
+ * The image is cut into overlapping square tiles that are each warped straight onto the model
+ * input (see {@link ObjectDetection#predict(Mat, float, float, float, float, int, ArrayList)}),
+ * so small objects keep their resolution. Tiles run in parallel on detectors leased from a
+ * {@link DetectorPool}.
+ * Detections already come back in image coordinates.
+ *
+ * An object wider than the overlap that straddles a seam is cut by the inner edge of every tile
+ * it appears in. Those pieces are stitched back into one box (see {@link SeamMerger}), and a
+ * piece is only dropped if another region saw the whole object. Duplicates found by overlapping
+ * tiles are then merged with class-aware NMS.
+ *
+ * Optionally the whole image is also run once at model resolution, so large objects that do not
+ * fit in a tile are found whole by that pass.
+ */
+public class TiledObjectDetection implements AutoCloseable {
+    private static final String TAG = "TiledObjectDetection";
+
+    private final static float DEFAULT_OVERLAP = 0.2f;
+    private final static float MERGE_IOU_THRESHOLD = 0.5f;
+    private final static int MAX_MERGED_DETECTIONS = 100;
+    // Boxes this close (in image pixels) to an inner tile edge are considered cut by it, see SeamMerger
+    private final static float EDGE_MARGIN = 2.0f;
+
+    private final DetectorPool pool;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    private int tileSize;
+    private float overlap = DEFAULT_OVERLAP;
+    private boolean includeFullImage = true;
+
+    // Re-usable memory, grown when the tile count grows
+    private final Mat imageRgba = new Mat();
+    private final ArrayList<Future<Integer>> pending = new ArrayList<>();
+    private float[] tileRects = new float[0];          // x, y, width, height per region
+    private DetectionCandidates tileCandidates;        // maxPerRegion slots per region
+    private final ArrayList<ArrayList<RectangleBox>> regionResults = new ArrayList<>(); // Detector output per region
+    private int[] tileCutEdges = new int[0];           // SeamMerger.CUT_* flags per tile candidate
+    private DetectionCandidates merged;
+    private int[] mergedCutEdges = new int[0];
+    private final SeamMerger seamMerger = new SeamMerger();
+    private NonMaxSuppression nms;
+    private final int[] keptCandidates = new int[MAX_MERGED_DETECTIONS];
+    private final ArrayList<RectangleBox> detectionBoxes = RectangleBox.createBoxes(MAX_MERGED_DETECTIONS);
+    private final int maxPerRegion;
+
+    private int lastTileCount;
+    private long lastLatency;
+
+    /**
+     * @param pool Detectors to run tiles on. One tile runs per pool detector at a time, so the
+     *             pool size sets the parallelism. The pool stays owned by the caller and may be
+     *             shared with other users, which then compete for its detectors.
+     */
+    public TiledObjectDetection(DetectorPool pool) {
+        this.pool = pool;
+        parallelism = pool.getSize();
+        executor = Executors.newFixedThreadPool(parallelism);
+        ObjectDetection first = pool.peek();
+        tileSize = Math.max(first.getInputWidth(), first.getInputHeight());
+        maxPerRegion = first.getMaxDetections();
+    }
+
+    /**
+     * @param tileSize Tile side in image pixels. Defaults to the model input size, so tiles are
+     *                 run at native resolution.
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @param overlap Fraction of the tile size shared by neighbouring tiles, in [0, 0.9].
+     *                Objects smaller than the overlap always appear whole in some tile.
+     */
+    public void setOverlap(float overlap) {
+        if (!(overlap >= 0 && overlap <= 0.9f)) {
+            throw new IllegalArgumentException("Overlap must be in [0, 0.9]");
+        }
+        this.overlap = overlap;
+    }
+
+    public float getOverlap() {
+        return overlap;
+    }
+
+    /**
+     * @param includeFullImage Also run the whole image at model resolution, for objects larger
+     *                         than a tile. Enabled by default.
+     */
+    public void setIncludeFullImage(boolean includeFullImage) {
+        this.includeFullImage = includeFullImage;
+    }
+
+    /**
+     * @return number of parallel tile runs.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return number of regions (tiles plus the optional full image pass) run by the last predict.
+     */
+    public int getLastTileCount() {
+        return lastTileCount;
+    }
+
+    /**
+     * @return latency of the last predict in nanoseconds.
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Detect objects in a large image.
+     *
+     * @param image             Input image.
+     * @param sensorOrientation Sensor orientation in degrees, see {@link ObjectDetection#predict(Bitmap, int, ArrayList)}.
+     * @param BBlist            Receives the merged detections in image coordinates. The boxes are
+     *                          owned by this object and overwritten by the next call to predict.
+     */
+    public void predict(Bitmap image, int sensorOrientation, ArrayList<RectangleBox> BBlist) {
+        long startTime = System.nanoTime();
+        Utils.bitmapToMat(image, imageRgba);
+        predict(imageRgba, sensorOrientation, BBlist);
+        lastLatency = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Detect objects in a large RGBA image.
+     *
+     * @see #predict(Bitmap, int, ArrayList)
+     */
+    public void predict(Mat rgbaImage, int sensorOrientation, ArrayList<RectangleBox> BBlist) {
+        long startTime = System.nanoTime();
+        int imageWidth = rgbaImage.cols();
+        int imageHeight = rgbaImage.rows();
+
+        int numRegions = layoutTiles(imageWidth, imageHeight);
+        ensureCapacity(numRegions);
+        int numTiles = includeFullImage ? numRegions - 1 : numRegions;
+
+        // Each region writes its detections to its own block of tileCandidates
+        pending.clear();
+        for (int r = 0; r < numRegions; r++) {
+            final int region = r;
+            pending.add(executor.submit(() ->
+                    detectRegion(rgbaImage, region, sensorOrientation, imageWidth, imageHeight)));
+        }
+
+        // Gather the blocks into one candidate list
+        merged.count = 0;
+        for (int r = 0; r < numRegions; r++) {
+            int regionCount = await(pending.get(r));
+            int base = r * maxPerRegion;
+            for (int i = 0; i < regionCount; i++) {
+                int dst = merged.count++;
+                merged.x0[dst] = tileCandidates.x0[base + i];
+                merged.y0[dst] = tileCandidates.y0[base + i];
+                merged.x1[dst] = tileCandidates.x1[base + i];
+                merged.y1[dst] = tileCandidates.y1[base + i];
+                merged.score[dst] = tileCandidates.score[base + i];
+                merged.classIdx[dst] = tileCandidates.classIdx[base + i];
+                merged.anchor[dst] = r;
+                mergedCutEdges[dst] = tileCutEdges[base + i];
+            }
+        }
+        int numCandidates = merged.count;
+
+        // Stitch objects cut by seams, then merge duplicates found by overlapping tiles
+        seamMerger.merge(merged, mergedCutEdges);
+        int numKept = nms.run(merged, keptCandidates);
+        ObjectDetection labels = pool.peek();
+        for (int k = 0; k < numKept; k++) {
+            int index = keptCandidates[k];
+            RectangleBox box = detectionBoxes.get(k);
+            box.left = merged.x0[index];
+            box.bottom = merged.y0[index];
+            box.right = merged.x1[index];
+            box.top = merged.y1[index];
+            box.confidence = merged.score[index];
+            box.classIdx = merged.classIdx[index];
+            box.label = labels.getLabel(merged.classIdx[index]);
+            BBlist.add(box);
+        }
+
+        lastTileCount = numRegions;
+        lastLatency = System.nanoTime() - startTime;
+        // Off by default: building the message allocates on every call
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Tiled predict: " + numTiles + " tiles" + (includeFullImage ? " + full image" : "")
+                    + ", " + numCandidates + " candidates, " + merged.count + " after seams, " + numKept + " kept, "
+                    + String.format("%.1f", lastLatency / 1e6) + " ms");
+        }
+    }
+
+    /**
+     * Measure predict latency for several tile sizes.
+     *
+     * @param image             Image to run on.
+     * @param sensorOrientation Sensor orientation in degrees.
+     * @param tileSizes         Tile sizes to try, in image pixels.
+     * @param iterations        Timed runs per tile size, after one warm-up run.
+     * @return mean latency in nanoseconds for each tile size. The region count of each
+     * configuration is logged along with its latency.
+     */
+    public long[] benchmark(Bitmap image, int sensorOrientation, int[] tileSizes, int iterations) {
+        int originalTileSize = tileSize;
+        long[] latencies = new long[tileSizes.length];
+        ArrayList<RectangleBox> boxes = new ArrayList<>();
+        Utils.bitmapToMat(image, imageRgba);
+        try {
+            for (int t = 0; t < tileSizes.length; t++) {
+                setTileSize(tileSizes[t]);
+                boxes.clear();
+                predict(imageRgba, sensorOrientation, boxes);
+
+                long total = 0;
+                for (int i = 0; i < iterations; i++) {
+                    boxes.clear();
+                    long startTime = System.nanoTime();
+                    predict(imageRgba, sensorOrientation, boxes);
+                    total += System.nanoTime() - startTime;
+                }
+                latencies[t] = total / Math.max(1, iterations);
+                Log.i(TAG, "Benchmark: tile size " + tileSizes[t] + ", " + lastTileCount + " regions, "
+                        + String.format("%.1f", latencies[t] / 1e6) + " ms/image, parallelism " + parallelism);
+            }
+        } finally {
+            tileSize = originalTileSize;
+        }
+        return latencies;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        imageRgba.release();
+    }
+
+    private int detectRegion(Mat rgbaImage, int region, int sensorOrientation,
+                             int imageWidth, int imageHeight) throws InterruptedException {
+        float x = tileRects[4 * region];
+        float y = tileRects[4 * region + 1];
+        float width = tileRects[4 * region + 2];
+        float height = tileRects[4 * region + 3];
+        // Inner edges are the ones shared with a neighbouring tile
+        float innerLeft = x > 0 ? x + EDGE_MARGIN : Float.NEGATIVE_INFINITY;
+        float innerTop = y > 0 ? y + EDGE_MARGIN : Float.NEGATIVE_INFINITY;
+        float innerRight = x + width < imageWidth ? x + width - EDGE_MARGIN : Float.POSITIVE_INFINITY;
+        float innerBottom = y + height < imageHeight ? y + height - EDGE_MARGIN : Float.POSITIVE_INFINITY;
+
+        try (DetectorPool.Lease lease = pool.lease()) {
+            // Each region has its own list, so concurrent regions never share one
+            ArrayList<RectangleBox> boxes = regionResults.get(region);
+            boxes.clear();
+            lease.detector().predict(rgbaImage, x, y, width, height, sensorOrientation, boxes);
+
+            // Copy out while the detector is leased; its boxes are reused by the next tile
+            int base = region * maxPerRegion;
+            int count = 0;
+            for (RectangleBox box : boxes) {
+                int dst = base + count++;
+                tileCutEdges[dst] = (box.left < innerLeft ? SeamMerger.CUT_LEFT : 0)
+                        | (box.bottom < innerTop ? SeamMerger.CUT_TOP : 0)
+                        | (box.right > innerRight ? SeamMerger.CUT_RIGHT : 0)
+                        | (box.top > innerBottom ? SeamMerger.CUT_BOTTOM : 0);
+                tileCandidates.x0[dst] = box.left;
+                tileCandidates.y0[dst] = box.bottom;
+                tileCandidates.x1[dst] = box.right;
+                tileCandidates.y1[dst] = box.top;
+                tileCandidates.score[dst] = box.confidence;
+                tileCandidates.classIdx[dst] = box.classIdx;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Fill tileRects with evenly spaced tiles covering the image, followed by the whole image
+     * if the full pass is enabled.
+     *
+     * @return number of regions.
+     */
+    private int layoutTiles(int imageWidth, int imageHeight) {
+        int tileWidth = Math.min(tileSize, imageWidth);
+        int tileHeight = Math.min(tileSize, imageHeight);
+        int columns = tileCount(imageWidth, tileWidth);
+        int rows = tileCount(imageHeight, tileHeight);
+
+        int numRegions = rows * columns + (includeFullImage ? 1 : 0);
+        if (tileRects.length < 4 * numRegions) {
+            tileRects = new float[4 * numRegions];
+        }
+        int r = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                tileRects[4 * r] = tileOffset(column, columns, imageWidth, tileWidth);
+                tileRects[4 * r + 1] = tileOffset(row, rows, imageHeight, tileHeight);
+                tileRects[4 * r + 2] = tileWidth;
+                tileRects[4 * r + 3] = tileHeight;
+                r++;
+            }
+        }
+        if (includeFullImage) {
+            tileRects[4 * r] = 0;
+            tileRects[4 * r + 1] = 0;
+            tileRects[4 * r + 2] = imageWidth;
+            tileRects[4 * r + 3] = imageHeight;
+        }
+        return numRegions;
+    }
+
+    // Number of tiles of the given size needed to cover length with at least the configured overlap
+    private int tileCount(int length, int tile) {
+        if (length <= tile) {
+            return 1;
+        }
+        int stride = Math.max(1, Math.round(tile * (1 - overlap)));
+        return (length - tile + stride - 1) / stride + 1;
+    }
+
+    // Tiles are spread evenly so the first and last ones touch the image borders
+    private static int tileOffset(int index, int count, int length, int tile) {
+        if (count == 1) {
+            return 0;
+        }
+        return (int) ((long) index * (length - tile) / (count - 1));
+    }
+
+    private void ensureCapacity(int numRegions) {
+        while (regionResults.size() < numRegions) {
+            regionResults.add(new ArrayList<>(maxPerRegion));
+        }
+        int capacity = numRegions * maxPerRegion;
+        if (tileCandidates == null || tileCandidates.capacity() < capacity) {
+            tileCandidates = new DetectionCandidates(capacity);
+            tileCutEdges = new int[capacity];
+            merged = new DetectionCandidates(capacity);
+            mergedCutEdges = new int[capacity];
+            nms = new NonMaxSuppression(capacity, capacity, MAX_MERGED_DETECTIONS, MERGE_IOU_THRESHOLD, true);
+            nms.setStrategy(NonMaxSuppression.Strategy.SPATIAL_GRID);
+        }
+    }
+
+    private static int await(Future<Integer> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Tile detection failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while detecting tiles", e);
+        }
+    }
+}
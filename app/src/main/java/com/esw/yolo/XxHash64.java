@@ -0,0 +1,94 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64 (https://github.com/Cyan4973/xxHash), a fast non-cryptographic hash.
+ *
+ * Reads the buffer in place with absolute 8-byte loads, so hashing a memory-mapped model does
+ * not copy it to the Java heap.
+ */
+public final class XxHash64 {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private XxHash64() {
+    }
+
+    /**
+     * Hash the remaining bytes of a buffer. The buffer position is not changed.
+     */
+    public static long hash(ByteBuffer buffer, long seed) {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int offset = data.position();
+        final int end = data.limit();
+        final int length = end - offset;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            final int stripesEnd = end - 32;
+            while (offset <= stripesEnd) {
+                v1 = round(v1, data.getLong(offset));
+                v2 = round(v2, data.getLong(offset + 8));
+                v3 = round(v3, data.getLong(offset + 16));
+                v4 = round(v4, data.getLong(offset + 24));
+                offset += 32;
+            }
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                    + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += length;
+
+        while (offset + 8 <= end) {
+            hash ^= round(0, data.getLong(offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            offset += 8;
+        }
+        if (offset + 4 <= end) {
+            hash ^= (data.getInt(offset) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+        while (offset < end) {
+            hash ^= (data.get(offset) & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            offset++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long accumulator, long lane) {
+        accumulator += lane * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        accumulator ^= round(0, value);
+        return accumulator * PRIME1 + PRIME4;
+    }
+}
@@ -0,0 +1,105 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes the single YOLO output tensor [1, 4 + numClasses, numProposals] straight from
+ * the tensor buffer into {@link DetectionCandidates}.
+ *
+ * The tensor is read class-major: every class row is scanned contiguously to find the best
+ * score of each proposal. Proposals whose best score is below the threshold are dropped before
+ * their box is ever read, so box conversion and the mapping back to source image coordinates
+ * only run for the (usually few) proposals that survive.
+ */
+public class YoloOutputDecoder {
+    private final int numClasses;
+    private final int numProposals;
+
+    // Re-usable per-proposal maxima, filled one class row at a time
+    private final float[] bestScores;
+    private final int[] bestClasses;
+    private final float[] mappedBox = new float[4];
+
+    /**
+     * @param numClasses   Number of class rows following the 4 box rows.
+     * @param numProposals Number of proposals (anchors) per class row.
+     */
+    public YoloOutputDecoder(int numClasses, int numProposals) {
+        this.numClasses = numClasses;
+        this.numProposals = numProposals;
+        bestScores = new float[numProposals];
+        bestClasses = new int[numProposals];
+    }
+
+    /**
+     * @return number of proposals in a single output tensor.
+     */
+    public int getNumProposals() {
+        return numProposals;
+    }
+
+    /**
+     * Decode one output tensor.
+     *
+     * @param output            Output tensor data, laid out [4 + numClasses][numProposals] from index 0.
+     * @param transform         Mapping used to preprocess the input; boxes are mapped back to source
+     *                          image coordinates through its inverse.
+     * @param scoreThreshold    Proposals with a best class score below this value are dropped.
+     * @param candidates        Destination; overwritten with the surviving proposals in anchor order.
+     * @return number of candidates written.
+     */
+    public int decode(FloatBuffer output, ImageTransform transform, float scoreThreshold, DetectionCandidates candidates) {
+        final int proposals = numProposals;
+
+        // Best class per proposal. Classes are visited in ascending order with a strict
+        // comparison, so ties resolve to the lowest class index.
+        Arrays.fill(bestScores, -Float.MAX_VALUE);
+        Arrays.fill(bestClasses, -1);
+        for (int c = 0; c < numClasses; c++) {
+            int rowOffset = (c + 4) * proposals;
+            for (int i = 0; i < proposals; i++) {
+                float score = output.get(rowOffset + i);
+                if (score > bestScores[i]) {
+                    bestScores[i] = score;
+                    bestClasses[i] = c;
+                }
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < proposals; i++) {
+            float score = bestScores[i];
+            if (!(score >= scoreThreshold)) {
+                continue;
+            }
+
+            // Convert [cx, cy, w, h] to [x0, y0, x1, y1]
+            float dx = output.get(i);
+            float dy = output.get(proposals + i);
+            float dw = output.get(2 * proposals + i);
+            float dh = output.get(3 * proposals + i);
+            float x0 = dx - dw / 2;
+            float y0 = dy - dh / 2;
+            float x1 = dx + dw / 2;
+            float y1 = dy + dh / 2;
+
+            // Undo the rotation and scaling applied during preprocessing
+            transform.mapBoxToSource(x0, y0, x1, y1, mappedBox);
+            candidates.x0[count] = mappedBox[0];
+            candidates.y0[count] = mappedBox[1];
+            candidates.x1[count] = mappedBox[2];
+            candidates.y1[count] = mappedBox[3];
+            candidates.score[count] = score;
+            candidates.classIdx[count] = bestClasses[i];
+            candidates.anchor[count] = i;
+            count++;
+        }
+        candidates.count = count;
+        return count;
+    }
+}
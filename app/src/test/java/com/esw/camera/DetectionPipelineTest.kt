@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.esw.camera
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs [DetectionPipeline] on the JVM with a [SyntheticFrameSource] and a detector that is
+ * slower than the source. Every synthetic frame holds its own index, which equals its sequence
+ * number, so results can be traced back to the frame they were computed from.
+ */
+class DetectionPipelineTest {
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+    }
+
+    @Test
+    fun blockedDetectorResumesWithNewestFrame() {
+        val source = syntheticSource(framesPerSecond = 500)
+        val ring = FrameRing(3) { width, height -> IntArray(width * height) }
+        val firstFrameTaken = CountDownLatch(1)
+        val resumeDetector = CountDownLatch(1)
+        var calls = 0
+        val pipeline =
+            DetectionPipeline(source, ring) { frame ->
+                if (calls++ == 0) {
+                    firstFrameTaken.countDown()
+                    resumeDetector.await()
+                }
+                frame.requireBuffer()[0]
+            }
+
+        pipeline.start(scope)
+        try {
+            assertTrue(firstFrameTaken.await(5, TimeUnit.SECONDS))
+            // Frames pile up behind the blocked detector; stop the source once plenty were published
+            waitUntil { ring.publishedFrames >= 20 }
+            source.stop()
+            resumeDetector.countDown()
+            waitUntil { pipeline.stats.value.processedFrames == 2L }
+            // Everything published while blocked collapses into a single frame
+            Thread.sleep(50)
+
+            val stats = pipeline.stats.value
+            val result = pipeline.results.value!!
+            assertEquals(2L, stats.processedFrames)
+            assertEquals(ring.publishedFrames - 1, result.frameSequence)
+            assertEquals(result.frameSequence, result.value.toLong())
+            assertEquals(FRAME_WIDTH, result.frameWidth)
+            assertEquals(FRAME_HEIGHT, result.frameHeight)
+            // With one producer, one consumer and three slots the producer always finds a slot,
+            // so every drop is a published frame that was never processed
+            assertEquals(stats.publishedFrames - 2, stats.droppedFrames)
+            assertEquals(0L, stats.failedFrames)
+        } finally {
+            resumeDetector.countDown()
+            pipeline.stop()
+        }
+    }
+
+    @Test
+    fun slowDetectorDropsFramesAndOnlyMovesForward() {
+        val source = syntheticSource(framesPerSecond = 400)
+        val ring = FrameRing(3) { width, height -> IntArray(width * height) }
+        // Read here while the detector coroutine may still be finishing a frame
+        val sequences = Collections.synchronizedList(ArrayList<Long>())
+        val mismatchedFrames = AtomicInteger()
+        val pipeline =
+            DetectionPipeline(source, ring) { frame ->
+                Thread.sleep(10)
+                if (frame.requireBuffer()[0].toLong() != frame.sequence) {
+                    mismatchedFrames.incrementAndGet()
+                }
+                sequences.add(frame.sequence)
+                frame.sequence
+            }
+
+        pipeline.start(scope)
+        try {
+            waitUntil { pipeline.stats.value.processedFrames >= 10 }
+        } finally {
+            pipeline.stop()
+        }
+
+        val stats = pipeline.stats.value
+        assertTrue(stats.droppedFrames > 0)
+        assertTrue(stats.processedFrames < stats.publishedFrames)
+        assertEquals(0, mismatchedFrames.get())
+        assertEquals(0L, stats.failedFrames)
+        // Latest wins: each processed frame is newer than the previous one, skipping the dropped ones
+        val processed = synchronized(sequences) { sequences.toList() }
+        for (i in 1 until processed.size) {
+            assertTrue(processed[i] > processed[i - 1])
+        }
+        assertTrue(processed.last() - processed.first() >= processed.size)
+        assertEquals(pipeline.results.value!!.value, pipeline.results.value!!.frameSequence)
+    }
+
+    private fun syntheticSource(framesPerSecond: Int) =
+        SyntheticFrameSource<IntArray>(FRAME_WIDTH, FRAME_HEIGHT, framesPerSecond) { buffer, index ->
+            buffer[0] = index.toInt()
+        }
+
+    private fun waitUntil(condition: () -> Boolean) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (!condition()) {
+            assertTrue("Timed out", System.nanoTime() < deadline)
+            Thread.sleep(1)
+        }
+    }
+
+    companion object {
+        private const val FRAME_WIDTH = 8
+        private const val FRAME_HEIGHT = 6
+    }
+}
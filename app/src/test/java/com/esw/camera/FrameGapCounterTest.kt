@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class FrameGapCounterTest {
+    private val interval = 33_333_333L
+
+    @Test
+    fun steadyFramesWithJitterAreNotCounted() {
+        val counter = FrameGapCounter()
+        var time = 1_000_000_000L
+        assertEquals(0, counter.onFrame(time))
+        repeat(10) {
+            time += interval + if (it % 2 == 0) 3_000_000 else -3_000_000
+            assertEquals(0, counter.onFrame(time))
+        }
+    }
+
+    @Test
+    fun missingFramesAreCountedFromTheGap() {
+        val counter = FrameGapCounter()
+        var time = 0L
+        counter.onFrame(time)
+        time += interval
+        counter.onFrame(time)
+
+        time += 3 * interval
+        assertEquals(2, counter.onFrame(time))
+        time += interval
+        assertEquals(0, counter.onFrame(time))
+    }
+
+    @Test
+    fun intervalFollowsSlowerFrameRate() {
+        val counter = FrameGapCounter(window = 4)
+        var time = 0L
+        counter.onFrame(time)
+        repeat(4) {
+            time += interval
+            counter.onFrame(time)
+        }
+        // The sensor halves its frame rate: counted as drops until the window forgets 30 fps
+        val slower = 2 * interval
+        var counted = 0
+        repeat(8) {
+            time += slower
+            counted += counter.onFrame(time)
+        }
+        assertEquals(3, counted)
+        time += slower
+        assertEquals(0, counter.onFrame(time))
+    }
+
+    @Test
+    fun resetForgetsThePreviousFrame() {
+        val counter = FrameGapCounter()
+        counter.onFrame(0)
+        counter.onFrame(interval)
+        counter.reset()
+
+        assertEquals(0, counter.onFrame(10 * interval))
+        assertEquals(0, counter.onFrame(11 * interval))
+    }
+}
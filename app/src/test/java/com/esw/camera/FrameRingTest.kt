@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.esw.camera
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class FrameRingTest {
+    @Test
+    fun takeLatestReturnsNewestFrameAndDropsOlderOnes() {
+        val ring = FrameRing(3) { width, height -> IntArray(width * height) }
+        val first = publish(ring, 1)
+        val second = publish(ring, 2)
+
+        val taken = ring.takeLatest()
+
+        assertSame(second, taken)
+        assertEquals(2, taken!!.requireBuffer()[0])
+        assertEquals(1L, taken.sequence)
+        assertEquals(2L, ring.publishedFrames)
+        assertEquals(1L, ring.droppedFrames)
+        // Nothing new was published since
+        assertNull(ring.takeLatest())
+        // The dropped frame's slot is free again
+        ring.release(taken)
+        assertSame(first, ring.acquireForWrite(2, 2))
+    }
+
+    @Test
+    fun fullRingRecyclesOldestReadyFrame() {
+        val ring = FrameRing(3) { width, height -> IntArray(width * height) }
+        publish(ring, 1)
+        val reading = ring.takeLatest()!!
+        val oldest = publish(ring, 2)
+        publish(ring, 3)
+
+        // Every slot is busy: the oldest frame nobody started consuming is overwritten
+        val recycled = ring.acquireForWrite(2, 2)
+
+        assertSame(oldest, recycled)
+        assertEquals(1L, ring.droppedFrames)
+        ring.publish(recycled!!)
+        ring.release(reading)
+        val latest = ring.takeLatest()
+        assertSame(recycled, latest)
+        assertEquals(3L, latest!!.sequence)
+        // The frame holding 3 is now older than the recycled one, so it is dropped too
+        assertEquals(2L, ring.droppedFrames)
+    }
+
+    @Test
+    fun acquireReturnsNullWhenNoSlotCanBeRecycled() {
+        val ring = FrameRing(2) { width, height -> IntArray(width * height) }
+        publish(ring, 1)
+        val reading = ring.takeLatest()!!
+        val writing = ring.acquireForWrite(2, 2)
+        assertNotNull(writing)
+
+        assertNull(ring.acquireForWrite(2, 2))
+        assertEquals(1L, ring.droppedFrames)
+
+        // Cancelled and released slots become available again
+        ring.cancelWrite(writing!!)
+        ring.release(reading)
+        assertNotNull(ring.acquireForWrite(2, 2))
+        assertNotNull(ring.acquireForWrite(2, 2))
+        assertEquals(1L, ring.droppedFrames)
+    }
+
+    @Test
+    fun buffersAreReusedUntilTheFrameSizeChanges() {
+        val ring = FrameRing(2) { width, height -> IntArray(width * height) }
+        val frame = ring.acquireForWrite(4, 3)!!
+        val buffer = frame.requireBuffer()
+        ring.cancelWrite(frame)
+
+        val sameSize = ring.acquireForWrite(4, 3)!!
+        assertSame(frame, sameSize)
+        assertSame(buffer, sameSize.requireBuffer())
+        ring.cancelWrite(sameSize)
+
+        val resized = ring.acquireForWrite(5, 5)!!
+        assertSame(frame, resized)
+        assertNotSame(buffer, resized.requireBuffer())
+        assertEquals(25, resized.requireBuffer().size)
+        assertEquals(5, resized.width)
+        assertEquals(5, resized.height)
+    }
+
+    @Test
+    fun sourceDropsAddToDroppedFrames() {
+        val ring = FrameRing(3) { width, height -> IntArray(width * height) }
+        publish(ring, 1)
+        publish(ring, 2)
+        ring.takeLatest()
+
+        ring.recordSourceDrops(3)
+
+        assertEquals(2L, ring.publishedFrames)
+        assertEquals(4L, ring.droppedFrames)
+    }
+
+    private fun publish(
+        ring: FrameRing<IntArray>,
+        value: Int,
+    ): Frame<IntArray> {
+        val frame = ring.acquireForWrite(2, 2)!!
+        frame.requireBuffer()[0] = value
+        ring.publish(frame)
+        return frame
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esw.camera
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.nio.ByteBuffer
+
+class YuvFrameBufferTest {
+    @Test
+    fun copiesPlanesAndStrides() {
+        val buffer = YuvFrameBuffer(4, 2)
+        val y = bytes(0, 2 * 8 - 4)
+        val uv = bytes(100, 8 - 1)
+        val v = uv.duplicate()
+        v.position(1)
+
+        buffer.copyFrom(y, uv, v.slice(), 8, 8, 2)
+
+        assertTrue(buffer.y.isDirect && buffer.u.isDirect && buffer.v.isDirect)
+        assertEquals(12, buffer.y.remaining())
+        assertEquals(0.toByte(), buffer.y.get(0))
+        assertEquals(11.toByte(), buffer.y.get(11))
+        assertEquals(100.toByte(), buffer.u.get(0))
+        assertEquals(101.toByte(), buffer.v.get(0))
+        assertEquals(8, buffer.yRowStride)
+        assertEquals(8, buffer.uvRowStride)
+        assertEquals(2, buffer.uvPixelStride)
+    }
+
+    @Test
+    fun planesAreReusedAcrossFrames() {
+        val buffer = YuvFrameBuffer(4, 2)
+        buffer.copyFrom(bytes(0, 8), bytes(0, 2), bytes(0, 2), 4, 2, 1)
+        val y = buffer.y
+
+        // Consumed source buffers are read from their start again
+        val source = bytes(50, 8)
+        source.position(source.limit())
+        buffer.copyFrom(source, bytes(0, 2), bytes(0, 2), 4, 2, 1)
+
+        assertSame(y, buffer.y)
+        assertEquals(50.toByte(), buffer.y.get(0))
+    }
+
+    private fun bytes(
+        first: Int,
+        size: Int,
+    ): ByteBuffer {
+        val buffer = ByteBuffer.allocateDirect(size)
+        for (i in 0 until size) {
+            buffer.put(i, (first + i).toByte())
+        }
+        return buffer
+    }
+}
@@ -0,0 +1,203 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.imageprocessing;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Checks the native conversion kernels against the Java fallbacks of {@link ImageProcessing}.
+ *
+ * Runs against the host build of the image_processing library, see buildHostNative in
+ * app/build.gradle.kts; skipped if it could not be loaded.
+ */
+public class ImageProcessingTest {
+    private final static float TOLERANCE = 1e-5f;
+    private final static float[] SAM_MEAN = {0.485f, 0.456f, 0.406f};
+    private final static float[] SAM_STD = {0.229f, 0.224f, 0.225f};
+    private final static float LETTERBOX_FILL = 114 / 255.0f;
+
+    @Before
+    public void requireNativeLibrary() {
+        Assume.assumeTrue("Native image_processing library not loaded", ImageProcessing.isNativeAvailable());
+    }
+
+    @Test
+    public void argbToYoloInputMatchesJava() {
+        // Pixel counts around the vector width, so the scalar tails run too
+        for (int pixelCount : new int[]{1, 7, 15, 16, 17, 641 * 3}) {
+            int[] src = randomArgb(new Random(pixelCount), pixelCount);
+            ByteBuffer expected = floats(3 * pixelCount);
+            ByteBuffer actual = floats(3 * pixelCount);
+
+            ImageProcessing.argbToYoloInputJava(src, expected, pixelCount);
+            ImageProcessing.argbToYoloInput(src, actual, pixelCount);
+
+            assertFloatsEqual("pixelCount " + pixelCount, expected, actual, 3 * pixelCount);
+        }
+    }
+
+    @Test
+    public void rgbaToYoloInputMatchesJava() {
+        for (int pixelCount : new int[]{1, 7, 15, 16, 17, 641 * 3}) {
+            ByteBuffer src = randomBytes(new Random(pixelCount), 4 * pixelCount);
+            ByteBuffer expected = floats(3 * pixelCount);
+            ByteBuffer actual = floats(3 * pixelCount);
+
+            ImageProcessing.rgbaToYoloInputJava(src, expected, pixelCount);
+            ImageProcessing.rgbaToYoloInput(src, actual, pixelCount);
+
+            assertFloatsEqual("pixelCount " + pixelCount, expected, actual, 3 * pixelCount);
+        }
+    }
+
+    @Test
+    public void argbToSamInputMatchesJava() {
+        int width = 33;
+        int height = 9;
+        int planeSize = width * height;
+        int[] src = randomArgb(new Random(5), planeSize);
+        ByteBuffer expected = floats(3 * planeSize);
+        ByteBuffer actual = floats(3 * planeSize);
+
+        // Converted in uneven row bands, as the encoder splits large images across threads
+        int[] bandRows = {2, 3, 1, 3};
+        int row = 0;
+        for (int rows : bandRows) {
+            int offset = row * width;
+            ImageProcessing.argbToSamInputJava(src, offset, expected, offset, rows * width, planeSize, SAM_MEAN, SAM_STD);
+            ImageProcessing.argbToSamInput(src, offset, actual, offset, rows * width, planeSize, SAM_MEAN, SAM_STD);
+            row += rows;
+        }
+        assertEquals(height, row);
+
+        assertFloatsEqual("sam", expected, actual, 3 * planeSize);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void argbToSamInputRejectsNegativeSourceOffset() {
+        // A negative offset would read before the start of the pixel array
+        int planeSize = 16;
+        int[] src = new int[planeSize];
+        ImageProcessing.argbToSamInput(src, -8, floats(3 * planeSize), 0, 8, planeSize, SAM_MEAN, SAM_STD);
+    }
+
+    @Test
+    public void yuvToYoloInputMatchesJavaForOddSizes() {
+        for (int width : new int[]{17, 33, 63}) {
+            int height = width + 4;
+            // Scale to a 20x20 grid
+            float[] inverse = {width / 20.0f, 0, 0, 0, height / 20.0f, 0};
+            checkYuv("width " + width, width, height, width, 1, inverse, 20, 20, false);
+        }
+    }
+
+    @Test
+    public void yuvToYoloInputMatchesJavaWithRowPadding() {
+        int width = 37;
+        int height = 21;
+        float[] inverse = {1, 0, 0, 0, 1, 0};
+        // Camera planes often have rows wider than the image
+        checkYuv("planar", width, height, 48, 1, inverse, width, height, false);
+        checkYuv("semi-planar", width, height, 64, 2, inverse, width, height, false);
+    }
+
+    @Test
+    public void yuvToYoloInputMatchesJavaRotated() {
+        int width = 41;
+        int height = 29;
+        // 90 degree rotation: destination (x, y) samples source (y, height - 1 - x)
+        float[] inverse = {0, 1, 0, -1, 0, height - 1};
+        checkYuv("rotated", width, height, 48, 2, inverse, height, width, false);
+    }
+
+    @Test
+    public void yuvToYoloInputMatchesJavaLetterboxed() {
+        int width = 45;
+        int height = 25;
+        int dstSize = 32;
+        // Fit the width, centre vertically; rows above and below the image are padding
+        float scale = (float) width / dstSize;
+        float top = (dstSize - height / scale) / 2;
+        float[] inverse = {scale, 0, 0, 0, scale, -top * scale};
+        ByteBuffer actual = checkYuv("letterbox", width, height, 48, 2, inverse, dstSize, dstSize, true);
+
+        // First and last destination rows lie outside the image
+        for (int row : new int[]{0, dstSize - 1}) {
+            for (int i = 0; i < 3 * dstSize; i++) {
+                assertEquals("row " + row, LETTERBOX_FILL, actual.getFloat(4 * (3 * dstSize * row + i)), 0f);
+            }
+        }
+    }
+
+    private static ByteBuffer checkYuv(String message, int width, int height, int rowStride, int uvPixelStride,
+                                       float[] inverse, int dstWidth, int dstHeight, boolean padBorder) {
+        Random random = new Random(width * 31L + height);
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        ByteBuffer y = randomBytes(random, rowStride * height);
+        ByteBuffer u;
+        ByteBuffer v;
+        if (uvPixelStride == 2) {
+            // Interleaved chroma: U and V are views of one buffer, offset by a byte
+            ByteBuffer uv = randomBytes(random, rowStride * chromaHeight + 1);
+            u = sliceFrom(uv, 0);
+            v = sliceFrom(uv, 1);
+        } else {
+            u = randomBytes(random, rowStride * chromaHeight);
+            v = randomBytes(random, rowStride * chromaHeight);
+        }
+        assertEquals(true, uvPixelStride * (chromaWidth - 1) < rowStride);
+
+        ByteBuffer expected = floats(3 * dstWidth * dstHeight);
+        ByteBuffer actual = floats(3 * dstWidth * dstHeight);
+        ImageProcessing.yuvToYoloInputJava(y, u, v, rowStride, rowStride, uvPixelStride, width, height,
+                inverse, expected, dstWidth, dstHeight, padBorder, LETTERBOX_FILL);
+        ImageProcessing.yuvToYoloInput(y, u, v, rowStride, rowStride, uvPixelStride, width, height,
+                inverse, actual, dstWidth, dstHeight, padBorder, LETTERBOX_FILL);
+
+        assertFloatsEqual(message, expected, actual, 3 * dstWidth * dstHeight);
+        return actual;
+    }
+
+    private static void assertFloatsEqual(String message, ByteBuffer expected, ByteBuffer actual, int count) {
+        for (int i = 0; i < count; i++) {
+            assertEquals(message + ", float " + i, expected.getFloat(4 * i), actual.getFloat(4 * i), TOLERANCE);
+        }
+    }
+
+    private static int[] randomArgb(Random random, int count) {
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static ByteBuffer randomBytes(Random random, int count) {
+        byte[] bytes = new byte[count];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(count);
+        buffer.put(bytes).clear();
+        return buffer;
+    }
+
+    private static ByteBuffer sliceFrom(ByteBuffer buffer, int offset) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        return view.slice();
+    }
+
+    private static ByteBuffer floats(int count) {
+        return ByteBuffer.allocateDirect(4 * count).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,121 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Pins the bucket layout of {@link LatencyHistogram} and the rank used for its percentiles.
+ */
+public class LatencyHistogramTest {
+    private final static int LAST_BUCKET = LatencyHistogram.BUCKET_COUNT - 1;
+
+    @Test
+    public void valuesBelowSixteenHaveABucketEach() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.bucketUpperBound(value));
+        }
+    }
+
+    @Test
+    public void firstExponentsHaveSixteenBucketsEach() {
+        // [16, 32) still has one value per bucket
+        assertEquals(16, LatencyHistogram.bucketIndex(16));
+        assertEquals(16, LatencyHistogram.bucketUpperBound(16));
+        assertEquals(31, LatencyHistogram.bucketIndex(31));
+        assertEquals(31, LatencyHistogram.bucketUpperBound(31));
+        // [32, 64) has two
+        assertEquals(32, LatencyHistogram.bucketIndex(32));
+        assertEquals(32, LatencyHistogram.bucketIndex(33));
+        assertEquals(33, LatencyHistogram.bucketUpperBound(32));
+        assertEquals(33, LatencyHistogram.bucketIndex(34));
+        assertEquals(47, LatencyHistogram.bucketIndex(63));
+        assertEquals(63, LatencyHistogram.bucketUpperBound(47));
+        assertEquals(48, LatencyHistogram.bucketIndex(64));
+        assertEquals(67, LatencyHistogram.bucketUpperBound(48));
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int index = 0; index < LAST_BUCKET; index++) {
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertEquals(index, LatencyHistogram.bucketIndex(upper));
+            assertEquals(index + 1, LatencyHistogram.bucketIndex(upper + 1));
+        }
+    }
+
+    @Test
+    public void valuesFromTwoToThe43AreCountedInTheLastBucket() {
+        long largestTracked = (1L << 43) - 1;
+        assertEquals(LAST_BUCKET, LatencyHistogram.bucketIndex(largestTracked));
+        assertEquals(largestTracked, LatencyHistogram.bucketUpperBound(LAST_BUCKET));
+        assertEquals(LAST_BUCKET, LatencyHistogram.bucketIndex(1L << 43));
+        assertEquals(LAST_BUCKET, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesOfOneToHundred() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int value = 100; value >= 1; value--) {
+            histogram.record(value);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.count);
+        assertEquals(50, snapshot.meanNanos);
+        assertEquals(100, snapshot.maxNanos);
+        // Ranks 50, 95 and 99, reported as the upper bound of their bucket: 50 shares [50, 51]
+        assertEquals(51, snapshot.p50Nanos);
+        assertEquals(95, snapshot.p95Nanos);
+        assertEquals(99, snapshot.p99Nanos);
+    }
+
+    @Test
+    public void percentileRankRoundsUp() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        // ceil(0.5 * 10) = 5, ceil(0.95 * 10) = ceil(0.99 * 10) = 10
+        assertEquals(5, snapshot.p50Nanos);
+        assertEquals(10, snapshot.p95Nanos);
+        assertEquals(10, snapshot.p99Nanos);
+    }
+
+    @Test
+    public void percentilesAreCappedAtTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        // Bucket [992, 1023]
+        histogram.record(1000, 3);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(3, snapshot.count);
+        assertEquals(1000, snapshot.p50Nanos);
+        assertEquals(1000, snapshot.p99Nanos);
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZeroAndResetClears() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(-5);
+        assertEquals(0, histogram.snapshot().p50Nanos);
+        assertEquals(1, histogram.snapshot().count);
+
+        histogram.reset();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.count);
+        assertEquals(0, snapshot.p99Nanos);
+        assertEquals(0, snapshot.maxNanos);
+    }
+}
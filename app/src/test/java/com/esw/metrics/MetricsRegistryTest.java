@@ -0,0 +1,43 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void histogramIsCreatedOnce() {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        LatencyHistogram histogram = registry.histogram(MetricsRegistry.YOLO_INFERENCE);
+
+        assertSame(histogram, registry.histogram(MetricsRegistry.YOLO_INFERENCE));
+        assertEquals(MetricsRegistry.YOLO_INFERENCE, histogram.getName());
+    }
+
+    @Test
+    public void snapshotListsRecordedHistogramsByName() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.record(MetricsRegistry.YOLO_PREPROCESS, 2_000_000);
+        registry.record(MetricsRegistry.SAM_DECODER_RUN, 1_000_000);
+        registry.histogram(MetricsRegistry.YOLO_INFERENCE);
+
+        List<LatencyHistogram.Snapshot> snapshots = registry.snapshot();
+
+        assertEquals(2, snapshots.size());
+        assertEquals(MetricsRegistry.SAM_DECODER_RUN, snapshots.get(0).name);
+        assertEquals(MetricsRegistry.YOLO_PREPROCESS, snapshots.get(1).name);
+        assertEquals(2, registry.dump().split("\n").length);
+
+        registry.reset();
+        assertEquals("", registry.dump());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2025 Shubham Panchal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.esw.sam
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.nio.FloatBuffer
+import java.util.Random
+
+/**
+ * Checks [MaskCompositor.addLowResMask] against a reference that upsamples every pixel of the
+ * image, so a bounding box that is too tight shows up as missing pixels and one that is too
+ * loose as nothing (pixels outside the mask must stay untouched either way).
+ */
+class MaskCompositorTest {
+    @Test
+    fun lowResMaskMatchesFullUpsamplingForUpAndDownscaling() {
+        // Wider and taller than the mask, smaller, and of a different aspect ratio
+        for ((width, height) in listOf(160 to 120, 97 to 211, 24 to 9)) {
+            val masks = LowResMasks(SIZE, 2)
+            masks.set(0, blob(SIZE, 11f, 9f, 4.5f), 0, 0.9f)
+            masks.set(1, blob(SIZE, 20f, 22f, 6f), 0, 0.8f)
+            checkAgainstReference("$width x $height", masks, width, height)
+        }
+    }
+
+    @Test
+    fun lowResMaskTouchingTheBorderIsNotClipped() {
+        val logits = FloatArray(SIZE * SIZE) { -1f }
+        // Single positive cells in two corners and on an edge
+        logits[0] = 2f
+        logits[SIZE * SIZE - 1] = 2f
+        logits[(SIZE / 2) * SIZE + SIZE - 1] = 2f
+        val masks = LowResMasks(SIZE, 1)
+        masks.set(0, FloatBuffer.wrap(logits), 0, 1f)
+
+        val compositor = checkAgainstReference("corners", masks, 150, 110)
+
+        assertEquals(ID_BASE.toShort(), compositor.labelMap[0])
+        assertEquals(ID_BASE.toShort(), compositor.labelMap[150 * 110 - 1])
+    }
+
+    @Test
+    fun emptyLowResMaskLeavesBuffersUntouched() {
+        val masks = LowResMasks(SIZE, 1)
+        masks.set(0, FloatBuffer.wrap(FloatArray(SIZE * SIZE) { -3f }), 0, 0.1f)
+        val compositor = MaskCompositor(4)
+        compositor.begin(40, 30)
+        val image = image(40, 30)
+        image.copyInto(compositor.overlayPixels)
+
+        compositor.addLowResMask(masks, 0, 1, COLOR)
+
+        assertTrue(masks.isEmpty(0))
+        for (i in 0 until 40 * 30) {
+            assertEquals(image[i], compositor.overlayPixels[i])
+            assertEquals(BLACK, compositor.maskPixels[i])
+            assertEquals(0.toShort(), compositor.labelMap[i])
+        }
+    }
+
+    @Test
+    fun blendsLabelColorOverTheImage() {
+        val masks = LowResMasks(SIZE, 1)
+        masks.set(0, FloatBuffer.wrap(FloatArray(SIZE * SIZE) { 1f }), 0, 1f)
+        val compositor = MaskCompositor(2)
+        compositor.begin(4, 4)
+        compositor.overlayPixels.fill(0xFF204060.toInt(), 0, 16)
+
+        compositor.addLowResMask(masks, 0, 7, 0x00FF8000, alpha = 128)
+
+        // pixel * 127 / 255 + color * 128 / 255 per channel, rounded; the alpha is kept
+        val red = (0x20 * 127 + 0xFF * 128 + 127) / 255
+        val green = (0x40 * 127 + 0x80 * 128 + 127) / 255
+        val blue = (0x60 * 127 + 127) / 255
+        val expected = (0xFF shl 24) or (red shl 16) or (green shl 8) or blue
+        for (i in 0 until 16) {
+            assertEquals(expected, compositor.overlayPixels[i])
+            assertEquals(WHITE, compositor.maskPixels[i])
+            assertEquals(7.toShort(), compositor.labelMap[i])
+        }
+    }
+
+    // Composite every mask of masks and compare all three buffers with the reference
+    private fun checkAgainstReference(
+        message: String,
+        masks: LowResMasks,
+        width: Int,
+        height: Int,
+    ): MaskCompositor {
+        val image = image(width, height)
+        val compositor = MaskCompositor(3)
+        compositor.begin(width, height)
+        image.copyInto(compositor.overlayPixels)
+        for (index in 0 until masks.count) {
+            compositor.addLowResMask(masks, index, ID_BASE + index, COLOR)
+        }
+
+        var covered = 0
+        for (y in 0 until height) {
+            for (x in 0 until width) {
+                val i = y * width + x
+                // The last mask covering a pixel owns it
+                var id = 0
+                for (index in 0 until masks.count) {
+                    if (upsampledLogit(masks, index, x, y, width, height) > 0f) {
+                        id = ID_BASE + index
+                    }
+                }
+                val at = "$message, pixel ($x, $y)"
+                assertEquals(at, id.toShort(), compositor.labelMap[i])
+                if (id == 0) {
+                    assertEquals(at, image[i], compositor.overlayPixels[i])
+                    assertEquals(at, BLACK, compositor.maskPixels[i])
+                } else {
+                    assertEquals(at, WHITE, compositor.maskPixels[i])
+                    covered++
+                }
+            }
+        }
+        assertTrue("$message: no pixel covered", covered > 0)
+        return compositor
+    }
+
+    // Bilinear sample with align_corners=False at output pixel (x, y), as F.interpolate
+    private fun upsampledLogit(
+        masks: LowResMasks,
+        index: Int,
+        x: Int,
+        y: Int,
+        width: Int,
+        height: Int,
+    ): Float {
+        val size = masks.size
+        val sourceX = ((x + 0.5f) * (size.toFloat() / width) - 0.5f).coerceAtLeast(0f)
+        val sourceY = ((y + 0.5f) * (size.toFloat() / height) - 0.5f).coerceAtLeast(0f)
+        val x0 = minOf(sourceX.toInt(), size - 1)
+        val y0 = minOf(sourceY.toInt(), size - 1)
+        val x1 = minOf(x0 + 1, size - 1)
+        val y1 = minOf(y0 + 1, size - 1)
+        val weightX = sourceX - x0
+        val weightY = sourceY - y0
+        fun logit(
+            cx: Int,
+            cy: Int,
+        ) = masks.logits[index * size * size + cy * size + cx]
+        val upper = logit(x0, y0) + (logit(x1, y0) - logit(x0, y0)) * weightX
+        val lower = logit(x0, y1) + (logit(x1, y1) - logit(x0, y1)) * weightX
+        return upper + (lower - upper) * weightY
+    }
+
+    // Logits positive inside a circle, falling off linearly with the distance to its center
+    private fun blob(
+        size: Int,
+        centerX: Float,
+        centerY: Float,
+        radius: Float,
+    ): FloatBuffer {
+        val logits = FloatArray(size * size)
+        for (y in 0 until size) {
+            for (x in 0 until size) {
+                val dx = x - centerX
+                val dy = y - centerY
+                logits[y * size + x] = radius - kotlin.math.sqrt(dx * dx + dy * dy)
+            }
+        }
+        return FloatBuffer.wrap(logits)
+    }
+
+    private fun image(
+        width: Int,
+        height: Int,
+    ): IntArray {
+        val random = Random(width * 31L + height)
+        return IntArray(width * height) { 0xFF000000.toInt() or random.nextInt(0x1000000) }
+    }
+
+    companion object {
+        private const val SIZE = 32
+        private const val ID_BASE = 1
+        private const val COLOR = 0x00FFFF00
+        private const val WHITE = -0x1
+        private const val BLACK = -0x1000000
+    }
+}
@@ -0,0 +1,73 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the heap bytes allocated by the calling thread, for the allocation regression tests.
+ */
+final class AllocationCounter {
+    private final com.sun.management.ThreadMXBean threads;
+    private final long threadId;
+    private final long overhead;              // Cost of reading the counter itself
+
+    private AllocationCounter(com.sun.management.ThreadMXBean threads) {
+        this.threads = threads;
+        threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        overhead = threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    /**
+     * @return a counter for the calling thread, or null if the JVM cannot count allocations.
+     */
+    static AllocationCounter create() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        sunThreads.setThreadAllocatedMemoryEnabled(true);
+        return new AllocationCounter(sunThreads);
+    }
+
+    /**
+     * @return bytes allocated on this thread while running work.
+     */
+    long allocatedBy(Runnable work) {
+        long before = threads.getThreadAllocatedBytes(threadId);
+        work.run();
+        return threads.getThreadAllocatedBytes(threadId) - before - overhead;
+    }
+
+    /**
+     * Warm up, then assert that every one of the measured rounds allocates nothing.
+     *
+     * While the JIT moves code between tiers, a round can see a few hundred bytes that the
+     * code itself never allocates (it allocates nothing when interpreted). Warm-up must last
+     * until C2 has compiled the whole path, which takes thousands of calls, so it is given
+     * in rounds by the caller.
+     *
+     * @param what          Description of the work, for failure messages.
+     * @param round         One round of calls, covering every variant (e.g. orientation) the
+     *                      measured rounds run, so none of them is first seen after warm-up.
+     * @param warmUpRounds  Unmeasured rounds run first.
+     * @param rounds        Number of measured rounds.
+     */
+    void assertNoSteadyStateAllocation(String what, Runnable round, int warmUpRounds, int rounds) {
+        for (int r = 0; r < warmUpRounds; r++) {
+            round.run();
+        }
+        for (int r = 0; r < rounds; r++) {
+            assertEquals(what + " allocated in round " + r, 0, allocatedBy(round));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Allocation regression test for the post-processing run by every {@link ObjectDetection}
+ * predict: once warmed up, decode, NMS and box fill must not allocate. ObjectDetectionTest
+ * covers the whole predict call.
+ */
+public class DetectionPostprocessorTest {
+    private final static int NUM_CLASSES = 80;
+    private final static int NUM_PROPOSALS = 8400;
+    private final static int INPUT_SIZE = 640;
+    private final static int MAX_DETECTIONS = 20;
+    private final static int ITERATIONS = 200;
+    private final static int WARM_UP_ROUNDS = 3;
+    private final static int ROUNDS = 5;
+
+    @Test
+    public void warmedUpProcessDoesNotAllocate() {
+        AllocationCounter allocations = AllocationCounter.create();
+        Assume.assumeTrue("Thread allocation counting unavailable", allocations != null);
+
+        DetectionPostprocessor postprocessor = createPostprocessor();
+        FloatBuffer output = randomOutput(7);
+        ImageTransform transform = new ImageTransform();
+        transform.set(0, 0, 1920, 1080, 90, INPUT_SIZE, INPUT_SIZE, false);
+        ArrayList<RectangleBox> boxPool = RectangleBox.createBoxes(MAX_DETECTIONS);
+        ArrayList<RectangleBox> detections = new ArrayList<>(MAX_DETECTIONS);
+        Runnable round = () -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                detections.clear();
+                postprocessor.process(output, transform, boxPool, detections);
+            }
+        };
+
+        for (NonMaxSuppression.Strategy strategy : NonMaxSuppression.Strategy.values()) {
+            postprocessor.setNmsStrategy(strategy);
+            // Warm-up also lets the spatial grid size its cell index
+            allocations.assertNoSteadyStateAllocation(strategy + " " + ITERATIONS + " process calls", round, WARM_UP_ROUNDS, ROUNDS);
+            assertTrue(strategy + " found no detections", !detections.isEmpty());
+        }
+    }
+
+    @Test
+    public void detectionsUsePooledBoxes() {
+        DetectionPostprocessor postprocessor = createPostprocessor();
+        ArrayList<RectangleBox> boxPool = RectangleBox.createBoxes(MAX_DETECTIONS);
+        ArrayList<RectangleBox> detections = new ArrayList<>();
+
+        int count = postprocessor.process(randomOutput(3), new ImageTransform(), boxPool, detections);
+
+        assertEquals(count, detections.size());
+        assertTrue(count > 0 && count <= MAX_DETECTIONS);
+        for (int k = 0; k < count; k++) {
+            assertTrue(detections.get(k) == boxPool.get(k));
+            assertTrue(detections.get(k).confidence >= 0.2f);
+        }
+    }
+
+    @Test
+    public void classAwareNmsKeepsOverlapsOfOtherClasses() {
+        // Two proposals on the same box, one per class
+        FloatBuffer output = FloatBuffer.wrap(new float[] {
+                50, 50,     // cx
+                50, 50,     // cy
+                20, 20,     // w
+                20, 20,     // h
+                0.9f, 0.1f, // class 0
+                0.1f, 0.8f, // class 1
+        });
+        List<String> labels = Arrays.asList("cat", "dog");
+        ArrayList<RectangleBox> boxPool = RectangleBox.createBoxes(2);
+        ArrayList<RectangleBox> detections = new ArrayList<>();
+
+        new DetectionPostprocessor(labels, 2, 0.5f, 0.5f, 2, 2, false)
+                .process(output, new ImageTransform(), boxPool, detections);
+        assertEquals(1, detections.size());
+        assertEquals("cat", detections.get(0).label);
+
+        detections.clear();
+        new DetectionPostprocessor(labels, 2, 0.5f, 0.5f, 2, 2, true)
+                .process(output, new ImageTransform(), boxPool, detections);
+        assertEquals(2, detections.size());
+        assertEquals("cat", detections.get(0).label);
+        assertEquals("dog", detections.get(1).label);
+    }
+
+    private static DetectionPostprocessor createPostprocessor() {
+        List<String> labels = new ArrayList<>();
+        for (int c = 0; c < NUM_CLASSES; c++) {
+            labels.add("class" + c);
+        }
+        return new DetectionPostprocessor(labels, NUM_PROPOSALS, 0.2f, 0.2f, 300, MAX_DETECTIONS, false);
+    }
+
+    // Output tensor in a direct buffer like the one the backend writes, with a few hundred
+    // proposals above the score threshold
+    private static FloatBuffer randomOutput(long seed) {
+        Random random = new Random(seed);
+        FloatBuffer output = ByteBuffer.allocateDirect((4 + NUM_CLASSES) * NUM_PROPOSALS * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        for (int i = 0; i < NUM_PROPOSALS; i++) {
+            output.put(i, random.nextFloat() * INPUT_SIZE);
+            output.put(NUM_PROPOSALS + i, random.nextFloat() * INPUT_SIZE);
+            output.put(2 * NUM_PROPOSALS + i, 10 + random.nextFloat() * 100);
+            output.put(3 * NUM_PROPOSALS + i, 10 + random.nextFloat() * 100);
+        }
+        for (int c = 0; c < NUM_CLASSES; c++) {
+            for (int i = 0; i < NUM_PROPOSALS; i++) {
+                output.put((4 + c) * NUM_PROPOSALS + i, random.nextFloat() * random.nextFloat() * 0.25f);
+            }
+        }
+        return output;
+    }
+}
@@ -0,0 +1,177 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks both {@link NonMaxSuppression} strategies against {@link #referenceNms}, a full-sort
+ * greedy NMS, on seeded random candidates in class-agnostic and class-aware mode.
+ */
+public class NonMaxSuppressionTest {
+    private final static int IMAGE_SIZE = 640;
+    private final static float IOU_THRESHOLD = 0.45f;
+
+    @Test
+    public void matchesReferenceClassAgnostic() {
+        checkAgainstReference(false);
+    }
+
+    @Test
+    public void matchesReferenceClassAware() {
+        checkAgainstReference(true);
+    }
+
+    @Test
+    public void classAwareKeepsOverlapsOfOtherClasses() {
+        // Two candidates on the same box, one per class
+        DetectionCandidates candidates = new DetectionCandidates(2);
+        setCandidate(candidates, 0, 40, 40, 60, 60, 0.9f, 0);
+        setCandidate(candidates, 1, 40, 40, 60, 60, 0.8f, 1);
+        candidates.count = 2;
+        int[] keep = new int[2];
+
+        assertEquals(1, new NonMaxSuppression(2, 2, 2, 0.5f, false).run(candidates, keep));
+        assertEquals(0, keep[0]);
+
+        assertEquals(2, new NonMaxSuppression(2, 2, 2, 0.5f, true).run(candidates, keep));
+        assertEquals(0, keep[0]);
+        assertEquals(1, keep[1]);
+    }
+
+    @Test
+    public void equalScoresKeepTheLowestSlot() {
+        DetectionCandidates candidates = new DetectionCandidates(3);
+        setCandidate(candidates, 0, 0, 0, 10, 10, 0.5f, 0);
+        setCandidate(candidates, 1, 100, 100, 110, 110, 0.7f, 0);
+        setCandidate(candidates, 2, 1, 1, 11, 11, 0.5f, 0);
+        candidates.count = 3;
+        int[] keep = new int[3];
+
+        int kept = new NonMaxSuppression(3, 3, 3, 0.5f, false).run(candidates, keep);
+
+        assertEquals(2, kept);
+        assertArrayEquals(new int[]{1, 0}, Arrays.copyOf(keep, kept));
+    }
+
+    @Test
+    public void preNmsTopKOnlyConsidersTheHighestScores() {
+        DetectionCandidates candidates = new DetectionCandidates(4);
+        // Disjoint boxes, scores out of anchor order
+        float[] scores = {0.1f, 0.6f, 0.3f, 0.8f};
+        for (int i = 0; i < 4; i++) {
+            setCandidate(candidates, i, i * 20, 0, i * 20 + 10, 10, scores[i], 0);
+        }
+        candidates.count = 4;
+        int[] keep = new int[4];
+
+        int kept = new NonMaxSuppression(4, 2, 4, 0.5f, false).run(candidates, keep);
+
+        assertEquals(2, kept);
+        assertArrayEquals(new int[]{3, 1}, Arrays.copyOf(keep, kept));
+    }
+
+    private static void checkAgainstReference(boolean classAware) {
+        int capacity = 2000;
+        int preNmsTopK = 300;
+        int maxDetections = 20;
+        NonMaxSuppression pairwise = new NonMaxSuppression(capacity, preNmsTopK, maxDetections, IOU_THRESHOLD, classAware);
+        NonMaxSuppression grid = new NonMaxSuppression(capacity, preNmsTopK, maxDetections, IOU_THRESHOLD, classAware);
+        grid.setStrategy(NonMaxSuppression.Strategy.SPATIAL_GRID);
+        DetectionCandidates candidates = new DetectionCandidates(capacity);
+        int[] keep = new int[maxDetections];
+
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            // Clusters of overlapping boxes, as a detector reports each object; coarse scores
+            // so that ties occur
+            int count = 1 + random.nextInt(capacity);
+            float cx = 0, cy = 0;
+            int classIdx = 0;
+            for (int i = 0; i < count; i++) {
+                if (i % 6 == 0) {
+                    cx = random.nextFloat() * IMAGE_SIZE;
+                    cy = random.nextFloat() * IMAGE_SIZE;
+                    classIdx = random.nextInt(3);
+                }
+                float x = cx + (random.nextFloat() - 0.5f) * 20;
+                float y = cy + (random.nextFloat() - 0.5f) * 20;
+                float w = 10 + random.nextFloat() * 60;
+                float h = 10 + random.nextFloat() * 60;
+                setCandidate(candidates, i, x - w / 2, y - h / 2, x + w / 2, y + h / 2,
+                        random.nextInt(100) / 100f, random.nextBoolean() ? classIdx : random.nextInt(3));
+            }
+            candidates.count = count;
+
+            int[] expected = referenceNms(candidates, preNmsTopK, maxDetections, classAware);
+            int kept = pairwise.run(candidates, keep);
+            assertArrayEquals("PAIRWISE, seed " + seed, expected, Arrays.copyOf(keep, kept));
+            kept = grid.run(candidates, keep);
+            assertArrayEquals("SPATIAL_GRID, seed " + seed, expected, Arrays.copyOf(keep, kept));
+        }
+    }
+
+    // Greedy NMS over a full stable sort by descending score
+    private static int[] referenceNms(DetectionCandidates candidates, int preNmsTopK, int maxDetections,
+                                      boolean classAware) {
+        Integer[] order = new Integer[candidates.count];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(candidates.score[b], candidates.score[a]));
+        int k = Math.min(order.length, preNmsTopK);
+
+        List<Integer> kept = new ArrayList<>();
+        boolean[] suppressed = new boolean[k];
+        for (int i = 0; i < k && kept.size() < maxDetections; i++) {
+            if (suppressed[i]) {
+                continue;
+            }
+            int a = order[i];
+            kept.add(a);
+            for (int j = i + 1; j < k; j++) {
+                int b = order[j];
+                if (classAware && candidates.classIdx[a] != candidates.classIdx[b]) {
+                    continue;
+                }
+                if (iou(candidates, a, b) > IOU_THRESHOLD) {
+                    suppressed[j] = true;
+                }
+            }
+        }
+        return kept.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static float iou(DetectionCandidates c, int a, int b) {
+        float w = Math.min(c.x1[a], c.x1[b]) - Math.max(c.x0[a], c.x0[b]);
+        float h = Math.min(c.y1[a], c.y1[b]) - Math.max(c.y0[a], c.y0[b]);
+        if (w <= 0 || h <= 0) {
+            return 0;
+        }
+        float inter = w * h;
+        float areaA = (c.x1[a] - c.x0[a]) * (c.y1[a] - c.y0[a]);
+        float areaB = (c.x1[b] - c.x0[b]) * (c.y1[b] - c.y0[b]);
+        return inter / (areaA + areaB - inter);
+    }
+
+    private static void setCandidate(DetectionCandidates candidates, int slot,
+                                     float x0, float y0, float x1, float y1, float score, int classIdx) {
+        candidates.x0[slot] = x0;
+        candidates.y0[slot] = y0;
+        candidates.x1[slot] = x1;
+        candidates.y1[slot] = y1;
+        candidates.score[slot] = score;
+        candidates.classIdx[slot] = classIdx;
+        candidates.anchor[slot] = slot;
+    }
+}
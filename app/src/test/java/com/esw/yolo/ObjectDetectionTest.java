@@ -0,0 +1,201 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Allocation regression test for the whole {@link ObjectDetection} predict: affine warp into the
+ * pooled Mats, input conversion, backend run, post-processing and the latency histograms.
+ *
+ * The model is replaced by {@link FakeBackend}. Runs against the desktop OpenCV build, see
+ * unpackHostOpenCv in app/build.gradle.kts; skipped if its native library could not be loaded.
+ */
+public class ObjectDetectionTest {
+    private final static int NUM_CLASSES = 8;
+    private final static int NUM_PROPOSALS = 256;
+    private final static int INPUT_SIZE = 64;
+    private final static int IMAGE_WIDTH = 160;
+    private final static int IMAGE_HEIGHT = 120;
+    private final static int[] ORIENTATIONS = {0, 90, 180, 270};
+    // Predict calls per round, cycling through the orientations
+    private final static int ITERATIONS = 100;
+    // Enough calls for C2 to compile the whole predict path
+    private final static int WARM_UP_ROUNDS = 200;
+    private final static int ROUNDS = 20;
+
+    private FakeBackend backend;
+    private ObjectDetection detector;
+    private Mat image;
+
+    @Before
+    public void createDetector() {
+        try {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        } catch (UnsatisfiedLinkError e) {
+            Assume.assumeTrue("OpenCV native library not loaded: " + e.getMessage(), false);
+        }
+        List<String> labels = new ArrayList<>();
+        for (int c = 0; c < NUM_CLASSES; c++) {
+            labels.add("class" + c);
+        }
+        backend = new FakeBackend(randomOutput(5));
+        detector = new ObjectDetection(backend, labels);
+        image = new Mat(IMAGE_HEIGHT, IMAGE_WIDTH, CvType.CV_8UC4);
+        Core.randu(image, 0, 256);
+    }
+
+    @After
+    public void closeDetector() {
+        if (detector != null) {
+            detector.close();
+            image.release();
+        }
+    }
+
+    @Test
+    public void warmedUpPredictDoesNotAllocate() {
+        AllocationCounter allocations = AllocationCounter.create();
+        Assume.assumeTrue("Thread allocation counting unavailable", allocations != null);
+
+        ArrayList<RectangleBox> detections = new ArrayList<>(detector.getMaxDetections());
+        Runnable round = () -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                detections.clear();
+                detector.predict(image, 0, 0, IMAGE_WIDTH, IMAGE_HEIGHT, ORIENTATIONS[i % ORIENTATIONS.length], detections);
+            }
+        };
+        allocations.assertNoSteadyStateAllocation(ITERATIONS + " predict calls", round, WARM_UP_ROUNDS, ROUNDS);
+        assertTrue(!detections.isEmpty());
+    }
+
+    @Test
+    public void warmedUpYuvPredictDoesNotAllocate() {
+        AllocationCounter allocations = AllocationCounter.create();
+        Assume.assumeTrue("Thread allocation counting unavailable", allocations != null);
+
+        // Planes laid out like a CameraX YUV_420_888 image with interleaved chroma
+        Random random = new Random(11);
+        ByteBuffer y = randomBytes(random, IMAGE_WIDTH * IMAGE_HEIGHT);
+        ByteBuffer uv = randomBytes(random, IMAGE_WIDTH * IMAGE_HEIGHT / 2);
+        ByteBuffer u = uv.duplicate();
+        ByteBuffer v = uv.duplicate();
+        v.position(1);
+        ByteBuffer vPlane = v.slice();
+
+        ArrayList<RectangleBox> detections = new ArrayList<>(detector.getMaxDetections());
+        Runnable round = () -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                detections.clear();
+                detector.predict(y, u, vPlane, IMAGE_WIDTH, IMAGE_WIDTH, 2, IMAGE_WIDTH, IMAGE_HEIGHT,
+                        ORIENTATIONS[i % ORIENTATIONS.length], detections);
+            }
+        };
+        allocations.assertNoSteadyStateAllocation(ITERATIONS + " YUV predict calls", round, WARM_UP_ROUNDS, ROUNDS);
+        assertTrue(!detections.isEmpty());
+    }
+
+    @Test
+    public void predictRunsBackendAndMapsToImage() {
+        ArrayList<RectangleBox> detections = new ArrayList<>();
+        detector.predict(image, 0, 0, IMAGE_WIDTH, IMAGE_HEIGHT, 90, detections);
+
+        assertEquals(1, backend.runs);
+        assertTrue(!detections.isEmpty() && detections.size() <= detector.getMaxDetections());
+        // The fake output is in model input coordinates; detections must be scaled to the image
+        float maxRight = 0;
+        for (RectangleBox box : detections) {
+            maxRight = Math.max(maxRight, box.right);
+        }
+        assertTrue(maxRight > INPUT_SIZE);
+    }
+
+    // Output tensor with a few dozen proposals above the score threshold
+    private static float[] randomOutput(long seed) {
+        Random random = new Random(seed);
+        float[] output = new float[(4 + NUM_CLASSES) * NUM_PROPOSALS];
+        for (int i = 0; i < NUM_PROPOSALS; i++) {
+            output[i] = random.nextFloat() * INPUT_SIZE;
+            output[NUM_PROPOSALS + i] = random.nextFloat() * INPUT_SIZE;
+            output[2 * NUM_PROPOSALS + i] = 2 + random.nextFloat() * 12;
+            output[3 * NUM_PROPOSALS + i] = 2 + random.nextFloat() * 12;
+        }
+        for (int c = 0; c < NUM_CLASSES; c++) {
+            for (int i = 0; i < NUM_PROPOSALS; i++) {
+                output[(4 + c) * NUM_PROPOSALS + i] = random.nextFloat() * random.nextFloat() * 0.25f;
+            }
+        }
+        return output;
+    }
+
+    private static ByteBuffer randomBytes(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(bytes).rewind();
+        return buffer;
+    }
+
+    /**
+     * Backend answering every batch-1 run with the same output tensor.
+     */
+    private static final class FakeBackend implements DetectionBackend {
+        private final ByteBuffer output;
+        int runs;
+
+        FakeBackend(float[] output) {
+            this.output = ByteBuffer.allocateDirect(output.length * 4).order(ByteOrder.nativeOrder());
+            this.output.asFloatBuffer().put(output);
+        }
+
+        @Override
+        public String getName() {
+            return "Fake";
+        }
+
+        @Override
+        public int[] getInputShape() {
+            return new int[]{1, INPUT_SIZE, INPUT_SIZE, 3};
+        }
+
+        @Override
+        public int[] getOutputShape() {
+            return new int[]{1, 4 + NUM_CLASSES, NUM_PROPOSALS};
+        }
+
+        @Override
+        public boolean setBatchSize(int batchSize) {
+            return batchSize == 1;
+        }
+
+        @Override
+        public void run(ByteBuffer input, ByteBuffer output) {
+            assertEquals(INPUT_SIZE * INPUT_SIZE * 3 * 4, input.capacity());
+            this.output.rewind();
+            output.clear();
+            output.put(this.output);
+            runs++;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
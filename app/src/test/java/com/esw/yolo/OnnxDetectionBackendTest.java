@@ -0,0 +1,253 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs {@link OnnxDetectionBackend} on the desktop ONNX Runtime with tiny synthetic models, one
+ * per input / output layout, and decodes the result with {@link DetectionPostprocessor}.
+ *
+ * Each model is a single Reshape of its input into its output, so the tensor the backend hands
+ * to the decoder is fully determined by the layout conversions around the session: a wrong
+ * transpose either way moves the one object the test plants, or scrambles the other proposals.
+ */
+public class OnnxDetectionBackendTest {
+    private final static int SIZE = 4;                              // Model input height and width
+    private final static int NUM_CLASSES = 2;
+    private final static int FEATURES = 4 + NUM_CLASSES;
+    private final static int PROPOSALS = SIZE * SIZE * 3 / FEATURES;
+    private final static int OBJECT_PROPOSAL = 5;
+    private final static int OBJECT_CLASS = 1;
+
+    // ONNX protobuf constants
+    private final static int FLOAT = 1;
+    private final static int INT64 = 7;
+
+    @Test
+    public void nhwcInputAndFeaturesFirstOutput() throws OrtException {
+        check(false, false, false, 1);
+    }
+
+    @Test
+    public void nchwInputIsTransposedIntoPlanes() throws OrtException {
+        check(true, false, false, 1);
+    }
+
+    @Test
+    public void proposalsFirstOutputIsTransposedBack() throws OrtException {
+        check(false, true, false, 1);
+    }
+
+    @Test
+    public void dynamicShapesAreProbedAndBatched() throws OrtException {
+        check(true, true, true, 2);
+    }
+
+    private static void check(boolean channelsFirst, boolean proposalsFirst, boolean dynamic, int batchSize)
+            throws OrtException {
+        byte[] model = reshapeModel(channelsFirst, proposalsFirst, dynamic);
+        ByteBuffer modelBuffer = ByteBuffer.allocateDirect(model.length);
+        modelBuffer.put(model);
+        modelBuffer.rewind();
+
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+             OnnxDetectionBackend backend = new OnnxDetectionBackend(modelBuffer, options)) {
+            assertArrayEquals(new int[]{1, SIZE, SIZE, 3}, backend.getInputShape());
+            assertArrayEquals(new int[]{1, FEATURES, PROPOSALS}, backend.getOutputShape());
+            assertEquals(batchSize == 1 || dynamic, backend.setBatchSize(batchSize));
+
+            int imageFloats = SIZE * SIZE * 3;
+            ByteBuffer input = ByteBuffer.allocateDirect(batchSize * imageFloats * 4).order(ByteOrder.nativeOrder());
+            ByteBuffer output = ByteBuffer.allocateDirect(batchSize * imageFloats * 4).order(ByteOrder.nativeOrder());
+            float[][] expected = new float[batchSize][];
+            for (int b = 0; b < batchSize; b++) {
+                expected[b] = expectedOutput(b);
+                float[] image = inputFor(expected[b], channelsFirst, proposalsFirst);
+                for (int i = 0; i < imageFloats; i++) {
+                    input.putFloat((b * imageFloats + i) * 4, image[i]);
+                }
+            }
+
+            // Twice, so the second run goes through the tensors cached on the first
+            for (int run = 0; run < 2; run++) {
+                backend.run(input, output);
+                for (int b = 0; b < batchSize; b++) {
+                    float[] actual = new float[imageFloats];
+                    for (int i = 0; i < imageFloats; i++) {
+                        actual[i] = output.getFloat((b * imageFloats + i) * 4);
+                    }
+                    assertArrayEquals("image " + b, expected[b], actual, 0f);
+                }
+            }
+
+            List<String> labels = Arrays.asList("cat", "dog");
+            DetectionPostprocessor postprocessor = new DetectionPostprocessor(labels, PROPOSALS, 0.5f, 0.5f, 10, 4, false);
+            ArrayList<RectangleBox> boxPool = RectangleBox.createBoxes(4);
+            ArrayList<RectangleBox> detections = new ArrayList<>();
+            for (int b = 0; b < batchSize; b++) {
+                ByteBuffer image = output.duplicate();
+                image.position(b * imageFloats * 4);
+                detections.clear();
+                assertEquals(1, postprocessor.process(image.slice().order(ByteOrder.nativeOrder()).asFloatBuffer(),
+                        new ImageTransform(), boxPool, detections));
+                RectangleBox box = detections.get(0);
+                assertEquals("dog", box.label);
+                assertEquals(0.9f, box.confidence, 0f);
+                assertEquals(1.5f + b, box.left, 1e-6f);
+                assertEquals(0.5f, box.bottom, 1e-6f);
+                assertEquals(2.5f + b, box.right, 1e-6f);
+                assertEquals(2.5f, box.top, 1e-6f);
+            }
+        }
+    }
+
+    // Decoder layout [F, P]: one confident object, distinct low scores and boxes elsewhere
+    private static float[] expectedOutput(int image) {
+        float[] output = new float[FEATURES * PROPOSALS];
+        for (int f = 0; f < FEATURES; f++) {
+            for (int p = 0; p < PROPOSALS; p++) {
+                output[f * PROPOSALS + p] = f < 4 ? 1 + f + 0.125f * p : 0.01f * (f * PROPOSALS + p) / FEATURES;
+            }
+        }
+        // Box (1.5, 0.5) - (2.5, 2.5), shifted right by the image index
+        output[OBJECT_PROPOSAL] = 2 + image;
+        output[PROPOSALS + OBJECT_PROPOSAL] = 1.5f;
+        output[2 * PROPOSALS + OBJECT_PROPOSAL] = 1;
+        output[3 * PROPOSALS + OBJECT_PROPOSAL] = 2;
+        output[(4 + OBJECT_CLASS) * PROPOSALS + OBJECT_PROPOSAL] = 0.9f;
+        return output;
+    }
+
+    // NHWC input that makes the reshape model produce the given decoder output
+    private static float[] inputFor(float[] expected, boolean channelsFirst, boolean proposalsFirst) {
+        float[] modelOutput = new float[expected.length];
+        for (int f = 0; f < FEATURES; f++) {
+            for (int p = 0; p < PROPOSALS; p++) {
+                int target = proposalsFirst ? p * FEATURES + f : f * PROPOSALS + p;
+                modelOutput[target] = expected[f * PROPOSALS + p];
+            }
+        }
+        // The model input holds the same floats as its output
+        if (!channelsFirst) {
+            return modelOutput;
+        }
+        int pixels = SIZE * SIZE;
+        float[] image = new float[modelOutput.length];
+        for (int c = 0; c < 3; c++) {
+            for (int i = 0; i < pixels; i++) {
+                image[i * 3 + c] = modelOutput[c * pixels + i];
+            }
+        }
+        return image;
+    }
+
+    // Serialized ONNX model (opset 13) reshaping the input into the output
+    private static byte[] reshapeModel(boolean channelsFirst, boolean proposalsFirst, boolean dynamic) {
+        long[] inputDims = channelsFirst ? new long[]{1, 3, SIZE, SIZE} : new long[]{1, SIZE, SIZE, 3};
+        long[] outputDims = proposalsFirst ? new long[]{1, PROPOSALS, FEATURES} : new long[]{1, FEATURES, PROPOSALS};
+        String[] inputParams = new String[4];
+        String[] outputParams = new String[3];
+        if (dynamic) {
+            inputParams[0] = "batch";
+            outputParams[0] = "batch";
+            outputParams[1] = "rows";
+            outputParams[2] = "cols";
+        }
+
+        ByteBuffer shape = ByteBuffer.allocate(3 * 8).order(ByteOrder.LITTLE_ENDIAN);
+        shape.putLong(-1).putLong(outputDims[1]).putLong(outputDims[2]);
+        Proto shapeTensor = new Proto()
+                .varint(1, 3)                  // dims
+                .varint(2, INT64)              // data_type
+                .string(8, "shape")            // name
+                .bytes(9, shape.array());      // raw_data
+        Proto reshape = new Proto()
+                .string(1, "images")           // input
+                .string(1, "shape")
+                .string(2, "output0")          // output
+                .string(3, "reshape")          // name
+                .string(4, "Reshape");         // op_type
+        Proto graph = new Proto()
+                .message(1, reshape)           // node
+                .string(2, "reshape_model")    // name
+                .message(5, shapeTensor)       // initializer
+                .message(11, valueInfo("images", inputDims, inputParams))
+                .message(12, valueInfo("output0", outputDims, outputParams));
+        return new Proto()
+                .varint(1, 8)                  // ir_version
+                .message(7, graph)             // graph
+                .message(8, new Proto().varint(2, 13))  // opset_import: default domain, version 13
+                .toByteArray();
+    }
+
+    // Float tensor ValueInfoProto; dimensions with a name in params are symbolic
+    private static Proto valueInfo(String name, long[] dims, String[] params) {
+        Proto shape = new Proto();
+        for (int i = 0; i < dims.length; i++) {
+            shape.message(1, params[i] != null
+                    ? new Proto().string(2, params[i])      // dim_param
+                    : new Proto().varint(1, dims[i]));      // dim_value
+        }
+        Proto tensorType = new Proto()
+                .varint(1, FLOAT)              // elem_type
+                .message(2, shape);            // shape
+        return new Proto()
+                .string(1, name)
+                .message(2, new Proto().message(1, tensorType));  // type.tensor_type
+    }
+
+    // Minimal protobuf writer, enough for the ONNX messages above
+    private static final class Proto {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Proto varint(int field, long value) {
+            writeVarint((long) field << 3);
+            writeVarint(value);
+            return this;
+        }
+
+        Proto string(int field, String value) {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Proto message(int field, Proto value) {
+            return bytes(field, value.toByteArray());
+        }
+
+        Proto bytes(int field, byte[] value) {
+            writeVarint((long) field << 3 | 2);
+            writeVarint(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks how {@link SeamMerger} joins detections cut by tile seams. The layouts are two or four
+ * 640 px tiles overlapping by 128 px, so the seam band is [512, 640] on either axis.
+ */
+public class SeamMergerTest {
+    private final static int CAPACITY = 16;
+
+    private final SeamMerger merger = new SeamMerger();
+    private final DetectionCandidates candidates = new DetectionCandidates(CAPACITY);
+    private final int[] cutEdges = new int[CAPACITY];
+
+    @Test
+    public void objectWiderThanOverlapIsStitchedAcrossSeam() {
+        // Object [300, 900] x [100, 300]: tile 0 sees [300, 640], tile 1 sees [512, 900]
+        add(0, 300, 100, 640, 300, 0.7f, 0, SeamMerger.CUT_RIGHT);
+        add(1, 512, 102, 900, 298, 0.9f, 0, SeamMerger.CUT_LEFT);
+
+        assertEquals(1, merger.merge(candidates, cutEdges));
+        assertBox(0, 300, 100, 900, 300);
+        assertEquals(0.9f, candidates.score[0], 0f);
+        assertEquals(0, cutEdges[0]);
+    }
+
+    @Test
+    public void objectAcrossFourTilesIsStitchedIntoOneBox() {
+        add(0, 400, 450, 640, 640, 0.8f, 2, SeamMerger.CUT_RIGHT | SeamMerger.CUT_BOTTOM);
+        add(1, 512, 450, 800, 640, 0.8f, 2, SeamMerger.CUT_LEFT | SeamMerger.CUT_BOTTOM);
+        add(2, 400, 512, 640, 760, 0.8f, 2, SeamMerger.CUT_RIGHT | SeamMerger.CUT_TOP);
+        add(3, 512, 512, 800, 760, 0.8f, 2, SeamMerger.CUT_LEFT | SeamMerger.CUT_TOP);
+
+        assertEquals(1, merger.merge(candidates, cutEdges));
+        assertBox(0, 400, 450, 800, 760);
+        assertEquals(0, cutEdges[0]);
+    }
+
+    @Test
+    public void pieceIsDroppedWhenAnotherRegionSeesTheWholeObject() {
+        // Object [600, 680] in the seam band: cut by tile 0, whole in tile 1
+        add(0, 600, 200, 640, 260, 0.6f, 0, SeamMerger.CUT_RIGHT);
+        add(1, 600, 200, 680, 260, 0.8f, 0, 0);
+        // Whole in the full image pass (region 2) as well
+        add(2, 602, 201, 679, 259, 0.7f, 0, 0);
+
+        assertEquals(2, merger.merge(candidates, cutEdges));
+        assertEquals(1, candidates.anchor[0]);
+        assertEquals(2, candidates.anchor[1]);
+    }
+
+    @Test
+    public void stitchedObjectIsKeptNextToFullImageBox() {
+        add(0, 300, 100, 640, 300, 0.7f, 0, SeamMerger.CUT_RIGHT);
+        add(1, 512, 100, 900, 300, 0.7f, 0, SeamMerger.CUT_LEFT);
+        add(2, 305, 98, 895, 302, 0.6f, 0, 0);
+
+        // Duplicates of whole objects are left to NMS
+        assertEquals(2, merger.merge(candidates, cutEdges));
+        assertBox(0, 300, 100, 900, 300);
+        assertBox(1, 305, 98, 895, 302);
+    }
+
+    @Test
+    public void pieceWithoutCounterpartIsKept() {
+        // The neighbouring tile missed the object and no region saw it whole
+        add(0, 300, 100, 640, 300, 0.7f, 0, SeamMerger.CUT_RIGHT);
+        add(2, 100, 100, 200, 200, 0.9f, 0, 0);
+
+        assertEquals(2, merger.merge(candidates, cutEdges));
+        assertBox(0, 300, 100, 640, 300);
+        assertEquals(SeamMerger.CUT_RIGHT, cutEdges[0]);
+    }
+
+    @Test
+    public void piecesOfDifferentClassesOrRowsAreNotStitched() {
+        add(0, 300, 100, 640, 300, 0.7f, 0, SeamMerger.CUT_RIGHT);
+        add(1, 512, 100, 900, 300, 0.7f, 1, SeamMerger.CUT_LEFT);
+        // Same class, but beside the first one along the seam rather than continuing it
+        add(1, 512, 400, 900, 600, 0.7f, 0, SeamMerger.CUT_LEFT);
+
+        assertEquals(3, merger.merge(candidates, cutEdges));
+    }
+
+    private void add(int region, float x0, float y0, float x1, float y1, float score, int classIdx, int edges) {
+        int i = candidates.count++;
+        candidates.x0[i] = x0;
+        candidates.y0[i] = y0;
+        candidates.x1[i] = x1;
+        candidates.y1[i] = y1;
+        candidates.score[i] = score;
+        candidates.classIdx[i] = classIdx;
+        candidates.anchor[i] = region;
+        cutEdges[i] = edges;
+    }
+
+    private void assertBox(int i, float x0, float y0, float x1, float y1) {
+        assertEquals(x0, candidates.x0[i], 0f);
+        assertEquals(y0, candidates.y0[i], 0f);
+        assertEquals(x1, candidates.x1[i], 0f);
+        assertEquals(y1, candidates.y1[i], 0f);
+    }
+}
@@ -0,0 +1,206 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.yolo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Checks {@link YoloOutputDecoder} against the decode ObjectDetection shipped with, kept below
+ * as {@link #baselineDecode}, on seeded random [1, 84, 8400] tensors.
+ *
+ * Source image and model input are both non-square, and differ in aspect ratio, so a swap of
+ * width and height in the mapping back to the source shows up at every orientation.
+ */
+public class YoloOutputDecoderTest {
+    private final static int NUM_CLASSES = 80;
+    private final static int NUM_PROPOSALS = 8400;
+    private final static int INPUT_WIDTH = 640;
+    private final static int INPUT_HEIGHT = 480;
+    private final static int SOURCE_WIDTH = 1920;
+    private final static int SOURCE_HEIGHT = 1080;
+    // The baseline maps in float, the transform in double
+    private final static float COORD_TOLERANCE = 1e-3f;
+    private final static float SCORE_THRESHOLD = 0.2f;
+    private final static float INVALID_ANCHOR = -10000.0f;
+
+    @Test
+    public void decodeMatchesBaselineAtSensorOrientation0() {
+        checkOrientation(0);
+    }
+
+    @Test
+    public void decodeMatchesBaselineAtSensorOrientation90() {
+        checkOrientation(90);
+    }
+
+    @Test
+    public void decodeMatchesBaselineAtSensorOrientation180() {
+        checkOrientation(180);
+    }
+
+    @Test
+    public void decodeMatchesBaselineAtSensorOrientation270() {
+        checkOrientation(270);
+    }
+
+    private static void checkOrientation(int sensorOrientation) {
+        YoloOutputDecoder decoder = new YoloOutputDecoder(NUM_CLASSES, NUM_PROPOSALS);
+        DetectionCandidates candidates = new DetectionCandidates(NUM_PROPOSALS);
+        // The mapping ObjectDetection.predict configures for a full source image
+        ImageTransform transform = new ImageTransform();
+        transform.set(0, 0, SOURCE_WIDTH, SOURCE_HEIGHT, sensorOrientation, INPUT_WIDTH, INPUT_HEIGHT, false);
+
+        for (long seed = 1; seed <= 3; seed++) {
+            float[] tensor = randomTensor(seed);
+            float[][] expectedBoxes = new float[NUM_PROPOSALS][4];
+            float[] expectedScores = new float[NUM_PROPOSALS];
+            int[] expectedClasses = new int[NUM_PROPOSALS];
+            baselineDecode(tensor, sensorOrientation, expectedBoxes, expectedScores, expectedClasses);
+
+            int count = decoder.decode(FloatBuffer.wrap(tensor), transform, SCORE_THRESHOLD, candidates);
+
+            // The baseline keeps every proposal and marks the dropped ones; the decoder only
+            // writes the survivors, in anchor order
+            int expectedCount = 0;
+            for (int i = 0; i < NUM_PROPOSALS; i++) {
+                if (expectedScores[i] == INVALID_ANCHOR) {
+                    continue;
+                }
+                String at = "orientation " + sensorOrientation + ", seed " + seed + ", anchor " + i;
+                int slot = expectedCount++;
+                assertEquals(at, i, candidates.anchor[slot]);
+                assertEquals(at, expectedScores[i], candidates.score[slot], 0f);
+                assertEquals(at, expectedClasses[i], candidates.classIdx[slot]);
+                assertEquals(at, expectedBoxes[i][0], candidates.x0[slot], COORD_TOLERANCE);
+                assertEquals(at, expectedBoxes[i][1], candidates.y0[slot], COORD_TOLERANCE);
+                assertEquals(at, expectedBoxes[i][2], candidates.x1[slot], COORD_TOLERANCE);
+                assertEquals(at, expectedBoxes[i][3], candidates.y1[slot], COORD_TOLERANCE);
+            }
+            assertTrue(expectedCount > 0 && expectedCount < NUM_PROPOSALS);
+            assertEquals(expectedCount, count);
+            assertEquals(expectedCount, candidates.count);
+        }
+    }
+
+    // Boxes of positive size within the input, class scores spread around the threshold
+    private static float[] randomTensor(long seed) {
+        Random random = new Random(seed);
+        float[] tensor = new float[(4 + NUM_CLASSES) * NUM_PROPOSALS];
+        float[] maxScore = new float[NUM_PROPOSALS];
+        for (int i = 0; i < NUM_PROPOSALS; i++) {
+            tensor[i] = random.nextFloat() * INPUT_WIDTH;
+            tensor[NUM_PROPOSALS + i] = random.nextFloat() * INPUT_HEIGHT;
+            tensor[2 * NUM_PROPOSALS + i] = 1 + random.nextFloat() * 200;
+            tensor[3 * NUM_PROPOSALS + i] = 1 + random.nextFloat() * 200;
+            maxScore[i] = random.nextFloat() * 0.4f;
+        }
+        for (int c = 0; c < NUM_CLASSES; c++) {
+            for (int i = 0; i < NUM_PROPOSALS; i++) {
+                tensor[(4 + c) * NUM_PROPOSALS + i] = random.nextFloat() * maxScore[i];
+            }
+        }
+        return tensor;
+    }
+
+    // Decode of the original ObjectDetection.predict, up to NMS, followed by its scaling to the
+    // source image: dropped proposals get INVALID_ANCHOR as score. The original scaled by
+    // image size / input size, which only holds for the square input it shipped with; the
+    // un-rotated grid is input height x input width at 0 and 180, so that is used here.
+    private static void baselineDecode(float[] tensor, int sensorOrientation,
+                                       float[][] updatedBoxes, float[] outputScores, int[] outputClasses) {
+        float[][] postProcessOutput = new float[4 + NUM_CLASSES][NUM_PROPOSALS];
+        float[][] outputBoxes = new float[NUM_PROPOSALS][4];
+        int inputHeight = INPUT_HEIGHT;
+        int inputWidth = INPUT_WIDTH;
+
+        FloatBuffer outputBuffer = FloatBuffer.wrap(tensor);
+        for (int i = 0; i < 4 + NUM_CLASSES; i++) {
+            for (int j = 0; j < NUM_PROPOSALS; j++) {
+                postProcessOutput[i][j] = outputBuffer.get();
+            }
+        }
+
+        for (int i = 0; i < NUM_PROPOSALS; i++) {
+            float maxScore = -Float.MAX_VALUE;
+            int classIndex = -1;
+            for (int c = 0; c < NUM_CLASSES; c++) {
+                float score = postProcessOutput[c + 4][i];
+                if (score > maxScore) {
+                    maxScore = score;
+                    classIndex = c;
+                }
+            }
+            outputScores[i] = maxScore;
+            outputClasses[i] = classIndex;
+
+            float dx = postProcessOutput[0][i];
+            float dy = postProcessOutput[1][i];
+            float dw = postProcessOutput[2][i];
+            float dh = postProcessOutput[3][i];
+            outputBoxes[i][0] = dx - dw / 2;
+            outputBoxes[i][1] = dy - dh / 2;
+            outputBoxes[i][2] = dx + dw / 2;
+            outputBoxes[i][3] = dy + dh / 2;
+        }
+
+        for (int i = 0; i < NUM_PROPOSALS; i++) {
+            if (outputScores[i] >= SCORE_THRESHOLD) {
+                float x0 = outputBoxes[i][0];
+                float y0 = outputBoxes[i][1];
+                float x1 = outputBoxes[i][2];
+                float y1 = outputBoxes[i][3];
+                switch (sensorOrientation) {
+                    case 0:
+                        updatedBoxes[i][0] = inputHeight - y1;
+                        updatedBoxes[i][1] = x0;
+                        updatedBoxes[i][2] = inputHeight - y0;
+                        updatedBoxes[i][3] = x1;
+                        break;
+                    case 90:
+                        updatedBoxes[i][0] = x0;
+                        updatedBoxes[i][1] = y0;
+                        updatedBoxes[i][2] = x1;
+                        updatedBoxes[i][3] = y1;
+                        break;
+                    case 180:
+                        updatedBoxes[i][0] = y0;
+                        updatedBoxes[i][1] = inputWidth - x1;
+                        updatedBoxes[i][2] = y1;
+                        updatedBoxes[i][3] = inputWidth - x0;
+                        break;
+                    case 270:
+                        updatedBoxes[i][0] = inputWidth - x1;
+                        updatedBoxes[i][1] = inputHeight - y1;
+                        updatedBoxes[i][2] = inputWidth - x0;
+                        updatedBoxes[i][3] = inputHeight - y0;
+                        break;
+                    default:
+                        break;
+                }
+            } else {
+                outputScores[i] = INVALID_ANCHOR;
+            }
+        }
+
+        boolean swapped = sensorOrientation == 0 || sensorOrientation == 180;
+        float scaleWidth = (float) SOURCE_WIDTH / (swapped ? inputHeight : inputWidth);
+        float scaleHeight = (float) SOURCE_HEIGHT / (swapped ? inputWidth : inputHeight);
+        for (int i = 0; i < NUM_PROPOSALS; i++) {
+            if (outputScores[i] == INVALID_ANCHOR) {
+                continue;
+            }
+            updatedBoxes[i][0] *= scaleWidth;
+            updatedBoxes[i][1] *= scaleHeight;
+            updatedBoxes[i][2] *= scaleWidth;
+            updatedBoxes[i][3] *= scaleHeight;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import org.jetbrains.kotlin.gradle.dsl.JvmTarget
+
+plugins {
+    alias(libs.plugins.jetbrains.kotlin.jvm)
+    alias(libs.plugins.jmh)
+}
+
+// The benchmarked pre/post-processing code has no Android dependencies, so it is compiled
+// straight from the app sources instead of being moved to a library module.
+val appSources = "../app/src/main/java"
+val benchmarkedSources =
+    listOf(
+        "com/esw/imageprocessing/ImageProcessing.java",
+        "com/esw/yolo/DetectionCandidates.java",
+        "com/esw/yolo/ImageTransform.java",
+        "com/esw/yolo/NonMaxSuppression.java",
+        "com/esw/yolo/YoloOutputDecoder.java",
+        "com/esw/sam/LowResMasks.kt",
+        "com/esw/sam/MaskCompositor.kt",
+    )
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf(appSources))
+            setIncludes(benchmarkedSources)
+        }
+    }
+}
+
+kotlin {
+    sourceSets {
+        main {
+            kotlin.setSrcDirs(listOf(appSources))
+            kotlin.setIncludes(benchmarkedSources)
+        }
+    }
+    compilerOptions {
+        jvmTarget.set(JvmTarget.JVM_17)
+    }
+}
+
+dependencies {
+    // Desktop OpenCV build, for the cvtColor + convertTo baseline of the YOLO input conversion
+    jmh(libs.opencv.desktop)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // Quick defaults for local runs; override with e.g. -Pjmh.includes=Nms
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    timeUnit.set("us")
+    benchmarkMode.set(listOf("avgt"))
+    resultFormat.set("JSON")
+    // Host build of the native kernels, see :app:buildHostNative
+    jvmArgsAppend.add("-Djava.library.path=${rootDir}/app/build/host-native")
+    if (project.hasProperty("jmh.includes")) {
+        includes.set(listOf(project.property("jmh.includes").toString()))
+    }
+}
+
+tasks.named("jmh") {
+    dependsOn(":app:buildHostNative")
+}
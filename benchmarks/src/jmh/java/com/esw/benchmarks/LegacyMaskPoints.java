@@ -0,0 +1,41 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The mask rendering the SAM decoder shipped with (the point cloud loop of SAMDecoder.execute),
+ * kept as the baseline to compare {@link com.esw.sam.MaskCompositor} against.
+ *
+ * Every foreground pixel is boxed twice into a list of points, which the app then drew on the
+ * overlay with Canvas.drawPoints; the mask image is written separately.
+ */
+final class LegacyMaskPoints {
+    private final static int WHITE = 0xFFFFFFFF;
+
+    private LegacyMaskPoints() {
+    }
+
+    static float[] collectMaskPoints(FloatBuffer mask, int maskStartIndex, int width, int height, int[] maskPixels) {
+        List<Float> pointCloud = new ArrayList<>();
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (mask.get(maskStartIndex + j + i * width) > 0) {
+                    pointCloud.add((float) j);
+                    pointCloud.add((float) i);
+                    maskPixels[j + i * width] = WHITE;
+                }
+            }
+        }
+        float[] points = new float[pointCloud.size()];
+        for (int k = 0; k < points.length; k++) {
+            points[k] = pointCloud.get(k);
+        }
+        return points;
+    }
+}
@@ -0,0 +1,70 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+/**
+ * The NMS the app shipped with (ObjectDetection.NMS.nmsScoreFilter), kept as the baseline to
+ * compare {@link com.esw.yolo.NonMaxSuppression} against.
+ *
+ * It walks the proposals in anchor order rather than score order and stops after topN kept
+ * boxes; suppressed entries are marked in the score array, which is therefore modified.
+ * The area of the second box uses anchor1[1] as in the original.
+ */
+final class LegacyNms {
+    static final float INVALID_ANCHOR = -10000.0f;
+
+    private LegacyNms() {
+    }
+
+    private static float computeOverlapAreaRate(float[] anchor1, float[] anchor2) {
+        float xx1 = Math.max(anchor1[0], anchor2[0]);
+        float yy1 = Math.max(anchor1[1], anchor2[1]);
+        float xx2 = Math.min(anchor1[2], anchor2[2]);
+        float yy2 = Math.min(anchor1[3], anchor2[3]);
+
+        float w = xx2 - xx1 + 1;
+        float h = yy2 - yy1 + 1;
+        if (w < 0 || h < 0) {
+            return 0;
+        }
+
+        float inter = w * h;
+
+        float anchor1Area = (anchor1[2] - anchor1[0] + 1) * (anchor1[3] - anchor1[1] + 1);
+        float anchor2Area = (anchor2[2] - anchor2[0] + 1) * (anchor2[3] - anchor1[1] + 1);
+
+        return inter / (anchor1Area + anchor2Area - inter);
+    }
+
+    static int[] nmsScoreFilter(float[][] anchors, float[] score, int topN, float thresh) {
+        int length = anchors.length;
+        int count = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (score[i] == INVALID_ANCHOR) {
+                continue;
+            }
+            if (++count >= topN) {
+                break;
+            }
+            for (int j = i + 1; j < length; j++) {
+                if (score[j] != INVALID_ANCHOR) {
+                    if (computeOverlapAreaRate(anchors[i], anchors[j]) > thresh) {
+                        score[j] = INVALID_ANCHOR;
+                    }
+                }
+            }
+        }
+        int[] outputIndex = new int[count];
+        int j = 0;
+        for (int i = 0; i < length && count > 0; i++) {
+            if (score[i] != INVALID_ANCHOR) {
+                outputIndex[j++] = i;
+                count--;
+            }
+        }
+        return outputIndex;
+    }
+}
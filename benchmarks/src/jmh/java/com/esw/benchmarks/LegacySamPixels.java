@@ -0,0 +1,39 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+import java.nio.FloatBuffer;
+
+/**
+ * The encoder input normalization the SAM encoder shipped with, kept as the baseline to compare
+ * {@link com.esw.imageprocessing.ImageProcessing#argbToSamInput} against.
+ *
+ * It makes one pass over the image per plane with relative puts into a heap buffer. The app
+ * read every pixel with Bitmap.getPixel; here the pixels come from an array. The second plane
+ * holds blue and the third green, each normalized with the mean and std at its plane index,
+ * as in the original.
+ */
+final class LegacySamPixels {
+    private LegacySamPixels() {
+    }
+
+    static void normalizeToPlanes(int[] pixels, int width, int height, float[] mean, float[] std, FloatBuffer out) {
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                out.put((((pixels[j + i * width] >> 16) & 0xFF) / 255.0f - mean[0]) / std[0]);
+            }
+        }
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                out.put(((pixels[j + i * width] & 0xFF) / 255.0f - mean[1]) / std[1]);
+            }
+        }
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                out.put((((pixels[j + i * width] >> 8) & 0xFF) / 255.0f - mean[2]) / std[2]);
+            }
+        }
+    }
+}
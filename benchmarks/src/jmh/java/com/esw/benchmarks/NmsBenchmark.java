@@ -0,0 +1,79 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+import com.esw.yolo.DetectionCandidates;
+import com.esw.yolo.NonMaxSuppression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Non-maximum suppression over clustered candidates: both {@link NonMaxSuppression}
+ * strategies against the original nmsScoreFilter.
+ */
+@State(Scope.Thread)
+public class NmsBenchmark {
+    private final static int IMAGE_SIZE = 1920;
+    private final static float IOU_THRESHOLD = 0.2f;
+    private final static int PRE_NMS_TOP_K = 300;
+    private final static int MAX_DETECTIONS = 20;
+
+    // 8400 is every proposal of a 640x640 YOLO output passing the score threshold
+    @Param({"100", "1000", "5000", "8400"})
+    public int candidateCount;
+
+    @Param({"1", "80"})
+    public int classes;
+
+    @Param({"PAIRWISE", "SPATIAL_GRID", "LEGACY"})
+    public String strategy;
+
+    // Top-K limited like ObjectDetection, and unlimited like the tile merge of TiledObjectDetection.
+    // LEGACY has no top-K step and ignores it.
+    @Param({"300", "0"})
+    public int preNmsTopK;
+
+    private DetectionCandidates candidates;
+    private NonMaxSuppression nms;
+    private int[] keep;
+
+    // Legacy inputs: boxes as rows, and a score array the legacy code overwrites
+    private float[][] legacyBoxes;
+    private float[] legacyScores;
+    private float[] legacyScoresCopy;
+
+    @Setup
+    public void setUp() {
+        candidates = SyntheticData.clusteredCandidates(candidateCount, classes, IMAGE_SIZE);
+        int topK = preNmsTopK > 0 ? preNmsTopK : candidateCount;
+        if (!"LEGACY".equals(strategy)) {
+            nms = new NonMaxSuppression(candidateCount, topK, MAX_DETECTIONS, IOU_THRESHOLD, false);
+            nms.setStrategy(NonMaxSuppression.Strategy.valueOf(strategy));
+        }
+        keep = new int[MAX_DETECTIONS];
+
+        legacyBoxes = new float[candidateCount][];
+        legacyScores = new float[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            legacyBoxes[i] = new float[]{candidates.x0[i], candidates.y0[i], candidates.x1[i], candidates.y1[i]};
+            legacyScores[i] = candidates.score[i];
+        }
+        legacyScoresCopy = new float[candidateCount];
+    }
+
+    @Benchmark
+    public int suppress() {
+        if (nms != null) {
+            return nms.run(candidates, keep);
+        }
+        // The legacy pass marks suppressed boxes in its score array, so it needs fresh scores
+        System.arraycopy(legacyScores, 0, legacyScoresCopy, 0, candidateCount);
+        return LegacyNms.nmsScoreFilter(legacyBoxes, legacyScoresCopy, MAX_DETECTIONS, IOU_THRESHOLD).length;
+    }
+}
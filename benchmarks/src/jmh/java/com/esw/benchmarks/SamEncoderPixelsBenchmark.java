@@ -0,0 +1,70 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+import com.esw.imageprocessing.ImageProcessing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * SAM encoder input normalization of ARGB pixels to mean/std normalized planes: the native
+ * kernel the encoder runs and its Java fallback against the original per-plane loops.
+ *
+ * NATIVE needs the host build of the image_processing library, see :app:buildHostNative.
+ */
+@State(Scope.Thread)
+public class SamEncoderPixelsBenchmark {
+    private final static float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private final static float[] STD = {0.229f, 0.224f, 0.225f};
+
+    // Side of the square image; the encoder input is 1024
+    @Param({"512", "1024"})
+    public int imageSize;
+
+    @Param({"LEGACY", "NATIVE", "JAVA"})
+    public String path;
+
+    private int[] argbPixels;
+    // The encoder writes into a direct buffer that ONNX Runtime reads without a copy; the
+    // original filled a heap buffer
+    private ByteBuffer encoderInput;
+    private FloatBuffer legacyInput;
+
+    @Setup
+    public void setUp() {
+        if ("NATIVE".equals(path) && !ImageProcessing.isNativeAvailable()) {
+            throw new IllegalStateException("Native image_processing library not loaded");
+        }
+        int pixelCount = imageSize * imageSize;
+        argbPixels = SyntheticData.argbPixels(pixelCount);
+        encoderInput = ByteBuffer.allocateDirect(3 * pixelCount * 4).order(ByteOrder.nativeOrder());
+        legacyInput = FloatBuffer.allocate(3 * pixelCount);
+    }
+
+    @Benchmark
+    public Object normalize() {
+        int pixelCount = imageSize * imageSize;
+        switch (path) {
+            case "LEGACY":
+                legacyInput.clear();
+                LegacySamPixels.normalizeToPlanes(argbPixels, imageSize, imageSize, MEAN, STD, legacyInput);
+                return legacyInput;
+            case "NATIVE":
+                ImageProcessing.argbToSamInput(argbPixels, 0, encoderInput, 0, pixelCount, pixelCount, MEAN, STD);
+                return encoderInput;
+            default:
+                ImageProcessing.argbToSamInputJava(argbPixels, 0, encoderInput, 0, pixelCount, pixelCount, MEAN, STD);
+                return encoderInput;
+        }
+    }
+}
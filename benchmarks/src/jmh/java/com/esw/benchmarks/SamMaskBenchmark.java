@@ -0,0 +1,81 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+import com.esw.sam.LowResMasks;
+import com.esw.sam.MaskCompositor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.FloatBuffer;
+
+/**
+ * SAM decoder mask rendering: the original point collection for Canvas.drawPoints against
+ * compositing every label's mask into the reused overlay, mask and label map buffers, either
+ * from masks predicted at the image resolution or upsampled from 256x256 low-resolution ones.
+ */
+@State(Scope.Thread)
+public class SamMaskBenchmark {
+    private final static int LOW_RES_SIZE = 256;
+
+    // Side of the square image the masks are predicted at
+    @Param({"512", "1024"})
+    public int imageSize;
+
+    // Number of labels, i.e. masks rendered by one decoder call
+    @Param({"1", "4", "10"})
+    public int labels;
+
+    private FloatBuffer maskLogits;
+    private int[] maskPixels;
+    private MaskCompositor compositor;
+    private LowResMasks lowResMasks;
+
+    @Setup
+    public void setUp() {
+        maskLogits = SyntheticData.maskLogits(labels, imageSize, imageSize);
+        maskPixels = new int[imageSize * imageSize];
+        compositor = new MaskCompositor();
+        FloatBuffer lowResLogits = SyntheticData.maskLogits(labels, LOW_RES_SIZE, LOW_RES_SIZE);
+        lowResMasks = new LowResMasks(LOW_RES_SIZE, labels);
+        for (int label = 0; label < labels; label++) {
+            lowResMasks.set(label, lowResLogits, label * LOW_RES_SIZE * LOW_RES_SIZE, 1f);
+        }
+    }
+
+    @Benchmark
+    public void collectMaskPoints(Blackhole blackhole) {
+        int maskSize = imageSize * imageSize;
+        for (int label = 0; label < labels; label++) {
+            blackhole.consume(LegacyMaskPoints.collectMaskPoints(maskLogits, label * maskSize, imageSize, imageSize, maskPixels));
+        }
+    }
+
+    @Benchmark
+    public void composite(Blackhole blackhole) {
+        int maskSize = imageSize * imageSize;
+        compositor.begin(imageSize, imageSize);
+        for (int label = 0; label < labels; label++) {
+            compositor.addMask(maskLogits, label * maskSize, label + 1, 0xFFFF00, MaskCompositor.DEFAULT_ALPHA);
+        }
+        blackhole.consume(compositor.getOverlayPixels());
+        blackhole.consume(compositor.getLabelMap());
+    }
+
+    @Benchmark
+    public void compositeLowRes(Blackhole blackhole) {
+        compositor.begin(imageSize, imageSize);
+        for (int label = 0; label < labels; label++) {
+            compositor.addLowResMask(lowResMasks, label, label + 1, 0xFFFF00, MaskCompositor.DEFAULT_ALPHA);
+        }
+        blackhole.consume(compositor.getOverlayPixels());
+        blackhole.consume(compositor.getLabelMap());
+    }
+}
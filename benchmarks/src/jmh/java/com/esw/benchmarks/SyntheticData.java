@@ -0,0 +1,123 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+import com.esw.yolo.DetectionCandidates;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic tensors standing in for model outputs.
+ */
+final class SyntheticData {
+    private final static long SEED = 42;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * A YOLO output tensor [4 + numClasses, numProposals] in a direct native-order buffer, like
+     * the one bound to the interpreter.
+     *
+     * @param inputSize      Model input size; box centers are spread over it.
+     * @param positiveRatio  Fraction of proposals given a best class score above 0.5; the others
+     *                       only get scores below 0.1.
+     */
+    static FloatBuffer yoloOutput(int numProposals, int numClasses, int inputSize, float positiveRatio) {
+        Random random = new Random(SEED);
+        FloatBuffer output = ByteBuffer.allocateDirect((4 + numClasses) * numProposals * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        for (int i = 0; i < numProposals; i++) {
+            output.put(i, random.nextFloat() * inputSize);
+            output.put(numProposals + i, random.nextFloat() * inputSize);
+            output.put(2 * numProposals + i, 8 + random.nextFloat() * inputSize / 4f);
+            output.put(3 * numProposals + i, 8 + random.nextFloat() * inputSize / 4f);
+        }
+        for (int c = 0; c < numClasses; c++) {
+            for (int i = 0; i < numProposals; i++) {
+                output.put((4 + c) * numProposals + i, random.nextFloat() * 0.1f);
+            }
+        }
+        for (int i = 0; i < numProposals; i++) {
+            if (random.nextFloat() < positiveRatio) {
+                int c = random.nextInt(numClasses);
+                output.put((4 + c) * numProposals + i, 0.5f + random.nextFloat() * 0.5f);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Candidates clustered around a few objects, as a detector produces them: every object is
+     * reported by several slightly shifted boxes of the same class.
+     */
+    static DetectionCandidates clusteredCandidates(int count, int numClasses, int imageSize) {
+        Random random = new Random(SEED);
+        DetectionCandidates candidates = new DetectionCandidates(count);
+        int boxesPerObject = 8;
+        float cx = 0, cy = 0, w = 0, h = 0;
+        int classIdx = 0;
+        for (int i = 0; i < count; i++) {
+            if (i % boxesPerObject == 0) {
+                cx = random.nextFloat() * imageSize;
+                cy = random.nextFloat() * imageSize;
+                w = 16 + random.nextFloat() * imageSize / 8f;
+                h = 16 + random.nextFloat() * imageSize / 8f;
+                classIdx = random.nextInt(numClasses);
+            }
+            float jitterX = (random.nextFloat() - 0.5f) * w * 0.2f;
+            float jitterY = (random.nextFloat() - 0.5f) * h * 0.2f;
+            candidates.x0[i] = cx + jitterX - w / 2;
+            candidates.y0[i] = cy + jitterY - h / 2;
+            candidates.x1[i] = cx + jitterX + w / 2;
+            candidates.y1[i] = cy + jitterY + h / 2;
+            candidates.score[i] = 0.2f + random.nextFloat() * 0.8f;
+            candidates.classIdx[i] = classIdx;
+            candidates.anchor[i] = i;
+        }
+        candidates.count = count;
+        return candidates;
+    }
+
+    /**
+     * Random ARGB_8888 pixels, as returned by Bitmap.getPixels.
+     */
+    static int[] argbPixels(int pixelCount) {
+        Random random = new Random(SEED);
+        int[] pixels = new int[pixelCount];
+        for (int i = 0; i < pixelCount; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    /**
+     * Decoder mask logits for numMasks masks of width x height, each an ellipse of positive
+     * logits covering about a quarter of the image.
+     */
+    static FloatBuffer maskLogits(int numMasks, int width, int height) {
+        Random random = new Random(SEED);
+        FloatBuffer mask = FloatBuffer.allocate(numMasks * width * height);
+        for (int m = 0; m < numMasks; m++) {
+            float cx = width * (0.25f + random.nextFloat() * 0.5f);
+            float cy = height * (0.25f + random.nextFloat() * 0.5f);
+            float rx = width * 0.28f;
+            float ry = height * 0.28f;
+            int offset = m * width * height;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    float dx = (x - cx) / rx;
+                    float dy = (y - cy) / ry;
+                    mask.put(offset + y * width + x, 1 - (dx * dx + dy * dy));
+                }
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,70 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+import com.esw.yolo.DetectionCandidates;
+import com.esw.yolo.ImageTransform;
+import com.esw.yolo.NonMaxSuppression;
+import com.esw.yolo.YoloOutputDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.FloatBuffer;
+
+/**
+ * YOLO output decoding, alone and followed by NMS, with the settings of ObjectDetection.
+ */
+@State(Scope.Thread)
+public class YoloDecodeBenchmark {
+    private final static int INPUT_SIZE = 640;
+    private final static float SCORE_THRESHOLD = 0.2f;
+    private final static float IOU_THRESHOLD = 0.2f;
+    private final static int PRE_NMS_TOP_K = 300;
+    private final static int MAX_DETECTIONS = 20;
+
+    // 640x640 models have 8400 proposals, 320x320 ones 2100
+    @Param({"2100", "8400"})
+    public int proposals;
+
+    @Param({"1", "80"})
+    public int classes;
+
+    // Fraction of proposals scoring above the threshold
+    @Param({"0.01", "0.1"})
+    public float positiveRatio;
+
+    private FloatBuffer output;
+    private ImageTransform transform;
+    private YoloOutputDecoder decoder;
+    private DetectionCandidates candidates;
+    private NonMaxSuppression nms;
+    private int[] keep;
+
+    @Setup
+    public void setUp() {
+        output = SyntheticData.yoloOutput(proposals, classes, INPUT_SIZE, positiveRatio);
+        transform = new ImageTransform();
+        transform.set(0, 0, 1920, 1080, 90, INPUT_SIZE, INPUT_SIZE, false);
+        decoder = new YoloOutputDecoder(classes, proposals);
+        candidates = new DetectionCandidates(proposals);
+        nms = new NonMaxSuppression(proposals, PRE_NMS_TOP_K, MAX_DETECTIONS, IOU_THRESHOLD, false);
+        keep = new int[MAX_DETECTIONS];
+    }
+
+    @Benchmark
+    public int decode() {
+        return decoder.decode(output, transform, SCORE_THRESHOLD, candidates);
+    }
+
+    @Benchmark
+    public int decodeAndSuppress() {
+        decoder.decode(output, transform, SCORE_THRESHOLD, candidates);
+        return nms.run(candidates, keep);
+    }
+}
@@ -0,0 +1,91 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.esw.benchmarks;
+
+import com.esw.imageprocessing.ImageProcessing;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * YOLO input conversion of a warped RGBA image to interleaved RGB floats in [0, 1]: the
+ * native kernel and its Java fallback against the original cvtColor + convertTo.
+ *
+ * NATIVE needs the host build of the image_processing library, see :app:buildHostNative.
+ */
+@State(Scope.Thread)
+public class YoloInputBenchmark {
+    // Side of the square model input
+    @Param({"320", "640"})
+    public int inputSize;
+
+    @Param({"OPENCV", "NATIVE", "JAVA"})
+    public String path;
+
+    private ByteBuffer rgba;
+    private ByteBuffer inputTensor;
+
+    // OpenCV path: RGBA Mat, intermediate RGB Mat, and a float Mat wrapping the input tensor
+    private Mat rgbaMat;
+    private Mat rgbMat;
+    private Mat inputMat;
+
+    @Setup
+    public void setUp() {
+        if ("NATIVE".equals(path) && !ImageProcessing.isNativeAvailable()) {
+            throw new IllegalStateException("Native image_processing library not loaded");
+        }
+        int pixelCount = inputSize * inputSize;
+        byte[] pixels = new byte[4 * pixelCount];
+        new Random(42).nextBytes(pixels);
+        rgba = ByteBuffer.allocateDirect(4 * pixelCount).order(ByteOrder.nativeOrder());
+        rgba.put(pixels).clear();
+        inputTensor = ByteBuffer.allocateDirect(3 * pixelCount * 4).order(ByteOrder.nativeOrder());
+
+        if ("OPENCV".equals(path)) {
+            nu.pattern.OpenCV.loadLocally();
+            rgbaMat = new Mat(inputSize, inputSize, CvType.CV_8UC4, rgba);
+            rgbMat = new Mat(inputSize, inputSize, CvType.CV_8UC3);
+            inputMat = new Mat(inputSize, inputSize, CvType.CV_32FC3, inputTensor);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (rgbaMat != null) {
+            rgbaMat.release();
+            rgbMat.release();
+            inputMat.release();
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer convert() {
+        switch (path) {
+            case "OPENCV":
+                Imgproc.cvtColor(rgbaMat, rgbMat, Imgproc.COLOR_RGBA2RGB);
+                rgbMat.convertTo(inputMat, CvType.CV_32FC3, 1 / 255f);
+                break;
+            case "NATIVE":
+                ImageProcessing.rgbaToYoloInput(rgba, inputTensor, inputSize * inputSize);
+                break;
+            default:
+                ImageProcessing.rgbaToYoloInputJava(rgba, inputTensor, inputSize * inputSize);
+                break;
+        }
+        return inputTensor;
+    }
+}
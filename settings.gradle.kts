@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "ESW-project"
 include(":app")
+include(":benchmarks")